@@ -0,0 +1,81 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The sample catalogs the benchmarks run on.  Paths are relative to the project directory, where
+ * the benchmarks profile runs JMH.
+ */
+final class BenchmarkCatalogs {
+
+	static final String POD_FILE = "sample_data/data.json";
+	static final String POD_AG_DATA_COMMONS_FILE = "sample_data/data-ag-data-commons.json";
+	static final String CKAN_FILE = "sample_data/sample_ckan_catalog_result.json";
+
+	private static final Logger log = Logger.getLogger(BenchmarkCatalogs.class.getName());
+
+	private BenchmarkCatalogs()
+	{
+	}
+
+	/**
+	 * Loads a Project Open Data catalog.  Datasets that fail validation are left out, as they are
+	 * for any caller.
+	 * @throws IllegalStateException if no dataset was loaded, so the trial fails instead of timing nothing
+	 */
+	static Catalog loadProjectOpenData(String fileName)
+	{
+		final Catalog catalog = newCatalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(fileName, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			checkLoaded(fileName, catalog, e);
+		}
+		return catalog;
+	}
+
+	/**
+	 * Loads a CKAN catalog, every package regardless of when it was modified.
+	 * @throws IllegalStateException if no dataset was loaded
+	 */
+	static Catalog loadCKAN(String fileName)
+	{
+		final Catalog catalog = newCatalog();
+		try
+		{
+			catalog.loadCatalogFromCKAN(fileName, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			checkLoaded(fileName, catalog, e);
+		}
+		return catalog;
+	}
+
+	/**
+	 * A catalog that does not save statistics, loads are timed without writing files.
+	 */
+	private static Catalog newCatalog()
+	{
+		final Catalog catalog = new Catalog();
+		catalog.setStatisticsDirectory(null);
+		return catalog;
+	}
+
+	/**
+	 * A file that cannot be read or parsed loads no datasets at all, one with invalid datasets loads
+	 * the rest.  Only the second is a catalog worth timing.
+	 */
+	private static void checkLoaded(String fileName, Catalog catalog, CatalogException e)
+	{
+		if (catalog.size() == 0)
+		{
+			throw (new IllegalStateException("No datasets loaded from " + fileName + ": " + e.toString()));
+		}
+		log.log(Level.INFO, e.exceptionSize() + " errors loading " + fileName + ", " + catalog.size() + " datasets loaded");
+	}
+}
@@ -0,0 +1,40 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a catalog file into datasets, for each of the sample Project Open Data catalogs and the
+ * sample CKAN query result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogLoadBenchmark {
+
+	@Param({BenchmarkCatalogs.POD_FILE, BenchmarkCatalogs.POD_AG_DATA_COMMONS_FILE, BenchmarkCatalogs.CKAN_FILE})
+	public String catalogFile;
+
+	@Benchmark
+	public Catalog load()
+	{
+		if (BenchmarkCatalogs.CKAN_FILE.equals(catalogFile))
+		{
+			return BenchmarkCatalogs.loadCKAN(catalogFile);
+		}
+		return BenchmarkCatalogs.loadProjectOpenData(catalogFile);
+	}
+}
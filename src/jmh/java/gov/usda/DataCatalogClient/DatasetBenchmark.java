@@ -0,0 +1,81 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Work done on every dataset of a catalog: validation, CKAN transformation, equals and hashCode.
+ * Each benchmark covers all datasets of sample_data/data.json.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DatasetBenchmark {
+
+	private List<Dataset> datasetList;
+	//equal datasets that are other objects, so equals compares every field
+	private List<Dataset> copyList;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		datasetList = BenchmarkCatalogs.loadProjectOpenData(BenchmarkCatalogs.POD_FILE).getDatasetList();
+		copyList = BenchmarkCatalogs.loadProjectOpenData(BenchmarkCatalogs.POD_FILE).getDatasetList();
+		if (datasetList.size() != copyList.size())
+		{
+			throw (new IllegalStateException("Two loads of " + BenchmarkCatalogs.POD_FILE + " differ"));
+		}
+	}
+
+	@Benchmark
+	public void validateDataset(Blackhole blackhole)
+	{
+		for (Dataset ds: datasetList)
+		{
+			blackhole.consume(ds.validateDataset());
+		}
+	}
+
+	@Benchmark
+	public void toCKAN_JSON(Blackhole blackhole)
+	{
+		for (Dataset ds: datasetList)
+		{
+			blackhole.consume(ds.toCKAN_JSON());
+		}
+	}
+
+	@Benchmark
+	public void equalsCopy(Blackhole blackhole)
+	{
+		for (int i = 0; i < datasetList.size(); i++)
+		{
+			blackhole.consume(datasetList.get(i).equals(copyList.get(i)));
+		}
+	}
+
+	@Benchmark
+	public void hashCodeAll(Blackhole blackhole)
+	{
+		for (Dataset ds: datasetList)
+		{
+			blackhole.consume(ds.hashCode());
+		}
+	}
+}
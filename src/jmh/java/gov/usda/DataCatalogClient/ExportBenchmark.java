@@ -0,0 +1,99 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing sample_data/data.json back out as an enterprise data inventory in each format, one format
+ * at a time and all of them in one pass.  Files go to a temporary directory.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+	private Catalog catalog;
+	private Path directory;
+	private List<ExportSink> sinkList;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		catalog = BenchmarkCatalogs.loadProjectOpenData(BenchmarkCatalogs.POD_FILE);
+		directory = Files.createTempDirectory("export-benchmark");
+		sinkList = Arrays.asList(
+				ExportSink.projectOpenDataJSON(path("all.json"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY),
+				ExportSink.csv(path("all.csv"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY),
+				ExportSink.legacyXML(path("all.xml"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		final File[] fileList = directory.toFile().listFiles();
+		if (fileList != null)
+		{
+			for (File file: fileList)
+			{
+				file.delete();
+			}
+		}
+		directory.toFile().delete();
+	}
+
+	@Benchmark
+	public void toProjectOpenDataJSON() throws IOException
+	{
+		catalog.toProjectOpenDataJSON(path("data.json"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY);
+	}
+
+	@Benchmark
+	public void toProjectOpenDataJSONCompact() throws IOException
+	{
+		catalog.toProjectOpenDataJSON(path("data-compact.json"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY, true);
+	}
+
+	@Benchmark
+	public void toCSV() throws IOException
+	{
+		catalog.toCSV(path("data.csv"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY);
+	}
+
+	@Benchmark
+	public void toLegacyXML()
+	{
+		catalog.toLegacyXML(path("data.xml"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY);
+	}
+
+	@Benchmark
+	public ExportManifest exportAll() throws IOException
+	{
+		return catalog.export(sinkList);
+	}
+
+	private String path(String fileName)
+	{
+		return directory.resolve(fileName).toString();
+	}
+}
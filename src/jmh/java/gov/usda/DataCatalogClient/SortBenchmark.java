@@ -0,0 +1,60 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorting the datasets of sample_data/data.json into catalog order from the same shuffled order every
+ * time: the sort key sort Catalog.sort uses, and Collections.sort on compareTo for comparison.  Both
+ * include copying the shuffled list, which is small next to the sort.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SortBenchmark {
+
+	private static final long SHUFFLE_SEED = 20150301L;
+
+	private List<Dataset> shuffledList;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		shuffledList = new ArrayList<Dataset>(BenchmarkCatalogs.loadProjectOpenData(BenchmarkCatalogs.POD_FILE).getDatasetList());
+		Collections.shuffle(shuffledList, new Random(SHUFFLE_SEED));
+	}
+
+	@Benchmark
+	public List<Dataset> sortKeys()
+	{
+		final List<Dataset> datasetList = new ArrayList<Dataset>(shuffledList);
+		DatasetSortKey.sort(datasetList);
+		return datasetList;
+	}
+
+	@Benchmark
+	public List<Dataset> sortCompareTo()
+	{
+		final List<Dataset> datasetList = new ArrayList<Dataset>(shuffledList);
+		Collections.sort(datasetList);
+		return datasetList;
+	}
+}
@@ -0,0 +1,112 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading, sorting and exporting catalogs far larger than the sample files, made by CatalogGenerator
+ * from the distributions of sample_data/data.json and data-ag-data-commons.json.  The catalogs are
+ * generated once per trial with a fixed seed, so every run measures the same datasets.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class SyntheticCatalogBenchmark {
+
+	private static final long SEED = 20150301L;
+
+	@Param({"10000", "100000"})
+	public int datasetCount;
+
+	private Path directory;
+	private Catalog catalog;
+	private List<Dataset> shuffledList;
+	private List<ExportSink> sinkList;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		directory = Files.createTempDirectory("synthetic-benchmark");
+		final CatalogGenerator generator = CatalogGenerator.of(
+				CatalogProfile.fromProjectOpenData(BenchmarkCatalogs.POD_FILE, BenchmarkCatalogs.POD_AG_DATA_COMMONS_FILE), SEED);
+		generator.writeProjectOpenDataJSON(path("data.json"), datasetCount);
+		generator.writeCKAN_JSON(path("ckan.json"), datasetCount);
+		catalog = BenchmarkCatalogs.loadProjectOpenData(path("data.json"));
+		shuffledList = new ArrayList<Dataset>(catalog.getDatasetList());
+		Collections.shuffle(shuffledList, new Random(SEED));
+		sinkList = Arrays.asList(
+				ExportSink.projectOpenDataJSON(path("export.json"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY),
+				ExportSink.csv(path("export.csv"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY),
+				ExportSink.legacyXML(path("export.xml"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		final File[] fileList = directory.toFile().listFiles();
+		if (fileList != null)
+		{
+			for (File file: fileList)
+			{
+				file.delete();
+			}
+		}
+		directory.toFile().delete();
+	}
+
+	@Benchmark
+	public Catalog loadProjectOpenData()
+	{
+		return BenchmarkCatalogs.loadProjectOpenData(path("data.json"));
+	}
+
+	@Benchmark
+	public Catalog loadCKAN()
+	{
+		return BenchmarkCatalogs.loadCKAN(path("ckan.json"));
+	}
+
+	@Benchmark
+	public List<Dataset> sort()
+	{
+		final List<Dataset> datasetList = new ArrayList<Dataset>(shuffledList);
+		DatasetSortKey.sort(datasetList);
+		return datasetList;
+	}
+
+	@Benchmark
+	public ExportManifest exportAll() throws IOException
+	{
+		return catalog.export(sinkList);
+	}
+
+	private String path(String fileName)
+	{
+		return directory.resolve(fileName).toString();
+	}
+}
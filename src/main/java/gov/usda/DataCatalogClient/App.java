@@ -40,8 +40,14 @@ public class App
     	}
     	System.out.println("Total Count" + catalog.size());
     	
-    	catalog.produceQuarterlyReport("quarterly_report.doc");
-    	catalog.produceBureauMetrics("bureau_metrics.csv");
+    	try{
+    		catalog.produceQuarterlyReport("quarterly_report.csv");
+    		catalog.produceBureauMetrics("bureau_metrics.csv");
+    	}
+    	catch(IOException e)
+    	{
+			log.log(Level.SEVERE, e.toString());
+    	}
     	
     	
     	//catalog.outputCSV("datalisting.csv");
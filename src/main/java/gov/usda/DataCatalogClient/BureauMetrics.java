@@ -0,0 +1,471 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * The BureauMetrics class counts, per bureau code, what a catalog holds: datasets by access level,
+ * distributions by media type, how often the main metadata fields are missing and how long ago
+ * datasets were modified.
+ * <p>
+ * The counts are made in one pass over the datasets.  Large catalogs are split into chunks counted in
+ * parallel, each chunk into its own accumulators, which are merged at the end, so no counter is
+ * shared between threads.  A dataset with several bureau codes counts for each of them, a dataset with
+ * none is counted under NO_BUREAU.
+ * <p>
+ * The result is written as CSV, one row per bureau, metric and value, and as JSON.
+ */
+public class BureauMetrics {
+
+	public final static String NO_BUREAU = "none";
+
+	/**
+	 * Fields whose missing rate is reported.
+	 */
+	public final static EnumSet<DatasetField> REPORTED_FIELDS = EnumSet.of(DatasetField.TITLE, DatasetField.DESCRIPTION,
+			DatasetField.KEYWORD, DatasetField.MODIFIED, DatasetField.PUBLISHER, DatasetField.CONTACT_POINT,
+			DatasetField.ACCESS_LEVEL, DatasetField.BUREAU_CODE, DatasetField.PROGRAM_CODE, DatasetField.LICENSE,
+			DatasetField.SPATIAL, DatasetField.TEMPORAL, DatasetField.DISTRIBUTION, DatasetField.ACCRUAL_PERIODICITY,
+			DatasetField.ISSUED, DatasetField.LANDING_PAGE, DatasetField.THEME, DatasetField.DESCRIBED_BY);
+
+	/**
+	 * Upper bounds, in days since modified, of the age buckets.  Older datasets and datasets without
+	 * modified get buckets of their own.
+	 */
+	private final static int[] AGE_BUCKET_DAYS = {30, 90, 365, 730, 1825};
+	private final static String[] AGE_BUCKET_NAMES = {"under 30 days", "30 to 90 days", "90 days to 1 year",
+		"1 to 2 years", "2 to 5 years", "over 5 years", "no modified date"};
+
+	//below this many datasets the counting runs on the calling thread
+	private final static int PARALLEL_THRESHOLD = 4096;
+	private final static long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+	private final static DatasetField[] FIELDS = DatasetField.values();
+
+	private final Date asOf;
+	private final Map<String, BureauCounts> bureauMap;
+
+	private BureauMetrics(Date asOf, Map<String, BureauCounts> bureauMap)
+	{
+		this.asOf = asOf;
+		this.bureauMap = bureauMap;
+	}
+
+	/**
+	 * Counts the metrics of a catalog with dataset ages as of now.
+	 * @param catalog Catalog
+	 * @return BureauMetrics
+	 */
+	public static BureauMetrics of(Catalog catalog)
+	{
+		return of(catalog, new Date());
+	}
+
+	/**
+	 * Counts the metrics of a catalog.
+	 * @param catalog Catalog
+	 * @param asOf Date the day ages are measured from
+	 * @return BureauMetrics
+	 */
+	public static BureauMetrics of(Catalog catalog, final Date asOf)
+	{
+		if (catalog == null || asOf == null)
+		{
+			throw new NullPointerException("catalog and asOf cannot be null");
+		}
+		final List<Dataset> datasetList = catalog.getDatasetList();
+		if (datasetList.size() < PARALLEL_THRESHOLD)
+		{
+			return new BureauMetrics(asOf, count(datasetList, asOf.getTime(), 0, datasetList.size()));
+		}
+
+		final ForkJoinPool pool = ForkJoinPool.commonPool();
+		final int chunkSize = Math.max(PARALLEL_THRESHOLD / 4, datasetList.size() / (pool.getParallelism() * 4) + 1);
+		final List<Callable<Map<String, BureauCounts>>> taskList = new ArrayList<Callable<Map<String, BureauCounts>>>();
+		for (int start = 0; start < datasetList.size(); start += chunkSize)
+		{
+			final int from = start;
+			final int to = Math.min(start + chunkSize, datasetList.size());
+			taskList.add(new Callable<Map<String, BureauCounts>>() {
+				@Override
+				public Map<String, BureauCounts> call()
+				{
+					return count(datasetList, asOf.getTime(), from, to);
+				}
+			});
+		}
+		final Map<String, BureauCounts> bureauMap = new HashMap<String, BureauCounts>();
+		try
+		{
+			for (Future<Map<String, BureauCounts>> future: pool.invokeAll(taskList))
+			{
+				for (Map.Entry<String, BureauCounts> chunkEntry: future.get().entrySet())
+				{
+					final BureauCounts counts = bureauMap.get(chunkEntry.getKey());
+					if (counts == null)
+					{
+						bureauMap.put(chunkEntry.getKey(), chunkEntry.getValue());
+					}
+					else
+					{
+						counts.merge(chunkEntry.getValue());
+					}
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Bureau metrics interrupted", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return new BureauMetrics(asOf, bureauMap);
+	}
+
+	private static Map<String, BureauCounts> count(List<Dataset> datasetList, long asOfMillis, int from, int to)
+	{
+		final Map<String, BureauCounts> bureauMap = new HashMap<String, BureauCounts>();
+		for (int i = from; i < to; i++)
+		{
+			final Dataset ds = datasetList.get(i);
+			final List<String> bureauCodeList = ds.getBureauCodeList();
+			if (bureauCodeList == null || bureauCodeList.isEmpty())
+			{
+				countersFor(bureauMap, NO_BUREAU).add(ds, asOfMillis);
+				continue;
+			}
+			for (int b = 0; b < bureauCodeList.size(); b++)
+			{
+				final BureauCounts counts = countersFor(bureauMap, bureauCodeList.get(b));
+				counts.add(ds, asOfMillis);
+				//the bureau name of a dataset is the name of its first bureau code
+				if (b == 0 && counts.bureauName == null)
+				{
+					counts.bureauName = ds.getBureauName();
+				}
+			}
+		}
+		return bureauMap;
+	}
+
+	private static BureauCounts countersFor(Map<String, BureauCounts> bureauMap, String bureauCode)
+	{
+		BureauCounts counts = bureauMap.get(bureauCode);
+		if (counts == null)
+		{
+			counts = new BureauCounts();
+			bureauMap.put(bureauCode, counts);
+		}
+		return counts;
+	}
+
+	/**
+	 * True if a dataset has no value for a field.  Publisher and contact point are objects that are
+	 * always there, they are missing when they name no one.
+	 */
+	static boolean isMissing(DatasetField field, Dataset ds)
+	{
+		switch (field)
+		{
+			case PUBLISHER:
+				return ds.getPublisher() == null || ds.getPublisher().getName() == null || ds.getPublisher().getName().trim().isEmpty();
+			case CONTACT_POINT:
+				return ds.getContactPoint() == null || (ds.getContactPoint().getFullName() == null && ds.getContactPoint().getEmailAddress() == null);
+			default:
+				return field.isEmpty(ds);
+		}
+	}
+
+	/**
+	 * @return List<String> the bureau codes counted, sorted
+	 */
+	public List<String> getBureauCodeList()
+	{
+		return new ArrayList<String>(new TreeMap<String, BureauCounts>(bureauMap).keySet());
+	}
+
+	public Date getAsOf()
+	{
+		return asOf;
+	}
+
+	/**
+	 * @return int datasets of the bureau, 0 if the bureau was not counted
+	 */
+	public int getDatasetCount(String bureauCode)
+	{
+		final BureauCounts counts = bureauMap.get(bureauCode);
+		return counts == null ? 0 : counts.datasetCount;
+	}
+
+	/**
+	 * @return Map<String, Integer> datasets of the bureau by access level, sorted
+	 */
+	public Map<String, Integer> getAccessLevelCounts(String bureauCode)
+	{
+		final BureauCounts counts = bureauMap.get(bureauCode);
+		return counts == null ? new TreeMap<String, Integer>() : sortedCounts(counts.accessLevelMap);
+	}
+
+	/**
+	 * @return Map<String, Integer> distributions of the bureau by media type, sorted
+	 */
+	public Map<String, Integer> getMediaTypeCounts(String bureauCode)
+	{
+		final BureauCounts counts = bureauMap.get(bureauCode);
+		return counts == null ? new TreeMap<String, Integer>() : sortedCounts(counts.mediaTypeMap);
+	}
+
+	/**
+	 * @return int datasets of the bureau without the field, one of REPORTED_FIELDS
+	 */
+	public int getMissingCount(String bureauCode, DatasetField field)
+	{
+		final BureauCounts counts = bureauMap.get(bureauCode);
+		return counts == null ? 0 : counts.missingCounts[field.ordinal()];
+	}
+
+	/**
+	 * @return Map<String, Integer> datasets of the bureau by time since modified, every bucket in age order
+	 */
+	public Map<String, Integer> getModifiedAgeCounts(String bureauCode)
+	{
+		final BureauCounts counts = bureauMap.get(bureauCode);
+		final Map<String, Integer> ageMap = new LinkedHashMap<String, Integer>();
+		for (int bucket = 0; bucket < AGE_BUCKET_NAMES.length; bucket++)
+		{
+			ageMap.put(AGE_BUCKET_NAMES[bucket], counts == null ? 0 : counts.ageCounts[bucket]);
+		}
+		return ageMap;
+	}
+
+	/**
+	 * Writes the metrics as CSV with the columns Bureau Code, Bureau Name, Metric, Value, Count and
+	 * Rate.  The rate is the count over the bureau's datasets, for media types over its distributions.
+	 * @param filePath String
+	 * @throws IOException
+	 */
+	public void toCSV(String filePath) throws IOException
+	{
+		if (filePath == null)
+		{
+			throw (new NullPointerException("filePath cannot be null"));
+		}
+		final CSVFormat csvFormat = CSVFormat.DEFAULT.withRecordSeparator("\n");
+		try (Writer out = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8);
+				CSVPrinter csvPrinter = new CSVPrinter(out, csvFormat))
+		{
+			csvPrinter.printRecord("Bureau Code", "Bureau Name", "Metric", "Value", "Count", "Rate");
+			for (String bureauCode: getBureauCodeList())
+			{
+				final BureauCounts counts = bureauMap.get(bureauCode);
+				final String name = counts.bureauName == null ? "" : counts.bureauName;
+				csvPrinter.printRecord(bureauCode, name, "datasets", "", counts.datasetCount, "");
+				csvPrinter.printRecord(bureauCode, name, "distributions", "", counts.distributionCount, "");
+				for (Map.Entry<String, Integer> entry: sortedCounts(counts.accessLevelMap).entrySet())
+				{
+					csvPrinter.printRecord(bureauCode, name, "access level", entry.getKey(), entry.getValue(), rate(entry.getValue(), counts.datasetCount));
+				}
+				for (Map.Entry<String, Integer> entry: sortedCounts(counts.mediaTypeMap).entrySet())
+				{
+					csvPrinter.printRecord(bureauCode, name, "media type", entry.getKey(), entry.getValue(), rate(entry.getValue(), counts.distributionCount));
+				}
+				for (DatasetField field: REPORTED_FIELDS)
+				{
+					final int missing = counts.missingCounts[field.ordinal()];
+					csvPrinter.printRecord(bureauCode, name, "missing", field.toString(), missing, rate(missing, counts.datasetCount));
+				}
+				for (int bucket = 0; bucket < AGE_BUCKET_NAMES.length; bucket++)
+				{
+					csvPrinter.printRecord(bureauCode, name, "modified age", AGE_BUCKET_NAMES[bucket], counts.ageCounts[bucket], rate(counts.ageCounts[bucket], counts.datasetCount));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return JSONObject the metrics, bureaus sorted by bureau code
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONObject toJSON()
+	{
+		final JSONArray bureauArray = new JSONArray();
+		for (String bureauCode: getBureauCodeList())
+		{
+			final BureauCounts counts = bureauMap.get(bureauCode);
+			final JSONObject bureauObject = new JSONObject();
+			bureauObject.put("bureauCode", bureauCode);
+			bureauObject.put("bureauName", counts.bureauName);
+			bureauObject.put("datasets", counts.datasetCount);
+			bureauObject.put("distributions", counts.distributionCount);
+			bureauObject.put("accessLevel", new JSONObject(sortedCounts(counts.accessLevelMap)));
+			bureauObject.put("mediaType", new JSONObject(sortedCounts(counts.mediaTypeMap)));
+			final JSONObject missingObject = new JSONObject();
+			for (DatasetField field: REPORTED_FIELDS)
+			{
+				final JSONObject fieldObject = new JSONObject();
+				fieldObject.put("count", counts.missingCounts[field.ordinal()]);
+				fieldObject.put("rate", rate(counts.missingCounts[field.ordinal()], counts.datasetCount));
+				missingObject.put(field.toString(), fieldObject);
+			}
+			bureauObject.put("missing", missingObject);
+			bureauObject.put("modifiedAge", new JSONObject(getModifiedAgeCounts(bureauCode)));
+			bureauArray.add(bureauObject);
+		}
+		final JSONObject metricsObject = new JSONObject();
+		metricsObject.put("asOf", Utils.convertDateToISOString(asOf));
+		metricsObject.put("bureaus", bureauArray);
+		return metricsObject;
+	}
+
+	/**
+	 * Writes toJSON() to a file.
+	 * @param filePath String
+	 * @throws IOException
+	 */
+	public void toJSON(String filePath) throws IOException
+	{
+		if (filePath == null)
+		{
+			throw (new NullPointerException("filePath cannot be null"));
+		}
+		try (Writer out = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8))
+		{
+			toJSON().writeJSONString(out);
+		}
+	}
+
+	private static Double rate(int count, int total)
+	{
+		return total == 0 ? Double.valueOf(0) : Double.valueOf((double) count / total);
+	}
+
+	private static Map<String, Integer> sortedCounts(Map<String, int[]> countMap)
+	{
+		final Map<String, Integer> sortedMap = new TreeMap<String, Integer>();
+		for (Map.Entry<String, int[]> entry: countMap.entrySet())
+		{
+			sortedMap.put(entry.getKey(), entry.getValue()[0]);
+		}
+		return sortedMap;
+	}
+
+	/**
+	 * The counters of one bureau, filled by one thread and merged afterwards.
+	 */
+	private static final class BureauCounts
+	{
+		private String bureauName;
+		private int datasetCount;
+		private int distributionCount;
+		private final Map<String, int[]> accessLevelMap = new HashMap<String, int[]>();
+		private final Map<String, int[]> mediaTypeMap = new HashMap<String, int[]>();
+		private final int[] missingCounts = new int[FIELDS.length];
+		private final int[] ageCounts = new int[AGE_BUCKET_NAMES.length];
+
+		private void add(Dataset ds, long asOfMillis)
+		{
+			datasetCount++;
+			increment(accessLevelMap, ds.getAccessLevel() == null ? "" : ds.getAccessLevel(), 1);
+			final List<Distribution> distributionList = ds.getDistributionList();
+			if (distributionList != null)
+			{
+				distributionCount += distributionList.size();
+				for (Distribution distribution: distributionList)
+				{
+					increment(mediaTypeMap, distribution.getMediaType() == null ? "" : distribution.getMediaType(), 1);
+				}
+			}
+			for (DatasetField field: REPORTED_FIELDS)
+			{
+				if (isMissing(field, ds))
+				{
+					missingCounts[field.ordinal()]++;
+				}
+			}
+			ageCounts[ageBucket(ds.getModified(), asOfMillis)]++;
+		}
+
+		private void merge(BureauCounts other)
+		{
+			if (bureauName == null)
+			{
+				bureauName = other.bureauName;
+			}
+			datasetCount += other.datasetCount;
+			distributionCount += other.distributionCount;
+			for (Map.Entry<String, int[]> entry: other.accessLevelMap.entrySet())
+			{
+				increment(accessLevelMap, entry.getKey(), entry.getValue()[0]);
+			}
+			for (Map.Entry<String, int[]> entry: other.mediaTypeMap.entrySet())
+			{
+				increment(mediaTypeMap, entry.getKey(), entry.getValue()[0]);
+			}
+			for (int i = 0; i < missingCounts.length; i++)
+			{
+				missingCounts[i] += other.missingCounts[i];
+			}
+			for (int i = 0; i < ageCounts.length; i++)
+			{
+				ageCounts[i] += other.ageCounts[i];
+			}
+		}
+
+		private static void increment(Map<String, int[]> countMap, String key, int amount)
+		{
+			final int[] count = countMap.get(key);
+			if (count == null)
+			{
+				countMap.put(key, new int[] {amount});
+			}
+			else
+			{
+				count[0] += amount;
+			}
+		}
+
+		private static int ageBucket(Date modified, long asOfMillis)
+		{
+			if (modified == null)
+			{
+				return AGE_BUCKET_NAMES.length - 1;
+			}
+			final long ageDays = (asOfMillis - modified.getTime()) / MILLIS_PER_DAY;
+			for (int bucket = 0; bucket < AGE_BUCKET_DAYS.length; bucket++)
+			{
+				if (ageDays < AGE_BUCKET_DAYS[bucket])
+				{
+					return bucket;
+				}
+			}
+			return AGE_BUCKET_DAYS.length;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * Adds bureau name and bureau abbreviation to datasets by bureau code, from the shared
+ * BureauRegistry.  A code that is not in the reference data sets a "Name not found" bureau name.
+ */
+public class BureauNameStage extends EnrichmentStage<BureauRegistry.Bureau> {
+
+	@Override
+	protected List<String> lookupKeys(Dataset ds, String source)
+	{
+		return ds.getBureauCodeList();
+	}
+
+	@Override
+	protected Map<String, BureauRegistry.Bureau> buildIndex() throws IOException, ParseException
+	{
+		//the registry already keys bureaus by code, use its map rather than building another
+		return BureauRegistry.getInstance().getBureauCodeMap();
+	}
+
+	@Override
+	protected void apply(Dataset ds, String bureauCode, BureauRegistry.Bureau bureau)
+	{
+		ds.setBureauName(bureau.getName());
+		ds.setBureauAbbreviation(bureau.getAbbreviation());
+	}
+
+	@Override
+	protected boolean applyMissing(Dataset ds, String bureauCode)
+	{
+		ds.setBureauName("Name not found for bureau code: " + bureauCode + ", see bureau configuration file." );
+		return true;
+	}
+}
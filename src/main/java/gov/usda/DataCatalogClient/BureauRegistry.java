@@ -0,0 +1,297 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The BureauRegistry class holds the bureau reference data, normally sample_data/bureau_reference_data.json,
+ * parsed once into hash maps keyed by bureau code and by CKAN organization identifier.
+ * <p>
+ * All lookups read one immutable snapshot.  reload() parses the file into a new snapshot and swaps it
+ * in with a single volatile write, so a reader sees either the old data or the new data, never a mix.
+ * The shared instance (@see getInstance) watches the file with a WatchService and reloads when it
+ * changes.  A file that fails to parse is logged and the previous snapshot is kept.
+ */
+public class BureauRegistry implements Closeable {
+
+	public final static String DEFAULT_BUREAU_FILE = "sample_data/bureau_reference_data.json";
+
+	public final static String BUREAU_CODE = "bureau_code";
+	public final static String BUREAU_NAME = "bureau_name";
+	public final static String BUREAU_ABBREVIATION = "bureau_abbreviation";
+	public final static String BUREAU_CKAN_IDENTIFIER = "bureau_ckan_identifier";
+
+	private static BureauRegistry instance;
+	private static final Logger log = Logger.getLogger(BureauRegistry.class.getName());
+
+	private final Path bureauPath;
+	private volatile Snapshot snapshot;
+	private WatchService watchService;
+
+	/**
+	 * Loads the bureau reference data from a file.
+	 * @param bureauFileName String
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public BureauRegistry(String bureauFileName) throws IOException, ParseException
+	{
+		if (bureauFileName == null)
+		{
+			throw new NullPointerException("bureauFileName cannot be null");
+		}
+		bureauPath = Paths.get(bureauFileName).toAbsolutePath();
+		reload();
+	}
+
+	/**
+	 * Returns the registry for DEFAULT_BUREAU_FILE, loading it and starting the file watch on first use.
+	 * @return BureauRegistry shared by every catalog and client
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public static synchronized BureauRegistry getInstance() throws IOException, ParseException
+	{
+		if (instance == null)
+		{
+			final BureauRegistry registry = new BureauRegistry(DEFAULT_BUREAU_FILE);
+			try
+			{
+				registry.watch();
+			}
+			catch (IOException e)
+			{
+				log.log(Level.WARNING, "Cannot watch " + DEFAULT_BUREAU_FILE + ", changes need a restart: " + e.toString());
+			}
+			instance = registry;
+		}
+		return instance;
+	}
+
+	/**
+	 * Parses the file again and replaces the current data in one step.
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public void reload() throws IOException, ParseException
+	{
+		snapshot = new Snapshot(Utils.loadJsonArrayFile(bureauPath.toString()));
+	}
+
+	/**
+	 * Starts a daemon thread that reloads the registry whenever the file is modified or replaced.
+	 * @throws IOException if the directory cannot be watched
+	 */
+	public synchronized void watch() throws IOException
+	{
+		if (watchService != null)
+		{
+			return;
+		}
+		final WatchService service = FileSystems.getDefault().newWatchService();
+		//watch the directory, an editor or deployment that renames a new file into place replaces the file itself
+		bureauPath.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		watchService = service;
+		final Thread watchThread = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				watchFile(service);
+			}
+		}, "BureauRegistry " + bureauPath.getFileName());
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	private void watchFile(WatchService service)
+	{
+		try
+		{
+			while (true)
+			{
+				final WatchKey key = service.take();
+				boolean changed = false;
+				for (WatchEvent<?> event: key.pollEvents())
+				{
+					if (bureauPath.getFileName().equals(event.context()))
+					{
+						changed = true;
+					}
+				}
+				key.reset();
+				if (changed)
+				{
+					try
+					{
+						reload();
+					}
+					catch (IOException | ParseException e)
+					{
+						log.log(Level.WARNING, "Keeping previous bureau data, cannot load " + bureauPath + ": " + e.toString());
+					}
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException e)
+		{
+			//closed, stop watching
+		}
+	}
+
+	/**
+	 * Stops watching the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (watchService != null)
+		{
+			watchService.close();
+			watchService = null;
+		}
+	}
+
+	/**
+	 * @param bureauCode String for example "005:96"
+	 * @return Bureau or null if the code is not in the reference data
+	 */
+	public Bureau getBureauByCode(String bureauCode)
+	{
+		return snapshot.bureauCodeMap.get(bureauCode);
+	}
+
+	/**
+	 * Returns the code to bureau map of the current reference data.  The map is not changed by a
+	 * later reload, so a caller that holds it sees one consistent version of the file.
+	 * @return Map<String, Bureau> read only
+	 */
+	Map<String, Bureau> getBureauCodeMap()
+	{
+		return Collections.unmodifiableMap(snapshot.bureauCodeMap);
+	}
+
+	/**
+	 * @param ckanIdentifier String CKAN organization name
+	 * @return Bureau or null if no bureau has that CKAN organization
+	 */
+	public Bureau getBureauByCkanIdentifier(String ckanIdentifier)
+	{
+		return snapshot.ckanIdentifierMap.get(ckanIdentifier);
+	}
+
+	/**
+	 * @return List<Bureau> every bureau in file order
+	 */
+	public List<Bureau> getBureauList()
+	{
+		return snapshot.bureauList;
+	}
+
+	/**
+	 * Returns the bureaus as the JSON objects of the file, for code that reads the raw fields.
+	 * @return JSONArray a copy, changing it does not change the registry
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONArray getBureauArray()
+	{
+		final JSONArray bureauArray = new JSONArray();
+		for (Bureau bureau: snapshot.bureauList)
+		{
+			bureauArray.add(new JSONObject(bureau.bureauObject));
+		}
+		return bureauArray;
+	}
+
+	/**
+	 * One bureau of the reference data.
+	 */
+	public static class Bureau
+	{
+		private final String code;
+		private final String name;
+		private final String abbreviation;
+		private final String ckanIdentifier;
+		private final JSONObject bureauObject;
+
+		private Bureau(JSONObject bureauObject)
+		{
+			this.bureauObject = bureauObject;
+			code = (String) bureauObject.get(BUREAU_CODE);
+			name = (String) bureauObject.get(BUREAU_NAME);
+			abbreviation = (String) bureauObject.get(BUREAU_ABBREVIATION);
+			ckanIdentifier = (String) bureauObject.get(BUREAU_CKAN_IDENTIFIER);
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getAbbreviation() {
+			return abbreviation;
+		}
+
+		public String getCkanIdentifier() {
+			return ckanIdentifier;
+		}
+
+		@Override
+		public String toString() {
+			return "Bureau [code=" + code + ", name=" + name + ", abbreviation=" + abbreviation + "]";
+		}
+	}
+
+	/**
+	 * Everything parsed from one version of the file.  Never changed after it is built.
+	 */
+	private static class Snapshot
+	{
+		private final List<Bureau> bureauList;
+		private final Map<String, Bureau> bureauCodeMap;
+		private final Map<String, Bureau> ckanIdentifierMap;
+
+		private Snapshot(JSONArray bureauArray)
+		{
+			final List<Bureau> list = new ArrayList<Bureau>(bureauArray.size());
+			bureauCodeMap = new HashMap<String, Bureau>();
+			ckanIdentifierMap = new HashMap<String, Bureau>();
+			for (Object bureauObject: bureauArray)
+			{
+				final Bureau bureau = new Bureau((JSONObject) bureauObject);
+				list.add(bureau);
+				//later entries win, the same as the scan this replaces
+				if (bureau.code != null)
+				{
+					bureauCodeMap.put(bureau.code, bureau);
+				}
+				if (bureau.ckanIdentifier != null)
+				{
+					ckanIdentifierMap.put(bureau.ckanIdentifier, bureau);
+				}
+			}
+			bureauList = Collections.unmodifiableList(list);
+		}
+	}
+}
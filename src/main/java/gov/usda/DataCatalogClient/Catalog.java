@@ -2,32 +2,29 @@ package gov.usda.DataCatalogClient;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.BufferedReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.ParseException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 /**
  * The Catalog class is based on Project Open Data metadata specification 1.1 https://project-open-data.cio.gov/v1.1/schema/
@@ -65,6 +62,19 @@ public class Catalog {
 	
 	public final static String CKAN_CATALOG = "result";
 	
+	/**
+	 * CKAN loads skip packages whose metadata_modified is before March 1, 2015 unless another filter is given.
+	 */
+	public final static DatasetFilter DEFAULT_CKAN_FILTER = DatasetFilter.modifiedAfter(new GregorianCalendar(2015, Calendar.MARCH, 1).getTime());
+	
+	/**
+	 * Where produceQuarterlyReport keeps catalog statistics when no statistics directory is set.
+	 */
+	public final static String DEFAULT_STATISTICS_DIRECTORY = "catalog_statistics";
+	
+	//more runs than this and a full sort is cheaper to track than the merge
+	private final static int MAX_SORTED_RUNS = 64;
+	
 	//Documentation on DCAT here: http://www.w3.org/TR/vocab-dcat/
 	private String description;
 	private String homepage;
@@ -83,6 +93,19 @@ public class Catalog {
 	private String type;
 	
 	private List<Dataset> dataSetList;
+	private CatalogIndex catalogIndex;
+	//built on the first search, then kept current like catalogIndex
+	private SearchIndex searchIndex;
+	//start index of each sorted run in dataSetList, null when the order is unknown
+	private List<Integer> sortedRunList;
+	//name of where this catalog was loaded from, reported when catalogs are merged
+	private String source;
+	//source of datasets merged in from other catalogs
+	private Map<Dataset, String> datasetSourceMap;
+	//where statistics are saved after every load, DEFAULT_STATISTICS_DIRECTORY unless set, null to not keep them
+	private String statisticsDirectory;
+	//rendered output of datasets kept between exports, null to render every dataset every time
+	private ExportFragmentCache exportCache;
 	
 	private CatalogException catalogException;
 	private static final Logger log = Logger.getLogger(Catalog.class.getName());
@@ -108,6 +131,10 @@ public class Catalog {
 	public Catalog()
 	{
 		dataSetList = new ArrayList<Dataset>();
+		catalogIndex = new CatalogIndex();
+		datasetSourceMap = new IdentityHashMap<Dataset, String>();
+		sortedRunList = newSortedRunList();
+		statisticsDirectory = DEFAULT_STATISTICS_DIRECTORY;
 		catalogException = new CatalogException();
 	}
 	
@@ -116,39 +143,165 @@ public class Catalog {
 	 * <p>
 	 * When doing a search on CKAN, the result is an array of packages(in this program datasets).
 	 * This method begins the process of marshaling the JSON into Java Objects by looping through
-	 * the packages and calling the loadDataset methods at the dataset level.
+	 * the packages and calling the loadDataset methods at the dataset level.  Packages are filtered
+	 * with DEFAULT_CKAN_FILTER.
 	 * @param catalogCKAN_JSON JSONObject The results from a CKAN query.
 	 * @throws  
 	 */
 	public void loadCatalogFromCKAN(JSONObject catalogCKAN_JSON) throws CatalogException 
 	{
-		if (catalogCKAN_JSON == null)
+		loadCatalogFromCKAN(catalogCKAN_JSON, DEFAULT_CKAN_FILTER, DatasetProjection.all());
+	}
+	
+	/**
+	 * Populates catalog from CKAN JSON Object, loading only the packages that pass the filter.
+	 * <p>
+	 * The filter and projection run on the raw package JSON, a package that is filtered out is
+	 * never built into a Dataset or validated.
+	 * @param catalogCKAN_JSON JSONObject The results from a CKAN query.
+	 * @param filter DatasetFilter packages to load @see DatasetFilter
+	 * @param projection DatasetProjection fields to load @see DatasetProjection
+	 */
+	public void loadCatalogFromCKAN(JSONObject catalogCKAN_JSON, DatasetFilter filter, DatasetProjection projection) throws CatalogException 
+	{
+		if (catalogCKAN_JSON == null || filter == null || projection == null)
 		{
-			throw (new NullPointerException("JSONObject catalogCKAN_JSON cannot be null"));
+			throw (new NullPointerException("JSONObject catalogCKAN_JSON, filter and projection cannot be null"));
 		}
 		final JSONObject resultObject= (JSONObject) catalogCKAN_JSON.get(CKAN_CATALOG);
 		final JSONArray packageList = (JSONArray) resultObject.get(Dataset.CKAN_DATASET);				
+		final List<Dataset> loadedList = new ArrayList<Dataset>();
 		for(int i = 0; i < packageList.size(); i++)
 		{
-			final JSONObject packageObject = (JSONObject) packageList.get(i);
-			final Dataset ds = new Dataset();
-			try{
-				ds.loadDatasetFromCKAN_JSON(packageObject);
-				if (ds.getMetadataModifiedDate().after(Utils.convertISOStringToDate("2015-03-01")))
+			loadDataset(RawDataset.fromCKAN((JSONObject) packageList.get(i)), filter, projection, loadedList);
+		}
+		addLoadedDatasets(loadedList);
+	}
+	
+	/**
+	 * Populates catalog from a CKAN compliant json file, reading one package at a time.
+	 * <p>
+	 * Packages that do not pass the filter are dropped as soon as they are parsed, so memory
+	 * holds the datasets that are loaded and never the whole file.
+	 * @param catalogFileName String
+	 * @param filter DatasetFilter packages to load @see DatasetFilter
+	 * @param projection DatasetProjection fields to load @see DatasetProjection
+	 */
+	public void loadCatalogFromCKAN(String catalogFileName, DatasetFilter filter, DatasetProjection projection) throws CatalogException
+	{
+		if (catalogFileName == null || filter == null || projection == null)
+		{
+			throw (new NullPointerException("catalogFileName, filter and projection cannot be null"));
+		}
+		final List<Dataset> loadedList = new ArrayList<Dataset>();
+		try
+		{
+			streamDatasets(catalogFileName, RawDataset.Format.CKAN, filter, projection, loadedList, CKAN_CATALOG, Dataset.CKAN_DATASET);
+		}
+		catch (IOException | ParseException e) 
+		{
+			catalogException.addError(e.toString());
+			throw (catalogException);
+		}
+		addLoadedDatasets(loadedList);
+	}
+
+	/**
+	 * Loads the datasets of a catalog store, CKAN and Project Open Data records alike, with one
+	 * sequential read of the store.
+	 * @param store CatalogStore
+	 * @param filter DatasetFilter datasets to load
+	 * @param projection DatasetProjection fields to load
+	 * @throws CatalogException
+	 */
+	public void loadFromStore(CatalogStore store, final DatasetFilter filter, final DatasetProjection projection) throws CatalogException
+	{
+		if (store == null || filter == null || projection == null)
+		{
+			throw (new NullPointerException("store, filter and projection cannot be null"));
+		}
+		final List<Dataset> loadedList = new ArrayList<Dataset>();
+		try
+		{
+			store.scan(new CatalogStore.StoreVisitor() {
+				@Override
+				public void visit(String key, RawDataset rawDataset)
 				{
-					dataSetList.add(ds);
+					loadDataset(rawDataset, filter, projection, loadedList);
 				}
+			});
+		}
+		catch (IOException e)
+		{
+			catalogException.addError(e.toString());
+			throw (catalogException);
+		}
+		addLoadedDatasets(loadedList);
+	}
+
+	/**
+	 * Builds one dataset if it passes the filter.  Invalid datasets are recorded in catalogException.
+	 */
+	private void loadDataset(RawDataset rawDataset, DatasetFilter filter, DatasetProjection projection, List<Dataset> loadedList)
+	{
+		if (!filter.accept(rawDataset))
+		{
+			return;
+		}
+		final Dataset ds = new Dataset();
+		try{
+			if (rawDataset.getFormat() == RawDataset.Format.CKAN)
+			{
+				ds.loadDatasetFromCKAN_JSON(projection.project(rawDataset));
 			}
-			catch(DatasetException | java.text.ParseException e)
+			else
 			{
-				//TODO: Capture entire error
-				catalogException.addError(e.toString() + "\n");
+				ds.loadFromProjectOpenDataJSON(projection.project(rawDataset));
 			}
+			loadedList.add(ds);
 		}
-		
-		addBureauNameToDataset();
-		
-		Collections.sort(dataSetList);
+		catch(DatasetException e)
+		{
+			//TODO: Capture entire error
+			catalogException.addError(e.toString() + "\n");
+		}
+	}
+	
+	/**
+	 * Parses a catalog file, loading each dataset of the array at datasetArrayPath as it is read.
+	 * @return JSONObject the rest of the file, for the catalog level fields
+	 */
+	private JSONObject streamDatasets(String catalogFileName, final RawDataset.Format format, final DatasetFilter filter, final DatasetProjection projection,
+			final List<Dataset> loadedList, String... datasetArrayPath) throws IOException, ParseException
+	{
+		final DatasetStreamParser parser = new DatasetStreamParser(new DatasetStreamParser.DatasetCallback() {
+			@Override
+			public void dataset(JSONObject datasetObject)
+			{
+				final RawDataset rawDataset = format == RawDataset.Format.CKAN ? RawDataset.fromCKAN(datasetObject) : RawDataset.fromProjectOpenData(datasetObject);
+				loadDataset(rawDataset, filter, projection, loadedList);
+			}
+		}, datasetArrayPath);
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(catalogFileName), StandardCharsets.UTF_8))
+		{
+			return parser.parse(reader);
+		}
+	}
+	
+	/**
+	 * Adds newly loaded datasets and validates the catalog.
+	 */
+	private void addLoadedDatasets(List<Dataset> loadedList) throws CatalogException
+	{
+		//name and sort the new datasets on their own, they are then one sorted run merged into the catalog
+		addBureauNameToDataset(loadedList);
+		DatasetSortKey.sort(loadedList);
+		for (Dataset ds: loadedList)
+		{
+			addDataset(ds);
+		}
+		sort();
+		saveStatistics();
 		
 		if (!validateCatalog() || catalogException.exceptionSize() > 0)
 		{
@@ -158,24 +311,405 @@ public class Catalog {
 	
 	
 	/**
-	 * Adds datasets from another catalog to this catalog.
+	 * Saves statistics of the catalog as it is now, unless statistics are turned off.  A load does
+	 * not fail because its statistics could not be saved.
+	 */
+	void saveStatistics()
+	{
+		if (statisticsDirectory == null)
+		{
+			return;
+		}
+		try
+		{
+			CatalogStatistics.of(this, new Date()).save(statisticsDirectory);
+		}
+		catch (IOException e)
+		{
+			log.log(Level.WARNING, "Cannot save catalog statistics to " + statisticsDirectory + " " + e.toString());
+		}
+	}
+	
+	/**
+	 * Adds datasets from another catalog to this catalog.  A dataset whose unique identifier is
+	 * already in this catalog is merged into the existing dataset, the newer copy wins.
 	 * 
 	 * @param otherCatalog Catalog Another catalog who's datasets will be combined with this object.
 	 */
 	public void addFromOtherCatalog(Catalog otherCatalog)
 	{
-		if (otherCatalog == null)
+		addFromOtherCatalog(otherCatalog, DatasetMergePolicy.newestModified());
+	}
+	
+	/**
+	 * Adds datasets from another catalog to this catalog, merging datasets that share a unique identifier.
+	 * <p>
+	 * Datasets are matched through the identifier index, so this runs in time linear in the size of
+	 * otherCatalog.  For every field where the two copies differ the policy picks a winner, the
+	 * winning values are copied into the dataset already in this catalog and the report records
+	 * which source won each field.  Datasets without an identifier are always added.
+	 * 
+	 * @param otherCatalog Catalog Another catalog who's datasets will be combined with this object.
+	 * @param mergePolicy DatasetMergePolicy decides conflicts @see DatasetMergePolicy
+	 * @return MergeReport datasets added and merged, with the winning source of each differing field
+	 */
+	public MergeReport addFromOtherCatalog(Catalog otherCatalog, DatasetMergePolicy mergePolicy)
+	{
+		if (otherCatalog == null || mergePolicy == null)
 		{
-			throw (new NullPointerException("Catalog otherCatalog cannot be null"));
+			throw (new NullPointerException("Catalog otherCatalog and mergePolicy cannot be null"));
 		}
-		final List<Dataset> otherDatasetList = otherCatalog.dataSetList;
-		
-		for (Dataset ds: otherDatasetList)
+		final MergeReport mergeReport = new MergeReport();
+		final List<DatasetField> incomingFieldList = new ArrayList<DatasetField>();
+		//copy the list, otherCatalog may be this catalog
+		for (Dataset ds: new ArrayList<Dataset>(otherCatalog.dataSetList))
 		{
-			dataSetList.add(ds);
+			final String incomingSource = otherCatalog.getSource(ds);
+			final String identifier = ds.getUniqueIdentifier();
+			final Dataset existing = identifier == null ? null : getDatasetByIdentifier(identifier);
+			if (existing == null)
+			{
+				addDataset(ds);
+				if (incomingSource != null)
+				{
+					datasetSourceMap.put(ds, incomingSource);
+				}
+				mergeReport.addAdded();
+				continue;
+			}
+			if (existing == ds)
+			{
+				continue;
+			}
+			
+			final String existingSource = getSource(existing);
+			final MergeReport.MergedDataset mergedDataset = new MergeReport.MergedDataset(identifier, existingSource, incomingSource);
+			//decide every field before copying any, policies look at fields like modified
+			incomingFieldList.clear();
+			int conflictCount = 0;
+			for (DatasetField field: DatasetField.values())
+			{
+				if (field.sameValue(existing, ds))
+				{
+					continue;
+				}
+				conflictCount++;
+				if (mergePolicy.takeIncoming(field, existing, existingSource, ds, incomingSource))
+				{
+					incomingFieldList.add(field);
+					mergedDataset.putFieldSource(field, incomingSource);
+				}
+				else
+				{
+					mergedDataset.putFieldSource(field, existingSource);
+				}
+			}
+			for (DatasetField field: incomingFieldList)
+			{
+				field.set(existing, field.get(ds));
+			}
+			if (!incomingFieldList.isEmpty())
+			{
+				reindexDataset(existing);
+				if (incomingFieldList.size() == conflictCount && incomingSource != null)
+				{
+					datasetSourceMap.put(existing, incomingSource);
+				}
+			}
+			mergeReport.addMerged(mergedDataset);
+		}
+		return mergeReport;
+	}
+	
+	/**
+	 * Returns where a dataset came from: the source of the catalog it was merged from, otherwise the
+	 * source of this catalog.
+	 */
+	String getSource(Dataset ds)
+	{
+		final String datasetSource = datasetSourceMap.get(ds);
+		return datasetSource == null ? source : datasetSource;
+	}
+	
+	/**
+	 * Records that a dataset came from somewhere other than this catalog's source.
+	 */
+	void setSource(Dataset ds, String datasetSource)
+	{
+		datasetSourceMap.put(ds, datasetSource);
+	}
+	
+	/**
+	 * Writes the catalog level fields to a snapshot @see CatalogSnapshot
+	 */
+	void writeSnapshot(CatalogSnapshot.Output out)
+	{
+		out.writeString(source);
+		out.writeString(title);
+		out.writeString(description);
+		out.writeDate(issued);
+		out.writeString(language);
+		out.writeString(license);
+		out.writeString(rights);
+		out.writeString(spatial);
+		out.writeString(homepage);
+		out.writeString(conformsTo);
+		out.writeString(context);
+		out.writeString(describedBy);
+		out.writeString(id);
+		out.writeString(type);
+	}
+	
+	void readSnapshot(CatalogSnapshot.Input in)
+	{
+		source = in.readString();
+		title = in.readString();
+		description = in.readString();
+		issued = in.readDate();
+		language = in.readString();
+		license = in.readString();
+		rights = in.readString();
+		spatial = in.readString();
+		homepage = in.readString();
+		conformsTo = in.readString();
+		context = in.readString();
+		describedBy = in.readString();
+		id = in.readString();
+		type = in.readString();
+	}
+	
+	/**
+	 * Adds a dataset to this catalog and to its secondary indexes.
+	 * @param ds Dataset the dataset to add
+	 */
+	public void addDataset(Dataset ds)
+	{
+		if (ds == null)
+		{
+			throw (new NullPointerException("Dataset ds cannot be null"));
+		}
+		if (sortedRunList != null && !dataSetList.isEmpty() && dataSetList.get(dataSetList.size() - 1).compareTo(ds) > 0)
+		{
+			//out of order, start a new run or give up on runs if there are too many to merge
+			if (sortedRunList.size() < MAX_SORTED_RUNS)
+			{
+				sortedRunList.add(dataSetList.size());
+			}
+			else
+			{
+				sortedRunList = null;
+			}
+		}
+		dataSetList.add(ds);
+		catalogIndex.add(ds);
+		if (searchIndex != null)
+		{
+			searchIndex.add(ds);
 		}
 	}
 	
+	/**
+	 * Removes a dataset from this catalog and from its secondary indexes.  The dataset is matched
+	 * by reference, not by equals, so an equal dataset from another catalog is not removed.
+	 * @param ds Dataset the dataset to remove
+	 * @return boolean true if the dataset was in this catalog
+	 */
+	public boolean removeDataset(Dataset ds)
+	{
+		if (!catalogIndex.remove(ds))
+		{
+			return false;
+		}
+		if (searchIndex != null)
+		{
+			searchIndex.remove(ds);
+		}
+		for (int i = 0; i < dataSetList.size(); i++)
+		{
+			if (dataSetList.get(i) == ds)
+			{
+				dataSetList.remove(i);
+				removeFromSortedRuns(i);
+				break;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Updates the secondary indexes after a dataset in this catalog was changed, for example
+	 * after calling setBureauCodeList or setKeywordList on it.
+	 * @param ds Dataset a dataset in this catalog
+	 */
+	public void reindexDataset(Dataset ds)
+	{
+		if (ds == null)
+		{
+			throw (new NullPointerException("Dataset ds cannot be null"));
+		}
+		//the bureau name or title may have changed
+		sortedRunList = null;
+		catalogIndex.update(ds);
+		if (searchIndex != null)
+		{
+			searchIndex.update(ds);
+		}
+	}
+	
+	/**
+	 * Full text search over dataset title, description, keywords and themes ranked by BM25.
+	 * <p>
+	 * The search index is built on the first call and kept up to date as datasets are added,
+	 * removed or re-indexed, so catalogs that are never searched do not pay for it.
+	 * @param queryText String free text, case and accents are ignored
+	 * @param maxResults int the number of results to return
+	 * @return List<SearchResult> best match first
+	 */
+	public List<SearchResult> search(String queryText, int maxResults)
+	{
+		if (searchIndex == null)
+		{
+			searchIndex = new SearchIndex();
+			for (Dataset ds: dataSetList)
+			{
+				searchIndex.add(ds);
+			}
+		}
+		return searchIndex.search(queryText, maxResults);
+	}
+	
+	/**
+	 * Returns the datasets that match every criterion of the query, for example all
+	 * non-public datasets for a bureau.  The indexes are intersected, no dataset is scanned.
+	 * @param query DatasetQuery the criteria
+	 * @return List<Dataset> matching datasets
+	 */
+	public List<Dataset> findDatasets(DatasetQuery query)
+	{
+		return catalogIndex.find(query);
+	}
+	
+	/**
+	 * Returns the datasets where an indexed field contains the value.
+	 * @param field CatalogIndex.Field the indexed field
+	 * @param value String the value, keyword, theme and publisher are not case sensitive
+	 * @return List<Dataset> matching datasets
+	 */
+	public List<Dataset> findDatasets(CatalogIndex.Field field, String value)
+	{
+		final DatasetQuery query = new DatasetQuery();
+		query.addCriterion(field, value);
+		return catalogIndex.find(query);
+	}
+	
+	/**
+	 * Returns the dataset with this unique identifier, or null.  If the catalog holds more than one
+	 * dataset with the identifier the first one added is returned.
+	 * @param uniqueIdentifier String
+	 * @return Dataset
+	 */
+	public Dataset getDatasetByIdentifier(String uniqueIdentifier)
+	{
+		final List<Dataset> datasetList = findDatasets(CatalogIndex.Field.IDENTIFIER, uniqueIdentifier);
+		return datasetList.isEmpty() ? null : datasetList.get(0);
+	}
+	
+	/**
+	 * Sorts the datasets by bureau and title (@see Dataset.compareTo).
+	 * <p>
+	 * The catalog remembers that it is sorted, so repeated exports do not sort again.  Datasets
+	 * appended in order keep it sorted, and a catalog built from sorted pieces, such as bureau
+	 * catalogs, is put in order with a k-way merge of the pieces instead of a full sort.  Changing a
+	 * dataset through reindexDataset marks the catalog unsorted.
+	 */
+	public void sort()
+	{
+		if (isSorted())
+		{
+			return;
+		}
+		if (sortedRunList == null)
+		{
+			DatasetSortKey.sort(dataSetList);
+		}
+		else
+		{
+			DatasetSortKey.mergeRuns(dataSetList, sortedRunList);
+		}
+		sortedRunList = newSortedRunList();
+	}
+	
+	/**
+	 * Returns the datasets in sort order without changing the order of this catalog, for writers
+	 * that need sorted output from a catalog they do not own.
+	 * @return List<Dataset> the dataset list itself when the catalog is sorted, otherwise a sorted copy
+	 */
+	List<Dataset> getSortedDatasetList()
+	{
+		if (isSorted())
+		{
+			return dataSetList;
+		}
+		final List<Dataset> sortedList = new ArrayList<Dataset>(dataSetList);
+		if (sortedRunList == null)
+		{
+			DatasetSortKey.sort(sortedList);
+		}
+		else
+		{
+			DatasetSortKey.mergeRuns(sortedList, sortedRunList);
+		}
+		return sortedList;
+	}
+
+	/**
+	 * @return boolean true if the datasets are known to be in sort order
+	 */
+	public boolean isSorted()
+	{
+		return sortedRunList != null && sortedRunList.size() == 1;
+	}
+	
+	private static List<Integer> newSortedRunList()
+	{
+		final List<Integer> runList = new ArrayList<Integer>();
+		runList.add(0);
+		return runList;
+	}
+	
+	/**
+	 * Shifts the sorted runs after the dataset at index was removed.
+	 */
+	private void removeFromSortedRuns(int index)
+	{
+		if (sortedRunList == null)
+		{
+			return;
+		}
+		for (int r = sortedRunList.size() - 1; r > 0; r--)
+		{
+			if (sortedRunList.get(r) > index)
+			{
+				sortedRunList.set(r, sortedRunList.get(r) - 1);
+			}
+			//drop runs that became empty
+			final int end = r + 1 < sortedRunList.size() ? sortedRunList.get(r + 1) : dataSetList.size();
+			if (sortedRunList.get(r) >= end)
+			{
+				sortedRunList.remove(r);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the datasets in this catalog.  The list cannot be changed, use addDataset and removeDataset.
+	 * @return List<Dataset>
+	 */
+	public List<Dataset> getDatasetList()
+	{
+		return Collections.unmodifiableList(dataSetList);
+	}
+	
 	/**
 	 * Outputs a Catalog into tab delimited format.
 	 * <p>
@@ -187,152 +721,85 @@ public class Catalog {
 	 */
 	public void toCSV(String filePath, DataListingCode dataListingCode) throws IOException
 	{
-		Collections.sort(dataSetList);
-		if (filePath == null)
-		{
-			throw (new NullPointerException("filepath cannot be null"));
-		}
-		PrintWriter out = null;
-		CSVPrinter csvPrinter = null;
-		CSVFormat csvFormat = CSVFormat.DEFAULT.withRecordSeparator("\n");
-		List<String> catalogString = new ArrayList<String>();
-		catalogString.add("Agency Name");
-		catalogString.add("Title");
-		catalogString.add("Description");
-		catalogString.add("MediaType");
-		catalogString.add("Download URL");
-		catalogString.add("Frequency");
-		catalogString.add("Bureau Code");
-		catalogString.add("Contact Email");
-		catalogString.add("Contact Name");
-		catalogString.add("Landing Page");
-		catalogString.add("Program Code");
-		catalogString.add("Publisher");
-		catalogString.add("Public Access Level");
-		catalogString.add("Access Level Comment");
-		catalogString.add("Tags");
-		catalogString.add("Last Update");
-		catalogString.add("Release Date");
-		catalogString.add("Unique Identifier");
-		catalogString.add("Data Dictionary");
-		catalogString.add("License");
-		catalogString.add("Spatial");
-		catalogString.add("Temporal");
-		catalogString.add("System of Records");
-		catalogString.add("Data Quality");
-		catalogString.add("Language");
-		catalogString.add("Theme");
-		catalogString.add("Reference");
-		catalogString.add("CKAN Create Date");
-		catalogString.add("CKAN Modified Date");
-		catalogString.add("CKAN Revision Timestamp");
-		catalogString.add("Is Part Of");
-
-		try
+		if (filePath == null || dataListingCode == null)
 		{
-			out = new PrintWriter(filePath);
-			csvPrinter = new CSVPrinter(out, csvFormat);
-			csvPrinter.printRecord(catalogString);
-			for (Dataset ds: dataSetList)
+			throw (new NullPointerException("filepath and dataListingCode cannot be null"));
+		}
+		sort();
+		final List<Dataset> listingList = new ArrayList<Dataset>(dataSetList.size());
+		for (Dataset ds: dataSetList)
+		{
+			if (dataListingCode.equals(DataListingCode.ENTERPRISE_DATA_INVENTORY))
 			{
-				if (dataListingCode.equals(DataListingCode.ENTERPRISE_DATA_INVENTORY))
-				{
-					csvPrinter.printRecord(ds.datasetToListString());
-				}
-				else if (dataListingCode.equals(DataListingCode.PUBLIC_DATA_LISTING)) 
+				listingList.add(ds);
+			}
+			else if (dataListingCode.equals(DataListingCode.PUBLIC_DATA_LISTING)) 
+			{
+				if (ds.getAccessLevel().equals(Dataset.AccessLevel.PUBLIC.toString()) || ds.getAccessLevel().equals(Dataset.AccessLevel.RESTRICTED.toString()))
 				{
-					if (ds.getAccessLevel().equals(Dataset.AccessLevel.PUBLIC.toString()) || ds.getAccessLevel().equals(Dataset.AccessLevel.RESTRICTED))
-					{
-						csvPrinter.printRecord(ds.datasetToListString());
-					}
+					listingList.add(ds);
 				}
 			}
 		}
-		catch(IOException e)
-		{
-			throw (e);
-		}
-		finally{
-			out.close();
-			csvPrinter.close();
-		}
+		CatalogCSVWriter.write(filePath, listingList, ForkJoinPool.commonPool());
 	}
 	
 	/**
 	 * This method hardcodes Forest Service datasets for program code and bureau code
 	 * This is a temporary fix until we can add feature to AGOL
 	 * https://enterprisecontent-usfs.opendata.arcgis.com/data.json
-	 * @throws java.text.ParseException 
+	 * <p>
+	 * Runs the Forest Service defaults and the NGDA themes from forest_service_ngda.json as an
+	 * EnrichmentPipeline over every dataset in this catalog.
 	 */
 	public void hardcodeBureauCodeProgramCode()
 	{
-		JSONArray ngdaArray = null;
+		final EnrichmentPipeline pipeline = new EnrichmentPipeline();
+		pipeline.addStage(new DefaultCodeStage(DefaultCodeStage.FOREST_SERVICE));
+		pipeline.addStage(NgdaThemeStage.fromJSONFile(NgdaThemeStage.FOREST_SERVICE_NGDA_FILE));
 		try{
-			ngdaArray = Utils.getForestServiceNGDAList();
+			pipeline.run(this);
 		}
 		catch (ParseException | IOException e)
 		{
-			log.log(Level.SEVERE, "Cannot load NGDA List.  Please check that bureau_code_data.json is correctly formatted.");
-		}
-		
-		for (Dataset ds: dataSetList)
-		{
-			try {
-				ds.setBureauCodeList("005:96");
-				ds.setProgramCodeList("005:059");
-				
-				/* Several datasets including U.S. Boundary don't have keyword */
-				if (ds.getKeywordList().size() == 0)
-				{
-					ArrayList<String>keywordList = new ArrayList<String>();
-					keywordList.add("Forest Service");
-					ds.setKeywordList(keywordList);
-				}
-				
-				for (Object ngda: ngdaArray){
-					JSONObject ngdaJSON = (JSONObject) ngda;
-					String ngdaTitle = (String) ngdaJSON.get("title");
-					if (ds.getTitle().equals(ngdaTitle))
-					{
-						ArrayList<String> themeList = new ArrayList<String>();
-						JSONArray themes = (JSONArray) ngdaJSON.get("theme");
-						//Type Safety -> Strings
-						for (int i=0; i < themes.size(); i++)
-						{
-							themeList.add((String) themes.get(i));
-						}
-						
-						ds.setThemeList(themeList);
-					}
-				}
-			} 
-			catch (java.text.ParseException e) {
-				e.printStackTrace();
-			}
+			log.log(Level.SEVERE, "Cannot load NGDA List.  Please check that forest_service_ngda.json is correctly formatted.");
 		}
 	}
 	
 	/**
-	 * Populates catalog from CKAN compliant json file.
+	 * Populates catalog from Project Open Data compliant json file, reading one dataset at a time.
 	 * @param catalogFileName
 	 */
 	public void loadFromProjectOpenDataJSON(String catalogFileName) throws CatalogException
 	{
-		if (catalogFileName == null)
+		loadFromProjectOpenDataJSON(catalogFileName, DatasetFilter.acceptAll(), DatasetProjection.all());
+	}
+	
+	/**
+	 * Populates catalog from Project Open Data compliant json file, loading only the datasets that
+	 * pass the filter.  Datasets that are filtered out are dropped as soon as they are parsed.
+	 * @param catalogFileName String
+	 * @param filter DatasetFilter datasets to load @see DatasetFilter
+	 * @param projection DatasetProjection fields to load @see DatasetProjection
+	 */
+	public void loadFromProjectOpenDataJSON(String catalogFileName, DatasetFilter filter, DatasetProjection projection) throws CatalogException
+	{
+		if (catalogFileName == null || filter == null || projection == null)
 		{
-			throw (new NullPointerException("catalogFileName cannot be null"));
+			throw (new NullPointerException("catalogFileName, filter and projection cannot be null"));
 		}
-		JSONObject resourceCKAN_JSON = new JSONObject();
+		final List<Dataset> loadedList = new ArrayList<Dataset>();
+		JSONObject catalogObject;
 		try{
-			resourceCKAN_JSON = Utils.loadJsonObjectFile(catalogFileName);
+			catalogObject = streamDatasets(catalogFileName, RawDataset.Format.PROJECT_OPEN_DATA, filter, projection, loadedList, Dataset.PROJECT_OPEN_DATA_DATASET);
 		}
 		catch (IOException | ParseException e) 
 		{
 			catalogException.addError(e.toString() + "\n");
 			throw (catalogException);
 		}
-				
-		loadFromProjectOpenDataJSON(resourceCKAN_JSON);
+		loadCatalogFields(catalogObject);
+		addProjectOpenDataDatasets(loadedList);
 	}
 	
 	/**
@@ -342,95 +809,68 @@ public class Catalog {
 	 */
 	public void loadFromProjectOpenDataJSON(JSONObject catalogObject) throws CatalogException
 	{
-		if (catalogObject == null)
+		loadFromProjectOpenDataJSON(catalogObject, DatasetFilter.acceptAll(), DatasetProjection.all());
+	}
+	
+	/**
+	 * Populates catalog from Project Open Data compliant json object, loading only the datasets that
+	 * pass the filter.
+	 * @param catalogObject JSONObject
+	 * @param filter DatasetFilter datasets to load @see DatasetFilter
+	 * @param projection DatasetProjection fields to load @see DatasetProjection
+	 */
+	public void loadFromProjectOpenDataJSON(JSONObject catalogObject, DatasetFilter filter, DatasetProjection projection) throws CatalogException
+	{
+		if (catalogObject == null || filter == null || projection == null)
 		{
-			throw (new NullPointerException("catalogObject cannot be null"));
+			throw (new NullPointerException("catalogObject, filter and projection cannot be null"));
 		}
-		setConformsTo((String) catalogObject.get(PROJECT_OPEN_DATA_CATALOG_CONFORMS_TO));
-		setDescribedBy((String) catalogObject.get(PROJECT_OPEN_DATA_CATALOG_DESCRIBED_BY));
-		setContext ((String) catalogObject.get(PROJECT_OPEN_DATA_CATALOG_CONTEXT));
-		setType ((String) catalogObject.get(PROJECT_OPEN_DATA_CATALOG_TYPE));
+		loadCatalogFields(catalogObject);
 		
 		final JSONArray dataSetArray = (JSONArray) catalogObject.get(Dataset.PROJECT_OPEN_DATA_DATASET);
+		final List<Dataset> loadedList = new ArrayList<Dataset>();
 		for (int i = 0; i < dataSetArray.size(); i++)
 		{
-			final Dataset ds = new Dataset();
-			final JSONObject dataSetObject = (JSONObject) dataSetArray.get(i);
-			try
-			{
-				
-				ds.loadFromProjectOpenDataJSON(dataSetObject);
-				
-				dataSetList.add(ds);
-				
-			}
-			catch(DatasetException e)
-			{
-				catalogException.addError(e.toString() + "\n");
-			}
-		}	
-		
-		
-		
-		if (!validateCatalog() || catalogException.exceptionSize() > 0)
-		{
-			throw (catalogException);
+			loadDataset(RawDataset.fromProjectOpenData((JSONObject) dataSetArray.get(i)), filter, projection, loadedList);
 		}
+		addProjectOpenDataDatasets(loadedList);
 	}
 	
-	/**
-	 * This method adds bureau names to datasets.
-	 * 1.  Get bureau names and abbreviations from config file and add to JSONArray
-	 * 2.  Loop through datasets and pull out bureau code
-	 * 3.  Loop through bureaus looking for match.
-	 * 4.  Enhance the dataset with bureau name and abbreviation
-	 */
-	private void addBureauNameToDataset()
+	private void loadCatalogFields(JSONObject catalogObject)
 	{
-		JSONArray bureauArray = null;
-		try{
-			bureauArray = Utils.getBureauList();
-		}
-		catch (ParseException | IOException e)
+		setConformsTo((String) catalogObject.get(PROJECT_OPEN_DATA_CATALOG_CONFORMS_TO));
+		setDescribedBy((String) catalogObject.get(PROJECT_OPEN_DATA_CATALOG_DESCRIBED_BY));
+		setContext ((String) catalogObject.get(PROJECT_OPEN_DATA_CATALOG_CONTEXT));
+		setType ((String) catalogObject.get(PROJECT_OPEN_DATA_CATALOG_TYPE));
+	}
+	
+	private void addProjectOpenDataDatasets(List<Dataset> loadedList) throws CatalogException
+	{
+		for (Dataset ds: loadedList)
 		{
-			log.log(Level.SEVERE, "Cannot load bureaus.  Please check that bureau_code_data.json is correctly formatted.");
+			addDataset(ds);
 		}
+		saveStatistics();
 		
-		for (Dataset ds: dataSetList)
+		if (!validateCatalog() || catalogException.exceptionSize() > 0)
 		{
-			addBureauName(ds, bureauArray);
+			throw (catalogException);
 		}
 	}
 	
-	
 	/**
-	 * Adds bureau name and bureau abbreviation to a dataset from a config file, normally
-	 * bureau_config_data.json.  Called from addBureaNameToDataset which goes through
-	 * the entire catalog.
-	 * @param ds
-	 * @param bureauArray
+	 * This method adds bureau names to datasets.  The bureau registry is indexed by bureau code
+	 * so each dataset costs one lookup per bureau code @see BureauNameStage
+	 * @param datasetList List<Dataset> the datasets to name, normally the ones just loaded
 	 */
-	private void addBureauName(Dataset ds, JSONArray bureauArray)
+	private void addBureauNameToDataset(List<Dataset> datasetList)
 	{
-		Boolean found = false;
-		List<String> bureauCodeList = ds.getBureauCodeList();
-		for (String bureauCode: bureauCodeList)
+		try{
+			new EnrichmentPipeline().addStage(new BureauNameStage()).enrich(datasetList, source);
+		}
+		catch (ParseException | IOException e)
 		{
-			for (int i=0; i< bureauArray.size(); i++)
-			{
-				JSONObject bureauObject = (JSONObject) bureauArray.get(i);
-				if (bureauCode.equals(bureauObject.get("bureau_code")))
-				{
-					ds.setBureauName((String)bureauObject.get("bureau_name"));
-					ds.setBureauAbbreviation((String) bureauObject.get("bureau_abbreviation"));
-					found = true;
-				}
-			}
-			if (!found)
-			{
-				ds.setBureauName("Name not found for bureau code: " + bureauCode + ", see bureau configuration file." );
-			}
-			found = false;
+			log.log(Level.SEVERE, "Cannot load bureaus.  Please check that bureau_reference_data.json is correctly formatted.");
 		}
 	}
 	
@@ -459,26 +899,36 @@ public class Catalog {
 	
 
 	/**
-	 * Populates catalog from CKAN compliant json file.
+	 * Populates catalog from CKAN compliant json file, reading one package at a time.  Packages are
+	 * filtered with DEFAULT_CKAN_FILTER.
 	 * @param catalogFileName
 	 */
 	public void loadCatalogFromCKAN(String catalogFileName) throws CatalogException
 	{
-		if (catalogFileName == null)
-		{
-			throw (new NullPointerException("catalogFileName cannot be null"));
-		}
-		JSONObject resourceCKAN_JSON = new JSONObject();
-		try{
-			resourceCKAN_JSON = Utils.loadJsonObjectFile(catalogFileName);
-		}
-		catch (IOException | ParseException e) 
-		{
-			catalogException.addError(e.toString());
-			throw (catalogException);
-		}
-				
-		loadCatalogFromCKAN(resourceCKAN_JSON);
+		loadCatalogFromCKAN(catalogFileName, DEFAULT_CKAN_FILTER, DatasetProjection.all());
+	}
+	
+	/**
+	 * Saves this catalog to a binary snapshot file, much faster to load again than data.json.
+	 * @param snapshotFilePath String
+	 * @throws IOException
+	 * @see CatalogSnapshot
+	 */
+	public void toSnapshot(String snapshotFilePath) throws IOException
+	{
+		CatalogSnapshot.write(this, snapshotFilePath);
+	}
+	
+	/**
+	 * Loads a binary snapshot written by toSnapshot.  The datasets were validated when the snapshot
+	 * was written and are loaded as saved.
+	 * @param snapshotFilePath String
+	 * @param bureauCodes String... load only the datasets of these bureaus, every dataset if none are given
+	 * @throws IOException
+	 */
+	public void loadFromSnapshot(String snapshotFilePath, String... bureauCodes) throws IOException
+	{
+		CatalogSnapshot.read(this, snapshotFilePath, bureauCodes);
 	}
 	
 	/**
@@ -488,31 +938,42 @@ public class Catalog {
 	 * @param podFilePath
 	 * @param privateIndicator
 	 */
-	@SuppressWarnings("unchecked")
 	public void toProjectOpenDataJSON(String podFilePath, DataListingCode dataListingType) throws IOException
+	{
+		toProjectOpenDataJSON(podFilePath, dataListingType, false);
+	}
+	
+	/**
+	 * Outputs catalog object to a Project Open Data v1.1 compliant json file, streamed in catalog
+	 * order and serialized in parallel for large catalogs (@see ProjectOpenDataWriter).
+	 * @param podFilePath String
+	 * @param dataListingType DataListingCode the public data listing or the enterprise data inventory
+	 * @param compact boolean true to leave out line breaks and indenting
+	 * @throws IOException
+	 */
+	public void toProjectOpenDataJSON(String podFilePath, DataListingCode dataListingType, boolean compact) throws IOException
 	{	
-		Collections.sort(dataSetList);
-
 		if (podFilePath == null || dataListingType == null)
 		{
 			throw (new NullPointerException("podFilePath or privateIndicator cannot be null."));
 		}
-		final JSONObject catalogJSON = new JSONObject();
-		final JSONArray dataSetArray = new JSONArray();
-		
-		catalogJSON.put(PROJECT_OPEN_DATA_CATALOG_CONFORMS_TO, "https://project-open-data.cio.gov/v1.1/schema");
-		catalogJSON.put(PROJECT_OPEN_DATA_CATALOG_DESCRIBED_BY, "https://project-open-data.cio.gov/v1.1/schema/catalog.json");
-		catalogJSON.put(PROJECT_OPEN_DATA_CATALOG_CONTEXT, "https://project-open-data.cio.gov/v1.1/schema/data.jsonld");
-		catalogJSON.put(PROJECT_OPEN_DATA_CATALOG_TYPE, "dcat:Catalog");
+		sort();
+		if (exportCache != null)
+		{
+			//the exporter picks the datasets of the listing itself
+			CatalogExporter.export(dataSetList, Collections.singletonList(ExportSink.projectOpenDataJSON(podFilePath, dataListingType, compact)),
+					ForkJoinPool.commonPool(), exportCache);
+			return;
+		}
 	
 		int privateCount = 0;
 		int publicCount = 0;
+		final List<Dataset> listingList = new ArrayList<Dataset>(dataSetList.size());
 		for(Dataset ds: dataSetList)
 		{
-			
 			if (dataListingType.equals(DataListingCode.ENTERPRISE_DATA_INVENTORY))
 			{
-				dataSetArray.add(ds.toProjectOpenDataJSON());
+				listingList.add(ds);
 				privateCount++;
 			}
 			else if (dataListingType.equals(DataListingCode.PUBLIC_DATA_LISTING))
@@ -520,18 +981,39 @@ public class Catalog {
 				String publicAccessLevel = ds.getAccessLevel();
 				if (publicAccessLevel.equals(Dataset.AccessLevel.PUBLIC.toString()) || publicAccessLevel.equals(Dataset.AccessLevel.RESTRICTED.toString()))
 				{
-					dataSetArray.add(ds.toProjectOpenDataJSON());
+					listingList.add(ds);
 					publicCount++;
 				}
 			}
 		}
-		System.out.println("Public Count: " + publicCount);
-		System.out.println("DatasetArray: " + dataSetArray.size());
-		System.out.println("Private Count: " + privateCount);
-		System.out.println(dataSetList.size());
+		log.log(Level.FINE, "Writing " + listingList.size() + " of " + dataSetList.size() + " datasets to " + podFilePath
+				+ ", public count " + publicCount + ", private count " + privateCount);
+		try (ProjectOpenDataWriter writer = ProjectOpenDataWriter.open(podFilePath, compact))
+		{
+			writer.writeDatasets(listingList);
+			writer.finish();
+		}
+	}
 	
-		catalogJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET, dataSetArray);
-		Utils.printJSON(podFilePath, catalogJSON); 
+	/**
+	 * Exports the catalog to several files at once, each with its own format and data listing (@see ExportSink).
+	 * The catalog is sorted and traversed once, and each dataset is classified and rendered once per
+	 * format however many files it goes to.  Every file is the same as the single-format method writes.
+	 * <p>
+	 * Files are replaced atomically when they are complete.  The returned manifest lists the size and
+	 * checksum of every file and compressed copy, and can be saved for a web server with toJSON.
+	 * @param sinkList List<ExportSink>
+	 * @return ExportManifest every file written
+	 * @throws IOException
+	 */
+	public ExportManifest export(List<ExportSink> sinkList) throws IOException
+	{
+		if (sinkList == null)
+		{
+			throw (new NullPointerException("sinkList cannot be null"));
+		}
+		sort();
+		return CatalogExporter.export(dataSetList, sinkList, ForkJoinPool.commonPool(), exportCache);
 	}
 	
 	/**
@@ -550,6 +1032,40 @@ public class Catalog {
 	public void setTitle(String title) {
 		this.title = title;
 	}
+	public String getSource() {
+		return source;
+	}
+	/**
+	 * Names where this catalog was loaded from, for example a bureau abbreviation or "data.json".
+	 * The name is reported for this catalog's datasets when catalogs are merged.
+	 * @param source String
+	 */
+	public void setSource(String source) {
+		this.source = source;
+	}
+	public String getStatisticsDirectory() {
+		return statisticsDirectory;
+	}
+	/**
+	 * Keeps CatalogStatistics of this catalog in a directory, saved after every load.  They are the
+	 * history produceQuarterlyReport reports from.  A new catalog keeps them in DEFAULT_STATISTICS_DIRECTORY,
+	 * a catalog of only part of the department should not keep them.
+	 * @param statisticsDirectory String null to stop saving statistics
+	 */
+	public void setStatisticsDirectory(String statisticsDirectory) {
+		this.statisticsDirectory = statisticsDirectory;
+	}
+	public ExportFragmentCache getExportCache() {
+		return exportCache;
+	}
+	/**
+	 * Keeps the rendered output of datasets between exports, so export and toProjectOpenDataJSON
+	 * only render the datasets that changed since they were last exported.
+	 * @param exportCache ExportFragmentCache null to render every dataset every time
+	 */
+	public void setExportCache(ExportFragmentCache exportCache) {
+		this.exportCache = exportCache;
+	}
 	public String getDescription() {
 		return description;
 	}
@@ -628,33 +1144,38 @@ public class Catalog {
 		return dataSetList.size();
 	}
 	
+	/**
+	 * Outputs the catalog as legacy XML, one dataset element at a time, so memory does not grow with
+	 * the size of the catalog.  Errors are logged.
+	 * @param xmlFileName String
+	 * @param dataListingType DataListingCode the public data listing or the enterprise data inventory
+	 */
 	public void toLegacyXML(String xmlFileName, DataListingCode dataListingType)
 	{
-		Element catalogElement = null;
-		try
+		if (xmlFileName == null || dataListingType == null)
+		{
+			throw (new NullPointerException("xmlFileName and dataListingType cannot be null"));
+		}
+		try (LegacyXMLWriter writer = LegacyXMLWriter.open(xmlFileName))
 		{
-			DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder docBuilder = docFactory.newDocumentBuilder();
-			Document doc = docBuilder.newDocument();
-			catalogElement = doc.createElement("catalog");
 			for (Dataset ds: dataSetList)
 			{
-				if (dataListingType.equals(DataListingCode.PUBLIC_DATA_LISTING))
+				if (dataListingType.equals(DataListingCode.ENTERPRISE_DATA_INVENTORY))
+				{
+					writer.writeDataset(ds);
+				}
+				else if (dataListingType.equals(DataListingCode.PUBLIC_DATA_LISTING))
 				{
 					String publicAccessLevel = ds.getAccessLevel();
 					if (publicAccessLevel.equals(Dataset.AccessLevel.PUBLIC.toString()) || publicAccessLevel.equals(Dataset.AccessLevel.RESTRICTED.toString()))
 					{
-						catalogElement.appendChild(ds.toLegacyXML(doc));
+						writer.writeDataset(ds);
 					}
 				}
 			}
-			TransformerFactory transformerFactory = TransformerFactory.newInstance();
-			Transformer transformer = transformerFactory.newTransformer();
-			DOMSource source = new DOMSource(catalogElement);
-			StreamResult result = new StreamResult(new File(xmlFileName));
-			transformer.transform(source, result);	 
+			writer.finish();
 		}
-		catch(ParserConfigurationException | TransformerException e)
+		catch(IOException e)
 		{
 			log.log(Level.SEVERE, "Error in field to Legacy dataset " + title + " " + e.toString() + "\n");
 		}
@@ -683,18 +1204,14 @@ public class Catalog {
 	public Boolean validateUniqueIdentifiers()
 	{
 		Boolean validIndicator = true;
-		//optimize this
-		for (int i = 0; i < dataSetList.size(); i++)
+		final Set<String> identifierSet = new HashSet<String>(dataSetList.size() * 2);
+		for (Dataset ds: dataSetList)
 		{
-			String identifier = dataSetList.get(i).getUniqueIdentifier();
-			for (int k=i+1; k < dataSetList.size(); k++)
+			final String identifier = ds.getUniqueIdentifier();
+			if (identifier != null && !identifierSet.add(identifier))
 			{
-				String otherIdentifier = dataSetList.get(k).getUniqueIdentifier();
-				if (identifier.equals(otherIdentifier))
-				{
-					//catalogException.addError("Invalid catalog: non-unique identifier: " + otherIdentifier);
-					//validIndicator=false;
-				}
+				//catalogException.addError("Invalid catalog: non-unique identifier: " + identifier);
+				//validIndicator=false;
 			}
 		}
 		return validIndicator;
@@ -769,13 +1286,75 @@ public class Catalog {
 			//TODO: testing skeleton for loadMultipleCatalogsFromCKAN
 		}
 		
-		public void produceQuarterlyReport (String quarterReportFileName)
+		/**
+		 * Writes the report of the current quarter to a CSV file, and as JSON to a file of the same name
+		 * ending in .json @see QuarterlyReport
+		 * <p>
+		 * Statistics are kept in the statistics directory, DEFAULT_STATISTICS_DIRECTORY when saving them is
+		 * turned off.
+		 * Statistics of this catalog as it is now are saved first, unless the latest saved statistics
+		 * already have the same datasets, so reporting repeatedly does not add loads to the history.
+		 * @param quarterReportFileName String the CSV file, for example quarterly_report.csv
+		 * @return QuarterlyReport the report written
+		 * @throws IOException
+		 */
+		public QuarterlyReport produceQuarterlyReport (String quarterReportFileName) throws IOException
 		{
-			//TODO: testing skeleton for produceQuarterlyReport
+			final String directory = statisticsDirectory == null ? DEFAULT_STATISTICS_DIRECTORY : statisticsDirectory;
+			final Date now = new Date();
+			final CatalogStatistics statistics = CatalogStatistics.of(this, now);
+			final CatalogStatistics latest = CatalogStatistics.loadLatest(directory, null);
+			if (latest == null || !statistics.hasSameContent(latest))
+			{
+				statistics.save(directory);
+			}
+			return produceQuarterlyReport(quarterReportFileName, directory, now);
+		}
+		
+		/**
+		 * Writes the report of a quarter from the statistics saved in a directory, to a CSV file and
+		 * as JSON to a file of the same name ending in .json.  Nothing of this catalog is read.
+		 * @param quarterReportFileName String the CSV file
+		 * @param statisticsDirectory String
+		 * @param dayInQuarter Date any time in the quarter
+		 * @return QuarterlyReport the report written
+		 * @throws IOException
+		 */
+		public QuarterlyReport produceQuarterlyReport (String quarterReportFileName, String statisticsDirectory, Date dayInQuarter) throws IOException
+		{
+			if (quarterReportFileName == null)
+			{
+				throw (new NullPointerException("quarterReportFileName cannot be null"));
+			}
+			final QuarterlyReport quarterlyReport = QuarterlyReport.of(statisticsDirectory, dayInQuarter);
+			quarterlyReport.toCSV(quarterReportFileName);
+			quarterlyReport.toJSON(jsonFileName(quarterReportFileName));
+			return quarterlyReport;
+		}
+		
+		private static String jsonFileName(String fileName)
+		{
+			final int extension = fileName.lastIndexOf('.');
+			final String baseName = extension > fileName.lastIndexOf(File.separatorChar) ? fileName.substring(0, extension) : fileName;
+			return baseName + ".json";
 		}
 		
-		public void produceBureauMetrics(String bureauMetricsFileName)
+		/**
+		 * Writes per bureau metrics of this catalog to a CSV file, and as JSON to a file of the same
+		 * name ending in .json @see BureauMetrics
+		 * @param bureauMetricsFileName String the CSV file, for example bureau_metrics.csv
+		 * @return BureauMetrics the metrics written
+		 * @throws IOException
+		 */
+		public BureauMetrics produceBureauMetrics(String bureauMetricsFileName) throws IOException
 		{
-			//TODO: testing skeleton for produceBureauMetrics
+			if (bureauMetricsFileName == null)
+			{
+				throw (new NullPointerException("bureauMetricsFileName cannot be null"));
+			}
+			final BureauMetrics bureauMetrics = BureauMetrics.of(this);
+			bureauMetrics.toCSV(bureauMetricsFileName);
+			bureauMetrics.toJSON(jsonFileName(bureauMetricsFileName));
+			return bureauMetrics;
 		}
 }
@@ -0,0 +1,219 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+/**
+ * Writes the catalog CSV export: a header row and one row per dataset, with the columns of
+ * DatasetCSVColumn.  Fields go straight to a buffered UTF-8 writer, list values joined in a reused
+ * StringBuilder.
+ * <p>
+ * Long lists are rendered in parallel: each task prints a batch of rows into the StringBuilder of its
+ * thread, and the batches are written in list order, a few per thread at a time.  The file is the
+ * same however many threads there are.
+ */
+final class CatalogCSVWriter implements Closeable {
+
+	final static CSVFormat CSV_FORMAT = CSVFormat.DEFAULT.withRecordSeparator("\n");
+
+	private final static int PARALLEL_THRESHOLD = 1024;
+	private final static int BATCH_SIZE = 128;
+	private final static DatasetCSVColumn[] COLUMNS = DatasetCSVColumn.values();
+
+	//rows of a batch, then the joined list values of one field; both reused by every batch of a thread
+	private final static ThreadLocal<StringBuilder[]> builders = new ThreadLocal<StringBuilder[]>() {
+		@Override
+		protected StringBuilder[] initialValue()
+		{
+			return new StringBuilder[] {new StringBuilder(64 * 1024), new StringBuilder(256)};
+		}
+	};
+
+	private final ExportFile file;
+	private final Writer out;
+	private final CSVPrinter csvPrinter;
+	private List<ExportManifest.Entry> entryList;
+
+	private CatalogCSVWriter(ExportFile file, Writer out, CSVPrinter csvPrinter)
+	{
+		this.file = file;
+		this.out = out;
+		this.csvPrinter = csvPrinter;
+	}
+
+	/**
+	 * Opens a CSV file and writes the header row.  The file is replaced when finish is called, with
+	 * a compressed copy beside it for each compression (@see ExportFile).
+	 * @param filePath String
+	 * @param compressionSet Set<ExportSink.Compression>
+	 * @return CatalogCSVWriter
+	 * @throws IOException
+	 */
+	static CatalogCSVWriter open(String filePath, Set<ExportSink.Compression> compressionSet) throws IOException
+	{
+		final ExportFile file = ExportFile.open(filePath, ExportSink.Format.CSV.getContentType(), compressionSet);
+		try
+		{
+			final Writer out = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), 64 * 1024);
+			final CSVPrinter csvPrinter = new CSVPrinter(out, CSV_FORMAT);
+			csvPrinter.printRecord(DatasetCSVColumn.headerList());
+			return new CatalogCSVWriter(file, out, csvPrinter);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			file.close();
+			throw (e);
+		}
+	}
+
+	/**
+	 * Writes rows rendered by render.
+	 */
+	void writeRendered(String rows) throws IOException
+	{
+		out.write(rows);
+	}
+
+	/**
+	 * Moves the finished file and its compressed copies into place.
+	 */
+	void finish() throws IOException
+	{
+		if (entryList == null)
+		{
+			out.flush();
+			entryList = file.finish();
+		}
+	}
+
+	/**
+	 * @return List<ExportManifest.Entry> the file and its compressed copies, null until finish
+	 */
+	List<ExportManifest.Entry> getEntryList()
+	{
+		return entryList;
+	}
+
+	/**
+	 * Closes the file, discarding it if finish was not called.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	/**
+	 * Writes the header and the rows of the datasets to a file.
+	 * @param filePath String
+	 * @param datasetList List<Dataset>
+	 * @param pool ForkJoinPool where long lists are rendered
+	 * @throws IOException
+	 */
+	static void write(String filePath, List<Dataset> datasetList, ForkJoinPool pool) throws IOException
+	{
+		try (CatalogCSVWriter writer = open(filePath, EnumSet.noneOf(ExportSink.Compression.class)))
+		{
+			if (datasetList.size() < PARALLEL_THRESHOLD || pool.getParallelism() < 2)
+			{
+				final StringBuilder builder = builders.get()[1];
+				for (Dataset ds: datasetList)
+				{
+					printRow(ds, writer.csvPrinter, builder);
+				}
+				writer.finish();
+				return;
+			}
+
+			final int windowSize = BATCH_SIZE * pool.getParallelism() * 4;
+			for (int windowStart = 0; windowStart < datasetList.size(); windowStart += windowSize)
+			{
+				final List<Callable<String>> taskList = new ArrayList<Callable<String>>();
+				final int windowEnd = Math.min(windowStart + windowSize, datasetList.size());
+				for (int start = windowStart; start < windowEnd; start += BATCH_SIZE)
+				{
+					final List<Dataset> batchList = datasetList.subList(start, Math.min(start + BATCH_SIZE, windowEnd));
+					taskList.add(new Callable<String>() {
+						@Override
+						public String call() throws IOException
+						{
+							return render(batchList);
+						}
+					});
+				}
+				try
+				{
+					for (Future<String> future: pool.invokeAll(taskList))
+					{
+						writer.writeRendered(future.get());
+					}
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("CSV export interrupted", e);
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof IOException)
+					{
+						throw (IOException) e.getCause();
+					}
+					if (e.getCause() instanceof RuntimeException)
+					{
+						throw (RuntimeException) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			writer.finish();
+		}
+	}
+
+	/**
+	 * @return String the rows of the datasets, each ended by the record separator
+	 */
+	static String render(List<Dataset> datasetList) throws IOException
+	{
+		final StringBuilder[] threadBuilders = builders.get();
+		final StringBuilder rows = threadBuilders[0];
+		rows.setLength(0);
+		final CSVPrinter csvPrinter = new CSVPrinter(rows, CSV_FORMAT);
+		for (Dataset ds: datasetList)
+		{
+			printRow(ds, csvPrinter, threadBuilders[1]);
+		}
+		final String rendered = rows.toString();
+		rows.setLength(0);
+		return rendered;
+	}
+
+	/**
+	 * Prints the row of one dataset.
+	 * @param builder StringBuilder scratch space for list values
+	 */
+	static void printRow(Dataset ds, CSVPrinter csvPrinter, StringBuilder builder) throws IOException
+	{
+		for (DatasetCSVColumn column: COLUMNS)
+		{
+			builder.setLength(0);
+			csvPrinter.print(column.value(ds, builder));
+		}
+		csvPrinter.println();
+	}
+}
@@ -0,0 +1,469 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The CatalogDiff class lists what changed between two versions of a catalog, for example two
+ * dated data.json snapshots.
+ * <p>
+ * The old catalog is read once into a hash table from unique identifier to content fingerprints
+ * (@see DatasetFingerprint), one for the whole dataset and one per DatasetField.  The new catalog
+ * is then streamed past the table: unknown identifiers are added, identifiers whose fingerprint
+ * differs are changed, and identifiers never seen are removed.  Only if something was changed or
+ * removed is the old catalog read a second time to pick up the old values.  Files are streamed one
+ * dataset at a time, so memory holds a few hundred bytes per dataset plus the changes, never either
+ * catalog, and the time is linear in the size of both.
+ * <p>
+ * Datasets without a unique identifier cannot be matched and are counted but not compared.
+ */
+public class CatalogDiff {
+
+	public enum ChangeType
+	{
+		ADDED,
+		REMOVED,
+		CHANGED;
+	}
+
+	private static final DatasetField[] FIELDS = DatasetField.values();
+
+	private final List<DatasetChange> addedList;
+	private final List<DatasetChange> removedList;
+	private final List<DatasetChange> changedList;
+	private int unchangedCount;
+	private int missingIdentifierCount;
+
+	private CatalogDiff()
+	{
+		addedList = new ArrayList<DatasetChange>();
+		removedList = new ArrayList<DatasetChange>();
+		changedList = new ArrayList<DatasetChange>();
+	}
+
+	/**
+	 * Compares two Project Open Data files, streaming both.
+	 * @param oldFileName String the earlier snapshot
+	 * @param newFileName String the later snapshot
+	 * @return CatalogDiff
+	 * @throws IOException
+	 * @throws ParseException if either file is not valid JSON
+	 */
+	public static CatalogDiff compareFiles(String oldFileName, String newFileName) throws IOException, ParseException
+	{
+		if (oldFileName == null || newFileName == null)
+		{
+			throw new NullPointerException("oldFileName and newFileName cannot be null");
+		}
+		return compare(fileSource(oldFileName), fileSource(newFileName));
+	}
+
+	/**
+	 * Compares two catalogs that are already loaded.
+	 * @param oldCatalog Catalog
+	 * @param newCatalog Catalog
+	 * @return CatalogDiff
+	 */
+	public static CatalogDiff compare(Catalog oldCatalog, Catalog newCatalog)
+	{
+		if (oldCatalog == null || newCatalog == null)
+		{
+			throw new NullPointerException("oldCatalog and newCatalog cannot be null");
+		}
+		try
+		{
+			return compare(catalogSource(oldCatalog), catalogSource(newCatalog));
+		}
+		catch (IOException | ParseException e)
+		{
+			//catalogs in memory are not read or parsed
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static CatalogDiff compare(DatasetSource oldSource, DatasetSource newSource) throws IOException, ParseException
+	{
+		final CatalogDiff diff = new CatalogDiff();
+		final Map<String, OldEntry> oldMap = new HashMap<String, OldEntry>();
+		oldSource.scan(new DatasetVisitor() {
+			@Override
+			public void visit(Dataset ds)
+			{
+				final String identifier = ds.getUniqueIdentifier();
+				if (identifier == null)
+				{
+					diff.missingIdentifierCount++;
+				}
+				else if (!oldMap.containsKey(identifier))
+				{
+					oldMap.put(identifier, new OldEntry(ds));
+				}
+			}
+		});
+
+		final Map<String, DatasetChange> changedMap = new HashMap<String, DatasetChange>();
+		newSource.scan(new DatasetVisitor() {
+			@Override
+			public void visit(Dataset ds)
+			{
+				final String identifier = ds.getUniqueIdentifier();
+				if (identifier == null)
+				{
+					diff.missingIdentifierCount++;
+					return;
+				}
+				final OldEntry oldEntry = oldMap.get(identifier);
+				if (oldEntry == null)
+				{
+					diff.addedList.add(new DatasetChange(ChangeType.ADDED, ds));
+					return;
+				}
+				if (oldEntry.seen)
+				{
+					//a repeated identifier in the new catalog is compared once
+					return;
+				}
+				oldEntry.seen = true;
+				if (oldEntry.fingerprint == DatasetFingerprint.of(ds))
+				{
+					diff.unchangedCount++;
+					return;
+				}
+				final DatasetChange change = new DatasetChange(ChangeType.CHANGED, ds);
+				for (int i = 0; i < FIELDS.length; i++)
+				{
+					final Object newValue = FIELDS[i].get(ds);
+					if (oldEntry.fieldFingerprints[i] != DatasetFingerprint.ofValue(newValue))
+					{
+						change.fieldChangeList.add(new FieldChange(FIELDS[i], null, valueString(newValue)));
+					}
+				}
+				if (change.fieldChangeList.isEmpty())
+				{
+					diff.unchangedCount++;
+				}
+				else
+				{
+					diff.changedList.add(change);
+					changedMap.put(identifier, change);
+				}
+			}
+		});
+
+		final Set<String> removedSet = new HashSet<String>();
+		for (Map.Entry<String, OldEntry> entry: oldMap.entrySet())
+		{
+			if (!entry.getValue().seen)
+			{
+				removedSet.add(entry.getKey());
+			}
+		}
+		if (changedMap.isEmpty() && removedSet.isEmpty())
+		{
+			return diff;
+		}
+
+		//second pass over the old catalog for the old values of what changed and what was removed
+		oldSource.scan(new DatasetVisitor() {
+			@Override
+			public void visit(Dataset ds)
+			{
+				final String identifier = ds.getUniqueIdentifier();
+				final DatasetChange change = changedMap.remove(identifier);
+				if (change != null)
+				{
+					for (FieldChange fieldChange: change.fieldChangeList)
+					{
+						fieldChange.oldValue = valueString(fieldChange.field.get(ds));
+					}
+				}
+				else if (removedSet.remove(identifier))
+				{
+					diff.removedList.add(new DatasetChange(ChangeType.REMOVED, ds));
+				}
+			}
+		});
+		return diff;
+	}
+
+	public List<DatasetChange> getAddedList() {
+		return Collections.unmodifiableList(addedList);
+	}
+
+	public List<DatasetChange> getRemovedList() {
+		return Collections.unmodifiableList(removedList);
+	}
+
+	public List<DatasetChange> getChangedList() {
+		return Collections.unmodifiableList(changedList);
+	}
+
+	/**
+	 * @return List<DatasetChange> added, then removed, then changed datasets
+	 */
+	public List<DatasetChange> getChangeList()
+	{
+		final List<DatasetChange> changeList = new ArrayList<DatasetChange>(addedList.size() + removedList.size() + changedList.size());
+		changeList.addAll(addedList);
+		changeList.addAll(removedList);
+		changeList.addAll(changedList);
+		return changeList;
+	}
+
+	/**
+	 * @return int datasets in both catalogs with the same content
+	 */
+	public int getUnchangedCount() {
+		return unchangedCount;
+	}
+
+	/**
+	 * @return int datasets, in either catalog, that have no unique identifier and were not compared
+	 */
+	public int getMissingIdentifierCount() {
+		return missingIdentifierCount;
+	}
+
+	public boolean isEmpty()
+	{
+		return addedList.isEmpty() && removedList.isEmpty() && changedList.isEmpty();
+	}
+
+	/**
+	 * Writes one row per added or removed dataset and one row per changed field.
+	 * @param filePath String
+	 * @throws IOException
+	 */
+	public void toCSV(String filePath) throws IOException
+	{
+		if (filePath == null)
+		{
+			throw (new NullPointerException("filePath cannot be null"));
+		}
+		final List<String> headerList = new ArrayList<String>();
+		headerList.add("Change");
+		headerList.add("Unique Identifier");
+		headerList.add("Title");
+		headerList.add("Bureau Code");
+		headerList.add("Field");
+		headerList.add("Old Value");
+		headerList.add("New Value");
+		try (PrintWriter out = new PrintWriter(filePath, "UTF-8");
+				CSVPrinter csvPrinter = new CSVPrinter(out, CSVFormat.DEFAULT.withRecordSeparator("\n")))
+		{
+			csvPrinter.printRecord(headerList);
+			for (DatasetChange change: getChangeList())
+			{
+				if (change.fieldChangeList.isEmpty())
+				{
+					csvPrinter.printRecord(change.changeType, change.uniqueIdentifier, change.title, change.bureauCode, null, null, null);
+				}
+				for (FieldChange fieldChange: change.fieldChangeList)
+				{
+					csvPrinter.printRecord(change.changeType, change.uniqueIdentifier, change.title, change.bureauCode,
+							fieldChange.field, fieldChange.oldValue, fieldChange.newValue);
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CatalogDiff [added=" + addedList.size() + ", removed=" + removedList.size() + ", changed="
+				+ changedList.size() + ", unchanged=" + unchangedCount + "]";
+	}
+
+	private static String valueString(Object value)
+	{
+		if (value == null)
+		{
+			return null;
+		}
+		if (value instanceof Date)
+		{
+			return Utils.convertDateToISOString((Date) value);
+		}
+		return value.toString();
+	}
+
+	/**
+	 * One dataset that was added, removed or changed.
+	 */
+	public static class DatasetChange
+	{
+		private final ChangeType changeType;
+		private final String uniqueIdentifier;
+		private final String title;
+		private final String bureauCode;
+		private final List<FieldChange> fieldChangeList;
+
+		private DatasetChange(ChangeType changeType, Dataset ds)
+		{
+			this.changeType = changeType;
+			uniqueIdentifier = ds.getUniqueIdentifier();
+			title = ds.getTitle();
+			bureauCode = ds.getBureauCodeList().isEmpty() ? null : ds.getBureauCodeList().get(0);
+			fieldChangeList = new ArrayList<FieldChange>();
+		}
+
+		public ChangeType getChangeType() {
+			return changeType;
+		}
+
+		public String getUniqueIdentifier() {
+			return uniqueIdentifier;
+		}
+
+		/**
+		 * @return String the title in the new catalog, or the old one for removed datasets
+		 */
+		public String getTitle() {
+			return title;
+		}
+
+		/**
+		 * @return String first bureau code, null if there is none
+		 */
+		public String getBureauCode() {
+			return bureauCode;
+		}
+
+		/**
+		 * @return List<FieldChange> the fields that differ, empty unless the dataset changed
+		 */
+		public List<FieldChange> getFieldChangeList() {
+			return Collections.unmodifiableList(fieldChangeList);
+		}
+
+		@Override
+		public String toString() {
+			return "DatasetChange [changeType=" + changeType + ", uniqueIdentifier=" + uniqueIdentifier
+					+ ", fieldChangeList=" + fieldChangeList + "]";
+		}
+	}
+
+	/**
+	 * One field of a changed dataset, with the values as text.
+	 */
+	public static class FieldChange
+	{
+		private final DatasetField field;
+		private String oldValue;
+		private final String newValue;
+
+		private FieldChange(DatasetField field, String oldValue, String newValue)
+		{
+			this.field = field;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+
+		public DatasetField getField() {
+			return field;
+		}
+
+		public String getOldValue() {
+			return oldValue;
+		}
+
+		public String getNewValue() {
+			return newValue;
+		}
+
+		@Override
+		public String toString() {
+			return field + ": " + oldValue + " -> " + newValue;
+		}
+	}
+
+	/**
+	 * What is kept of each old dataset between the passes.
+	 */
+	private static class OldEntry
+	{
+		private final long fingerprint;
+		private final long[] fieldFingerprints;
+		private boolean seen;
+
+		private OldEntry(Dataset ds)
+		{
+			fingerprint = DatasetFingerprint.of(ds);
+			fieldFingerprints = new long[FIELDS.length];
+			for (int i = 0; i < FIELDS.length; i++)
+			{
+				fieldFingerprints[i] = DatasetFingerprint.ofValue(FIELDS[i].get(ds));
+			}
+		}
+	}
+
+	private interface DatasetVisitor
+	{
+		void visit(Dataset ds);
+	}
+
+	private interface DatasetSource
+	{
+		void scan(DatasetVisitor visitor) throws IOException, ParseException;
+	}
+
+	private static DatasetSource catalogSource(final Catalog catalog)
+	{
+		return new DatasetSource() {
+			@Override
+			public void scan(DatasetVisitor visitor)
+			{
+				for (Dataset ds: catalog.getDatasetList())
+				{
+					visitor.visit(ds);
+				}
+			}
+		};
+	}
+
+	private static DatasetSource fileSource(final String fileName)
+	{
+		return new DatasetSource() {
+			@Override
+			public void scan(final DatasetVisitor visitor) throws IOException, ParseException
+			{
+				final DatasetStreamParser parser = new DatasetStreamParser(new DatasetStreamParser.DatasetCallback() {
+					@Override
+					public void dataset(JSONObject datasetObject)
+					{
+						final Dataset ds = new Dataset();
+						try
+						{
+							ds.loadFromProjectOpenDataJSON(datasetObject);
+						}
+						catch (DatasetException e)
+						{
+							//an invalid dataset is still compared with whatever was loaded
+						}
+						visitor.visit(ds);
+					}
+				}, Dataset.PROJECT_OPEN_DATA_DATASET);
+				try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8))
+				{
+					parser.parse(reader);
+				}
+			}
+		};
+	}
+}
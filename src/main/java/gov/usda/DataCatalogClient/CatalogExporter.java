@@ -0,0 +1,344 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * Writes any number of export sinks in one pass over a dataset list.
+ * <p>
+ * Each dataset is classified as public or not once, and each format it is needed in is rendered
+ * once: the Project Open Data JSON is built once for both the pretty printed and compact files, and
+ * the rendered element or row is written to every sink of that format whose listing holds the
+ * dataset.  Nothing is rendered for a format that no sink needs.
+ * <p>
+ * Long lists are rendered in parallel chunks written in list order, as ProjectOpenDataWriter and
+ * CatalogCSVWriter do, so every file is the same however many threads there are.
+ * <p>
+ * Compressed copies are written by the ExportFile under each writer, from the same bytes.
+ * <p>
+ * With an ExportFragmentCache, a dataset whose fingerprint is cached is not rendered again in the
+ * formats already cached, its cached output is written instead.
+ */
+final class CatalogExporter {
+
+	private final static int PARALLEL_THRESHOLD = 512;
+	private final static int CHUNK_SIZE = 64;
+
+	private final List<ExportSink> sinkList;
+	private final ExportFragmentCache cache;
+
+	private CatalogExporter(List<ExportSink> sinkList, ExportFragmentCache cache)
+	{
+		this.sinkList = sinkList;
+		this.cache = cache;
+	}
+
+	/**
+	 * A dataset's listing and what it looks like in every format the sinks need.
+	 */
+	private static final class RenderedDataset
+	{
+		private boolean isPublic;
+		private ExportFragmentCache.Fragments fragments;
+	}
+
+	/**
+	 * A sink and the writer open on its file.
+	 */
+	private static final class OpenSink
+	{
+		private final ExportSink sink;
+		private ProjectOpenDataWriter podWriter;
+		private CatalogCSVWriter csvWriter;
+		private LegacyXMLWriter xmlWriter;
+
+		private OpenSink(ExportSink sink) throws IOException
+		{
+			this.sink = sink;
+			switch (sink.getFormat())
+			{
+				case PROJECT_OPEN_DATA_JSON:
+					podWriter = ProjectOpenDataWriter.open(sink.getFilePath(), sink.isCompact(), ForkJoinPool.commonPool(), sink.getCompressionSet());
+					break;
+				case CSV:
+					csvWriter = CatalogCSVWriter.open(sink.getFilePath(), sink.getCompressionSet());
+					break;
+				case LEGACY_XML:
+					xmlWriter = LegacyXMLWriter.open(sink.getFilePath(), sink.getCompressionSet());
+					break;
+			}
+		}
+
+		private void write(RenderedDataset rendered) throws IOException
+		{
+			if (!sink.accepts(rendered.isPublic))
+			{
+				return;
+			}
+			switch (sink.getFormat())
+			{
+				case PROJECT_OPEN_DATA_JSON:
+					podWriter.writeRendered(sink.isCompact() ? rendered.fragments.getCompactJSON() : rendered.fragments.getPrettyJSON(), 1);
+					break;
+				case CSV:
+					csvWriter.writeRendered(rendered.fragments.getCSVRow());
+					break;
+				case LEGACY_XML:
+					xmlWriter.writeRendered(rendered.fragments.getXMLElement());
+					break;
+			}
+		}
+
+		/**
+		 * @return List<ExportManifest.Entry> the finished file and its compressed copies
+		 */
+		private List<ExportManifest.Entry> finish() throws IOException
+		{
+			switch (sink.getFormat())
+			{
+				case PROJECT_OPEN_DATA_JSON:
+					podWriter.finish();
+					return podWriter.getEntryList();
+				case CSV:
+					csvWriter.finish();
+					return csvWriter.getEntryList();
+				default:
+					xmlWriter.finish();
+					return xmlWriter.getEntryList();
+			}
+		}
+
+		private void close() throws IOException
+		{
+			switch (sink.getFormat())
+			{
+				case PROJECT_OPEN_DATA_JSON:
+					podWriter.close();
+					break;
+				case CSV:
+					csvWriter.close();
+					break;
+				case LEGACY_XML:
+					xmlWriter.close();
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Writes every sink from one pass over the datasets, which must already be in catalog order.
+	 * @param datasetList List<Dataset>
+	 * @param sinkList List<ExportSink>
+	 * @param pool ForkJoinPool where long lists are rendered
+	 * @param cache ExportFragmentCache output of datasets rendered before, null for none
+	 * @return ExportManifest every file written
+	 * @throws IOException
+	 */
+	static ExportManifest export(List<Dataset> datasetList, List<ExportSink> sinkList, ForkJoinPool pool, ExportFragmentCache cache) throws IOException
+	{
+		if (datasetList == null || sinkList == null || pool == null)
+		{
+			throw (new NullPointerException("datasetList, sinkList and pool cannot be null"));
+		}
+		final CatalogExporter exporter = new CatalogExporter(new ArrayList<ExportSink>(sinkList), cache);
+		final List<OpenSink> openSinkList = new ArrayList<OpenSink>();
+		try
+		{
+			for (ExportSink sink: exporter.sinkList)
+			{
+				openSinkList.add(new OpenSink(sink));
+			}
+			exporter.writeAll(datasetList, openSinkList, pool);
+			final List<ExportManifest.Entry> entryList = new ArrayList<ExportManifest.Entry>();
+			for (OpenSink openSink: openSinkList)
+			{
+				entryList.addAll(openSink.finish());
+			}
+			return new ExportManifest(entryList);
+		}
+		finally
+		{
+			IOException closeException = null;
+			for (OpenSink openSink: openSinkList)
+			{
+				try
+				{
+					openSink.close();
+				}
+				catch (IOException e)
+				{
+					closeException = e;
+				}
+			}
+			if (closeException != null)
+			{
+				throw (closeException);
+			}
+		}
+	}
+
+	private void writeAll(List<Dataset> datasetList, List<OpenSink> openSinkList, ForkJoinPool pool) throws IOException
+	{
+		if (datasetList.size() < PARALLEL_THRESHOLD || pool.getParallelism() < 2)
+		{
+			for (Dataset ds: datasetList)
+			{
+				write(render(ds), openSinkList);
+			}
+			return;
+		}
+
+		final int windowSize = CHUNK_SIZE * pool.getParallelism() * 4;
+		for (int windowStart = 0; windowStart < datasetList.size(); windowStart += windowSize)
+		{
+			final List<Callable<List<RenderedDataset>>> taskList = new ArrayList<Callable<List<RenderedDataset>>>();
+			final int windowEnd = Math.min(windowStart + windowSize, datasetList.size());
+			for (int start = windowStart; start < windowEnd; start += CHUNK_SIZE)
+			{
+				final List<Dataset> chunkList = datasetList.subList(start, Math.min(start + CHUNK_SIZE, windowEnd));
+				taskList.add(new Callable<List<RenderedDataset>>() {
+					@Override
+					public List<RenderedDataset> call() throws IOException
+					{
+						final List<RenderedDataset> renderedList = new ArrayList<RenderedDataset>(chunkList.size());
+						for (Dataset ds: chunkList)
+						{
+							renderedList.add(render(ds));
+						}
+						return renderedList;
+					}
+				});
+			}
+			try
+			{
+				for (Future<List<RenderedDataset>> future: pool.invokeAll(taskList))
+				{
+					for (RenderedDataset rendered: future.get())
+					{
+						write(rendered, openSinkList);
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Export interrupted", e);
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof IOException)
+				{
+					throw (IOException) e.getCause();
+				}
+				if (e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	private static void write(RenderedDataset rendered, List<OpenSink> openSinkList) throws IOException
+	{
+		for (OpenSink openSink: openSinkList)
+		{
+			openSink.write(rendered);
+		}
+	}
+
+	/**
+	 * Renders a dataset in every format a sink holding it needs, taking what it can from the cache.
+	 */
+	private RenderedDataset render(Dataset ds) throws IOException
+	{
+		final RenderedDataset rendered = new RenderedDataset();
+		rendered.isPublic = isPublic(ds);
+		long fingerprint = 0;
+		final DateTimeZone zone = DateTimeZone.getDefault();
+		ExportFragmentCache.Fragments cached = null;
+		if (cache != null)
+		{
+			fingerprint = DatasetFingerprint.of(ds);
+			cached = cache.get(fingerprint, zone);
+		}
+		byte[] prettyJSON = cached == null ? null : cached.getPrettyJSON();
+		byte[] compactJSON = cached == null ? null : cached.getCompactJSON();
+		String csvRow = cached == null ? null : cached.getCSVRow();
+		String xmlElement = cached == null ? null : cached.getXMLElement();
+		boolean renderedAny = false;
+		Map<?, ?> datasetJSON = null;
+		for (ExportSink sink: sinkList)
+		{
+			if (!sink.accepts(rendered.isPublic))
+			{
+				continue;
+			}
+			switch (sink.getFormat())
+			{
+				case PROJECT_OPEN_DATA_JSON:
+					if (sink.isCompact() ? compactJSON != null : prettyJSON != null)
+					{
+						break;
+					}
+					if (datasetJSON == null)
+					{
+						datasetJSON = ds.toProjectOpenDataJSON();
+					}
+					if (sink.isCompact())
+					{
+						compactJSON = ProjectOpenDataWriter.render(true, datasetJSON);
+					}
+					else
+					{
+						prettyJSON = ProjectOpenDataWriter.render(false, datasetJSON);
+					}
+					renderedAny = true;
+					break;
+				case CSV:
+					if (csvRow == null)
+					{
+						csvRow = CatalogCSVWriter.render(Collections.singletonList(ds));
+						renderedAny = true;
+					}
+					break;
+				case LEGACY_XML:
+					if (xmlElement == null)
+					{
+						xmlElement = LegacyXMLWriter.render(ds);
+						renderedAny = true;
+					}
+					break;
+			}
+		}
+		if (!renderedAny && cached != null)
+		{
+			rendered.fragments = cached;
+			return rendered;
+		}
+		rendered.fragments = new ExportFragmentCache.Fragments(zone, prettyJSON, compactJSON, csvRow, xmlElement);
+		if (cache != null)
+		{
+			cache.put(fingerprint, rendered.fragments);
+		}
+		return rendered;
+	}
+
+	/**
+	 * @return boolean true when the dataset is in the public data listing: public or restricted public
+	 */
+	static boolean isPublic(Dataset ds)
+	{
+		final String accessLevel = ds.getAccessLevel();
+		return Dataset.AccessLevel.PUBLIC.toString().equals(accessLevel) || Dataset.AccessLevel.RESTRICTED.toString().equals(accessLevel);
+	}
+}
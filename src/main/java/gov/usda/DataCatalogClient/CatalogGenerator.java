@@ -0,0 +1,414 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The CatalogGenerator class makes synthetic catalogs of any size from a CatalogProfile, for
+ * benchmarks and load tests that need more datasets than the sample files have.
+ * <p>
+ * Dataset i of a generator is drawn from a random sequence seeded by the generator seed and i alone,
+ * so it is the same whichever datasets are made before it, and in the same seed the Project Open Data
+ * and CKAN files describe the same datasets.  Identifiers are unique within a seed.  Dates are written
+ * in UTC, so the files are byte for byte the same on every machine.
+ * <p>
+ * Files are written one dataset at a time through ProjectOpenDataWriter and ExportFile, memory does
+ * not grow with the number of datasets, and a file is only replaced when it is complete.
+ */
+public final class CatalogGenerator {
+
+	public final static String URL_PREFIX = "https://data.example.gov/synthetic/";
+
+	private final static DateTimeFormatter DATE_FORMATTER = ISODateTimeFormat.date().withZoneUTC();
+	private final static DateTimeFormatter DATE_TIME_FORMATTER = ISODateTimeFormat.dateHourMinuteSecond().withZoneUTC();
+	private final static String FALLBACK_WORD = "data";
+
+	private final CatalogProfile profile;
+	private final long seed;
+
+	private CatalogGenerator(CatalogProfile profile, long seed)
+	{
+		this.profile = profile;
+		this.seed = seed;
+	}
+
+	/**
+	 * @param profile CatalogProfile the distributions to draw datasets from
+	 * @param seed long the same seed and profile always make the same catalog
+	 * @return CatalogGenerator
+	 */
+	public static CatalogGenerator of(CatalogProfile profile, long seed)
+	{
+		if (profile == null)
+		{
+			throw (new NullPointerException("profile cannot be null"));
+		}
+		return new CatalogGenerator(profile, seed);
+	}
+
+	/**
+	 * The fields of one synthetic dataset, drawn once and written in either format.
+	 */
+	private static final class Record
+	{
+		private String identifier;
+		private String title;
+		private String description;
+		private List<String> keywordList;
+		private long modified;
+		private CatalogProfile.Bureau bureau;
+		private String accessLevel;
+		private String accrualPeriodicity;
+		private String license;
+		private String contactName;
+		private String contactEmail;
+		private List<CatalogProfile.DistributionKind> distributionKindList;
+		private List<String> distributionURLList;
+	}
+
+	private Record record(long index)
+	{
+		if (index < 0)
+		{
+			throw (new IllegalArgumentException("index cannot be negative"));
+		}
+		final SplittableRandom random = new SplittableRandom(mix(seed + mix(index)));
+		final Record record = new Record();
+		record.identifier = "synthetic-" + Long.toHexString(seed) + "-" + index;
+		record.title = words(profile.getTitleWordChoice(), random, Math.max(1, profile.getTitleWordCountSpread().pick(random)), Long.MAX_VALUE);
+		record.description = words(profile.getDescriptionWordChoice(), random, Long.MAX_VALUE, Math.max(1, profile.getDescriptionLengthSpread().pickBetween(random)));
+		record.modified = profile.getModifiedSpread().pickBetween(random);
+		record.bureau = profile.getBureauChoice().pick(random);
+		record.accessLevel = profile.getAccessLevelChoice().pick(random);
+		if (record.accessLevel == null)
+		{
+			record.accessLevel = Dataset.AccessLevel.PUBLIC.toString();
+		}
+		record.accrualPeriodicity = profile.getAccrualPeriodicityChoice().pick(random);
+		record.license = profile.getLicenseChoice().pick(random);
+		final int steward = random.nextInt(1000);
+		record.contactName = "Data Steward " + steward;
+		record.contactEmail = "steward" + steward + "@example.gov";
+
+		final long keywordCount = Math.min(profile.getKeywordCountSpread().pick(random), profile.getKeywordChoice().size());
+		final Set<String> keywordSet = new LinkedHashSet<String>();
+		for (int attempt = 0; keywordSet.size() < keywordCount && attempt < 4 * keywordCount; attempt++)
+		{
+			keywordSet.add(profile.getKeywordChoice().pick(random));
+		}
+		record.keywordList = new ArrayList<String>(keywordSet);
+
+		final int distributionCount = profile.getDistributionKindChoice().size() == 0 ? 0 : (int) profile.getDistributionCountSpread().pick(random);
+		record.distributionKindList = new ArrayList<CatalogProfile.DistributionKind>(distributionCount);
+		record.distributionURLList = new ArrayList<String>(distributionCount);
+		for (int i = 0; i < distributionCount; i++)
+		{
+			final CatalogProfile.DistributionKind kind = profile.getDistributionKindChoice().pick(random);
+			record.distributionKindList.add(kind);
+			record.distributionURLList.add(kind.isAccessURL() ? URL_PREFIX + "api/" + record.identifier + "/" + i
+					: URL_PREFIX + "files/" + record.identifier + "/" + i + "." + extension(kind));
+		}
+		return record;
+	}
+
+	/**
+	 * @return String words drawn from the choice until there are maxWords of them or the text is
+	 * maxLength long, cut to maxLength
+	 */
+	private static String words(CatalogProfile.Choice<String> wordChoice, SplittableRandom random, long maxWords, long maxLength)
+	{
+		final StringBuilder text = new StringBuilder();
+		for (long i = 0; i < maxWords && text.length() < maxLength; i++)
+		{
+			if (text.length() > 0)
+			{
+				text.append(' ');
+			}
+			final String word = wordChoice.pick(random);
+			text.append(word == null ? FALLBACK_WORD : word);
+		}
+		if (text.length() > maxLength)
+		{
+			text.setLength((int) maxLength);
+		}
+		return text.toString().trim();
+	}
+
+	/**
+	 * @return String file extension for a download URL: the format, or the last part of the media type
+	 */
+	private static String extension(CatalogProfile.DistributionKind kind)
+	{
+		String extension = kind.getFormat();
+		if (extension == null && kind.getMediaType() != null)
+		{
+			final String mediaType = kind.getMediaType();
+			extension = mediaType.substring(Math.max(mediaType.lastIndexOf('/'), mediaType.lastIndexOf('.')) + 1);
+		}
+		if (extension == null)
+		{
+			return "dat";
+		}
+		extension = extension.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+		return extension.isEmpty() ? "dat" : extension;
+	}
+
+	/**
+	 * Spreads the bits of a value over the whole long (the SplitMix64 finalizer), so that nearby
+	 * seeds and indexes start unrelated random sequences.
+	 */
+	private static long mix(long value)
+	{
+		long z = value + 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @param index long the number of the dataset, from 0
+	 * @return JSONObject the dataset as Project Open Data 1.1
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONObject toProjectOpenDataJSON(long index)
+	{
+		final Record record = record(index);
+		final JSONObject datasetJSON = new JSONObject();
+		datasetJSON.put("@type", "dcat:Dataset");
+		datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_UNIQUE_IDENTIFIER, record.identifier);
+		datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_TITLE, record.title);
+		datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_DESCRIPTION, record.description);
+		datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_MODIFIED, DATE_FORMATTER.print(record.modified));
+		datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_ACCESS_LEVEL, record.accessLevel);
+		if (record.accrualPeriodicity != null)
+		{
+			datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_ACCRUAL_PERIODICITY, record.accrualPeriodicity);
+		}
+		if (record.license != null)
+		{
+			datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_LICENSE, record.license);
+		}
+		final JSONArray keywordArray = new JSONArray();
+		keywordArray.addAll(record.keywordList);
+		datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_KEYWORD, keywordArray);
+		final JSONArray bureauCodeArray = new JSONArray();
+		bureauCodeArray.addAll(record.bureau.getBureauCodeList());
+		datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_BUREAU_CODE, bureauCodeArray);
+		final JSONArray programCodeArray = new JSONArray();
+		programCodeArray.addAll(record.bureau.getProgramCodeList());
+		datasetJSON.put(Dataset.PROJECT_OPEN_DATA_DATASET_PROGRAM_CODE, programCodeArray);
+
+		final JSONObject publisherJSON = new JSONObject();
+		publisherJSON.put(Publisher.PROJECT_OPEN_DATA_PUBLISHER_TYPE, "org:Organization");
+		publisherJSON.put(Publisher.PROJECT_OPEN_DATA_PUBLISHER_NAME, record.bureau.getPublisherName());
+		datasetJSON.put(Publisher.PROJECT_OPEN_DATA_PUBLISHER, publisherJSON);
+		final JSONObject contactJSON = new JSONObject();
+		contactJSON.put(Contact.PROJECT_OPEN_DATA_CONTACT_POINT_TYPE, "vcard:Contact");
+		contactJSON.put(Contact.PROJECT_OPEN_DATA_CONTACT_POINT_FULL_NAME, record.contactName);
+		contactJSON.put(Contact.PROJECT_OPEN_DATA_CONTACT_POINT_EMAIL_ADDRESS, "mailto:" + record.contactEmail);
+		datasetJSON.put(Contact.PROJECT_OPEN_DATA_CONTACT_POINT, contactJSON);
+
+		final JSONArray distributionArray = new JSONArray();
+		for (int i = 0; i < record.distributionKindList.size(); i++)
+		{
+			final CatalogProfile.DistributionKind kind = record.distributionKindList.get(i);
+			final JSONObject distributionJSON = new JSONObject();
+			distributionJSON.put(Distribution.PROJECT_OPEN_DATA_DISTRIBUTION_TYPE, "dcat:Distribution");
+			distributionJSON.put(kind.isAccessURL() ? Distribution.PROJECT_OPEN_DATA_DISTRIBUTION_ACCESS_URL : Distribution.PROJECT_OPEN_DATA_DISTRIBUTION_DOWNLOAD_URL,
+					record.distributionURLList.get(i));
+			if (kind.getFormat() != null)
+			{
+				distributionJSON.put(Distribution.PROJECT_OPEN_DATA_DISTRIBUTION_FORMAT, kind.getFormat());
+			}
+			if (kind.getMediaType() != null)
+			{
+				distributionJSON.put(Distribution.PROJECT_OPEN_DATA_DISTRIBUTION_MEDIA_TYPE, kind.getMediaType());
+			}
+			distributionArray.add(distributionJSON);
+		}
+		datasetJSON.put(Distribution.PROJECT_OPEN_DATA_DISTRIBUTION, distributionArray);
+		return datasetJSON;
+	}
+
+	/**
+	 * @param index long the number of the dataset, from 0
+	 * @return JSONObject the dataset as a package of a CKAN query result, with the Project Open Data
+	 * fields in extras
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONObject toCKAN_JSON(long index)
+	{
+		final Record record = record(index);
+		final JSONObject packageJSON = new JSONObject();
+		packageJSON.put("id", record.identifier);
+		packageJSON.put("name", record.identifier);
+		packageJSON.put("type", "dataset");
+		packageJSON.put("state", "active");
+		packageJSON.put(Dataset.CKAN_DATASET_TITLE, record.title);
+		packageJSON.put(Dataset.CKAN_DATASET_DESCRIPTION_NOTES, record.description);
+		packageJSON.put(Dataset.CKAN_DATASET_PRIVATE, !(Dataset.AccessLevel.PUBLIC.toString().equals(record.accessLevel)
+				|| Dataset.AccessLevel.RESTRICTED.toString().equals(record.accessLevel)));
+		final String metadataModified = DATE_TIME_FORMATTER.print(record.modified);
+		packageJSON.put(Dataset.CKAN_DATASET_METADATA_CREATED, metadataModified);
+		packageJSON.put(Dataset.CKAN_DATASET_METADATA_MODIFIED, metadataModified);
+		packageJSON.put(Dataset.CKAN_DATASET_REVISION_TIMESTAMP, metadataModified);
+
+		final JSONArray extraArray = new JSONArray();
+		extraArray.add(extra(Dataset.CKAN_DATASET_UNIQUE_IDENTIFIER, record.identifier));
+		extraArray.add(extra(Dataset.CKAN_DATASET_ACCESS_LEVEL, record.accessLevel));
+		extraArray.add(extra(Dataset.CKAN_DATASET_MODIFIED, DATE_FORMATTER.print(record.modified)));
+		extraArray.add(extra(Publisher.CKAN_PUBLISHER_NAME, record.bureau.getPublisherName()));
+		extraArray.add(extra(Contact.CKAN_CONTACT_FULL_NAME, record.contactName));
+		extraArray.add(extra(Contact.CKAN_CONTACT_EMAIL_ADDRESS, record.contactEmail));
+		//comma delimited as Dataset.toCKAN_JSON writes them
+		if (!record.bureau.getBureauCodeList().isEmpty())
+		{
+			extraArray.add(extra(Dataset.CKAN_DATASET_BUREAU_CODE_LIST, Utils.listToCSV(record.bureau.getBureauCodeList())));
+		}
+		if (!record.bureau.getProgramCodeList().isEmpty())
+		{
+			extraArray.add(extra(Dataset.CKAN_DATASET_PROGRAM_CODE, Utils.listToCSV(record.bureau.getProgramCodeList())));
+		}
+		if (record.accrualPeriodicity != null)
+		{
+			extraArray.add(extra(Dataset.CKAN_DATASET_ACCRUAL_PERIODICITY, record.accrualPeriodicity));
+		}
+		if (record.license != null)
+		{
+			extraArray.add(extra(Dataset.CKAN_DATASET_LICENSE, record.license));
+		}
+		packageJSON.put(Dataset.CKAN_DATASET_EXTRAS, extraArray);
+
+		final JSONArray tagArray = new JSONArray();
+		for (String keyword: record.keywordList)
+		{
+			final JSONObject tagJSON = new JSONObject();
+			tagJSON.put("name", keyword);
+			tagJSON.put("display_name", keyword);
+			tagArray.add(tagJSON);
+		}
+		packageJSON.put("tags", tagArray);
+
+		final JSONArray resourceArray = new JSONArray();
+		for (int i = 0; i < record.distributionKindList.size(); i++)
+		{
+			final CatalogProfile.DistributionKind kind = record.distributionKindList.get(i);
+			final JSONObject resourceJSON = new JSONObject();
+			resourceJSON.put(Distribution.CKAN_DISTRIBUTION_URL, record.distributionURLList.get(i));
+			resourceJSON.put("resource_type", kind.isAccessURL() ? "api" : "file");
+			if (kind.getFormat() != null)
+			{
+				resourceJSON.put(Distribution.CKAN_DISTRIBUTION_FORMAT, kind.getFormat());
+			}
+			if (kind.getMediaType() != null)
+			{
+				resourceJSON.put(Distribution.CKAN_DISTRIBUTION_MEDIA_TYPE, kind.getMediaType());
+			}
+			resourceArray.add(resourceJSON);
+		}
+		packageJSON.put(Dataset.CKAN_DATASET_DISTRIBUTION, resourceArray);
+		return packageJSON;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject extra(String key, String value)
+	{
+		final JSONObject extraJSON = new JSONObject();
+		extraJSON.put("key", key);
+		extraJSON.put("value", value);
+		return extraJSON;
+	}
+
+	/**
+	 * Writes a Project Open Data catalog of datasets 0 to datasetCount - 1.
+	 * @param podFilePath String the file to write, replaced when complete
+	 * @param datasetCount long
+	 * @throws IOException
+	 */
+	public void writeProjectOpenDataJSON(String podFilePath, long datasetCount) throws IOException
+	{
+		if (podFilePath == null)
+		{
+			throw (new NullPointerException("podFilePath cannot be null"));
+		}
+		checkDatasetCount(datasetCount);
+		try (ProjectOpenDataWriter writer = ProjectOpenDataWriter.open(podFilePath, false))
+		{
+			for (long i = 0; i < datasetCount; i++)
+			{
+				writer.writeRendered(ProjectOpenDataWriter.render(false, toProjectOpenDataJSON(i)), 1);
+			}
+			writer.finish();
+		}
+	}
+
+	/**
+	 * Writes a CKAN query result, as loadCatalogFromCKAN reads, of datasets 0 to datasetCount - 1.
+	 * @param ckanFilePath String the file to write, replaced when complete
+	 * @param datasetCount long
+	 * @throws IOException
+	 */
+	public void writeCKAN_JSON(String ckanFilePath, long datasetCount) throws IOException
+	{
+		if (ckanFilePath == null)
+		{
+			throw (new NullPointerException("ckanFilePath cannot be null"));
+		}
+		checkDatasetCount(datasetCount);
+		try (ExportFile file = ExportFile.open(ckanFilePath, ExportSink.Format.PROJECT_OPEN_DATA_JSON.getContentType()))
+		{
+			final Writer out = new OutputStreamWriter(new BufferedOutputStream(file, 64 * 1024), StandardCharsets.UTF_8);
+			final JsonWriter jsonWriter = ProjectOpenDataWriter.newJsonWriter(out, false);
+			jsonWriter.beginObject();
+			jsonWriter.name("success").value(true);
+			jsonWriter.name(Catalog.CKAN_CATALOG);
+			jsonWriter.beginObject();
+			jsonWriter.name(Dataset.CKAN_DATASET);
+			jsonWriter.beginArray();
+			for (long i = 0; i < datasetCount; i++)
+			{
+				ProjectOpenDataWriter.writeValue(jsonWriter, toCKAN_JSON(i));
+			}
+			jsonWriter.endArray();
+			jsonWriter.endObject();
+			jsonWriter.endObject();
+			jsonWriter.flush();
+			out.flush();
+			file.finish();
+		}
+	}
+
+	private static void checkDatasetCount(long datasetCount)
+	{
+		if (datasetCount < 0)
+		{
+			throw (new IllegalArgumentException("datasetCount cannot be negative"));
+		}
+	}
+
+	public long getSeed()
+	{
+		return seed;
+	}
+
+	public CatalogProfile getProfile()
+	{
+		return profile;
+	}
+}
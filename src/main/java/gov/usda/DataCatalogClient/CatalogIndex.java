@@ -0,0 +1,432 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The CatalogIndex class keeps secondary indexes over the datasets in a Catalog so lookups like
+ * "all datasets for bureau 005:96" do not need a full scan of the dataset list.
+ * <p>
+ * Every dataset added to the index gets a document id.  For each indexed field there is a map
+ * from key to a BitSet of document ids (a posting list).  A query is answered by intersecting
+ * the posting lists of its criteria, starting with the smallest.
+ * <p>
+ * The index remembers the keys it stored for each dataset, so a dataset can be removed or
+ * re-indexed after it was changed without scanning the whole index.  Catalog calls add, remove and
+ * update as datasets change, use Catalog.reindexDataset(Dataset) when a dataset is changed outside of Catalog.
+ * <p>
+ * A removed dataset leaves a dead document id behind.  Once dead ids outnumber live ones the index
+ * is compacted: live datasets are numbered again in the order they were added and the posting lists
+ * are rebuilt, so add and remove churn does not grow the index.  Document ids are therefore only
+ * good until the next remove.
+ */
+public class CatalogIndex {
+
+	/**
+	 * Fields that have a secondary index.  Keyword, theme and publisher are matched without regard to case.
+	 */
+	public enum Field
+	{
+		IDENTIFIER,
+		BUREAU_CODE,
+		PROGRAM_CODE,
+		ACCESS_LEVEL,
+		PUBLISHER,
+		THEME,
+		KEYWORD;
+	};
+
+	private static final String[] NO_KEYS = new String[0];
+	//fewer dead ids than this are never worth a compaction
+	private static final int COMPACT_MIN_DEAD = 64;
+
+	//document id -> dataset, null once removed
+	private List<Dataset> documentList;
+	private final IdentityHashMap<Dataset, Integer> documentIdMap;
+	//document id -> keys stored for that document, one array per Field ordinal
+	private List<String[][]> documentKeyList;
+	private final EnumMap<Field, Map<String, BitSet>> postingMap;
+	private BitSet liveDocuments;
+	private int deadCount;
+
+	public CatalogIndex()
+	{
+		documentList = new ArrayList<Dataset>();
+		documentIdMap = new IdentityHashMap<Dataset, Integer>();
+		documentKeyList = new ArrayList<String[][]>();
+		postingMap = new EnumMap<Field, Map<String, BitSet>>(Field.class);
+		for (Field field: Field.values())
+		{
+			postingMap.put(field, new HashMap<String, BitSet>());
+		}
+		liveDocuments = new BitSet();
+	}
+
+	/**
+	 * Adds a dataset to the index.  If the dataset is already indexed it is re-indexed.
+	 * @param ds Dataset to index
+	 * @return int document id of the dataset
+	 */
+	public int add(Dataset ds)
+	{
+		if (ds == null)
+		{
+			throw new NullPointerException("Dataset ds cannot be null");
+		}
+		final Integer existingId = documentIdMap.get(ds);
+		if (existingId != null)
+		{
+			update(ds);
+			return existingId;
+		}
+		final int documentId = documentList.size();
+		final String[][] keys = extractKeys(ds);
+		documentList.add(ds);
+		documentKeyList.add(keys);
+		documentIdMap.put(ds, documentId);
+		liveDocuments.set(documentId);
+		addPostings(documentId, keys);
+		return documentId;
+	}
+
+	/**
+	 * Removes a dataset from the index.
+	 * @param ds Dataset to remove
+	 * @return boolean true if the dataset was indexed
+	 */
+	public boolean remove(Dataset ds)
+	{
+		final Integer documentId = documentIdMap.remove(ds);
+		if (documentId == null)
+		{
+			return false;
+		}
+		removePostings(documentId, documentKeyList.get(documentId));
+		documentList.set(documentId, null);
+		documentKeyList.set(documentId, null);
+		liveDocuments.clear(documentId);
+		deadCount++;
+		if (deadCount >= COMPACT_MIN_DEAD && deadCount > documentIdMap.size())
+		{
+			compact();
+		}
+		return true;
+	}
+
+	/**
+	 * Re-reads the indexed fields of a dataset after it was changed.  Only keys that
+	 * differ from the previously stored keys touch the posting lists.
+	 * @param ds Dataset already in the index
+	 */
+	public void update(Dataset ds)
+	{
+		final Integer documentId = documentIdMap.get(ds);
+		if (documentId == null)
+		{
+			add(ds);
+			return;
+		}
+		final String[][] oldKeys = documentKeyList.get(documentId);
+		final String[][] newKeys = extractKeys(ds);
+		for (Field field: Field.values())
+		{
+			final int f = field.ordinal();
+			if (!Arrays.equals(oldKeys[f], newKeys[f]))
+			{
+				removePostings(documentId, field, oldKeys[f]);
+				addPostings(documentId, field, newKeys[f]);
+			}
+		}
+		documentKeyList.set(documentId, newKeys);
+	}
+
+	/**
+	 * Removes every dataset from the index.
+	 */
+	public void clear()
+	{
+		//new lists and bit sets, cleared ones would keep the capacity of the largest index
+		documentList = new ArrayList<Dataset>();
+		documentIdMap.clear();
+		documentKeyList = new ArrayList<String[][]>();
+		for (Map<String, BitSet> postings: postingMap.values())
+		{
+			postings.clear();
+		}
+		liveDocuments = new BitSet();
+		deadCount = 0;
+	}
+
+	/**
+	 * Numbers the live datasets from 0 in the order they were added and rebuilds the posting lists
+	 * from the keys stored for each, dropping every dead id.
+	 */
+	private void compact()
+	{
+		final List<Dataset> liveList = new ArrayList<Dataset>(documentIdMap.size());
+		final List<String[][]> liveKeyList = new ArrayList<String[][]>(documentIdMap.size());
+		for (int i = liveDocuments.nextSetBit(0); i >= 0; i = liveDocuments.nextSetBit(i + 1))
+		{
+			liveList.add(documentList.get(i));
+			liveKeyList.add(documentKeyList.get(i));
+		}
+		clear();
+		for (int documentId = 0; documentId < liveList.size(); documentId++)
+		{
+			final Dataset ds = liveList.get(documentId);
+			documentList.add(ds);
+			documentKeyList.add(liveKeyList.get(documentId));
+			documentIdMap.put(ds, documentId);
+			liveDocuments.set(documentId);
+			addPostings(documentId, liveKeyList.get(documentId));
+		}
+	}
+
+	/**
+	 * @return int document ids in use, live and dead
+	 */
+	int getDocumentIdCount()
+	{
+		return documentList.size();
+	}
+
+	/**
+	 * Returns the document ids that match every criterion of the query.  An empty query
+	 * matches all datasets in the index.
+	 * @param query DatasetQuery criteria to intersect
+	 * @return BitSet document ids, this is a copy and can be changed by the caller
+	 */
+	public BitSet query(DatasetQuery query)
+	{
+		if (query == null)
+		{
+			throw new NullPointerException("DatasetQuery query cannot be null");
+		}
+		final List<BitSet> postingList = new ArrayList<BitSet>();
+		for (Entry<Field, String> criterion: query.getCriteria())
+		{
+			final BitSet postings = postingMap.get(criterion.getKey()).get(normalize(criterion.getKey(), criterion.getValue()));
+			if (postings == null)
+			{
+				return new BitSet();
+			}
+			postingList.add(postings);
+		}
+		if (postingList.isEmpty())
+		{
+			return (BitSet) liveDocuments.clone();
+		}
+
+		//intersect smallest first so the working set only shrinks
+		Collections.sort(postingList, new Comparator<BitSet>() {
+			@Override
+			public int compare(BitSet a, BitSet b)
+			{
+				return Integer.compare(a.cardinality(), b.cardinality());
+			}
+		});
+		final BitSet result = (BitSet) postingList.get(0).clone();
+		for (int i = 1; i < postingList.size() && !result.isEmpty(); i++)
+		{
+			result.and(postingList.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the datasets that match every criterion of the query in the order they were added.
+	 * @param query DatasetQuery criteria to intersect
+	 * @return List<Dataset> matching datasets
+	 */
+	public List<Dataset> find(DatasetQuery query)
+	{
+		return getDatasets(query(query));
+	}
+
+	/**
+	 * Converts document ids to datasets.
+	 * @param documentIds BitSet document ids from query
+	 * @return List<Dataset> datasets in document id order
+	 */
+	public List<Dataset> getDatasets(BitSet documentIds)
+	{
+		final List<Dataset> datasetList = new ArrayList<Dataset>(documentIds.cardinality());
+		for (int i = documentIds.nextSetBit(0); i >= 0; i = documentIds.nextSetBit(i + 1))
+		{
+			final Dataset ds = getDataset(i);
+			if (ds != null)
+			{
+				datasetList.add(ds);
+			}
+		}
+		return datasetList;
+	}
+
+	/**
+	 * Returns the dataset for a document id, or null if it was removed.
+	 * @param documentId int
+	 * @return Dataset
+	 */
+	public Dataset getDataset(int documentId)
+	{
+		if (documentId < 0 || documentId >= documentList.size())
+		{
+			return null;
+		}
+		return documentList.get(documentId);
+	}
+
+	/**
+	 * Returns the document id of an indexed dataset or -1 when it is not in the index.
+	 * @param ds Dataset
+	 * @return int document id
+	 */
+	public int getDocumentId(Dataset ds)
+	{
+		final Integer documentId = documentIdMap.get(ds);
+		return documentId == null ? -1 : documentId;
+	}
+
+	/**
+	 * Returns the number of distinct keys for an indexed field, for example the number of bureaus.
+	 * @param field Field
+	 * @return int distinct key count
+	 */
+	public int keyCount(Field field)
+	{
+		return postingMap.get(field).size();
+	}
+
+	/**
+	 * Returns the number of datasets in the index.
+	 * @return int
+	 */
+	public int size()
+	{
+		return documentIdMap.size();
+	}
+
+	/**
+	 * Keys are stored normalized so lookups are exact hash hits.  Identifiers and codes are trimmed,
+	 * free text fields are also lower cased.
+	 * @param field Field the key belongs to
+	 * @param key String raw key
+	 * @return String normalized key, null for a null key
+	 */
+	static String normalize(Field field, String key)
+	{
+		if (key == null)
+		{
+			return null;
+		}
+		final String trimmed = key.trim();
+		switch (field)
+		{
+			case PUBLISHER:
+			case THEME:
+			case KEYWORD: return trimmed.toLowerCase();
+			default: return trimmed;
+		}
+	}
+
+	/**
+	 * Returns the normalized keys of a dataset, one array per Field ordinal.
+	 */
+	static String[][] extractKeys(Dataset ds)
+	{
+		final String[][] keys = new String[Field.values().length][];
+		keys[Field.IDENTIFIER.ordinal()] = keysFromValue(Field.IDENTIFIER, ds.getUniqueIdentifier());
+		keys[Field.BUREAU_CODE.ordinal()] = keysFromList(Field.BUREAU_CODE, ds.getBureauCodeList());
+		keys[Field.PROGRAM_CODE.ordinal()] = keysFromList(Field.PROGRAM_CODE, ds.getProgramCodeList());
+		keys[Field.ACCESS_LEVEL.ordinal()] = keysFromValue(Field.ACCESS_LEVEL, ds.getAccessLevel());
+		keys[Field.PUBLISHER.ordinal()] = keysFromValue(Field.PUBLISHER, ds.getPublisher() == null ? null : ds.getPublisher().getName());
+		keys[Field.THEME.ordinal()] = keysFromList(Field.THEME, ds.getThemeList());
+		keys[Field.KEYWORD.ordinal()] = keysFromList(Field.KEYWORD, ds.getKeywordList());
+		return keys;
+	}
+
+	private static String[] keysFromValue(Field field, String value)
+	{
+		final String key = normalize(field, value);
+		if (key == null)
+		{
+			return NO_KEYS;
+		}
+		return new String[] {key};
+	}
+
+	private static String[] keysFromList(Field field, List<String> valueList)
+	{
+		if (valueList == null || valueList.isEmpty())
+		{
+			return NO_KEYS;
+		}
+		final List<String> keyList = new ArrayList<String>(valueList.size());
+		for (String value: valueList)
+		{
+			final String key = normalize(field, value);
+			if (key != null && !keyList.contains(key))
+			{
+				keyList.add(key);
+			}
+		}
+		return keyList.toArray(new String[keyList.size()]);
+	}
+
+	private void addPostings(int documentId, String[][] keys)
+	{
+		for (Field field: Field.values())
+		{
+			addPostings(documentId, field, keys[field.ordinal()]);
+		}
+	}
+
+	private void addPostings(int documentId, Field field, String[] keys)
+	{
+		final Map<String, BitSet> postings = postingMap.get(field);
+		for (String key: keys)
+		{
+			BitSet documentIds = postings.get(key);
+			if (documentIds == null)
+			{
+				documentIds = new BitSet();
+				postings.put(key, documentIds);
+			}
+			documentIds.set(documentId);
+		}
+	}
+
+	private void removePostings(int documentId, String[][] keys)
+	{
+		for (Field field: Field.values())
+		{
+			removePostings(documentId, field, keys[field.ordinal()]);
+		}
+	}
+
+	private void removePostings(int documentId, Field field, String[] keys)
+	{
+		final Map<String, BitSet> postings = postingMap.get(field);
+		for (String key: keys)
+		{
+			final BitSet documentIds = postings.get(key);
+			if (documentIds != null)
+			{
+				documentIds.clear(documentId);
+				if (documentIds.isEmpty())
+				{
+					postings.remove(key);
+				}
+			}
+		}
+	}
+}
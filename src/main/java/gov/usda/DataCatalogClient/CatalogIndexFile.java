@@ -0,0 +1,813 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * The CatalogIndexFile class writes the lookup indexes (@see CatalogIndex) and the full text index
+ * (@see SearchIndex) of a catalog to a compact file, and answers queries from that file through a
+ * read only memory map.  A restarted service can open the file and answer queries right away
+ * without loading and parsing the catalog, and every process that maps the file shares the same pages.
+ * <p>
+ * Layout, all numbers big endian and all offsets absolute file positions:
+ * <pre>
+ * header   96 bytes: magic, version, document count, catalog fingerprint, source file checksum
+ *          and size, file checksum, file length, section offsets, total weighted length, header checksum
+ * strings  (int length, UTF-8 bytes) for identifiers, titles, keys and terms
+ * documents  per document: int identifier offset, int title offset, float weighted length
+ * lookup   per CatalogIndex.Field: int entries offset, int entry count, then entries
+ *          (int key offset, int postings offset, int postings count) sorted by key bytes
+ *          and postings as sorted int document numbers
+ * terms    int term count, entries (int term offset, int postings offset, int document frequency)
+ *          sorted by term bytes, postings as (int document number, float term frequency)
+ * </pre>
+ * Document numbers are positions in Catalog.getDatasetList() at the time the file was written.
+ * The file checksum is a CRC32 of the whole file except the two checksum fields.  Reading the whole file
+ * would make open scale with the index, so open only checks the header checksum and that the section
+ * offsets lie inside the file; call verify to check the file checksum, for example after copying a file.
+ * The catalog fingerprint (@see DatasetFingerprint) and the optional source file checksum tell whether
+ * the file still matches a catalog or a data.json file, use isCurrentFor before trusting document numbers.
+ * <p>
+ * Files are limited to 2GB because a single MappedByteBuffer is used.
+ */
+public class CatalogIndexFile implements Closeable {
+
+	public final static int MAGIC = 0x44434958; //"DCIX"
+	public final static int VERSION = 2;
+
+	private final static int HEADER_SIZE = 96;
+	private final static int CHECKSUM_POSITION = 40;
+	private final static int HEADER_CHECKSUM_POSITION = 80;
+	private final static int DOCUMENT_ENTRY_SIZE = 12;
+	private final static int KEY_ENTRY_SIZE = 12;
+
+	private final String fileName;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int documentCount;
+	private final long catalogFingerprint;
+	private final long sourceChecksum;
+	private final long sourceSize;
+	private final int documentsOffset;
+	private final int lookupOffset;
+	private final int termsOffset;
+	private final double totalLength;
+
+	private CatalogIndexFile(String fileName, FileChannel channel, MappedByteBuffer buffer)
+	{
+		this.fileName = fileName;
+		this.channel = channel;
+		this.buffer = buffer;
+		documentCount = buffer.getInt(8);
+		catalogFingerprint = buffer.getLong(16);
+		sourceChecksum = buffer.getLong(24);
+		sourceSize = buffer.getLong(32);
+		documentsOffset = buffer.getInt(60);
+		lookupOffset = buffer.getInt(64);
+		termsOffset = buffer.getInt(68);
+		totalLength = buffer.getDouble(72);
+	}
+
+	/**
+	 * Writes the index file for a catalog.
+	 * @param catalog Catalog to index
+	 * @param indexFileName String output file, replaced atomically
+	 * @throws IOException
+	 */
+	public static void write(Catalog catalog, String indexFileName) throws IOException
+	{
+		write(catalog, indexFileName, null);
+	}
+
+	/**
+	 * Writes the index file for a catalog and records the checksum of the file the catalog was
+	 * loaded from, so isCurrentFor(String) can detect a changed data.json without parsing it.
+	 * @param catalog Catalog to index
+	 * @param indexFileName String output file, replaced atomically
+	 * @param sourceFileName String the catalog's data.json or CKAN file, may be null
+	 * @throws IOException
+	 */
+	public static void write(Catalog catalog, String indexFileName, String sourceFileName) throws IOException
+	{
+		if (catalog == null || indexFileName == null)
+		{
+			throw new NullPointerException("catalog or indexFileName cannot be null");
+		}
+		final List<Dataset> datasetList = catalog.getDatasetList();
+		final SectionWriter strings = new SectionWriter(HEADER_SIZE);
+		final Map<String, Integer> stringOffsetMap = new HashMap<String, Integer>();
+
+		//documents, keys and terms in one pass over the catalog
+		final List<TreeMap<byte[], List<Integer>>> keyPostingList = new ArrayList<TreeMap<byte[], List<Integer>>>();
+		for (int f = 0; f < CatalogIndex.Field.values().length; f++)
+		{
+			keyPostingList.add(new TreeMap<byte[], List<Integer>>(UNSIGNED_BYTES));
+		}
+		final TreeMap<byte[], TermPostings> termPostingMap = new TreeMap<byte[], TermPostings>(UNSIGNED_BYTES);
+		final ByteArrayOutputStream documentBytes = new ByteArrayOutputStream(datasetList.size() * DOCUMENT_ENTRY_SIZE);
+		final DataOutputStream documents = new DataOutputStream(documentBytes);
+		double totalLength = 0;
+		final Map<String, Float> termFrequencyMap = new HashMap<String, Float>();
+		for (int d = 0; d < datasetList.size(); d++)
+		{
+			final Dataset ds = datasetList.get(d);
+			documents.writeInt(strings.putString(ds.getUniqueIdentifier(), stringOffsetMap));
+			documents.writeInt(strings.putString(ds.getTitle(), stringOffsetMap));
+
+			final String[][] keys = CatalogIndex.extractKeys(ds);
+			for (int f = 0; f < keys.length; f++)
+			{
+				for (String key: keys[f])
+				{
+					final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+					List<Integer> postings = keyPostingList.get(f).get(keyBytes);
+					if (postings == null)
+					{
+						postings = new ArrayList<Integer>();
+						keyPostingList.get(f).put(keyBytes, postings);
+					}
+					postings.add(d);
+				}
+			}
+
+			termFrequencyMap.clear();
+			final float length = SearchIndex.termFrequencies(ds, termFrequencyMap);
+			documents.writeFloat(length);
+			totalLength += length;
+			for (Entry<String, Float> entry: termFrequencyMap.entrySet())
+			{
+				final byte[] termBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+				TermPostings postings = termPostingMap.get(termBytes);
+				if (postings == null)
+				{
+					postings = new TermPostings();
+					termPostingMap.put(termBytes, postings);
+				}
+				postings.add(d, entry.getValue());
+			}
+		}
+		for (TreeMap<byte[], List<Integer>> keyPostings: keyPostingList)
+		{
+			for (byte[] key: keyPostings.keySet())
+			{
+				strings.putBytes(key);
+			}
+		}
+		for (byte[] term: termPostingMap.keySet())
+		{
+			strings.putBytes(term);
+		}
+
+		//offsets are computed as longs and checked before they are written as ints
+		final int documentsOffset = strings.end();
+		final int lookupOffset = checkedOffset((long) documentsOffset + documentBytes.size());
+		final SectionWriter lookup = new SectionWriter(lookupOffset);
+		final int fieldCount = CatalogIndex.Field.values().length;
+		long entriesOffset = lookupOffset + fieldCount * 8L;
+		for (TreeMap<byte[], List<Integer>> keyPostings: keyPostingList)
+		{
+			lookup.data.writeInt(checkedOffset(entriesOffset));
+			lookup.data.writeInt(keyPostings.size());
+			entriesOffset += (long) keyPostings.size() * KEY_ENTRY_SIZE;
+		}
+		long postingsOffset = entriesOffset;
+		for (TreeMap<byte[], List<Integer>> keyPostings: keyPostingList)
+		{
+			for (Entry<byte[], List<Integer>> entry: keyPostings.entrySet())
+			{
+				lookup.data.writeInt(strings.offsetOf(entry.getKey()));
+				lookup.data.writeInt(checkedOffset(postingsOffset));
+				lookup.data.writeInt(entry.getValue().size());
+				postingsOffset += entry.getValue().size() * 4L;
+			}
+		}
+		for (TreeMap<byte[], List<Integer>> keyPostings: keyPostingList)
+		{
+			for (List<Integer> postings: keyPostings.values())
+			{
+				for (Integer documentNumber: postings)
+				{
+					lookup.data.writeInt(documentNumber);
+				}
+			}
+		}
+
+		final int termsOffset = lookup.end();
+		final SectionWriter terms = new SectionWriter(termsOffset);
+		terms.data.writeInt(termPostingMap.size());
+		postingsOffset = termsOffset + 4L + (long) termPostingMap.size() * KEY_ENTRY_SIZE;
+		for (Entry<byte[], TermPostings> entry: termPostingMap.entrySet())
+		{
+			terms.data.writeInt(strings.offsetOf(entry.getKey()));
+			terms.data.writeInt(checkedOffset(postingsOffset));
+			terms.data.writeInt(entry.getValue().size);
+			postingsOffset += entry.getValue().size * 8L;
+		}
+		for (TermPostings postings: termPostingMap.values())
+		{
+			for (int i = 0; i < postings.size; i++)
+			{
+				terms.data.writeInt(postings.documentNumbers[i]);
+				terms.data.writeFloat(postings.termFrequencies[i]);
+			}
+		}
+		final long fileLength = terms.end();
+
+		long sourceChecksum = -1;
+		long sourceSize = -1;
+		if (sourceFileName != null)
+		{
+			sourceSize = Files.size(Paths.get(sourceFileName));
+			sourceChecksum = checksumFile(sourceFileName);
+		}
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(0, MAGIC);
+		header.putInt(4, VERSION);
+		header.putInt(8, datasetList.size());
+		header.putLong(16, DatasetFingerprint.of(catalog));
+		header.putLong(24, sourceChecksum);
+		header.putLong(32, sourceSize);
+		header.putLong(48, fileLength);
+		header.putInt(56, HEADER_SIZE);
+		header.putInt(60, documentsOffset);
+		header.putInt(64, lookupOffset);
+		header.putInt(68, termsOffset);
+		header.putDouble(72, totalLength);
+
+		final CRC32 crc = new CRC32();
+		crc.update(header.array(), 0, CHECKSUM_POSITION);
+		crc.update(header.array(), CHECKSUM_POSITION + 8, HEADER_CHECKSUM_POSITION - CHECKSUM_POSITION - 8);
+		crc.update(header.array(), HEADER_CHECKSUM_POSITION + 8, HEADER_SIZE - HEADER_CHECKSUM_POSITION - 8);
+		strings.updateChecksum(crc);
+		final byte[] documentArray = documentBytes.toByteArray();
+		crc.update(documentArray, 0, documentArray.length);
+		lookup.updateChecksum(crc);
+		terms.updateChecksum(crc);
+		header.putLong(CHECKSUM_POSITION, crc.getValue());
+		header.putLong(HEADER_CHECKSUM_POSITION, headerChecksum(header));
+
+		//write next to the target and rename, so a reader never maps a half written file
+		final Path indexPath = Paths.get(indexFileName).toAbsolutePath();
+		final Path tempPath = Files.createTempFile(indexPath.getParent(), indexPath.getFileName().toString(), ".tmp");
+		try
+		{
+			try (OutputStream out = Files.newOutputStream(tempPath))
+			{
+				out.write(header.array());
+				strings.writeTo(out);
+				out.write(documentArray);
+				lookup.writeTo(out);
+				terms.writeTo(out);
+			}
+			Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	/**
+	 * Maps an index file and checks its magic number, version, length and header checksum.  The
+	 * rest of the file is not read, use verify to check the file checksum.
+	 * @param indexFileName String
+	 * @return CatalogIndexFile ready for queries, close it when done
+	 * @throws IOException if the file cannot be read, has another version or is corrupt
+	 */
+	public static CatalogIndexFile open(String indexFileName) throws IOException
+	{
+		if (indexFileName == null)
+		{
+			throw new NullPointerException("indexFileName cannot be null");
+		}
+		final FileChannel channel = FileChannel.open(Paths.get(indexFileName), StandardOpenOption.READ);
+		try
+		{
+			final long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+			{
+				throw new IOException(indexFileName + " is not a catalog index file");
+			}
+			final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buffer.getInt(0) != MAGIC)
+			{
+				throw new IOException(indexFileName + " is not a catalog index file");
+			}
+			if (buffer.getInt(4) != VERSION)
+			{
+				throw new IOException(indexFileName + " has index version " + buffer.getInt(4) + ", expected " + VERSION);
+			}
+			if (buffer.getLong(48) != size)
+			{
+				throw new IOException(indexFileName + " is truncated");
+			}
+			if (buffer.getLong(HEADER_CHECKSUM_POSITION) != headerChecksum(buffer))
+			{
+				throw new IOException(indexFileName + " failed header checksum, rebuild the index");
+			}
+			final int documentsOffset = buffer.getInt(60);
+			final int lookupOffset = buffer.getInt(64);
+			final int termsOffset = buffer.getInt(68);
+			if (buffer.getInt(56) != HEADER_SIZE || documentsOffset < HEADER_SIZE
+				|| (long) documentsOffset + (long) buffer.getInt(8) * DOCUMENT_ENTRY_SIZE > lookupOffset
+				|| lookupOffset > termsOffset || termsOffset + 4L > size)
+			{
+				throw new IOException(indexFileName + " has invalid section offsets, rebuild the index");
+			}
+			return new CatalogIndexFile(indexFileName, channel, buffer);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw (e);
+		}
+	}
+
+	/**
+	 * Checks the file checksum.  This reads every page of the file, so it is not done on open.
+	 * @throws IOException if the file is corrupt
+	 */
+	public void verify() throws IOException
+	{
+		final CRC32 crc = new CRC32();
+		final ByteBuffer view = buffer.duplicate();
+		view.limit(CHECKSUM_POSITION);
+		crc.update(view);
+		view.limit(HEADER_CHECKSUM_POSITION).position(CHECKSUM_POSITION + 8);
+		crc.update(view);
+		view.limit(buffer.capacity()).position(HEADER_CHECKSUM_POSITION + 8);
+		crc.update(view);
+		if (crc.getValue() != buffer.getLong(CHECKSUM_POSITION))
+		{
+			throw new IOException(fileName + " failed checksum, rebuild the index");
+		}
+	}
+
+	/**
+	 * Returns true if the catalog has the same datasets, in the same order, as the catalog this
+	 * file was written from.
+	 * @param catalog Catalog
+	 * @return boolean
+	 */
+	public boolean isCurrentFor(Catalog catalog)
+	{
+		return DatasetFingerprint.of(catalog) == catalogFingerprint;
+	}
+
+	/**
+	 * Returns true if sourceFileName has the same size and checksum as the file this index was
+	 * written from.  This reads the file but does not parse it.
+	 * @param sourceFileName String
+	 * @return boolean false also when the index was written without a source file
+	 * @throws IOException
+	 */
+	public boolean isCurrentFor(String sourceFileName) throws IOException
+	{
+		if (sourceChecksum == -1)
+		{
+			return false;
+		}
+		return Files.size(Paths.get(sourceFileName)) == sourceSize && checksumFile(sourceFileName) == sourceChecksum;
+	}
+
+	public int size()
+	{
+		return documentCount;
+	}
+
+	public long getCatalogFingerprint()
+	{
+		return catalogFingerprint;
+	}
+
+	public String getIdentifier(int documentNumber)
+	{
+		return readString(buffer.getInt(documentEntry(documentNumber)));
+	}
+
+	public String getTitle(int documentNumber)
+	{
+		return readString(buffer.getInt(documentEntry(documentNumber) + 4));
+	}
+
+	/**
+	 * Returns the document numbers that match every criterion, the same semantics as CatalogIndex.query.
+	 * @param query DatasetQuery
+	 * @return int[] sorted document numbers
+	 */
+	public int[] query(DatasetQuery query)
+	{
+		if (query == null)
+		{
+			throw new NullPointerException("DatasetQuery query cannot be null");
+		}
+		final List<int[]> postingList = new ArrayList<int[]>();
+		for (Entry<CatalogIndex.Field, String> criterion: query.getCriteria())
+		{
+			final CatalogIndex.Field field = criterion.getKey();
+			final int entriesOffset = buffer.getInt(lookupOffset + field.ordinal() * 8);
+			final int entryCount = buffer.getInt(lookupOffset + field.ordinal() * 8 + 4);
+			final byte[] key = CatalogIndex.normalize(field, criterion.getValue()).getBytes(StandardCharsets.UTF_8);
+			final int entry = findEntry(entriesOffset, entryCount, key);
+			if (entry < 0)
+			{
+				return new int[0];
+			}
+			final int postingsOffset = buffer.getInt(entry + 4);
+			final int[] postings = new int[buffer.getInt(entry + 8)];
+			for (int i = 0; i < postings.length; i++)
+			{
+				postings[i] = buffer.getInt(postingsOffset + i * 4);
+			}
+			postingList.add(postings);
+		}
+		if (postingList.isEmpty())
+		{
+			final int[] all = new int[documentCount];
+			for (int i = 0; i < documentCount; i++)
+			{
+				all[i] = i;
+			}
+			return all;
+		}
+		Collections.sort(postingList, new Comparator<int[]>() {
+			@Override
+			public int compare(int[] a, int[] b)
+			{
+				return Integer.compare(a.length, b.length);
+			}
+		});
+		int[] result = postingList.get(0);
+		for (int p = 1; p < postingList.size() && result.length > 0; p++)
+		{
+			result = intersect(result, postingList.get(p));
+		}
+		return result;
+	}
+
+	/**
+	 * Full text search with the same tokenizing and BM25 ranking as SearchIndex.
+	 * @param queryText String free text
+	 * @param k int maximum number of results
+	 * @return List<Match> best match first
+	 */
+	public List<Match> search(String queryText, int k)
+	{
+		if (queryText == null)
+		{
+			throw new NullPointerException("queryText cannot be null");
+		}
+		if (k <= 0 || documentCount == 0)
+		{
+			return Collections.emptyList();
+		}
+		final float averageLength = (float) (totalLength / documentCount);
+		final int termCount = buffer.getInt(termsOffset);
+		final Map<Integer, Float> scoreMap = new HashMap<Integer, Float>();
+		final List<String> seenTerms = new ArrayList<String>();
+		for (String term: SearchIndex.tokenize(queryText))
+		{
+			if (seenTerms.contains(term))
+			{
+				continue;
+			}
+			seenTerms.add(term);
+			final int entry = findEntry(termsOffset + 4, termCount, term.getBytes(StandardCharsets.UTF_8));
+			if (entry < 0)
+			{
+				continue;
+			}
+			final int postingsOffset = buffer.getInt(entry + 4);
+			final int documentFrequency = buffer.getInt(entry + 8);
+			final float idf = SearchIndex.idf(documentCount, documentFrequency);
+			for (int i = 0; i < documentFrequency; i++)
+			{
+				final int documentNumber = buffer.getInt(postingsOffset + i * 8);
+				final float tf = buffer.getFloat(postingsOffset + i * 8 + 4);
+				final float length = buffer.getFloat(documentEntry(documentNumber) + 8);
+				final float norm = SearchIndex.K1 * (1 - SearchIndex.B + SearchIndex.B * length / averageLength);
+				final float score = idf * tf * (SearchIndex.K1 + 1) / (tf + norm);
+				final Float previous = scoreMap.get(documentNumber);
+				scoreMap.put(documentNumber, previous == null ? score : previous + score);
+			}
+		}
+		final PriorityQueue<Match> heap = new PriorityQueue<Match>(Math.max(1, Math.min(k, scoreMap.size())));
+		for (Entry<Integer, Float> entry: scoreMap.entrySet())
+		{
+			if (heap.size() < k)
+			{
+				heap.add(new Match(entry.getKey(), entry.getValue()));
+			}
+			else if (entry.getValue() > heap.peek().score)
+			{
+				heap.poll();
+				heap.add(new Match(entry.getKey(), entry.getValue()));
+			}
+		}
+		final List<Match> matchList = new ArrayList<Match>(heap);
+		Collections.sort(matchList, Collections.reverseOrder());
+		return matchList;
+	}
+
+	/**
+	 * Closes the file channel.  The mapping itself is released when it is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	private int documentEntry(int documentNumber)
+	{
+		if (documentNumber < 0 || documentNumber >= documentCount)
+		{
+			throw new IndexOutOfBoundsException("document number " + documentNumber + " of " + documentCount);
+		}
+		return documentsOffset + documentNumber * DOCUMENT_ENTRY_SIZE;
+	}
+
+	/**
+	 * Binary search over sorted 12 byte entries whose first int is the offset of the key string.
+	 * @return int position of the entry or -1
+	 */
+	private int findEntry(int entriesOffset, int entryCount, byte[] key)
+	{
+		int low = 0;
+		int high = entryCount - 1;
+		while (low <= high)
+		{
+			final int middle = (low + high) >>> 1;
+			final int entry = entriesOffset + middle * KEY_ENTRY_SIZE;
+			final int compare = compareString(buffer.getInt(entry), key);
+			if (compare < 0)
+			{
+				low = middle + 1;
+			}
+			else if (compare > 0)
+			{
+				high = middle - 1;
+			}
+			else
+			{
+				return entry;
+			}
+		}
+		return -1;
+	}
+
+	private int compareString(int stringOffset, byte[] key)
+	{
+		final int length = buffer.getInt(stringOffset);
+		final int common = Math.min(length, key.length);
+		for (int i = 0; i < common; i++)
+		{
+			final int compare = (buffer.get(stringOffset + 4 + i) & 0xff) - (key[i] & 0xff);
+			if (compare != 0)
+			{
+				return compare;
+			}
+		}
+		return length - key.length;
+	}
+
+	private String readString(int stringOffset)
+	{
+		if (stringOffset < 0)
+		{
+			return null;
+		}
+		final byte[] bytes = new byte[buffer.getInt(stringOffset)];
+		for (int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] = buffer.get(stringOffset + 4 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static int[] intersect(int[] a, int[] b)
+	{
+		final int[] result = new int[Math.min(a.length, b.length)];
+		int i = 0;
+		int j = 0;
+		int size = 0;
+		while (i < a.length && j < b.length)
+		{
+			if (a[i] < b[j])
+			{
+				i++;
+			}
+			else if (a[i] > b[j])
+			{
+				j++;
+			}
+			else
+			{
+				result[size++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * CRC32 of the header up to the header checksum, which covers the file checksum.
+	 */
+	private static long headerChecksum(ByteBuffer header)
+	{
+		final CRC32 crc = new CRC32();
+		final ByteBuffer view = header.duplicate();
+		view.position(0).limit(HEADER_CHECKSUM_POSITION);
+		crc.update(view);
+		return crc.getValue();
+	}
+
+	private static int checkedOffset(long offset) throws IOException
+	{
+		if (offset > Integer.MAX_VALUE)
+		{
+			throw new IOException("Catalog index is larger than 2GB");
+		}
+		return (int) offset;
+	}
+
+	private static long checksumFile(String fileName) throws IOException
+	{
+		final CRC32 crc = new CRC32();
+		try (FileChannel sourceChannel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ))
+		{
+			final ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 16);
+			while (sourceChannel.read(chunk) > 0)
+			{
+				chunk.flip();
+				crc.update(chunk);
+				chunk.clear();
+			}
+		}
+		return crc.getValue();
+	}
+
+	private final static Comparator<byte[]> UNSIGNED_BYTES = new Comparator<byte[]>() {
+		@Override
+		public int compare(byte[] a, byte[] b)
+		{
+			final int common = Math.min(a.length, b.length);
+			for (int i = 0; i < common; i++)
+			{
+				final int compare = (a[i] & 0xff) - (b[i] & 0xff);
+				if (compare != 0)
+				{
+					return compare;
+				}
+			}
+			return a.length - b.length;
+		}
+	};
+
+	/**
+	 * A document number and its BM25 score.  Use getIdentifier and getTitle to describe it, or
+	 * Catalog.getDatasetList().get(documentNumber) when the catalog is loaded and isCurrentFor it.
+	 */
+	public static class Match implements Comparable<Match>
+	{
+		private final int documentNumber;
+		private final float score;
+
+		private Match(int documentNumber, float score)
+		{
+			this.documentNumber = documentNumber;
+			this.score = score;
+		}
+
+		public int getDocumentNumber() {
+			return documentNumber;
+		}
+
+		public float getScore() {
+			return score;
+		}
+
+		@Override
+		public int compareTo(Match other)
+		{
+			final int compare = Float.compare(score, other.score);
+			//lower document number wins a tie so results are stable
+			return compare != 0 ? compare : Integer.compare(other.documentNumber, documentNumber);
+		}
+	}
+
+	/**
+	 * Buffers one section of the file and tracks the absolute offset it will be written at.
+	 */
+	private static class SectionWriter
+	{
+		private final int start;
+		private final ByteArrayOutputStream bytes;
+		private final DataOutputStream data;
+		private final Map<String, Integer> byteOffsetMap;
+
+		private SectionWriter(int start)
+		{
+			this.start = start;
+			bytes = new ByteArrayOutputStream();
+			data = new DataOutputStream(bytes);
+			byteOffsetMap = new HashMap<String, Integer>();
+		}
+
+		private int end() throws IOException
+		{
+			return checkedOffset((long) start + bytes.size());
+		}
+
+		private int putString(String value, Map<String, Integer> offsetMap) throws IOException
+		{
+			if (value == null)
+			{
+				return -1;
+			}
+			Integer offset = offsetMap.get(value);
+			if (offset == null)
+			{
+				offset = end();
+				final byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+				data.writeInt(valueBytes.length);
+				data.write(valueBytes);
+				offsetMap.put(value, offset);
+			}
+			return offset;
+		}
+
+		private void putBytes(byte[] value) throws IOException
+		{
+			final String key = new String(value, StandardCharsets.ISO_8859_1);
+			if (!byteOffsetMap.containsKey(key))
+			{
+				byteOffsetMap.put(key, end());
+				data.writeInt(value.length);
+				data.write(value);
+			}
+		}
+
+		private int offsetOf(byte[] value)
+		{
+			return byteOffsetMap.get(new String(value, StandardCharsets.ISO_8859_1));
+		}
+
+		private void updateChecksum(CRC32 crc)
+		{
+			final byte[] array = bytes.toByteArray();
+			crc.update(array, 0, array.length);
+		}
+
+		private void writeTo(OutputStream out) throws IOException
+		{
+			bytes.writeTo(out);
+		}
+	}
+
+	/**
+	 * Growable postings for one term while writing.
+	 */
+	private static class TermPostings
+	{
+		private int[] documentNumbers = new int[4];
+		private float[] termFrequencies = new float[4];
+		private int size;
+
+		private void add(int documentNumber, float termFrequency)
+		{
+			if (size == documentNumbers.length)
+			{
+				documentNumbers = Arrays.copyOf(documentNumbers, size * 2);
+				termFrequencies = Arrays.copyOf(termFrequencies, size * 2);
+			}
+			documentNumbers[size] = documentNumber;
+			termFrequencies[size] = termFrequency;
+			size++;
+		}
+	}
+}
@@ -0,0 +1,468 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The CatalogProfile class holds the field distributions of real catalogs, for CatalogGenerator to
+ * make synthetic catalogs of any size that look like them.
+ * <p>
+ * It is learned from loaded datasets and keeps, as observed: the bureau of each dataset (its bureau
+ * codes, program codes and publisher together), access levels, accrual periodicities, licenses, the
+ * format, media type and kind of URL of each distribution, keywords, and the words of titles and
+ * descriptions.  Numbers are kept as their sorted observed values: title word counts, description
+ * lengths, keyword counts, distribution counts and modified dates.  Counts are drawn as observed,
+ * description lengths and dates anywhere between two neighbouring observed values, so a large synthetic
+ * catalog spreads over the same range without repeating the same few values.
+ * <p>
+ * A profile is immutable.  Learning the same datasets in the same order gives the same profile, so a
+ * generator with the same seed makes the same catalog.
+ */
+public final class CatalogProfile {
+
+	private static final Logger log = Logger.getLogger(CatalogProfile.class.getName());
+
+	private final Choice<Bureau> bureauChoice;
+	private final Choice<String> accessLevelChoice;
+	private final Choice<String> accrualPeriodicityChoice;
+	private final Choice<String> licenseChoice;
+	private final Choice<DistributionKind> distributionKindChoice;
+	private final Choice<String> keywordChoice;
+	private final Choice<String> titleWordChoice;
+	private final Choice<String> descriptionWordChoice;
+	private final Spread titleWordCountSpread;
+	private final Spread descriptionLengthSpread;
+	private final Spread keywordCountSpread;
+	private final Spread distributionCountSpread;
+	private final Spread modifiedSpread;
+
+	private CatalogProfile(Learner learner)
+	{
+		bureauChoice = Choice.of(learner.bureauCountMap);
+		accessLevelChoice = Choice.of(learner.accessLevelCountMap);
+		accrualPeriodicityChoice = Choice.of(learner.accrualPeriodicityCountMap);
+		licenseChoice = Choice.of(learner.licenseCountMap);
+		distributionKindChoice = Choice.of(learner.distributionKindCountMap);
+		keywordChoice = Choice.of(learner.keywordCountMap);
+		titleWordChoice = Choice.of(learner.titleWordCountMap);
+		descriptionWordChoice = Choice.of(learner.descriptionWordCountMap);
+		titleWordCountSpread = Spread.of(learner.titleWordCountList);
+		descriptionLengthSpread = Spread.of(learner.descriptionLengthList);
+		keywordCountSpread = Spread.of(learner.keywordCountList);
+		distributionCountSpread = Spread.of(learner.distributionCountList);
+		modifiedSpread = Spread.of(learner.modifiedList);
+	}
+
+	/**
+	 * The codes and publisher of a bureau, drawn together so that generated datasets never mix the
+	 * codes of one bureau with the name of another.
+	 */
+	static final class Bureau
+	{
+		private final List<String> bureauCodeList;
+		private final List<String> programCodeList;
+		private final String publisherName;
+
+		private Bureau(List<String> bureauCodeList, List<String> programCodeList, String publisherName)
+		{
+			this.bureauCodeList = Collections.unmodifiableList(new ArrayList<String>(bureauCodeList));
+			this.programCodeList = Collections.unmodifiableList(new ArrayList<String>(programCodeList));
+			this.publisherName = publisherName;
+		}
+
+		List<String> getBureauCodeList()
+		{
+			return bureauCodeList;
+		}
+
+		List<String> getProgramCodeList()
+		{
+			return programCodeList;
+		}
+
+		String getPublisherName()
+		{
+			return publisherName;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Bureau))
+			{
+				return false;
+			}
+			final Bureau other = (Bureau) o;
+			return bureauCodeList.equals(other.bureauCodeList) && programCodeList.equals(other.programCodeList)
+					&& publisherName.equals(other.publisherName);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (bureauCodeList.hashCode() * 31 + programCodeList.hashCode()) * 31 + publisherName.hashCode();
+		}
+	}
+
+	/**
+	 * The format and media type of a distribution, either of which may be null, and whether it is
+	 * reached by an access URL (an API or landing page) instead of a download URL.
+	 */
+	static final class DistributionKind
+	{
+		private final String format;
+		private final String mediaType;
+		private final boolean accessURL;
+
+		private DistributionKind(String format, String mediaType, boolean accessURL)
+		{
+			this.format = format;
+			this.mediaType = mediaType;
+			this.accessURL = accessURL;
+		}
+
+		String getFormat()
+		{
+			return format;
+		}
+
+		String getMediaType()
+		{
+			return mediaType;
+		}
+
+		boolean isAccessURL()
+		{
+			return accessURL;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof DistributionKind))
+			{
+				return false;
+			}
+			final DistributionKind other = (DistributionKind) o;
+			return accessURL == other.accessURL && (format == null ? other.format == null : format.equals(other.format))
+					&& (mediaType == null ? other.mediaType == null : mediaType.equals(other.mediaType));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return ((format == null ? 0 : format.hashCode()) * 31 + (mediaType == null ? 0 : mediaType.hashCode())) * 31 + (accessURL ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Values drawn in proportion to how often they were observed.  A value may be null, for a field
+	 * that is often left out.
+	 */
+	static final class Choice<T>
+	{
+		private final List<T> valueList;
+		//running total of the counts, valueList.get(i) is drawn for totals in [cumulative[i - 1], cumulative[i])
+		private final long[] cumulative;
+
+		private Choice(List<T> valueList, long[] cumulative)
+		{
+			this.valueList = valueList;
+			this.cumulative = cumulative;
+		}
+
+		private static <T> Choice<T> of(Map<T, Integer> countMap)
+		{
+			final List<T> valueList = new ArrayList<T>(countMap.size());
+			final long[] cumulative = new long[countMap.size()];
+			long total = 0;
+			for (Map.Entry<T, Integer> entry: countMap.entrySet())
+			{
+				total += entry.getValue();
+				cumulative[valueList.size()] = total;
+				valueList.add(entry.getKey());
+			}
+			return new Choice<T>(valueList, cumulative);
+		}
+
+		T pick(SplittableRandom random)
+		{
+			if (valueList.isEmpty())
+			{
+				return null;
+			}
+			final long drawn = random.nextLong(cumulative[cumulative.length - 1]);
+			final int position = Arrays.binarySearch(cumulative, drawn);
+			return valueList.get(position >= 0 ? position + 1 : -position - 1);
+		}
+
+		int size()
+		{
+			return valueList.size();
+		}
+	}
+
+	/**
+	 * The sorted observed values of a number.
+	 */
+	static final class Spread
+	{
+		private final long[] values;
+
+		private Spread(long[] values)
+		{
+			this.values = values;
+		}
+
+		private static Spread of(List<Long> valueList)
+		{
+			final long[] values = new long[valueList.size()];
+			for (int i = 0; i < values.length; i++)
+			{
+				values[i] = valueList.get(i);
+			}
+			Arrays.sort(values);
+			return new Spread(values);
+		}
+
+		/**
+		 * @return long one of the observed values, 0 when there are none
+		 */
+		long pick(SplittableRandom random)
+		{
+			return values.length == 0 ? 0 : values[random.nextInt(values.length)];
+		}
+
+		/**
+		 * @return long a value between an observed value and the next larger one
+		 */
+		long pickBetween(SplittableRandom random)
+		{
+			if (values.length == 0)
+			{
+				return 0;
+			}
+			final int i = random.nextInt(values.length);
+			final long low = values[i];
+			final long high = i + 1 < values.length ? values[i + 1] : low;
+			return low + (long) (random.nextDouble() * (high - low));
+		}
+
+		long getMin()
+		{
+			return values.length == 0 ? 0 : values[0];
+		}
+
+		long getMax()
+		{
+			return values.length == 0 ? 0 : values[values.length - 1];
+		}
+	}
+
+	/**
+	 * Counts what it sees of each dataset, in the order seen.
+	 */
+	private static final class Learner
+	{
+		private final Map<Bureau, Integer> bureauCountMap = new LinkedHashMap<Bureau, Integer>();
+		private final Map<String, Integer> accessLevelCountMap = new LinkedHashMap<String, Integer>();
+		private final Map<String, Integer> accrualPeriodicityCountMap = new LinkedHashMap<String, Integer>();
+		private final Map<String, Integer> licenseCountMap = new LinkedHashMap<String, Integer>();
+		private final Map<DistributionKind, Integer> distributionKindCountMap = new LinkedHashMap<DistributionKind, Integer>();
+		private final Map<String, Integer> keywordCountMap = new LinkedHashMap<String, Integer>();
+		private final Map<String, Integer> titleWordCountMap = new LinkedHashMap<String, Integer>();
+		private final Map<String, Integer> descriptionWordCountMap = new LinkedHashMap<String, Integer>();
+		private final List<Long> titleWordCountList = new ArrayList<Long>();
+		private final List<Long> descriptionLengthList = new ArrayList<Long>();
+		private final List<Long> keywordCountList = new ArrayList<Long>();
+		private final List<Long> distributionCountList = new ArrayList<Long>();
+		private final List<Long> modifiedList = new ArrayList<Long>();
+
+		private void learn(Dataset ds)
+		{
+			final String publisherName = ds.getPublisher() == null ? null : ds.getPublisher().getName();
+			if (publisherName != null)
+			{
+				count(bureauCountMap, new Bureau(ds.getBureauCodeList(), ds.getProgramCodeList(), publisherName));
+			}
+			count(accessLevelCountMap, ds.getAccessLevel());
+			count(accrualPeriodicityCountMap, ds.getAccrualPeriodicity());
+			count(licenseCountMap, ds.getLicense());
+			for (Distribution distribution: ds.getDistributionList())
+			{
+				count(distributionKindCountMap, new DistributionKind(distribution.getFormat(), distribution.getMediaType(),
+						distribution.getAccessURL() != null));
+			}
+			distributionCountList.add((long) ds.getDistributionList().size());
+			for (String keyword: ds.getKeywordList())
+			{
+				count(keywordCountMap, keyword);
+			}
+			keywordCountList.add((long) ds.getKeywordList().size());
+			if (ds.getTitle() != null)
+			{
+				titleWordCountList.add((long) countWords(titleWordCountMap, ds.getTitle()));
+			}
+			if (ds.getDescription() != null)
+			{
+				countWords(descriptionWordCountMap, ds.getDescription());
+				descriptionLengthList.add((long) ds.getDescription().length());
+			}
+			if (ds.getModified() != null)
+			{
+				modifiedList.add(ds.getModified().getTime());
+			}
+		}
+
+		private static <T> void count(Map<T, Integer> countMap, T value)
+		{
+			final Integer count = countMap.get(value);
+			countMap.put(value, count == null ? 1 : count + 1);
+		}
+
+		/**
+		 * @return int words in the text
+		 */
+		private static int countWords(Map<String, Integer> countMap, String text)
+		{
+			int wordCount = 0;
+			for (String word: text.trim().split("\\s+"))
+			{
+				if (!word.isEmpty())
+				{
+					count(countMap, word);
+					wordCount++;
+				}
+			}
+			return wordCount;
+		}
+	}
+
+	/**
+	 * Learns the field distributions of datasets.
+	 * @param datasetList List<Dataset> at least one dataset
+	 * @return CatalogProfile
+	 */
+	public static CatalogProfile of(List<Dataset> datasetList)
+	{
+		if (datasetList == null)
+		{
+			throw (new NullPointerException("datasetList cannot be null"));
+		}
+		if (datasetList.isEmpty())
+		{
+			throw (new IllegalArgumentException("datasetList must hold at least one dataset to learn from"));
+		}
+		final Learner learner = new Learner();
+		for (Dataset ds: datasetList)
+		{
+			learner.learn(ds);
+		}
+		if (learner.bureauCountMap.isEmpty())
+		{
+			throw (new IllegalArgumentException("no dataset in datasetList has a publisher"));
+		}
+		return new CatalogProfile(learner);
+	}
+
+	/**
+	 * Learns the field distributions of Project Open Data files, such as the data.json files in
+	 * sample_data.  Datasets that do not load are logged and left out, as they are from any catalog.
+	 * @param podFileNames String... Project Open Data catalog files
+	 * @return CatalogProfile
+	 */
+	public static CatalogProfile fromProjectOpenData(String... podFileNames)
+	{
+		if (podFileNames == null)
+		{
+			throw (new NullPointerException("podFileNames cannot be null"));
+		}
+		final List<Dataset> datasetList = new ArrayList<Dataset>();
+		for (String podFileName: podFileNames)
+		{
+			final Catalog catalog = new Catalog();
+			try
+			{
+				catalog.loadFromProjectOpenDataJSON(podFileName, DatasetFilter.acceptAll(), DatasetProjection.all());
+			}
+			catch (CatalogException e)
+			{
+				log.log(Level.WARNING, "Some datasets of " + podFileName + " are not learned: " + e.toString());
+			}
+			datasetList.addAll(catalog.getDatasetList());
+		}
+		return of(datasetList);
+	}
+
+	Choice<Bureau> getBureauChoice()
+	{
+		return bureauChoice;
+	}
+
+	Choice<String> getAccessLevelChoice()
+	{
+		return accessLevelChoice;
+	}
+
+	Choice<String> getAccrualPeriodicityChoice()
+	{
+		return accrualPeriodicityChoice;
+	}
+
+	Choice<String> getLicenseChoice()
+	{
+		return licenseChoice;
+	}
+
+	Choice<DistributionKind> getDistributionKindChoice()
+	{
+		return distributionKindChoice;
+	}
+
+	Choice<String> getKeywordChoice()
+	{
+		return keywordChoice;
+	}
+
+	Choice<String> getTitleWordChoice()
+	{
+		return titleWordChoice;
+	}
+
+	Choice<String> getDescriptionWordChoice()
+	{
+		return descriptionWordChoice;
+	}
+
+	Spread getTitleWordCountSpread()
+	{
+		return titleWordCountSpread;
+	}
+
+	Spread getDescriptionLengthSpread()
+	{
+		return descriptionLengthSpread;
+	}
+
+	Spread getKeywordCountSpread()
+	{
+		return keywordCountSpread;
+	}
+
+	Spread getDistributionCountSpread()
+	{
+		return distributionCountSpread;
+	}
+
+	Spread getModifiedSpread()
+	{
+		return modifiedSpread;
+	}
+}
@@ -0,0 +1,511 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves the public data listing of a catalog over HTTP with the JDK's HttpServer: the Project Open
+ * Data file at /data.json, the CSV file at /data.csv and each dataset's Project Open Data JSON at
+ * /datasets/{uniqueIdentifier}.
+ * <p>
+ * The files are exported once per snapshot with gzip and deflate copies (@see ExportSink), and each
+ * request is sent the smallest copy its Accept-Encoding allows, straight from the file with
+ * FileChannel.transferTo.  Every response has a strong ETag, the SHA-256 of its file from the export
+ * manifest or the DatasetFingerprint of its dataset, and a Last-Modified of the snapshot, so
+ * If-None-Match and If-Modified-Since requests are answered 304 Not Modified without sending anything.
+ * <p>
+ * reload exports a new snapshot into its own directory and swaps it in at once.  A request keeps the
+ * snapshot it started with, and a replaced snapshot's files are deleted when its last request ends.
+ * Dataset JSON is rendered into the snapshot by reload too, so a snapshot never reads the catalog
+ * again and changes to the catalog are served only after the next reload.
+ */
+public final class CatalogServer implements Closeable {
+
+	public final static String DATA_JSON_PATH = "/data.json";
+	public final static String CSV_PATH = "/data.csv";
+	public final static String DATASET_PATH = "/datasets/";
+
+	private final static String DATA_JSON_FILE = "data.json";
+	private final static String CSV_FILE = "data.csv";
+	private final static int STOP_DELAY_SECONDS = 1;
+
+	private static final Logger log = Logger.getLogger(CatalogServer.class.getName());
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Path snapshotRoot;
+	private final AtomicReference<Snapshot> currentSnapshot = new AtomicReference<Snapshot>();
+
+	/**
+	 * One export of a catalog and the requests using it.
+	 */
+	private static final class Snapshot
+	{
+		private final Path directory;
+		private final ExportManifest manifest;
+		private final Map<String, RenderedDataset> datasetMap;
+		//seconds, as Last-Modified has no milliseconds
+		private final long lastModified;
+		private final AtomicInteger requestCount = new AtomicInteger();
+		private final AtomicBoolean deleted = new AtomicBoolean();
+		private volatile boolean retired;
+
+		private Snapshot(Path directory, ExportManifest manifest, Map<String, RenderedDataset> datasetMap, long lastModified)
+		{
+			this.directory = directory;
+			this.manifest = manifest;
+			this.datasetMap = datasetMap;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * The Project Open Data JSON of one dataset as it was when its snapshot was taken.
+	 */
+	private static final class RenderedDataset
+	{
+		private final byte[] json;
+		private final String eTag;
+
+		private RenderedDataset(byte[] json, String eTag)
+		{
+			this.json = json;
+			this.eTag = eTag;
+		}
+	}
+
+	private CatalogServer(HttpServer server, ExecutorService executor, Path snapshotRoot)
+	{
+		this.server = server;
+		this.executor = executor;
+		this.snapshotRoot = snapshotRoot;
+	}
+
+	/**
+	 * Exports the catalog and starts serving it.
+	 * @param catalog Catalog
+	 * @param address InetSocketAddress port 0 for any free port (@see getAddress)
+	 * @param snapshotDirectory String where snapshots are exported, one directory each
+	 * @return CatalogServer
+	 * @throws IOException
+	 */
+	public static CatalogServer start(Catalog catalog, InetSocketAddress address, String snapshotDirectory) throws IOException
+	{
+		if (catalog == null || address == null || snapshotDirectory == null)
+		{
+			throw (new NullPointerException("catalog, address and snapshotDirectory cannot be null"));
+		}
+		final HttpServer server = HttpServer.create(address, 0);
+		final ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				final Thread thread = new Thread(runnable, "catalog-server-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final CatalogServer catalogServer = new CatalogServer(server, executor, Paths.get(snapshotDirectory).toAbsolutePath());
+		try
+		{
+			catalogServer.reload(catalog);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			executor.shutdown();
+			server.stop(0);
+			throw (e);
+		}
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				catalogServer.handle(exchange);
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+		return catalogServer;
+	}
+
+	/**
+	 * @return InetSocketAddress where the server listens
+	 */
+	public InetSocketAddress getAddress()
+	{
+		return server.getAddress();
+	}
+
+	/**
+	 * Exports the catalog as a new snapshot and serves it from now on.  Requests already being
+	 * answered finish with the snapshot they started with.
+	 * @param catalog Catalog
+	 * @throws IOException
+	 */
+	public synchronized void reload(Catalog catalog) throws IOException
+	{
+		if (catalog == null)
+		{
+			throw (new NullPointerException("catalog cannot be null"));
+		}
+		Files.createDirectories(snapshotRoot);
+		final Path directory = Files.createTempDirectory(snapshotRoot, "snapshot-");
+		final Snapshot snapshot;
+		try
+		{
+			final ExportManifest manifest = catalog.export(Arrays.asList(
+					ExportSink.projectOpenDataJSON(directory.resolve(DATA_JSON_FILE).toString(), Catalog.DataListingCode.PUBLIC_DATA_LISTING,
+							ExportSink.Compression.values()),
+					ExportSink.csv(directory.resolve(CSV_FILE).toString(), Catalog.DataListingCode.PUBLIC_DATA_LISTING,
+							ExportSink.Compression.values())));
+			final Map<String, RenderedDataset> datasetMap = new HashMap<String, RenderedDataset>();
+			for (Dataset ds: catalog.getDatasetList())
+			{
+				if (ds.getUniqueIdentifier() != null && CatalogExporter.isPublic(ds) && !datasetMap.containsKey(ds.getUniqueIdentifier()))
+				{
+					datasetMap.put(ds.getUniqueIdentifier(), render(ds));
+				}
+			}
+			snapshot = new Snapshot(directory, manifest, Collections.unmodifiableMap(datasetMap), System.currentTimeMillis() / 1000);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			deleteDirectory(directory);
+			throw (e);
+		}
+		final Snapshot replaced = currentSnapshot.getAndSet(snapshot);
+		if (replaced != null)
+		{
+			replaced.retired = true;
+			if (replaced.requestCount.get() == 0)
+			{
+				delete(replaced);
+			}
+		}
+	}
+
+	/**
+	 * Renders a dataset as data.json renders it.
+	 */
+	private static RenderedDataset render(Dataset ds) throws IOException
+	{
+		final ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+		final Writer writer = new OutputStreamWriter(rendered, StandardCharsets.UTF_8);
+		final JsonWriter jsonWriter = ProjectOpenDataWriter.newJsonWriter(writer, false);
+		ProjectOpenDataWriter.writeValue(jsonWriter, ds.toProjectOpenDataJSON());
+		jsonWriter.flush();
+		//datasets with the same fingerprint render the same, so it is a strong ETag
+		return new RenderedDataset(rendered.toByteArray(), "\"" + Long.toHexString(DatasetFingerprint.of(ds)) + "\"");
+	}
+
+	/**
+	 * Stops serving, giving requests being answered a moment to finish.  The current snapshot is
+	 * left on disk.
+	 */
+	@Override
+	public void close()
+	{
+		server.stop(STOP_DELAY_SECONDS);
+		executor.shutdown();
+	}
+
+	private void handle(HttpExchange exchange)
+	{
+		try
+		{
+			final Snapshot snapshot = acquire();
+			try
+			{
+				serve(exchange, snapshot);
+			}
+			finally
+			{
+				release(snapshot);
+			}
+		}
+		catch (IOException e)
+		{
+			//most often the client went away
+			log.log(Level.FINE, "Request for " + exchange.getRequestURI() + " failed " + e.toString());
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/**
+	 * @return Snapshot the current snapshot, kept on disk until it is released
+	 */
+	private Snapshot acquire()
+	{
+		while (true)
+		{
+			final Snapshot snapshot = currentSnapshot.get();
+			snapshot.requestCount.incrementAndGet();
+			if (snapshot == currentSnapshot.get())
+			{
+				return snapshot;
+			}
+			//replaced while being acquired, it may already be on its way out
+			release(snapshot);
+		}
+	}
+
+	private void release(Snapshot snapshot)
+	{
+		if (snapshot.requestCount.decrementAndGet() == 0 && snapshot.retired)
+		{
+			delete(snapshot);
+		}
+	}
+
+	private void delete(Snapshot snapshot)
+	{
+		if (snapshot.deleted.compareAndSet(false, true))
+		{
+			deleteDirectory(snapshot.directory);
+		}
+	}
+
+	private static void deleteDirectory(Path directory)
+	{
+		final File[] fileList = directory.toFile().listFiles();
+		if (fileList != null)
+		{
+			for (File file: fileList)
+			{
+				file.delete();
+			}
+		}
+		if (!directory.toFile().delete())
+		{
+			log.log(Level.WARNING, "Could not delete snapshot " + directory);
+		}
+	}
+
+	private void serve(HttpExchange exchange, Snapshot snapshot) throws IOException
+	{
+		final String method = exchange.getRequestMethod();
+		if (!method.equals("GET") && !method.equals("HEAD"))
+		{
+			exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+			exchange.sendResponseHeaders(405, -1);
+			return;
+		}
+		final String path = exchange.getRequestURI().getPath();
+		if (path.equals(DATA_JSON_PATH))
+		{
+			serveFile(exchange, snapshot, snapshot.directory.resolve(DATA_JSON_FILE));
+		}
+		else if (path.equals(CSV_PATH))
+		{
+			serveFile(exchange, snapshot, snapshot.directory.resolve(CSV_FILE));
+		}
+		else if (path.startsWith(DATASET_PATH) && snapshot.datasetMap.containsKey(path.substring(DATASET_PATH.length())))
+		{
+			serveDataset(exchange, snapshot, snapshot.datasetMap.get(path.substring(DATASET_PATH.length())));
+		}
+		else
+		{
+			exchange.sendResponseHeaders(404, -1);
+		}
+	}
+
+	/**
+	 * Sends the smallest copy of an exported file that the client accepts.
+	 */
+	private void serveFile(HttpExchange exchange, Snapshot snapshot, Path plainFile) throws IOException
+	{
+		ExportManifest.Entry chosen = snapshot.manifest.getEntry(plainFile.toString(), ExportManifest.IDENTITY_ENCODING);
+		final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		for (ExportSink.Compression compression: ExportSink.Compression.values())
+		{
+			final ExportManifest.Entry entry = snapshot.manifest.getEntry(plainFile.toString(), compression.getContentEncoding());
+			if (entry != null && entry.getSize() < chosen.getSize() && accepts(acceptEncoding, compression.getContentEncoding()))
+			{
+				chosen = entry;
+			}
+		}
+		final Headers headers = exchange.getResponseHeaders();
+		headers.set("Content-Type", chosen.getContentType() + "; charset=utf-8");
+		headers.set("Vary", "Accept-Encoding");
+		if (!chosen.getContentEncoding().equals(ExportManifest.IDENTITY_ENCODING))
+		{
+			headers.set("Content-Encoding", chosen.getContentEncoding());
+		}
+		if (notModified(exchange, "\"" + chosen.getSha256() + "\"", snapshot.lastModified))
+		{
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(Paths.get(chosen.getFilePath()), StandardOpenOption.READ))
+		{
+			if (exchange.getRequestMethod().equals("HEAD"))
+			{
+				headers.set("Content-Length", Long.toString(chosen.getSize()));
+				exchange.sendResponseHeaders(200, -1);
+				return;
+			}
+			exchange.sendResponseHeaders(200, chosen.getSize());
+			//HttpServer does not hand out its socket, so the file goes to the socket through the exchange's stream
+			final WritableByteChannel body = Channels.newChannel(exchange.getResponseBody());
+			long position = 0;
+			while (position < chosen.getSize())
+			{
+				position += channel.transferTo(position, chosen.getSize() - position, body);
+			}
+		}
+	}
+
+	/**
+	 * Sends the Project Open Data JSON of one dataset as its snapshot rendered it.
+	 */
+	private void serveDataset(HttpExchange exchange, Snapshot snapshot, RenderedDataset rendered) throws IOException
+	{
+		final Headers headers = exchange.getResponseHeaders();
+		headers.set("Content-Type", ExportSink.Format.PROJECT_OPEN_DATA_JSON.getContentType() + "; charset=utf-8");
+		if (notModified(exchange, rendered.eTag, snapshot.lastModified))
+		{
+			return;
+		}
+		if (exchange.getRequestMethod().equals("HEAD"))
+		{
+			headers.set("Content-Length", Integer.toString(rendered.json.length));
+			exchange.sendResponseHeaders(200, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(200, rendered.json.length);
+		final OutputStream body = exchange.getResponseBody();
+		body.write(rendered.json);
+		body.flush();
+	}
+
+	/**
+	 * Sets the validators of a response and answers 304 Not Modified when the client's copy is current:
+	 * If-None-Match names the ETag, or there is no If-None-Match and If-Modified-Since is not before
+	 * lastModified.
+	 * @return boolean true when the 304 was sent
+	 */
+	private static boolean notModified(HttpExchange exchange, String eTag, long lastModified) throws IOException
+	{
+		final Headers headers = exchange.getResponseHeaders();
+		headers.set("ETag", eTag);
+		headers.set("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochSecond(lastModified), ZoneOffset.UTC)));
+		final Headers requestHeaders = exchange.getRequestHeaders();
+		boolean notModified = false;
+		if (requestHeaders.containsKey("If-None-Match"))
+		{
+			for (String ifNoneMatch: requestHeaders.get("If-None-Match"))
+			{
+				for (String tag: ifNoneMatch.split(","))
+				{
+					tag = tag.trim();
+					//If-None-Match compares weakly
+					if (tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag))
+					{
+						notModified = true;
+					}
+				}
+			}
+		}
+		else if (requestHeaders.containsKey("If-Modified-Since"))
+		{
+			try
+			{
+				notModified = ZonedDateTime.parse(requestHeaders.getFirst("If-Modified-Since"), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond() >= lastModified;
+			}
+			catch (DateTimeParseException e)
+			{
+				//an invalid date is ignored
+			}
+		}
+		if (notModified)
+		{
+			exchange.sendResponseHeaders(304, -1);
+		}
+		return notModified;
+	}
+
+	/**
+	 * @param acceptEncoding String the Accept-Encoding header, null when there is none
+	 * @return boolean true when the header allows the content encoding, by name or by "*"
+	 */
+	static boolean accepts(String acceptEncoding, String contentEncoding)
+	{
+		if (acceptEncoding == null)
+		{
+			return false;
+		}
+		double namedQuality = -1;
+		double wildcardQuality = -1;
+		for (String coding: acceptEncoding.split(","))
+		{
+			final String[] parameters = coding.split(";");
+			final String name = parameters[0].trim();
+			double quality = 1;
+			for (int i = 1; i < parameters.length; i++)
+			{
+				final String parameter = parameters[i].trim();
+				if (parameter.startsWith("q="))
+				{
+					try
+					{
+						quality = Double.parseDouble(parameter.substring(2));
+					}
+					catch (NumberFormatException e)
+					{
+						quality = 0;
+					}
+				}
+			}
+			if (name.equalsIgnoreCase(contentEncoding))
+			{
+				namedQuality = quality;
+			}
+			else if (name.equals("*"))
+			{
+				wildcardQuality = quality;
+			}
+		}
+		return (namedQuality >= 0 ? namedQuality : wildcardQuality) > 0;
+	}
+}
@@ -0,0 +1,610 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CatalogSnapshot class saves a catalog to a compact binary file and loads it back, all of it or
+ * only the datasets of some bureaus.  It is meant for caching a catalog between runs, the JSON formats
+ * stay the exchange formats.
+ * <p>
+ * Layout, fixed width numbers big endian and offsets absolute file positions:
+ * <pre>
+ * header   72 bytes: magic, version, dataset count, string count, section offsets, file length
+ * catalog  the catalog fields
+ * records  per dataset: varint length, then the dataset with its distributions, contact and publisher
+ * offsets  per dataset: long record offset
+ * bureaus  varint bureau count, per bureau code: string, varint dataset count, varint record numbers
+ *          each as the difference to the previous one
+ * strings  per string: varint length, UTF-8 bytes
+ * string offsets  per string: int offset of its length
+ * </pre>
+ * Every string is written once to the string table and referenced by number, so the publisher names,
+ * bureau codes, formats and media types repeated in every dataset cost a byte or two.  Dates are
+ * varints of their milliseconds.  Strings, dates and lists are written as 0 for null so a loaded
+ * dataset has the same null and empty fields as the saved one.
+ * <p>
+ * The file is read through a memory map and strings are decoded when first used, so a partial read
+ * touches only the records of the bureaus asked for.  The string offsets let a string be found by
+ * its number without walking the table, so opening a snapshot does not depend on how many strings
+ * it has.  The version is checked on open, a file from another version has to be written again.
+ */
+public class CatalogSnapshot {
+
+	public final static int MAGIC = 0x4443534E; //"DCSN"
+	public final static int VERSION = 2;
+
+	private final static int HEADER_SIZE = 72;
+
+	private CatalogSnapshot()
+	{
+	}
+
+	/**
+	 * Writes a catalog, sorted, to a snapshot file.  The catalog itself is not reordered.  The file is
+	 * written to a temporary file first and renamed, a crash leaves the old snapshot whole.
+	 * @param catalog Catalog
+	 * @param snapshotFileName String
+	 * @throws IOException
+	 */
+	public static void write(Catalog catalog, String snapshotFileName) throws IOException
+	{
+		if (catalog == null || snapshotFileName == null)
+		{
+			throw new NullPointerException("catalog and snapshotFileName cannot be null");
+		}
+		final List<Dataset> datasetList = catalog.getSortedDatasetList();
+		final Output out = new Output(datasetList.size() * 512);
+		catalog.writeSnapshot(out);
+		final int recordsStart = out.size();
+
+		final long[] recordOffsetArray = new long[datasetList.size()];
+		final Map<String, List<Integer>> bureauMap = new LinkedHashMap<String, List<Integer>>();
+		final Output record = new Output(out);
+		for (int i = 0; i < datasetList.size(); i++)
+		{
+			final Dataset ds = datasetList.get(i);
+			record.reset();
+			record.writeString(catalog.getSource(ds));
+			ds.writeSnapshot(record);
+			recordOffsetArray[i] = HEADER_SIZE + out.size();
+			out.writeVarLong(record.size());
+			out.write(record);
+			for (String bureauCode: ds.getBureauCodeList())
+			{
+				List<Integer> recordList = bureauMap.get(bureauCode);
+				if (recordList == null)
+				{
+					recordList = new ArrayList<Integer>();
+					bureauMap.put(bureauCode, recordList);
+				}
+				//a bureau code listed twice in one dataset is indexed once
+				if (recordList.isEmpty() || recordList.get(recordList.size() - 1) != i)
+				{
+					recordList.add(i);
+				}
+			}
+		}
+		final int offsetsStart = out.size();
+		for (long recordOffset: recordOffsetArray)
+		{
+			out.writeLong(recordOffset);
+		}
+		final int bureausStart = out.size();
+		out.writeVarLong(bureauMap.size());
+		for (Map.Entry<String, List<Integer>> bureauEntry: bureauMap.entrySet())
+		{
+			out.writeString(bureauEntry.getKey());
+			out.writeVarLong(bureauEntry.getValue().size());
+			int previous = 0;
+			for (int recordNumber: bureauEntry.getValue())
+			{
+				out.writeVarLong(recordNumber - previous);
+				previous = recordNumber;
+			}
+		}
+		final int stringsStart = out.size();
+		final int stringOffsetsStart = out.writeStringTable(HEADER_SIZE);
+
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putInt(datasetList.size()).putInt(out.stringCount());
+		header.putLong(HEADER_SIZE).putLong(HEADER_SIZE + recordsStart).putLong(HEADER_SIZE + offsetsStart);
+		header.putLong(HEADER_SIZE + bureausStart).putLong(HEADER_SIZE + stringsStart).putLong(HEADER_SIZE + out.size());
+		header.putLong(HEADER_SIZE + stringOffsetsStart);
+		header.flip();
+
+		final Path snapshotPath = Paths.get(snapshotFileName).toAbsolutePath();
+		final Path tempPath = Files.createTempFile(snapshotPath.getParent(), snapshotPath.getFileName().toString(), ".tmp");
+		try
+		{
+			try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE))
+			{
+				final ByteBuffer body = ByteBuffer.wrap(out.buffer, 0, out.size());
+				while (header.hasRemaining() || body.hasRemaining())
+				{
+					channel.write(new ByteBuffer[] {header, body});
+				}
+			}
+			Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	/**
+	 * Loads a snapshot into a catalog.
+	 * @param catalog Catalog the catalog to add the catalog fields and datasets to
+	 * @param snapshotFileName String
+	 * @param bureauCodes String... load only datasets with one of these bureau codes, all datasets if none
+	 * @throws IOException if the file is not a snapshot of this version or is damaged
+	 */
+	public static void read(final Catalog catalog, String snapshotFileName, String... bureauCodes) throws IOException
+	{
+		if (catalog == null || snapshotFileName == null || bureauCodes == null)
+		{
+			throw new NullPointerException("catalog, snapshotFileName and bureauCodes cannot be null");
+		}
+		read(snapshotFileName, catalog, new SnapshotVisitor() {
+			@Override
+			public void dataset(Dataset ds, String datasetSource)
+			{
+				catalog.addDataset(ds);
+				if (datasetSource != null && !datasetSource.equals(catalog.getSource()))
+				{
+					catalog.setSource(ds, datasetSource);
+				}
+			}
+		}, bureauCodes);
+	}
+
+	/**
+	 * Receives the datasets of a snapshot one at a time, in catalog order.
+	 */
+	interface SnapshotVisitor
+	{
+		void dataset(Dataset ds, String datasetSource);
+	}
+
+	/**
+	 * Reads the catalog fields into a catalog and hands each dataset to a visitor, so a reader that
+	 * does not keep the datasets never holds more than one.
+	 */
+	static void read(String snapshotFileName, Catalog catalog, SnapshotVisitor visitor, String... bureauCodes) throws IOException
+	{
+		final ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(Paths.get(snapshotFileName), StandardOpenOption.READ))
+		{
+			if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+			{
+				throw new IOException(snapshotFileName + " is not a catalog snapshot");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt(0) != MAGIC)
+		{
+			throw new IOException(snapshotFileName + " is not a catalog snapshot");
+		}
+		if (buffer.getInt(4) != VERSION)
+		{
+			throw new IOException(snapshotFileName + " is snapshot version " + buffer.getInt(4) + ", not " + VERSION);
+		}
+		final int datasetCount = buffer.getInt(8);
+		if (buffer.getLong(56) != buffer.capacity())
+		{
+			throw new IOException(snapshotFileName + " is truncated");
+		}
+		try
+		{
+			final Input in = new Input(buffer, buffer.getInt(12), (int) buffer.getLong(64));
+			in.position((int) buffer.getLong(16));
+			catalog.readSnapshot(in);
+
+			final int offsetsStart = (int) buffer.getLong(32);
+			for (int recordNumber: recordNumbers(in, datasetCount, (int) buffer.getLong(40), bureauCodes))
+			{
+				in.position((int) buffer.getLong(offsetsStart + recordNumber * 8));
+				final int recordLength = in.readVarInt();
+				final int recordEnd = in.position() + recordLength;
+				final String datasetSource = in.readString();
+				final Dataset ds = new Dataset();
+				ds.readSnapshot(in);
+				if (in.position() != recordEnd)
+				{
+					throw new IOException("Dataset record " + recordNumber + " has the wrong length");
+				}
+				visitor.dataset(ds, datasetSource);
+			}
+		}
+		catch (IndexOutOfBoundsException | IllegalArgumentException e)
+		{
+			throw new IOException(snapshotFileName + " is damaged: " + e.toString());
+		}
+	}
+
+	/**
+	 * @return int[] the record numbers to load, in file order
+	 */
+	private static int[] recordNumbers(Input in, int datasetCount, int bureausStart, String... bureauCodes)
+	{
+		if (bureauCodes.length == 0)
+		{
+			final int[] recordNumberArray = new int[datasetCount];
+			for (int i = 0; i < datasetCount; i++)
+			{
+				recordNumberArray[i] = i;
+			}
+			return recordNumberArray;
+		}
+		final List<String> bureauCodeList = Arrays.asList(bureauCodes);
+		final BitSet recordSet = new BitSet(datasetCount);
+		in.position(bureausStart);
+		final int bureauCount = in.readVarInt();
+		for (int b = 0; b < bureauCount; b++)
+		{
+			final boolean wanted = bureauCodeList.contains(in.readString());
+			final int count = in.readVarInt();
+			int recordNumber = 0;
+			for (int i = 0; i < count; i++)
+			{
+				recordNumber += in.readVarInt();
+				if (wanted)
+				{
+					recordSet.set(recordNumber);
+				}
+			}
+		}
+		final int[] recordNumberArray = new int[recordSet.cardinality()];
+		int i = 0;
+		for (int recordNumber = recordSet.nextSetBit(0); recordNumber >= 0; recordNumber = recordSet.nextSetBit(recordNumber + 1))
+		{
+			recordNumberArray[i++] = recordNumber;
+		}
+		return recordNumberArray;
+	}
+
+	/**
+	 * Encodes snapshot values into a growing byte array, collecting strings into the string table.
+	 */
+	static final class Output
+	{
+		private byte[] buffer;
+		private int size;
+		private final Map<String, Integer> stringMap;
+		private final List<String> stringList;
+
+		private Output(int capacity)
+		{
+			this(capacity, new HashMap<String, Integer>(), new ArrayList<String>());
+		}
+
+		/**
+		 * An output for records that are copied into parent, sharing its string table.
+		 */
+		private Output(Output parent)
+		{
+			this(4096, parent.stringMap, parent.stringList);
+		}
+
+		private Output(int capacity, Map<String, Integer> stringMap, List<String> stringList)
+		{
+			buffer = new byte[Math.max(capacity, 64)];
+			this.stringMap = stringMap;
+			this.stringList = stringList;
+		}
+
+		private int size()
+		{
+			return size;
+		}
+
+		private void reset()
+		{
+			size = 0;
+		}
+
+		private int stringCount()
+		{
+			return stringList.size();
+		}
+
+		private void ensure(int extra)
+		{
+			if (size + extra > buffer.length)
+			{
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+			}
+		}
+
+		void writeByte(int value)
+		{
+			ensure(1);
+			buffer[size++] = (byte) value;
+		}
+
+		private void writeLong(long value)
+		{
+			ensure(8);
+			for (int shift = 56; shift >= 0; shift -= 8)
+			{
+				buffer[size++] = (byte) (value >>> shift);
+			}
+		}
+
+		void writeVarLong(long value)
+		{
+			ensure(10);
+			while ((value & ~0x7FL) != 0)
+			{
+				buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer[size++] = (byte) value;
+		}
+
+		/**
+		 * Copies the bytes of an output that shares this output's string table.
+		 */
+		private void write(Output other)
+		{
+			ensure(other.size);
+			System.arraycopy(other.buffer, 0, buffer, size, other.size);
+			size += other.size;
+		}
+
+		/**
+		 * Writes a string as its number in the string table plus one, 0 for null.
+		 */
+		void writeString(String value)
+		{
+			if (value == null)
+			{
+				writeVarLong(0);
+				return;
+			}
+			Integer number = stringMap.get(value);
+			if (number == null)
+			{
+				number = stringList.size();
+				stringMap.put(value, number);
+				stringList.add(value);
+			}
+			writeVarLong(number.longValue() + 1);
+		}
+
+		void writeURL(URL value)
+		{
+			writeString(value == null ? null : value.toString());
+		}
+
+		/**
+		 * Writes a date as its zigzag encoded milliseconds plus one, 0 for null.
+		 */
+		void writeDate(Date value)
+		{
+			if (value == null)
+			{
+				writeVarLong(0);
+				return;
+			}
+			final long millis = value.getTime();
+			writeVarLong(((millis << 1) ^ (millis >> 63)) + 1);
+		}
+
+		void writeBoolean(Boolean value)
+		{
+			writeByte(value == null ? 0 : (value ? 2 : 1));
+		}
+
+		void writeInteger(Integer value)
+		{
+			writeVarLong(value == null ? 0 : (((long) value << 1) ^ ((long) value >> 63)) + 1);
+		}
+
+		void writeStringList(List<String> valueList)
+		{
+			if (valueList == null)
+			{
+				writeVarLong(0);
+				return;
+			}
+			writeVarLong(valueList.size() + 1);
+			for (String value: valueList)
+			{
+				writeString(value);
+			}
+		}
+
+		/**
+		 * Writes the strings and then their offsets.
+		 * @param base int file position of the first byte of this output
+		 * @return int position of the offsets in this output
+		 */
+		private int writeStringTable(int base) throws IOException
+		{
+			final int[] offsetArray = new int[stringList.size()];
+			for (int i = 0; i < offsetArray.length; i++)
+			{
+				final long offset = (long) base + size;
+				if (offset > Integer.MAX_VALUE)
+				{
+					throw new IOException("Catalog snapshot is larger than 2GB");
+				}
+				offsetArray[i] = (int) offset;
+				final byte[] valueBytes = stringList.get(i).getBytes(StandardCharsets.UTF_8);
+				writeVarLong(valueBytes.length);
+				ensure(valueBytes.length);
+				System.arraycopy(valueBytes, 0, buffer, size, valueBytes.length);
+				size += valueBytes.length;
+			}
+			final int offsetsStart = size;
+			ensure(offsetArray.length * 4);
+			for (int offset: offsetArray)
+			{
+				buffer[size++] = (byte) (offset >>> 24);
+				buffer[size++] = (byte) (offset >>> 16);
+				buffer[size++] = (byte) (offset >>> 8);
+				buffer[size++] = (byte) offset;
+			}
+			return offsetsStart;
+		}
+	}
+
+	/**
+	 * Decodes snapshot values from the mapped file, decoding each string of the table once on first use.
+	 */
+	static final class Input
+	{
+		private final ByteBuffer buffer;
+		private final int stringOffsetsStart;
+		private final String[] stringArray;
+		private int position;
+
+		private Input(ByteBuffer buffer, int stringCount, int stringOffsetsStart)
+		{
+			this.buffer = buffer;
+			this.stringOffsetsStart = stringOffsetsStart;
+			stringArray = new String[stringCount];
+		}
+
+		private int position()
+		{
+			return position;
+		}
+
+		private void position(int newPosition)
+		{
+			position = newPosition;
+		}
+
+		int readByte()
+		{
+			return buffer.get(position++);
+		}
+
+		long readVarLong()
+		{
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7)
+			{
+				final byte b = buffer.get(position++);
+				value |= (long) (b & 0x7F) << shift;
+				if (b >= 0)
+				{
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("varint longer than 10 bytes at " + position);
+		}
+
+		int readVarInt()
+		{
+			final long value = readVarLong();
+			if (value < 0 || value > Integer.MAX_VALUE)
+			{
+				throw new IllegalArgumentException("varint " + value + " out of range at " + position);
+			}
+			return (int) value;
+		}
+
+		String readString()
+		{
+			final int number = readVarInt();
+			if (number == 0)
+			{
+				return null;
+			}
+			String value = stringArray[number - 1];
+			if (value == null)
+			{
+				final int savedPosition = position;
+				position = buffer.getInt(stringOffsetsStart + (number - 1) * 4);
+				final byte[] valueBytes = new byte[readVarInt()];
+				final ByteBuffer valueBuffer = buffer.duplicate();
+				valueBuffer.position(position);
+				valueBuffer.get(valueBytes);
+				position = savedPosition;
+				value = new String(valueBytes, StandardCharsets.UTF_8);
+				stringArray[number - 1] = value;
+			}
+			return value;
+		}
+
+		URL readURL() throws IOException
+		{
+			final String value = readString();
+			try
+			{
+				return value == null ? null : new URL(value);
+			}
+			catch (MalformedURLException e)
+			{
+				throw new IOException("Invalid URL in snapshot: " + value);
+			}
+		}
+
+		Date readDate()
+		{
+			final long value = readVarLong();
+			if (value == 0)
+			{
+				return null;
+			}
+			final long zigzag = value - 1;
+			return new Date((zigzag >>> 1) ^ -(zigzag & 1));
+		}
+
+		Boolean readBoolean()
+		{
+			final int value = readByte();
+			return value == 0 ? null : Boolean.valueOf(value == 2);
+		}
+
+		Integer readInteger()
+		{
+			final long value = readVarLong();
+			if (value == 0)
+			{
+				return null;
+			}
+			final long zigzag = value - 1;
+			return (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+		}
+
+		/**
+		 * @return List<String> a new ArrayList, or null if null was written
+		 */
+		List<String> readStringList()
+		{
+			final int count = readVarInt();
+			if (count == 0)
+			{
+				return null;
+			}
+			final List<String> valueList = new ArrayList<String>(count - 1);
+			for (int i = 1; i < count; i++)
+			{
+				valueList.add(readString());
+			}
+			return valueList;
+		}
+	}
+}
@@ -0,0 +1,497 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * The CatalogStatistics class is a compact summary of a catalog at one point in time, small enough to
+ * keep one for every load of the catalog.  QuarterlyReport compares them to count what was added,
+ * updated and retired without reading old data.json files again.
+ * <p>
+ * It holds, per dataset, the fingerprint of its unique identifier, its content fingerprint
+ * (@see DatasetFingerprint) and its bureau, and per bureau the number of datasets and how many of
+ * them have every field Project Open Data requires.  A dataset belongs to its first bureau code, or
+ * to BureauMetrics.NO_BUREAU.  Datasets without a unique identifier are counted but cannot be
+ * followed from one load to the next.
+ * <p>
+ * Statistics are saved as catalog-&lt;UTC time&gt;.stats files in a statistics directory, the time
+ * in the name lets a report read only the files of the quarter it covers.  Layout, big endian:
+ * magic, version, long time taken, int bureau count, per bureau UTF code, UTF name, int datasets,
+ * int compliant datasets, then int dataset count and per dataset, sorted by identifier fingerprint,
+ * long identifier fingerprint, long content fingerprint, int bureau number, and a CRC32 of all of it.
+ */
+public class CatalogStatistics {
+
+	public final static int MAGIC = 0x44435354; //"DCST"
+	public final static int VERSION = 1;
+	public final static String FILE_PREFIX = "catalog-";
+	public final static String FILE_SUFFIX = ".stats";
+
+	/**
+	 * Fields Project Open Data requires of every dataset, besides the unique identifier.
+	 */
+	public final static EnumSet<DatasetField> REQUIRED_FIELDS = EnumSet.of(DatasetField.TITLE, DatasetField.DESCRIPTION,
+			DatasetField.KEYWORD, DatasetField.MODIFIED, DatasetField.PUBLISHER, DatasetField.CONTACT_POINT,
+			DatasetField.ACCESS_LEVEL, DatasetField.BUREAU_CODE, DatasetField.PROGRAM_CODE);
+
+	private final static String FILE_TIME_FORMAT = "yyyyMMdd'T'HHmmssSSS'Z'";
+
+	private final Date takenAt;
+	private final String[] bureauCodes;
+	private final String[] bureauNames;
+	private final int[] bureauDatasetCounts;
+	private final int[] bureauCompliantCounts;
+	private final Map<String, Integer> bureauNumberMap;
+	//sorted by identifier, then by content fingerprint
+	private final long[] identifiers;
+	private final long[] fingerprints;
+	private final int[] datasetBureaus;
+
+	private CatalogStatistics(Date takenAt, String[] bureauCodes, String[] bureauNames, int[] bureauDatasetCounts,
+			int[] bureauCompliantCounts, long[] identifiers, long[] fingerprints, int[] datasetBureaus)
+	{
+		this.takenAt = takenAt;
+		this.bureauCodes = bureauCodes;
+		this.bureauNames = bureauNames;
+		this.bureauDatasetCounts = bureauDatasetCounts;
+		this.bureauCompliantCounts = bureauCompliantCounts;
+		this.identifiers = identifiers;
+		this.fingerprints = fingerprints;
+		this.datasetBureaus = datasetBureaus;
+		bureauNumberMap = new HashMap<String, Integer>();
+		for (int b = 0; b < bureauCodes.length; b++)
+		{
+			bureauNumberMap.put(bureauCodes[b], b);
+		}
+	}
+
+	/**
+	 * Summarizes a catalog.
+	 * @param catalog Catalog
+	 * @param takenAt Date when the catalog was loaded
+	 * @return CatalogStatistics
+	 */
+	public static CatalogStatistics of(Catalog catalog, Date takenAt)
+	{
+		if (catalog == null || takenAt == null)
+		{
+			throw new NullPointerException("catalog and takenAt cannot be null");
+		}
+		final List<Dataset> datasetList = catalog.getDatasetList();
+		final Map<String, Integer> bureauNumberMap = new HashMap<String, Integer>();
+		final List<String> bureauCodeList = new ArrayList<String>();
+		final List<String> bureauNameList = new ArrayList<String>();
+		final int[] bureauOfDataset = new int[datasetList.size()];
+		final boolean[] compliant = new boolean[datasetList.size()];
+		int identifiedCount = 0;
+		for (int i = 0; i < datasetList.size(); i++)
+		{
+			final Dataset ds = datasetList.get(i);
+			final String bureauCode = ds.getBureauCodeList() == null || ds.getBureauCodeList().isEmpty() ? BureauMetrics.NO_BUREAU : ds.getBureauCodeList().get(0);
+			Integer bureauNumber = bureauNumberMap.get(bureauCode);
+			if (bureauNumber == null)
+			{
+				bureauNumber = bureauCodeList.size();
+				bureauNumberMap.put(bureauCode, bureauNumber);
+				bureauCodeList.add(bureauCode);
+				bureauNameList.add(ds.getBureauName() == null ? "" : ds.getBureauName());
+			}
+			bureauOfDataset[i] = bureauNumber;
+			compliant[i] = isCompliant(ds);
+			identifiedCount += ds.getUniqueIdentifier() == null ? 0 : 1;
+		}
+
+		final int[] bureauDatasetCounts = new int[bureauCodeList.size()];
+		final int[] bureauCompliantCounts = new int[bureauCodeList.size()];
+		final long[][] entries = new long[identifiedCount][];
+		int e = 0;
+		for (int i = 0; i < datasetList.size(); i++)
+		{
+			bureauDatasetCounts[bureauOfDataset[i]]++;
+			bureauCompliantCounts[bureauOfDataset[i]] += compliant[i] ? 1 : 0;
+			final Dataset ds = datasetList.get(i);
+			if (ds.getUniqueIdentifier() != null)
+			{
+				entries[e++] = new long[] {DatasetFingerprint.of(ds.getUniqueIdentifier()), DatasetFingerprint.of(ds), bureauOfDataset[i]};
+			}
+		}
+		Arrays.sort(entries, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] first, long[] second)
+			{
+				final int byIdentifier = Long.compare(first[0], second[0]);
+				return byIdentifier != 0 ? byIdentifier : Long.compare(first[1], second[1]);
+			}
+		});
+		final long[] identifiers = new long[identifiedCount];
+		final long[] fingerprints = new long[identifiedCount];
+		final int[] datasetBureaus = new int[identifiedCount];
+		for (int i = 0; i < identifiedCount; i++)
+		{
+			identifiers[i] = entries[i][0];
+			fingerprints[i] = entries[i][1];
+			datasetBureaus[i] = (int) entries[i][2];
+		}
+		return new CatalogStatistics(new Date(takenAt.getTime()), bureauCodeList.toArray(new String[bureauCodeList.size()]),
+				bureauNameList.toArray(new String[bureauNameList.size()]), bureauDatasetCounts, bureauCompliantCounts,
+				identifiers, fingerprints, datasetBureaus);
+	}
+
+	/**
+	 * @return boolean true if the dataset has a unique identifier and every field of REQUIRED_FIELDS
+	 */
+	public static boolean isCompliant(Dataset ds)
+	{
+		if (ds.getUniqueIdentifier() == null || ds.getUniqueIdentifier().trim().isEmpty())
+		{
+			return false;
+		}
+		for (DatasetField field: REQUIRED_FIELDS)
+		{
+			if (BureauMetrics.isMissing(field, ds))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Saves these statistics to a new file in a statistics directory, created if needed.
+	 * @param statisticsDirectory String
+	 * @return String the file written
+	 * @throws IOException
+	 */
+	public String save(String statisticsDirectory) throws IOException
+	{
+		if (statisticsDirectory == null)
+		{
+			throw new NullPointerException("statisticsDirectory cannot be null");
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + identifiers.length * 20);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(takenAt.getTime());
+		out.writeInt(bureauCodes.length);
+		for (int b = 0; b < bureauCodes.length; b++)
+		{
+			out.writeUTF(bureauCodes[b]);
+			out.writeUTF(bureauNames[b]);
+			out.writeInt(bureauDatasetCounts[b]);
+			out.writeInt(bureauCompliantCounts[b]);
+		}
+		out.writeInt(identifiers.length);
+		for (int i = 0; i < identifiers.length; i++)
+		{
+			out.writeLong(identifiers[i]);
+			out.writeLong(fingerprints[i]);
+			out.writeInt(datasetBureaus[i]);
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		final Path directory = Paths.get(statisticsDirectory);
+		Files.createDirectories(directory);
+		final Path statisticsFile = directory.resolve(FILE_PREFIX + fileTimeFormat().format(takenAt) + FILE_SUFFIX);
+		final Path tempFile = Files.createTempFile(directory, FILE_PREFIX, ".tmp");
+		try
+		{
+			try (OutputStream fileOut = Files.newOutputStream(tempFile))
+			{
+				bytes.writeTo(fileOut);
+			}
+			Files.move(tempFile, statisticsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(tempFile);
+		}
+		return statisticsFile.toString();
+	}
+
+	/**
+	 * @param statisticsFileName String
+	 * @return CatalogStatistics
+	 * @throws IOException if the file is not a statistics file of this version or is damaged
+	 */
+	public static CatalogStatistics load(String statisticsFileName) throws IOException
+	{
+		if (statisticsFileName == null)
+		{
+			throw new NullPointerException("statisticsFileName cannot be null");
+		}
+		final byte[] fileBytes = Files.readAllBytes(Paths.get(statisticsFileName));
+		final CRC32 crc = new CRC32();
+		crc.update(fileBytes, 0, Math.max(0, fileBytes.length - 8));
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(fileBytes));
+		if (fileBytes.length < 28 || in.readInt() != MAGIC)
+		{
+			throw new IOException(statisticsFileName + " is not a catalog statistics file");
+		}
+		final int version = in.readInt();
+		if (version != VERSION)
+		{
+			throw new IOException(statisticsFileName + " is version " + version + ", not " + VERSION);
+		}
+		final DataInputStream crcIn = new DataInputStream(new ByteArrayInputStream(fileBytes, fileBytes.length - 8, 8));
+		if (crcIn.readLong() != crc.getValue())
+		{
+			throw new IOException(statisticsFileName + " is damaged, the checksum does not match");
+		}
+		final Date takenAt = new Date(in.readLong());
+		final int bureauCount = in.readInt();
+		final String[] bureauCodes = new String[bureauCount];
+		final String[] bureauNames = new String[bureauCount];
+		final int[] bureauDatasetCounts = new int[bureauCount];
+		final int[] bureauCompliantCounts = new int[bureauCount];
+		for (int b = 0; b < bureauCount; b++)
+		{
+			bureauCodes[b] = in.readUTF();
+			bureauNames[b] = in.readUTF();
+			bureauDatasetCounts[b] = in.readInt();
+			bureauCompliantCounts[b] = in.readInt();
+		}
+		final int datasetCount = in.readInt();
+		final long[] identifiers = new long[datasetCount];
+		final long[] fingerprints = new long[datasetCount];
+		final int[] datasetBureaus = new int[datasetCount];
+		for (int i = 0; i < datasetCount; i++)
+		{
+			identifiers[i] = in.readLong();
+			fingerprints[i] = in.readLong();
+			datasetBureaus[i] = in.readInt();
+		}
+		return new CatalogStatistics(takenAt, bureauCodes, bureauNames, bureauDatasetCounts, bureauCompliantCounts,
+				identifiers, fingerprints, datasetBureaus);
+	}
+
+	/**
+	 * Loads the statistics taken in a time range, oldest first.  Files outside the range are skipped by
+	 * name without being read.
+	 * @param statisticsDirectory String
+	 * @param from Date first time included, null for no lower bound
+	 * @param to Date first time excluded, null for no upper bound
+	 * @return List<CatalogStatistics> empty if the directory does not exist
+	 * @throws IOException
+	 */
+	public static List<CatalogStatistics> loadHistory(String statisticsDirectory, Date from, Date to) throws IOException
+	{
+		if (statisticsDirectory == null)
+		{
+			throw new NullPointerException("statisticsDirectory cannot be null");
+		}
+		NavigableMap<Date, Path> fileMap = statisticsFiles(statisticsDirectory);
+		if (from != null)
+		{
+			fileMap = fileMap.tailMap(from, true);
+		}
+		if (to != null)
+		{
+			fileMap = fileMap.headMap(to, false);
+		}
+		final List<CatalogStatistics> historyList = new ArrayList<CatalogStatistics>(fileMap.size());
+		for (Path statisticsFile: fileMap.values())
+		{
+			historyList.add(load(statisticsFile.toString()));
+		}
+		Collections.sort(historyList, new Comparator<CatalogStatistics>() {
+			@Override
+			public int compare(CatalogStatistics first, CatalogStatistics second)
+			{
+				return first.takenAt.compareTo(second.takenAt);
+			}
+		});
+		return historyList;
+	}
+
+	/**
+	 * Loads the statistics taken last before a time.  The file is picked by the time in its name,
+	 * only that file is read.
+	 * @param statisticsDirectory String
+	 * @param before Date first time excluded, null for the latest statistics
+	 * @return CatalogStatistics or null if there are none
+	 * @throws IOException
+	 */
+	public static CatalogStatistics loadLatest(String statisticsDirectory, Date before) throws IOException
+	{
+		if (statisticsDirectory == null)
+		{
+			throw new NullPointerException("statisticsDirectory cannot be null");
+		}
+		final NavigableMap<Date, Path> fileMap = statisticsFiles(statisticsDirectory);
+		final Map.Entry<Date, Path> latest = before == null ? fileMap.lastEntry() : fileMap.lowerEntry(before);
+		return latest == null ? null : load(latest.getValue().toString());
+	}
+
+	/**
+	 * @return NavigableMap<Date, Path> the statistics files of a directory by the time in their name
+	 */
+	private static NavigableMap<Date, Path> statisticsFiles(String statisticsDirectory) throws IOException
+	{
+		final NavigableMap<Date, Path> fileMap = new TreeMap<Date, Path>();
+		final Path directory = Paths.get(statisticsDirectory);
+		if (!Files.isDirectory(directory))
+		{
+			return fileMap;
+		}
+		final SimpleDateFormat timeFormat = fileTimeFormat();
+		try (DirectoryStream<Path> fileStream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX))
+		{
+			for (Path statisticsFile: fileStream)
+			{
+				final String name = statisticsFile.getFileName().toString();
+				try
+				{
+					fileMap.put(timeFormat.parse(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())), statisticsFile);
+				}
+				catch (ParseException e)
+				{
+					continue;
+				}
+			}
+		}
+		return fileMap;
+	}
+
+	private static SimpleDateFormat fileTimeFormat()
+	{
+		final SimpleDateFormat timeFormat = new SimpleDateFormat(FILE_TIME_FORMAT);
+		timeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		timeFormat.setLenient(false);
+		return timeFormat;
+	}
+
+	public Date getTakenAt()
+	{
+		return new Date(takenAt.getTime());
+	}
+
+	/**
+	 * @return List<String> bureau codes in the order first seen
+	 */
+	public List<String> getBureauCodeList()
+	{
+		return Collections.unmodifiableList(Arrays.asList(bureauCodes));
+	}
+
+	/**
+	 * @return String the bureau's name, empty if the datasets did not have one, null if the bureau is not here
+	 */
+	public String getBureauName(String bureauCode)
+	{
+		final Integer b = bureauNumberMap.get(bureauCode);
+		return b == null ? null : bureauNames[b];
+	}
+
+	public int getDatasetCount(String bureauCode)
+	{
+		final Integer b = bureauNumberMap.get(bureauCode);
+		return b == null ? 0 : bureauDatasetCounts[b];
+	}
+
+	public int getCompliantCount(String bureauCode)
+	{
+		final Integer b = bureauNumberMap.get(bureauCode);
+		return b == null ? 0 : bureauCompliantCounts[b];
+	}
+
+	/**
+	 * @return int every dataset counted, with or without a unique identifier
+	 */
+	public int size()
+	{
+		int size = 0;
+		for (int count: bureauDatasetCounts)
+		{
+			size += count;
+		}
+		return size;
+	}
+
+	/**
+	 * Returns true if other statistics describe the same datasets and bureaus, whenever they were taken.
+	 * @param other CatalogStatistics
+	 * @return boolean
+	 */
+	boolean hasSameContent(CatalogStatistics other)
+	{
+		return Arrays.equals(identifiers, other.identifiers) && Arrays.equals(fingerprints, other.fingerprints)
+				&& Arrays.equals(datasetBureaus, other.datasetBureaus) && Arrays.equals(bureauCodes, other.bureauCodes)
+				&& Arrays.equals(bureauNames, other.bureauNames) && Arrays.equals(bureauDatasetCounts, other.bureauDatasetCounts)
+				&& Arrays.equals(bureauCompliantCounts, other.bureauCompliantCounts);
+	}
+
+	/**
+	 * Counts, per bureau, the datasets added, updated and retired between older statistics and these.
+	 * Both are sorted by identifier, so this is one merge walk.  Added and updated datasets count for
+	 * their bureau here, retired ones for their bureau in the older statistics.
+	 * @param older CatalogStatistics
+	 * @param changeCountMap Map<String, int[]> bureau code to {added, updated, retired}, added to
+	 */
+	void countChangesSince(CatalogStatistics older, Map<String, int[]> changeCountMap)
+	{
+		int i = 0;
+		int o = 0;
+		while (i < identifiers.length || o < older.identifiers.length)
+		{
+			final int order = i == identifiers.length ? 1 : o == older.identifiers.length ? -1 : Long.compare(identifiers[i], older.identifiers[o]);
+			if (order < 0)
+			{
+				changeCounts(changeCountMap, bureauCodes[datasetBureaus[i]])[0]++;
+				i++;
+			}
+			else if (order > 0)
+			{
+				changeCounts(changeCountMap, older.bureauCodes[older.datasetBureaus[o]])[2]++;
+				o++;
+			}
+			else
+			{
+				if (fingerprints[i] != older.fingerprints[o])
+				{
+					changeCounts(changeCountMap, bureauCodes[datasetBureaus[i]])[1]++;
+				}
+				i++;
+				o++;
+			}
+		}
+	}
+
+	private static int[] changeCounts(Map<String, int[]> changeCountMap, String bureauCode)
+	{
+		int[] changeCounts = changeCountMap.get(bureauCode);
+		if (changeCounts == null)
+		{
+			changeCounts = new int[3];
+			changeCountMap.put(bureauCode, changeCounts);
+		}
+		return changeCounts;
+	}
+}
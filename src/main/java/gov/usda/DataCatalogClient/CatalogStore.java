@@ -0,0 +1,693 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The CatalogStore class keeps datasets on disk as records in an append-only log, with an in memory
+ * index from key to record position.
+ * <p>
+ * Every record holds one dataset as its raw JSON (a CKAN package or a Project Open Data dataset,
+ * @see RawDataset), so a catalog loads from the store with the same filters and projections as from a
+ * file (@see Catalog.loadFromStore).  Changing or deleting a dataset appends a record; nothing is
+ * written in place.  Point lookups read one record, full scans read the log front to back.
+ * <p>
+ * Layout, all numbers big endian:
+ * <pre>
+ * header   16 bytes: magic, version, long generation (changes on every compaction)
+ * record   int body length, int CRC32 of the body, then the body:
+ *          byte operation (put or delete), byte RawDataset.Format, int key length, key UTF-8,
+ *          int value length, value UTF-8 JSON
+ * </pre>
+ * A record with a bad length or checksum can only be the tail of a write cut short by a crash, the log
+ * is truncated there when it is opened.  close() writes a hint file with the index and the log length
+ * it covers, so the next open reads the hint and scans only the records appended after it; without a
+ * valid hint the whole log is scanned.  When superseded records outweigh live ones the log is compacted
+ * into a new file that replaces the old one with an atomic rename.
+ */
+public class CatalogStore implements Closeable {
+
+	public final static int MAGIC = 0x44434C47; //"DCLG"
+	public final static int HINT_MAGIC = 0x44434849; //"DCHI"
+	public final static int VERSION = 1;
+	public final static String HINT_SUFFIX = ".hint";
+
+	private final static int LOG_HEADER_SIZE = 16;
+	private final static int RECORD_HEADER_SIZE = 8;
+	//larger lengths are corruption, no dataset is this big
+	private final static int MAX_BODY_SIZE = 64 * 1024 * 1024;
+	private final static byte PUT = 1;
+	private final static byte DELETE = 2;
+	//logs smaller than this are never compacted
+	private final static long MIN_COMPACT_BYTES = 1024 * 1024;
+
+	private static final Logger log = Logger.getLogger(CatalogStore.class.getName());
+
+	private final Path logPath;
+	private final Path hintPath;
+	private final Map<String, Entry> entryMap;
+	private FileChannel channel;
+	private long generation;
+	private long logEnd;
+	private long liveBytes;
+
+	private CatalogStore(Path logPath)
+	{
+		this.logPath = logPath;
+		hintPath = Paths.get(logPath.toString() + HINT_SUFFIX);
+		entryMap = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Opens a store, creating an empty one if the file does not exist.
+	 * @param storeFileName String
+	 * @return CatalogStore
+	 * @throws IOException if the file is not a catalog store
+	 */
+	public static CatalogStore open(String storeFileName) throws IOException
+	{
+		if (storeFileName == null)
+		{
+			throw new NullPointerException("storeFileName cannot be null");
+		}
+		final CatalogStore store = new CatalogStore(Paths.get(storeFileName).toAbsolutePath());
+		store.openLog();
+		return store;
+	}
+
+	private void openLog() throws IOException
+	{
+		final boolean exists = Files.exists(logPath);
+		channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			if (!exists || channel.size() == 0)
+			{
+				generation = new Random().nextLong();
+				writeFully(channel, logHeader(generation), 0);
+				channel.force(true);
+				logEnd = LOG_HEADER_SIZE;
+				return;
+			}
+			final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+			readFully(channel, header, 0);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+			{
+				throw new IOException(logPath + " is not a version " + VERSION + " catalog store");
+			}
+			generation = header.getLong(8);
+			long scanFrom = LOG_HEADER_SIZE;
+			if (readHint())
+			{
+				scanFrom = logEnd;
+			}
+			else
+			{
+				entryMap.clear();
+				liveBytes = 0;
+			}
+			scanTail(scanFrom);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Replays the records from a position to the end of the log, truncating a torn last record.
+	 */
+	private void scanTail(long position) throws IOException
+	{
+		final long size = channel.size();
+		final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		while (position < size)
+		{
+			recordHeader.clear();
+			final Record record = position + RECORD_HEADER_SIZE <= size ? readRecord(position, recordHeader, size) : null;
+			if (record == null)
+			{
+				log.log(Level.WARNING, "Truncating " + logPath + " at " + position + ", the last record is incomplete");
+				channel.truncate(position);
+				channel.force(true);
+				break;
+			}
+			apply(record, position);
+			position += record.size;
+		}
+		logEnd = position;
+	}
+
+	/**
+	 * @return Record or null if the record at position is incomplete or its checksum does not match
+	 */
+	private Record readRecord(long position, ByteBuffer recordHeader, long size) throws IOException
+	{
+		readFully(channel, recordHeader, position);
+		final int bodyLength = recordHeader.getInt(0);
+		if (bodyLength < 10 || bodyLength > MAX_BODY_SIZE || position + RECORD_HEADER_SIZE + bodyLength > size)
+		{
+			return null;
+		}
+		final ByteBuffer body = ByteBuffer.allocate(bodyLength);
+		readFully(channel, body, position + RECORD_HEADER_SIZE);
+		final CRC32 crc = new CRC32();
+		crc.update(body.array(), 0, bodyLength);
+		if ((int) crc.getValue() != recordHeader.getInt(4))
+		{
+			return null;
+		}
+		return Record.decode(body.array(), RECORD_HEADER_SIZE + bodyLength);
+	}
+
+	private void apply(Record record, long position)
+	{
+		final Entry oldEntry = record.operation == PUT ? entryMap.put(record.key, new Entry(position, record.size))
+				: entryMap.remove(record.key);
+		if (oldEntry != null)
+		{
+			liveBytes -= oldEntry.size;
+		}
+		if (record.operation == PUT)
+		{
+			liveBytes += record.size;
+		}
+	}
+
+	/**
+	 * Stores a dataset under a key, replacing any earlier dataset with that key.
+	 * @param key String for example a unique identifier or a CKAN package id
+	 * @param rawDataset RawDataset
+	 * @throws IOException
+	 */
+	public synchronized void put(String key, RawDataset rawDataset) throws IOException
+	{
+		if (key == null || rawDataset == null)
+		{
+			throw new NullPointerException("key and rawDataset cannot be null");
+		}
+		append(new Record(PUT, rawDataset.getFormat(), key, rawDataset.getObject().toJSONString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Stores a dataset as Project Open Data JSON under its unique identifier.
+	 * @param ds Dataset
+	 * @throws IOException
+	 */
+	public void putDataset(Dataset ds) throws IOException
+	{
+		if (ds == null)
+		{
+			throw new NullPointerException("ds cannot be null");
+		}
+		if (ds.getUniqueIdentifier() == null)
+		{
+			throw new IllegalArgumentException("Dataset needs a unique identifier to be stored");
+		}
+		put(ds.getUniqueIdentifier(), RawDataset.fromProjectOpenData(ds.toProjectOpenDataJSON()));
+	}
+
+	/**
+	 * Removes a key.  Does nothing if the key is not in the store.
+	 * @param key String
+	 * @return boolean true if the key was in the store
+	 * @throws IOException
+	 */
+	public synchronized boolean delete(String key) throws IOException
+	{
+		if (key == null)
+		{
+			throw new NullPointerException("key cannot be null");
+		}
+		if (!entryMap.containsKey(key))
+		{
+			return false;
+		}
+		append(new Record(DELETE, RawDataset.Format.CKAN, key, new byte[0]));
+		return true;
+	}
+
+	/**
+	 * @param key String
+	 * @return RawDataset or null if the key is not in the store
+	 * @throws IOException
+	 */
+	public synchronized RawDataset get(String key) throws IOException
+	{
+		final Entry entry = entryMap.get(key);
+		if (entry == null)
+		{
+			return null;
+		}
+		final Record record = readRecord(entry.offset, ByteBuffer.allocate(RECORD_HEADER_SIZE), logEnd);
+		if (record == null)
+		{
+			throw new IOException("Record for " + key + " at " + entry.offset + " in " + logPath + " is corrupt");
+		}
+		return record.toRawDataset();
+	}
+
+	public synchronized boolean contains(String key)
+	{
+		return entryMap.containsKey(key);
+	}
+
+	public synchronized int size()
+	{
+		return entryMap.size();
+	}
+
+	/**
+	 * @return Set<String> a copy of the keys
+	 */
+	public synchronized Set<String> keySet()
+	{
+		return Collections.unmodifiableSet(new HashSet<String>(entryMap.keySet()));
+	}
+
+	/**
+	 * Receives each dataset of a scan.
+	 */
+	public interface StoreVisitor
+	{
+		void visit(String key, RawDataset rawDataset);
+	}
+
+	/**
+	 * Reads every live dataset in the order it was last written, with one sequential pass over the log.
+	 * @param visitor StoreVisitor
+	 * @throws IOException
+	 */
+	public synchronized void scan(StoreVisitor visitor) throws IOException
+	{
+		if (visitor == null)
+		{
+			throw new NullPointerException("visitor cannot be null");
+		}
+		try (InputStream in = new BufferedInputStream(Channels.newInputStream(FileChannel.open(logPath, StandardOpenOption.READ)), 1 << 16))
+		{
+			final DataInputStream dataIn = new DataInputStream(in);
+			dataIn.readFully(new byte[LOG_HEADER_SIZE]);
+			long position = LOG_HEADER_SIZE;
+			while (position < logEnd)
+			{
+				final int bodyLength = dataIn.readInt();
+				dataIn.readInt();
+				final byte[] body = new byte[bodyLength];
+				dataIn.readFully(body);
+				final Record record = Record.decode(body, RECORD_HEADER_SIZE + bodyLength);
+				final Entry entry = record.operation == PUT ? entryMap.get(record.key) : null;
+				if (entry != null && entry.offset == position)
+				{
+					visitor.visit(record.key, record.toRawDataset());
+				}
+				position += record.size;
+			}
+		}
+		catch (EOFException e)
+		{
+			throw new IOException(logPath + " is shorter than its index", e);
+		}
+	}
+
+	/**
+	 * Loads the datasets of a CKAN organization or search result file, keyed by CKAN package id.
+	 * The file is streamed and the store is synced once at the end.
+	 * @param catalogFileName String
+	 * @return int packages stored
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	public int importCKANFile(String catalogFileName) throws IOException, ParseException
+	{
+		if (catalogFileName == null)
+		{
+			throw new NullPointerException("catalogFileName cannot be null");
+		}
+		final List<IOException> errorList = new ArrayList<IOException>(1);
+		final int[] count = new int[1];
+		final DatasetStreamParser parser = new DatasetStreamParser(new DatasetStreamParser.DatasetCallback() {
+			@Override
+			public void dataset(JSONObject packageObject)
+			{
+				final Object id = packageObject.get(IncrementalHarvester.CKAN_PACKAGE_ID);
+				if (id == null || !errorList.isEmpty())
+				{
+					return;
+				}
+				try
+				{
+					put((String) id, RawDataset.fromCKAN(packageObject));
+					count[0]++;
+				}
+				catch (IOException e)
+				{
+					errorList.add(e);
+				}
+			}
+		}, Catalog.CKAN_CATALOG, Dataset.CKAN_DATASET);
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(catalogFileName), StandardCharsets.UTF_8))
+		{
+			parser.parse(reader);
+		}
+		if (!errorList.isEmpty())
+		{
+			throw errorList.get(0);
+		}
+		sync();
+		return count[0];
+	}
+
+	/**
+	 * Forces appended records to disk.
+	 * @throws IOException
+	 */
+	public synchronized void sync() throws IOException
+	{
+		channel.force(false);
+	}
+
+	/**
+	 * Rewrites the log with only the live records.  The new log replaces the old one with an atomic
+	 * rename, a crash during compaction leaves the old log in place.
+	 * @throws IOException
+	 */
+	public synchronized void compact() throws IOException
+	{
+		final List<Map.Entry<String, Entry>> liveList = new ArrayList<Map.Entry<String, Entry>>(entryMap.entrySet());
+		//copy in log order, the compacted log keeps the order of the last writes
+		Collections.sort(liveList, new Comparator<Map.Entry<String, Entry>>() {
+			@Override
+			public int compare(Map.Entry<String, Entry> first, Map.Entry<String, Entry> second)
+			{
+				return Long.compare(first.getValue().offset, second.getValue().offset);
+			}
+		});
+		final Path compactPath = Paths.get(logPath.toString() + ".compact");
+		final long newGeneration = new Random().nextLong();
+		final Map<String, Entry> newEntryMap = new HashMap<String, Entry>(entryMap.size() * 2);
+		long position = LOG_HEADER_SIZE;
+		try (FileChannel compactChannel = FileChannel.open(compactPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			writeFully(compactChannel, logHeader(newGeneration), 0);
+			for (Map.Entry<String, Entry> liveEntry: liveList)
+			{
+				final ByteBuffer recordBuffer = ByteBuffer.allocate(liveEntry.getValue().size);
+				readFully(channel, recordBuffer, liveEntry.getValue().offset);
+				recordBuffer.flip();
+				writeFully(compactChannel, recordBuffer, position);
+				newEntryMap.put(liveEntry.getKey(), new Entry(position, liveEntry.getValue().size));
+				position += liveEntry.getValue().size;
+			}
+			compactChannel.force(true);
+		}
+		channel.close();
+		Files.move(compactPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		generation = newGeneration;
+		entryMap.clear();
+		entryMap.putAll(newEntryMap);
+		logEnd = position;
+		liveBytes = position - LOG_HEADER_SIZE;
+		writeHint();
+	}
+
+	/**
+	 * @return long bytes of the log held by superseded and deleted records
+	 */
+	public synchronized long getGarbageBytes()
+	{
+		return logEnd - LOG_HEADER_SIZE - liveBytes;
+	}
+
+	/**
+	 * Syncs the log and writes the hint file so the next open does not scan the whole log.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (channel.isOpen())
+		{
+			channel.force(true);
+			writeHint();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Closes the log without syncing it or writing the hint file, as a crash would leave it.  For tests
+	 * of recovery.
+	 */
+	synchronized void abandon() throws IOException
+	{
+		channel.close();
+	}
+
+	private void append(Record record) throws IOException
+	{
+		final ByteBuffer recordBuffer = record.encode();
+		writeFully(channel, recordBuffer, logEnd);
+		apply(record, logEnd);
+		logEnd += record.size;
+		if (logEnd - LOG_HEADER_SIZE > MIN_COMPACT_BYTES && getGarbageBytes() > liveBytes)
+		{
+			compact();
+		}
+	}
+
+	private void writeHint() throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entryMap.size() * 64);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(HINT_MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(generation);
+		out.writeLong(logEnd);
+		out.writeLong(liveBytes);
+		out.writeInt(entryMap.size());
+		for (Map.Entry<String, Entry> entry: entryMap.entrySet())
+		{
+			final byte[] keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			out.writeInt(keyBytes.length);
+			out.write(keyBytes);
+			out.writeLong(entry.getValue().offset);
+			out.writeInt(entry.getValue().size);
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+
+		final Path tempPath = Files.createTempFile(hintPath.getParent(), hintPath.getFileName().toString(), ".tmp");
+		try
+		{
+			try (OutputStream fileOut = Files.newOutputStream(tempPath))
+			{
+				bytes.writeTo(fileOut);
+			}
+			Files.move(tempPath, hintPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	/**
+	 * Loads the index from the hint file if it belongs to this log.
+	 * @return boolean true if the hint was used, logEnd is then the position to scan from
+	 */
+	private boolean readHint() throws IOException
+	{
+		if (!Files.exists(hintPath))
+		{
+			return false;
+		}
+		final byte[] hintBytes = Files.readAllBytes(hintPath);
+		if (hintBytes.length < 44)
+		{
+			return false;
+		}
+		final CRC32 crc = new CRC32();
+		crc.update(hintBytes, 0, hintBytes.length - 8);
+		final ByteBuffer hint = ByteBuffer.wrap(hintBytes);
+		if (hint.getLong(hintBytes.length - 8) != crc.getValue() || hint.getInt() != HINT_MAGIC || hint.getInt() != VERSION
+				|| hint.getLong() != generation)
+		{
+			return false;
+		}
+		final long hintLogEnd = hint.getLong();
+		if (hintLogEnd > channel.size())
+		{
+			//the log lost records the hint knows about
+			return false;
+		}
+		logEnd = hintLogEnd;
+		liveBytes = hint.getLong();
+		final int count = hint.getInt();
+		for (int i = 0; i < count; i++)
+		{
+			final byte[] keyBytes = new byte[hint.getInt()];
+			hint.get(keyBytes);
+			entryMap.put(new String(keyBytes, StandardCharsets.UTF_8), new Entry(hint.getLong(), hint.getInt()));
+		}
+		return true;
+	}
+
+	private static ByteBuffer logHeader(long generation)
+	{
+		final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE);
+		header.putInt(MAGIC).putInt(VERSION).putLong(generation);
+		header.flip();
+		return header;
+	}
+
+	private static void writeFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			position += fileChannel.write(buffer, position);
+		}
+	}
+
+	private static void readFully(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			final int read = fileChannel.read(buffer, position);
+			if (read < 0)
+			{
+				throw new EOFException();
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Where the live record of a key is.
+	 */
+	private static class Entry
+	{
+		private final long offset;
+		private final int size;
+
+		private Entry(long offset, int size)
+		{
+			this.offset = offset;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * One record of the log.
+	 */
+	private static class Record
+	{
+		private final byte operation;
+		private final RawDataset.Format format;
+		private final String key;
+		private final byte[] value;
+		//header and body
+		private final int size;
+
+		private Record(byte operation, RawDataset.Format format, String key, byte[] value)
+		{
+			this.operation = operation;
+			this.format = format;
+			this.key = key;
+			this.value = value;
+			size = RECORD_HEADER_SIZE + 10 + key.getBytes(StandardCharsets.UTF_8).length + value.length;
+		}
+
+		private ByteBuffer encode()
+		{
+			final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+			final int bodyLength = 10 + keyBytes.length + value.length;
+			final ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodyLength);
+			buffer.putInt(bodyLength).putInt(0);
+			buffer.put(operation).put((byte) format.ordinal());
+			buffer.putInt(keyBytes.length).put(keyBytes);
+			buffer.putInt(value.length).put(value);
+			final CRC32 crc = new CRC32();
+			crc.update(buffer.array(), RECORD_HEADER_SIZE, bodyLength);
+			buffer.putInt(4, (int) crc.getValue());
+			buffer.flip();
+			return buffer;
+		}
+
+		private static Record decode(byte[] body, int size) throws IOException
+		{
+			final ByteBuffer buffer = ByteBuffer.wrap(body);
+			final byte operation = buffer.get();
+			final int formatOrdinal = buffer.get();
+			final int keyLength = buffer.getInt();
+			if ((operation != PUT && operation != DELETE) || formatOrdinal < 0 || formatOrdinal >= RawDataset.Format.values().length
+					|| keyLength < 0 || keyLength > body.length - 10)
+			{
+				throw new IOException("Invalid catalog store record");
+			}
+			final String key = new String(body, 6, keyLength, StandardCharsets.UTF_8);
+			buffer.position(6 + keyLength);
+			final int valueLength = buffer.getInt();
+			if (valueLength != body.length - 10 - keyLength)
+			{
+				throw new IOException("Invalid catalog store record");
+			}
+			final byte[] value = new byte[valueLength];
+			buffer.get(value);
+			final Record record = new Record(operation, RawDataset.Format.values()[formatOrdinal], key, value);
+			if (record.size != size)
+			{
+				throw new IOException("Invalid catalog store record");
+			}
+			return record;
+		}
+
+		private RawDataset toRawDataset() throws IOException
+		{
+			final JSONObject datasetObject;
+			try
+			{
+				datasetObject = Utils.loadJsonObjectFromString(new String(value, StandardCharsets.UTF_8));
+			}
+			catch (ParseException e)
+			{
+				throw new IOException("Record for " + key + " is not valid JSON: " + e.toString());
+			}
+			return format == RawDataset.Format.CKAN ? RawDataset.fromCKAN(datasetObject) : RawDataset.fromProjectOpenData(datasetObject);
+		}
+	}
+}
@@ -13,7 +13,6 @@ import java.util.logging.Logger;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 /**
@@ -146,6 +145,8 @@ public class Client {
 		out.close();
 		
 		Catalog catalog = new Catalog();
+		//one bureau is not a load of the department catalog
+		catalog.setStatisticsDirectory(null);
 		try{
 			catalog.loadFromProjectOpenDataJSON(bureauFileName);
 		}
@@ -194,6 +195,8 @@ public class Client {
 		out.close();
 		
 		Catalog catalog = new Catalog();
+		//one bureau is not a load of the department catalog
+		catalog.setStatisticsDirectory(null);
 		try{
 			catalog.loadCatalogFromJSONString(catalogJSONString);
 		}
@@ -213,14 +216,8 @@ public class Client {
 	private JSONArray getBureauList()
 	{
 		JSONArray bureauList = new JSONArray();
-    	String bureauJSONString = "";
-    	
 		try{
-    		bureauJSONString = new String(Files.readAllBytes(Paths.get("sample_data/bureau_reference_data.json")));
-			JSONParser parser = new JSONParser();
-			Object obj = new Object();
-			obj = parser.parse(bureauJSONString);
-			bureauList = (JSONArray)obj;
+			bureauList = BureauRegistry.getInstance().getBureauArray();
     	}
     	catch(IOException | ParseException pe)
     	{
@@ -272,6 +269,9 @@ public class Client {
 	public Catalog loadOrganizationsIntoCatalog(String downloadFilePath) throws CatalogException, IOException
 	{
 		Catalog entireCatalog = new Catalog();
+		//statistics are saved once every bureau is loaded, not after each one
+		final String statisticsDirectory = entireCatalog.getStatisticsDirectory();
+		entireCatalog.setStatisticsDirectory(null);
 		JSONArray bureauList = getBureauList();
     	
     	for (int i=0; i< bureauList.size(); i++)
@@ -285,6 +285,7 @@ public class Client {
     			{
     				Catalog bureauCatalog = new Catalog();
     				bureauCatalog = getCatalogFromNetwork(bureau, bureauFileName, downloadFilePath);
+    				bureauCatalog.setSource((String)bureau.get("bureau_abbreviation"));
     				entireCatalog.addFromOtherCatalog(bureauCatalog);
     			}
     			else
@@ -301,9 +302,73 @@ public class Client {
     			}
     		}
     	}
+    	entireCatalog.setStatisticsDirectory(statisticsDirectory);
+    	entireCatalog.saveStatistics();
     	return entireCatalog;
 	}
 	
+	/**
+	 * Loads every bureau in "bureau_reference_data.json" like loadOrganizationsIntoCatalog, but keeps
+	 * ckan/<downloadFilePath>/<bureau>-data.store current by downloading only the packages changed or deleted
+	 * since the last harvest @see IncrementalHarvester.  A bureau's -data.json from an earlier harvest is
+	 * imported into its new store @see CatalogStore
+	 * @param downloadFilePath
+	 * @return Catalog of every bureau
+	 * @throws CatalogException
+	 * @throws IOException
+	 */
+	public Catalog harvestOrganizationsIntoCatalog(String downloadFilePath) throws CatalogException, IOException
+	{
+		final IncrementalHarvester harvester;
+		try{
+			harvester = new IncrementalHarvester(new NetworkRequest(), "ckan/" + downloadFilePath);
+		}
+		catch(ParseException e)
+		{
+			throw (new CatalogException(e.toString()));
+		}
+		Catalog entireCatalog = new Catalog();
+		JSONArray bureauList = getBureauList();
+		for (int i=0; i< bureauList.size(); i++)
+		{
+			JSONObject bureau = (JSONObject) bureauList.get(i);
+			String bureauCkanIdentifier = (String) bureau.get("bureau_ckan_identifier");
+			if (bureauCkanIdentifier != null)
+			{
+				String bureauFilePrefix = "ckan/" + downloadFilePath +"/" + (String)bureau.get("bureau_abbreviation");
+				Catalog bureauCatalog = new Catalog();
+				bureauCatalog.setStatisticsDirectory(null);
+				try (CatalogStore store = CatalogStore.open(bureauFilePrefix + "-data.store"))
+				{
+					//carry over the JSON file of an earlier harvest once
+					File jsonFile = new File(bureauFilePrefix + "-data.json");
+					if (store.size() == 0 && jsonFile.exists())
+					{
+						store.importCKANFile(jsonFile.getPath());
+					}
+					try
+					{
+						log.log(Level.FINE, harvester.harvest(bureauCkanIdentifier, store).toString());
+					}
+					catch(IOException | ParseException e)
+					{
+						//keep going with what is in the store, the next harvest starts from the same mark
+						datasetErrors.add(e.toString());
+					}
+					bureauCatalog.loadFromStore(store, Catalog.DEFAULT_CKAN_FILTER, DatasetProjection.all());
+				}
+				catch(CatalogException | IOException | ParseException e)
+				{
+					datasetErrors.add(e.toString());
+				}
+				bureauCatalog.setSource((String)bureau.get("bureau_abbreviation"));
+				entireCatalog.addFromOtherCatalog(bureauCatalog);
+			}
+		}
+		entireCatalog.saveStatistics();
+		return entireCatalog;
+	}
+	
 	/**
 	 * Takes in a Project Open Data compliant Dataset object and creates this on CKAN server.
 	 * This will return the dataset created in that call.
@@ -0,0 +1,757 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The ColumnarCatalog class is a read only, column per field copy of a catalog for reports that
+ * count and filter many datasets at once.
+ * <p>
+ * Row n is the n-th dataset of the catalog it was built from.  Each field is one primitive array
+ * over all rows instead of a field of every Dataset:
+ * <ul>
+ * <li>Code fields (@see CodeField) hold an int per value, an index into a dictionary of the
+ * distinct values.  Bureau code, program code and media type can have several values per row and
+ * keep an offset array where row n's values are codes[offsets[n]] to codes[offsets[n + 1]].</li>
+ * <li>Date fields (@see DateField) hold the day since 1970-01-01 in UTC, NO_DATE when missing.</li>
+ * <li>Text fields (@see TextField) hold the characters of all rows in one char array with an offset
+ * array per row.</li>
+ * </ul>
+ * Filters return a BitSet of rows, like CatalogIndex.query, and combine with BitSet.and and or.
+ * Counts take a BitSet of rows and run as loops over the arrays, without touching a Dataset.
+ * <p>
+ * fromSnapshot builds the columns from a snapshot file one dataset at a time, so a catalog too big
+ * to hold as Dataset objects can still be counted.
+ */
+public class ColumnarCatalog {
+
+	/**
+	 * Dictionary encoded fields.  BUREAU_CODE, PROGRAM_CODE and MEDIA_TYPE (of the distributions)
+	 * have any number of values per dataset, the others one or none.
+	 */
+	public enum CodeField
+	{
+		BUREAU_CODE (true),
+		PROGRAM_CODE (true),
+		ACCESS_LEVEL (false),
+		LICENSE (false),
+		PUBLISHER (false),
+		MEDIA_TYPE (true);
+
+		private final boolean multiValued;
+
+		private CodeField(boolean multiValued)
+		{
+			this.multiValued = multiValued;
+		}
+
+		public boolean isMultiValued()
+		{
+			return multiValued;
+		}
+	};
+
+	public enum DateField
+	{
+		MODIFIED,
+		ISSUED,
+		METADATA_MODIFIED;
+	};
+
+	public enum TextField
+	{
+		IDENTIFIER,
+		TITLE;
+	};
+
+	/**
+	 * Day stored for a missing date.
+	 */
+	public final static int NO_DATE = Integer.MIN_VALUE;
+
+	private final static long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private final int rowCount;
+	private final EnumMap<CodeField, CodeColumn> codeColumnMap;
+	private final EnumMap<DateField, int[]> dateColumnMap;
+	private final EnumMap<TextField, TextColumn> textColumnMap;
+	private final int[] distributionCounts;
+
+	private ColumnarCatalog(Builder builder)
+	{
+		rowCount = builder.rowCount;
+		codeColumnMap = new EnumMap<CodeField, CodeColumn>(CodeField.class);
+		for (CodeField field: CodeField.values())
+		{
+			codeColumnMap.put(field, builder.codeBuilderMap.get(field).build(rowCount));
+		}
+		dateColumnMap = new EnumMap<DateField, int[]>(DateField.class);
+		for (DateField field: DateField.values())
+		{
+			dateColumnMap.put(field, Arrays.copyOf(builder.dateMap.get(field), rowCount));
+		}
+		textColumnMap = new EnumMap<TextField, TextColumn>(TextField.class);
+		for (TextField field: TextField.values())
+		{
+			textColumnMap.put(field, builder.textBuilderMap.get(field).build(rowCount));
+		}
+		distributionCounts = Arrays.copyOf(builder.distributionCounts, rowCount);
+	}
+
+	/**
+	 * Builds the columns of a catalog.  Rows follow the catalog's export order, the catalog itself
+	 * is not reordered.
+	 * @param catalog Catalog
+	 * @return ColumnarCatalog
+	 */
+	public static ColumnarCatalog of(Catalog catalog)
+	{
+		if (catalog == null)
+		{
+			throw new NullPointerException("catalog cannot be null");
+		}
+		final Builder builder = new Builder(catalog.size());
+		for (Dataset ds: catalog.getSortedDatasetList())
+		{
+			builder.add(ds);
+		}
+		return new ColumnarCatalog(builder);
+	}
+
+	/**
+	 * Builds the columns from a snapshot file without keeping the datasets @see CatalogSnapshot
+	 * @param snapshotFileName String
+	 * @param bureauCodes String... only the datasets of these bureaus, all datasets if none are given
+	 * @return ColumnarCatalog
+	 * @throws IOException
+	 */
+	public static ColumnarCatalog fromSnapshot(String snapshotFileName, String... bureauCodes) throws IOException
+	{
+		if (snapshotFileName == null || bureauCodes == null)
+		{
+			throw new NullPointerException("snapshotFileName and bureauCodes cannot be null");
+		}
+		final Builder builder = new Builder(1024);
+		CatalogSnapshot.read(snapshotFileName, new Catalog(), new CatalogSnapshot.SnapshotVisitor() {
+			@Override
+			public void dataset(Dataset ds, String datasetSource)
+			{
+				builder.add(ds);
+			}
+		}, bureauCodes);
+		return new ColumnarCatalog(builder);
+	}
+
+	public int size()
+	{
+		return rowCount;
+	}
+
+	/**
+	 * @return BitSet every row
+	 */
+	public BitSet all()
+	{
+		final BitSet rows = new BitSet(rowCount);
+		rows.set(0, rowCount);
+		return rows;
+	}
+
+	/**
+	 * @return BitSet rows with the value, for a multi valued field rows with the value among theirs
+	 */
+	public BitSet whereEquals(CodeField field, String value)
+	{
+		final CodeColumn column = column(field);
+		final BitSet rows = new BitSet(rowCount);
+		final int code = column.codeOf(value);
+		if (code < 0)
+		{
+			return rows;
+		}
+		final int[] codes = column.codes;
+		if (column.offsets == null)
+		{
+			for (int row = 0; row < rowCount; row++)
+			{
+				if (codes[row] == code)
+				{
+					rows.set(row);
+				}
+			}
+		}
+		else
+		{
+			final int[] offsets = column.offsets;
+			for (int row = 0; row < rowCount; row++)
+			{
+				for (int i = offsets[row]; i < offsets[row + 1]; i++)
+				{
+					if (codes[i] == code)
+					{
+						rows.set(row);
+						break;
+					}
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @return BitSet rows with no value for the field
+	 */
+	public BitSet whereMissing(CodeField field)
+	{
+		final CodeColumn column = column(field);
+		final BitSet rows = new BitSet(rowCount);
+		for (int row = 0; row < rowCount; row++)
+		{
+			if (column.offsets == null ? column.codes[row] < 0 : column.offsets[row] == column.offsets[row + 1])
+			{
+				rows.set(row);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @param field DateField
+	 * @param from Date first day included, null for no lower bound
+	 * @param to Date last day included, null for no upper bound
+	 * @return BitSet rows with a date in the range, rows without the date are never included
+	 */
+	public BitSet whereDateBetween(DateField field, Date from, Date to)
+	{
+		final int[] days = column(field);
+		final int fromDay = from == null ? NO_DATE + 1 : toDay(from);
+		final int toDay = to == null ? Integer.MAX_VALUE : toDay(to);
+		final BitSet rows = new BitSet(rowCount);
+		for (int row = 0; row < rowCount; row++)
+		{
+			if (days[row] >= fromDay && days[row] <= toDay)
+			{
+				rows.set(row);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @return BitSet rows without the date
+	 */
+	public BitSet whereMissing(DateField field)
+	{
+		final int[] days = column(field);
+		final BitSet rows = new BitSet(rowCount);
+		for (int row = 0; row < rowCount; row++)
+		{
+			if (days[row] == NO_DATE)
+			{
+				rows.set(row);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * @return BitSet rows whose text contains the given text, compared without regard to case
+	 */
+	public BitSet whereContains(TextField field, String text)
+	{
+		if (text == null)
+		{
+			throw new NullPointerException("text cannot be null");
+		}
+		final TextColumn column = column(field);
+		final char[] pattern = text.toLowerCase().toCharArray();
+		final BitSet rows = new BitSet(rowCount);
+		for (int row = 0; row < rowCount; row++)
+		{
+			final int end = column.offsets[row + 1] - pattern.length;
+			for (int start = column.offsets[row]; start <= end; start++)
+			{
+				int i = 0;
+				while (i < pattern.length && Character.toLowerCase(column.chars[start + i]) == pattern[i])
+				{
+					i++;
+				}
+				if (i == pattern.length)
+				{
+					rows.set(row);
+					break;
+				}
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Counts rows by value.  A row with several values counts once for each of them.
+	 * @param field CodeField
+	 * @param rows BitSet rows to count
+	 * @return Map<String, Integer> count by value, sorted by value, values without rows left out
+	 */
+	public Map<String, Integer> countBy(CodeField field, BitSet rows)
+	{
+		final CodeColumn column = column(field);
+		final int[] counts = new int[column.dictionary.length];
+		final int[] codes = column.codes;
+		final int[] offsets = column.offsets;
+		for (int row = rows.nextSetBit(0); row >= 0 && row < rowCount; row = rows.nextSetBit(row + 1))
+		{
+			if (offsets == null)
+			{
+				if (codes[row] >= 0)
+				{
+					counts[codes[row]]++;
+				}
+			}
+			else
+			{
+				for (int i = offsets[row]; i < offsets[row + 1]; i++)
+				{
+					counts[codes[i]]++;
+				}
+			}
+		}
+		final Map<String, Integer> countMap = new TreeMap<String, Integer>();
+		for (int code = 0; code < counts.length; code++)
+		{
+			if (counts[code] > 0)
+			{
+				countMap.put(column.dictionary[code], counts[code]);
+			}
+		}
+		return countMap;
+	}
+
+	/**
+	 * @return Map<String, Integer> count of rows by month of the date as yyyy-MM, sorted, rows without the date left out
+	 */
+	public Map<String, Integer> countByMonth(DateField field, BitSet rows)
+	{
+		final int[] days = column(field);
+		final Map<Integer, int[]> monthCountMap = new HashMap<Integer, int[]>();
+		for (int row = rows.nextSetBit(0); row >= 0 && row < rowCount; row = rows.nextSetBit(row + 1))
+		{
+			if (days[row] == NO_DATE)
+			{
+				continue;
+			}
+			final LocalDate day = LocalDate.ofEpochDay(days[row]);
+			final Integer month = day.getYear() * 12 + day.getMonthValue() - 1;
+			int[] count = monthCountMap.get(month);
+			if (count == null)
+			{
+				count = new int[1];
+				monthCountMap.put(month, count);
+			}
+			count[0]++;
+		}
+		final Map<String, Integer> countMap = new TreeMap<String, Integer>();
+		for (Map.Entry<Integer, int[]> monthEntry: monthCountMap.entrySet())
+		{
+			countMap.put(String.format("%04d-%02d", monthEntry.getKey() / 12, monthEntry.getKey() % 12 + 1), monthEntry.getValue()[0]);
+		}
+		return countMap;
+	}
+
+	/**
+	 * @return Date the earliest date of the rows, null if none of them has the date
+	 */
+	public Date minDate(DateField field, BitSet rows)
+	{
+		final int[] days = column(field);
+		int min = Integer.MAX_VALUE;
+		for (int row = rows.nextSetBit(0); row >= 0 && row < rowCount; row = rows.nextSetBit(row + 1))
+		{
+			if (days[row] != NO_DATE && days[row] < min)
+			{
+				min = days[row];
+			}
+		}
+		return min == Integer.MAX_VALUE ? null : toDate(min);
+	}
+
+	/**
+	 * @return Date the latest date of the rows, null if none of them has the date
+	 */
+	public Date maxDate(DateField field, BitSet rows)
+	{
+		final int[] days = column(field);
+		int max = NO_DATE;
+		for (int row = rows.nextSetBit(0); row >= 0 && row < rowCount; row = rows.nextSetBit(row + 1))
+		{
+			if (days[row] > max)
+			{
+				max = days[row];
+			}
+		}
+		return max == NO_DATE ? null : toDate(max);
+	}
+
+	/**
+	 * @return long total distributions of the rows
+	 */
+	public long sumDistributions(BitSet rows)
+	{
+		long sum = 0;
+		for (int row = rows.nextSetBit(0); row >= 0 && row < rowCount; row = rows.nextSetBit(row + 1))
+		{
+			sum += distributionCounts[row];
+		}
+		return sum;
+	}
+
+	public int getDistributionCount(int row)
+	{
+		checkRow(row);
+		return distributionCounts[row];
+	}
+
+	/**
+	 * @return List<String> the values of a row, empty if it has none
+	 */
+	public List<String> getValues(CodeField field, int row)
+	{
+		checkRow(row);
+		final CodeColumn column = column(field);
+		if (column.offsets == null)
+		{
+			return column.codes[row] < 0 ? Collections.<String>emptyList() : Collections.singletonList(column.dictionary[column.codes[row]]);
+		}
+		final List<String> valueList = new ArrayList<String>(column.offsets[row + 1] - column.offsets[row]);
+		for (int i = column.offsets[row]; i < column.offsets[row + 1]; i++)
+		{
+			valueList.add(column.dictionary[column.codes[i]]);
+		}
+		return valueList;
+	}
+
+	/**
+	 * @return List<String> the distinct values of a field in the order they were first seen
+	 */
+	public List<String> getDictionary(CodeField field)
+	{
+		return Collections.unmodifiableList(Arrays.asList(column(field).dictionary));
+	}
+
+	/**
+	 * @return Date midnight UTC of the row's day, null if it has no date
+	 */
+	public Date getDate(DateField field, int row)
+	{
+		checkRow(row);
+		final int day = column(field)[row];
+		return day == NO_DATE ? null : toDate(day);
+	}
+
+	/**
+	 * @return int the row's day since 1970-01-01 UTC, NO_DATE if it has no date
+	 */
+	public int getDay(DateField field, int row)
+	{
+		checkRow(row);
+		return column(field)[row];
+	}
+
+	/**
+	 * @return String the row's text, null if the dataset had none
+	 */
+	public String getText(TextField field, int row)
+	{
+		checkRow(row);
+		final TextColumn column = column(field);
+		if (column.nullRows.get(row))
+		{
+			return null;
+		}
+		return new String(column.chars, column.offsets[row], column.offsets[row + 1] - column.offsets[row]);
+	}
+
+	/**
+	 * @return int day since 1970-01-01 UTC of the date
+	 */
+	public static int toDay(Date date)
+	{
+		return (int) Math.floorDiv(date.getTime(), MILLIS_PER_DAY);
+	}
+
+	private static Date toDate(int day)
+	{
+		return new Date(day * MILLIS_PER_DAY);
+	}
+
+	private void checkRow(int row)
+	{
+		if (row < 0 || row >= rowCount)
+		{
+			throw new IndexOutOfBoundsException("row " + row + " of " + rowCount);
+		}
+	}
+
+	private CodeColumn column(CodeField field)
+	{
+		if (field == null)
+		{
+			throw new NullPointerException("field cannot be null");
+		}
+		return codeColumnMap.get(field);
+	}
+
+	private int[] column(DateField field)
+	{
+		if (field == null)
+		{
+			throw new NullPointerException("field cannot be null");
+		}
+		return dateColumnMap.get(field);
+	}
+
+	private TextColumn column(TextField field)
+	{
+		if (field == null)
+		{
+			throw new NullPointerException("field cannot be null");
+		}
+		return textColumnMap.get(field);
+	}
+
+	/**
+	 * A dictionary encoded column, offsets is null for a single valued field and codes is -1 for no value.
+	 */
+	private static final class CodeColumn
+	{
+		private final String[] dictionary;
+		private final int[] codes;
+		private final int[] offsets;
+
+		private CodeColumn(String[] dictionary, int[] codes, int[] offsets)
+		{
+			this.dictionary = dictionary;
+			this.codes = codes;
+			this.offsets = offsets;
+		}
+
+		private int codeOf(String value)
+		{
+			for (int code = 0; code < dictionary.length; code++)
+			{
+				if (dictionary[code].equals(value))
+				{
+					return code;
+				}
+			}
+			return -1;
+		}
+	}
+
+	private static final class TextColumn
+	{
+		private final char[] chars;
+		private final int[] offsets;
+		private final BitSet nullRows;
+
+		private TextColumn(char[] chars, int[] offsets, BitSet nullRows)
+		{
+			this.chars = chars;
+			this.offsets = offsets;
+			this.nullRows = nullRows;
+		}
+	}
+
+	/**
+	 * Appends datasets to growing column arrays.
+	 */
+	private static final class Builder
+	{
+		private int rowCount;
+		private final EnumMap<CodeField, CodeBuilder> codeBuilderMap;
+		private final EnumMap<DateField, int[]> dateMap;
+		private final EnumMap<TextField, TextBuilder> textBuilderMap;
+		private int[] distributionCounts;
+		private final List<String> valueList;
+
+		private Builder(int capacity)
+		{
+			capacity = Math.max(capacity, 16);
+			codeBuilderMap = new EnumMap<CodeField, CodeBuilder>(CodeField.class);
+			for (CodeField field: CodeField.values())
+			{
+				codeBuilderMap.put(field, new CodeBuilder(field.isMultiValued(), capacity));
+			}
+			dateMap = new EnumMap<DateField, int[]>(DateField.class);
+			for (DateField field: DateField.values())
+			{
+				dateMap.put(field, new int[capacity]);
+			}
+			textBuilderMap = new EnumMap<TextField, TextBuilder>(TextField.class);
+			for (TextField field: TextField.values())
+			{
+				textBuilderMap.put(field, new TextBuilder(capacity));
+			}
+			distributionCounts = new int[capacity];
+			valueList = new ArrayList<String>();
+		}
+
+		private void add(Dataset ds)
+		{
+			if (rowCount == distributionCounts.length)
+			{
+				final int capacity = rowCount * 2;
+				for (DateField field: DateField.values())
+				{
+					dateMap.put(field, Arrays.copyOf(dateMap.get(field), capacity));
+				}
+				distributionCounts = Arrays.copyOf(distributionCounts, capacity);
+			}
+			codeBuilderMap.get(CodeField.BUREAU_CODE).add(ds.getBureauCodeList());
+			codeBuilderMap.get(CodeField.PROGRAM_CODE).add(ds.getProgramCodeList());
+			codeBuilderMap.get(CodeField.ACCESS_LEVEL).add(ds.getAccessLevel());
+			codeBuilderMap.get(CodeField.LICENSE).add(ds.getLicense());
+			codeBuilderMap.get(CodeField.PUBLISHER).add(ds.getPublisher() == null ? null : ds.getPublisher().getName());
+			valueList.clear();
+			final List<Distribution> distributionList = ds.getDistributionList();
+			if (distributionList != null)
+			{
+				for (Distribution distribution: distributionList)
+				{
+					if (distribution.getMediaType() != null && !valueList.contains(distribution.getMediaType()))
+					{
+						valueList.add(distribution.getMediaType());
+					}
+				}
+			}
+			codeBuilderMap.get(CodeField.MEDIA_TYPE).add(valueList);
+			dateMap.get(DateField.MODIFIED)[rowCount] = ds.getModified() == null ? NO_DATE : toDay(ds.getModified());
+			dateMap.get(DateField.ISSUED)[rowCount] = ds.getIssued() == null ? NO_DATE : toDay(ds.getIssued());
+			dateMap.get(DateField.METADATA_MODIFIED)[rowCount] = ds.getMetadataModifiedDate() == null ? NO_DATE : toDay(ds.getMetadataModifiedDate());
+			textBuilderMap.get(TextField.IDENTIFIER).add(ds.getUniqueIdentifier(), rowCount);
+			textBuilderMap.get(TextField.TITLE).add(ds.getTitle(), rowCount);
+			distributionCounts[rowCount] = distributionList == null ? 0 : distributionList.size();
+			rowCount++;
+		}
+	}
+
+	private static final class CodeBuilder
+	{
+		private final Map<String, Integer> codeMap;
+		private final List<String> dictionaryList;
+		private int[] codes;
+		private int codeCount;
+		private int[] offsets;
+		private int rowCount;
+
+		private CodeBuilder(boolean multiValued, int capacity)
+		{
+			codeMap = new HashMap<String, Integer>();
+			dictionaryList = new ArrayList<String>();
+			codes = new int[capacity];
+			offsets = multiValued ? new int[capacity + 1] : null;
+		}
+
+		private int code(String value)
+		{
+			Integer code = codeMap.get(value);
+			if (code == null)
+			{
+				code = dictionaryList.size();
+				codeMap.put(value, code);
+				dictionaryList.add(value);
+			}
+			return code;
+		}
+
+		private void add(String value)
+		{
+			if (codeCount == codes.length)
+			{
+				codes = Arrays.copyOf(codes, codes.length * 2);
+			}
+			codes[codeCount++] = value == null ? -1 : code(value);
+			rowCount++;
+		}
+
+		private void add(List<String> valueList)
+		{
+			if (valueList != null)
+			{
+				for (String value: valueList)
+				{
+					if (value == null)
+					{
+						continue;
+					}
+					if (codeCount == codes.length)
+					{
+						codes = Arrays.copyOf(codes, codes.length * 2);
+					}
+					codes[codeCount++] = code(value);
+				}
+			}
+			rowCount++;
+			if (rowCount == offsets.length)
+			{
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[rowCount] = codeCount;
+		}
+
+		private CodeColumn build(int rows)
+		{
+			return new CodeColumn(dictionaryList.toArray(new String[dictionaryList.size()]), Arrays.copyOf(codes, codeCount),
+					offsets == null ? null : Arrays.copyOf(offsets, rows + 1));
+		}
+	}
+
+	private static final class TextBuilder
+	{
+		private char[] chars;
+		private int charCount;
+		private int[] offsets;
+		private final BitSet nullRows;
+
+		private TextBuilder(int capacity)
+		{
+			chars = new char[capacity * 32];
+			offsets = new int[capacity + 1];
+			nullRows = new BitSet();
+		}
+
+		private void add(String value, int row)
+		{
+			if (value == null)
+			{
+				nullRows.set(row);
+				value = "";
+			}
+			if (charCount + value.length() > chars.length)
+			{
+				chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + value.length()));
+			}
+			value.getChars(0, value.length(), chars, charCount);
+			charCount += value.length();
+			if (row + 2 > offsets.length)
+			{
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[row + 1] = charCount;
+		}
+
+		private TextColumn build(int rows)
+		{
+			return new TextColumn(Arrays.copyOf(chars, charCount), Arrays.copyOf(offsets, rows + 1), nullRows);
+		}
+	}
+}
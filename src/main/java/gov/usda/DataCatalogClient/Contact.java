@@ -1,5 +1,8 @@
 package gov.usda.DataCatalogClient;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.validator.routines.EmailValidator;
@@ -90,6 +93,26 @@ public class Contact {
 		return contactPointMap;
 	}
 	
+	/**
+	 * Writes this contact to a catalog snapshot @see CatalogSnapshot
+	 */
+	void writeSnapshot(CatalogSnapshot.Output out)
+	{
+		out.writeString(emailAddress);
+		out.writeString(fullName);
+		out.writeString(type);
+	}
+
+	/**
+	 * Reads the fields written by writeSnapshot, as saved and without validation.
+	 */
+	void readSnapshot(CatalogSnapshot.Input in)
+	{
+		emailAddress = in.readString();
+		fullName = in.readString();
+		type = in.readString();
+	}
+	
 	/**
 	 * This method takes in a Project Open Data contactPoint json file.
 	 * 
@@ -159,6 +182,21 @@ public class Contact {
 		return contactElement;
 	}
 	
+	/**
+	 * Writes this contact as a legacy XML contactPoint element, the same element
+	 * toLegacyXML(Document) builds, straight to a stream.
+	 * @param writer XMLStreamWriter
+	 * @throws XMLStreamException
+	 */
+	public void toLegacyXML(XMLStreamWriter writer) throws XMLStreamException
+	{
+		writer.writeStartElement("contactPoint");
+		Utils.writeLegacyXMLField(writer, "emailAddress", emailAddress);
+		Utils.writeLegacyXMLField(writer, "fn", fullName);
+		Utils.writeLegacyXMLField(writer, "type", type);
+		writer.writeEndElement();
+	}
+	
 	//TODO: Consolidate this method with dataset level
 		private Element fieldToLegacyXML(String elementName, String elementValue, Document doc)
 		{
@@ -16,6 +16,8 @@ import java.util.regex.Pattern;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -272,7 +274,7 @@ public class Dataset implements Comparable<Dataset> {
 		{
 			case CKAN_DATASET_ACCESS_LEVEL: setAccessLevel(value); break;
 			case CKAN_DATASET_ACCRUAL_PERIODICITY: setAccrualPeriodicity(value); break;
-			case CKAN_DATASET_BUREAU_CODE_LIST: setBureauCodeList(value); break;
+			case CKAN_DATASET_BUREAU_CODE_LIST: setBureauCodeListFromCSV(value); break;
 			case CKAN_DATASET_CONFORMS_TO: setConformsTo(value); break;
 			case CKAN_DATASET_DATA_QUALITY:
 			case CKAN_DATASET_DATA_QUALITY_LEGACY: setDataQuality(value); break;
@@ -289,7 +291,7 @@ public class Dataset implements Comparable<Dataset> {
 			case CKAN_DATASET_MODIFIED: setModified(value); break;
 			case CKAN_DATASET_PRIMARY_IT_INVESTMENT_UII: setPrimaryITInvestmentUII(value); break;
 			case CKAN_DATASET_PROGRAM_CODE: 
-			case CKAN_DATASET_PROGRAM_CODE_LEGACY: setProgramCodeList(value); break;
+			case CKAN_DATASET_PROGRAM_CODE_LEGACY: setProgramCodeListFromCSV(value); break;
 			case CKAN_DATASET_REFERENCES: setReferenceList(value); break;
 			case CKAN_DATASET_RIGHTS: setRights(value); break;
 			case CKAN_DATASET_SPATIAL:
@@ -321,7 +323,6 @@ public class Dataset implements Comparable<Dataset> {
 	/**
 	 * This method takes a key and value using the DKAN Extra format and converts it to 
 	 * DCAT/Project Open Data.
-	 * Hardcoding values for ARS
 	 * @param key String The key in the CKAN extra field.
 	 * @param value String The value in the CKAN extra fields
 	 * @throws ParseException  This will be thrown if the dates: issued or modified is not valid iso dates
@@ -330,12 +331,6 @@ public class Dataset implements Comparable<Dataset> {
 	{
 		Publisher subOrganization = null;
 		
-		//TODO:  terribly inefficient, gets called on every iteration
-		publisher.setName("Agricultural Research Service, Department of Agriculture");
-		setBureauCodeList("005:18");
-		setProgramCodeList("005:040");
-		
-		
 		value.trim();
 		switch (key)
 		{
@@ -504,6 +499,8 @@ public class Dataset implements Comparable<Dataset> {
 	    	// This is coming from Ag Data Commons which uses 
 	    	final JSONObject dkanExtraList = (JSONObject) datasetCKAN_JSON.get("dkan_additional_fields");
 	    	loadExtraListFromDKAN(dkanExtraList);
+	    	//Ag Data Commons leaves out bureau, program and publisher, the ARS values win over any extras
+	    	DefaultCodeStage.AG_DATA_COMMONS.apply(this);
 	    }
 	    else
 	    {
@@ -725,135 +722,19 @@ public class Dataset implements Comparable<Dataset> {
 	
 	/**
 	 * This is to use Apache CSVParser
-	 * @return
+	 * @return List<String> the CSV row of this dataset, one value per DatasetCSVColumn
 	 */
 	public List<String> datasetToListString()
 	{
-		List<String> datasetString = new ArrayList<String>();
-		datasetString.add(bureauName);
-		datasetString.add(title);
-		datasetString.add(description);
-		
-		//TODO: move to distribution class
-    	if (distributionList.size() > 0)
-		{
-    		String mediaTypeString = "";
-			String downloadURLString = "";
-			for (int i=0; i< distributionList.size(); i++)
-    		{
-    			if (i > 0)
-    			{
-    				downloadURLString = downloadURLString  + ", ";
-    				mediaTypeString = mediaTypeString + ", ";
-    			}
-				Distribution outputDistribution = distributionList.get(i);
-				mediaTypeString = mediaTypeString + outputDistribution.getMediaType();
-				
-				downloadURLString = downloadURLString + outputDistribution.getDownloadURL();
-    		}
-			datasetString.add(mediaTypeString);
-			datasetString.add(downloadURLString);
-		}
-
-    	datasetString.add(accrualPeriodicity);
-    	datasetString.add(bureauCodeList.get(0));
-    	datasetString.add(contactPoint.getEmailAddress());
-    	datasetString.add(contactPoint.getFullName());
-    	if (landingPage != null)
-    	{
-    		datasetString.add(landingPage.toString());
-    	}
-    	else
-    	{
-    		datasetString.add(null);
-    	}
-    	String programCodeString = "";
-    	for (int i=0; i < programCodeList.size(); i++)
-		{
-    		programCodeString = programCodeString + programCodeList.get(i) + ";";
-		}
-    	datasetString.add(programCodeString);
-    	datasetString.add(publisher.getName());
-    	datasetString.add(accessLevel);
-    	datasetString.add(rights );
-    	String keywordString = "";
-    	for (int i=0; i < keywordList.size(); i++)
-		{
-    		keywordString = keywordString + keywordList.get(i) + ";";
-		}
-    	datasetString.add(keywordString);
-    	datasetString.add(Utils.convertDateToISOString(modified));
-    	if (issued != null)
-    	{
-    		datasetString.add(Utils.convertDateToISOString(issued));
-    	}
-    	else
-    	{
-    		datasetString.add(null);
-    	}
-    	datasetString.add(uniqueIdentifier);
-    	datasetString.add(describedBy);
-    	datasetString.add(license);
-    	datasetString.add(spatial);
-    	datasetString.add(temporal);
-    	datasetString.add(systemOfRecords);
-    	if (dataQuality != null)
-    	{
-    		datasetString.add(dataQuality.toString());
-    	}
-    	else
-    	{
-    		datasetString.add(null);
-    	}
-    	String languageListString = "";
-    	for (int i=0; i < languageList.size(); i++)
-    	{
-    		languageListString = languageListString + languageList.get(i) + ";";
-		}
-    	datasetString.add(languageListString);
-    	String themeListString = "";
-    	for (int i=0; i < themeList.size(); i++)
-		{
-    		themeListString = themeListString + themeList.get(i) + ";";
-		}
-    	datasetString.add(themeListString);
-    	String referenceListString = "";
-    	for (int i=0; i < referenceList.size(); i++)
+		final DatasetCSVColumn[] columns = DatasetCSVColumn.values();
+		final List<String> datasetString = new ArrayList<String>(columns.length);
+		final StringBuilder builder = new StringBuilder();
+		for (DatasetCSVColumn column: columns)
 		{
-    		referenceListString = referenceListString + referenceList.get(i) + ";";
+			builder.setLength(0);
+			datasetString.add(column.value(this, builder));
 		}
-    	datasetString.add(referenceListString);
-    	
-    	if (metadataCreatedDate != null)
-    	{
-    		datasetString.add(Utils.convertDateToISOString(metadataCreatedDate));
-    	}
-    	else
-    	{
-    		datasetString.add(null);
-    	}
-    	if (metadataModifiedDate != null)
-    	{
-    		datasetString.add(Utils.convertDateToISOString(metadataModifiedDate));
-    	}
-    	else
-    	{
-    		datasetString.add(null);
-    	}
-    	if (revisionTimeStamp != null)
-    	{
-    		datasetString.add(Utils.convertDateToISOString(revisionTimeStamp));
-    	}
-    	else
-    	{
-    		datasetString.add(null);
-    	}
-    	if (!(isPartOf == null) && !isPartOf.equals("false"))
-    	{
-    		datasetString.add(isPartOf);
-    	}
-    	
-    	return datasetString;
+		return datasetString;
 	}
 	
 	/**
@@ -950,6 +831,126 @@ public class Dataset implements Comparable<Dataset> {
 		return dataSetJSON;
 	}
 	
+	/**
+	 * Writes every field of this dataset, with its distributions, contact point and publisher, to a
+	 * catalog snapshot @see CatalogSnapshot
+	 */
+	void writeSnapshot(CatalogSnapshot.Output out)
+	{
+		out.writeString(title);
+		out.writeString(description);
+		out.writeDate(issued);
+		out.writeDate(modified);
+		out.writeStringList(keywordList);
+		out.writeStringList(languageList);
+		out.writeStringList(themeList);
+		out.writeString(temporal);
+		out.writeString(spatial);
+		out.writeString(accrualPeriodicity);
+		out.writeURL(landingPage);
+		out.writeByte(publisher == null ? 0 : 1);
+		if (publisher != null)
+		{
+			publisher.writeSnapshot(out);
+		}
+		out.writeByte(contactPoint == null ? 0 : 1);
+		if (contactPoint != null)
+		{
+			contactPoint.writeSnapshot(out);
+		}
+		out.writeVarLong(distributionList == null ? 0 : distributionList.size() + 1);
+		if (distributionList != null)
+		{
+			for (Distribution distribution: distributionList)
+			{
+				distribution.writeSnapshot(out);
+			}
+		}
+		out.writeString(accessLevel);
+		out.writeStringList(bureauCodeList);
+		out.writeString(conformsTo);
+		out.writeBoolean(dataQuality);
+		out.writeString(describedBy);
+		out.writeString(describedByType);
+		out.writeString(isPartOf);
+		out.writeString(license);
+		out.writeStringList(programCodeList);
+		out.writeString(primaryITInvestmentUII);
+		out.writeStringList(referenceList);
+		out.writeString(rights);
+		out.writeString(systemOfRecords);
+		out.writeString(uniqueIdentifier);
+		out.writeDate(metadataModifiedDate);
+		out.writeDate(metadataCreatedDate);
+		out.writeDate(revisionTimeStamp);
+		out.writeString(ownerOrganization);
+		out.writeString(comments);
+		out.writeString(webService);
+		out.writeString(bureauName);
+		out.writeString(bureauAbbreviation);
+	}
+	
+	/**
+	 * Reads the fields written by writeSnapshot.  The values are taken as saved, they were validated
+	 * when the dataset was first loaded.
+	 */
+	void readSnapshot(CatalogSnapshot.Input in) throws IOException
+	{
+		title = in.readString();
+		description = in.readString();
+		issued = in.readDate();
+		modified = in.readDate();
+		keywordList = in.readStringList();
+		languageList = in.readStringList();
+		themeList = in.readStringList();
+		temporal = in.readString();
+		spatial = in.readString();
+		accrualPeriodicity = in.readString();
+		landingPage = in.readURL();
+		publisher = null;
+		if (in.readByte() != 0)
+		{
+			publisher = new Publisher();
+			publisher.readSnapshot(in);
+		}
+		contactPoint = null;
+		if (in.readByte() != 0)
+		{
+			contactPoint = new Contact();
+			contactPoint.readSnapshot(in);
+		}
+		final int distributionCount = in.readVarInt();
+		distributionList = distributionCount == 0 ? null : new ArrayList<Distribution>(distributionCount - 1);
+		for (int i = 1; i < distributionCount; i++)
+		{
+			final Distribution distribution = new Distribution();
+			distribution.readSnapshot(in);
+			distributionList.add(distribution);
+		}
+		accessLevel = in.readString();
+		bureauCodeList = in.readStringList();
+		conformsTo = in.readString();
+		dataQuality = in.readBoolean();
+		describedBy = in.readString();
+		describedByType = in.readString();
+		isPartOf = in.readString();
+		license = in.readString();
+		programCodeList = in.readStringList();
+		primaryITInvestmentUII = in.readString();
+		referenceList = in.readStringList();
+		rights = in.readString();
+		systemOfRecords = in.readString();
+		uniqueIdentifier = in.readString();
+		metadataModifiedDate = in.readDate();
+		metadataCreatedDate = in.readDate();
+		revisionTimeStamp = in.readDate();
+		ownerOrganization = in.readString();
+		comments = in.readString();
+		webService = in.readString();
+		bureauName = in.readString();
+		bureauAbbreviation = in.readString();
+	}
+	
 	/**
 	 * Converts Project Open Data compliant JSONObject to class Dataset
 	 * <p>
@@ -1329,6 +1330,15 @@ public class Dataset implements Comparable<Dataset> {
 		}
 	}
 	
+	//CKAN can send this as a comma delimited field, as toCKAN_JSON writes it
+	private void setBureauCodeListFromCSV(String bureauCodeListString) throws ParseException
+	{
+		for (String bureauCode: bureauCodeListString.split(","))
+		{
+			setBureauCodeList(bureauCode.trim());
+		}
+	}
+	
 	/**
 	 * This method is called from POD 1.1 import.  it calls setBureauCodeList with string
 	 * for additional validatins
@@ -1422,6 +1432,15 @@ public class Dataset implements Comparable<Dataset> {
 		}
 	}
 	
+	//CKAN can send this as a comma delimited field, as toCKAN_JSON writes it
+	private void setProgramCodeListFromCSV(String programCodeListString) throws ParseException
+	{
+		for (String programCode: programCodeListString.split(","))
+		{
+			setProgramCodeList(programCode.trim());
+		}
+	}
+	
 	public void setProgramCodeList(JSONArray programArray) throws ParseException
 	{
 		if (programArray == null)
@@ -1620,6 +1639,22 @@ public class Dataset implements Comparable<Dataset> {
 		this.ownerOrganization = ownerOrganization;
 	}
 
+	public Publisher getPublisher() {
+		return publisher;
+	}
+
+	public void setPublisher(Publisher publisher) {
+		this.publisher = publisher;
+	}
+
+	public Contact getContactPoint() {
+		return contactPoint;
+	}
+
+	public void setContactPoint(Contact contactPoint) {
+		this.contactPoint = contactPoint;
+	}
+
 	public List<Distribution> getDistributionList() {
 		return distributionList;
 	}
@@ -1822,6 +1857,65 @@ public class Dataset implements Comparable<Dataset> {
 	
 	
 	
+	/**
+	 * Writes this dataset as a legacy XML dataset element, the same element toLegacyXML(Document)
+	 * builds, straight to a stream.
+	 * @param writer XMLStreamWriter
+	 * @throws XMLStreamException
+	 */
+	public void toLegacyXML(XMLStreamWriter writer) throws XMLStreamException
+	{
+		writer.writeStartElement("dataset");
+		Utils.writeLegacyXMLField(writer, "title", title);
+		Utils.writeLegacyXMLField(writer, "description", description);
+		Utils.writeLegacyXMLField(writer, "accessLevel", accessLevel);
+		Utils.writeLegacyXMLField(writer, "accrualPeriodicity", accrualPeriodicity);
+		Utils.writeLegacyXMLField(writer, "conformsTo", conformsTo);
+		Utils.writeLegacyXMLField(writer, "dataQuality", dataQuality == null ? null : dataQuality.toString());
+		Utils.writeLegacyXMLField(writer, "describedBy", describedBy);
+		Utils.writeLegacyXMLField(writer, "describedByType", describedByType);
+		Utils.writeLegacyXMLField(writer, "isPartOf", isPartOf);
+		Utils.writeLegacyXMLField(writer, "issued", issued == null ? null : Utils.convertDateToISOString(issued));
+		Utils.writeLegacyXMLField(writer, "landingPage", landingPage == null ? null : landingPage.toString());
+		Utils.writeLegacyXMLField(writer, "license", license);
+		Utils.writeLegacyXMLField(writer, "modified", modified == null ? null : Utils.convertDateToISOString(modified));
+		Utils.writeLegacyXMLField(writer, "primaryITInvestmentUII", primaryITInvestmentUII);
+		Utils.writeLegacyXMLField(writer, "rights", rights);
+		Utils.writeLegacyXMLField(writer, "spatial", spatial);
+		Utils.writeLegacyXMLField(writer, "systemOfRecords", systemOfRecords);
+		Utils.writeLegacyXMLField(writer, "temporal", temporal);
+		Utils.writeLegacyXMLField(writer, "identifier", uniqueIdentifier);
+		if (publisher != null)
+		{
+			publisher.toLegacyXML(writer);
+		}
+		if (contactPoint != null)
+		{
+			contactPoint.toLegacyXML(writer);
+		}
+		if (bureauCodeList.size() > 0)
+		{
+			Utils.writeLegacyXMLField(writer, "bureauCode", Utils.listToCSV(bureauCodeList));
+		}
+		if (programCodeList.size() > 0)
+		{
+			Utils.writeLegacyXMLField(writer, "programCode", Utils.listToCSV(programCodeList));
+		}
+		if (referenceList.size() > 0)
+		{
+			Utils.writeLegacyXMLField(writer, "references", Utils.listToCSV(referenceList));
+		}
+		if (themeList.size() > 0)
+		{
+			Utils.writeLegacyXMLField(writer, "categories", Utils.listToCSV(themeList));
+		}
+		for (Distribution dist: distributionList)
+		{
+			dist.toLegacyXML(writer);
+		}
+		writer.writeEndElement();
+	}
+	
 	private Element fieldToLegacyXML(String elementName, String elementValue, Document doc)
 	{
 		Element fieldElement = null;
@@ -2058,7 +2152,8 @@ public class Dataset implements Comparable<Dataset> {
 	}
 	
 	/**
-	 * Sorts list first by bureauName and then by title.  if bureau name is null compare by bureauCode
+	 * Sorts list first by bureauName and then by title.  if bureau name is null compare by bureauCode.
+	 * Missing values sort as empty strings.
 	 */
 	@Override
 	public int compareTo(Dataset other) 
@@ -2067,18 +2162,29 @@ public class Dataset implements Comparable<Dataset> {
 		{
 			throw new NullPointerException("compareTo other cannot be null in Dataset");
 		}
-		int agencyCompare = 0;
-		int titleCompare = 0;
+		final int agencyCompare = getBureauSortKey().compareTo(other.getBureauSortKey());
+		if (agencyCompare != 0)
+		{
+			return agencyCompare;
+		}
+		final String thisTitle = title == null ? "" : title;
+		return thisTitle.compareTo(other.title == null ? "" : other.title);
+    }
+	
+	/**
+	 * Returns the bureau part of the sort order: bureau name, otherwise the first bureau code,
+	 * otherwise the empty string.
+	 */
+	String getBureauSortKey()
+	{
 		if (bureauName != null)
 		{
-			agencyCompare = this.bureauName.compareTo(other.bureauName);
+			return bureauName;
 		}
-		else
+		if (bureauCodeList != null && !bureauCodeList.isEmpty())
 		{
-			agencyCompare = this.bureauCodeList.get(0).compareTo(other.bureauCodeList.get(0));
+			return bureauCodeList.get(0);
 		}
-		titleCompare = agencyCompare == 0 ? this.title.compareTo(other.title) : agencyCompare;
-	
-		return titleCompare;
-    }
+		return "";
+	}
 }
@@ -0,0 +1,176 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The columns of the catalog CSV export, in order, each with its header and how its value is read
+ * from a dataset.  Catalog.toCSV writes the header from here and Dataset.datasetToListString the
+ * row, so the two cannot drift apart.
+ * <p>
+ * List values are joined into a reused StringBuilder rather than by adding Strings together.  A
+ * column with no value is empty; null elements of a list are written as "null", as they always were.
+ */
+public enum DatasetCSVColumn
+{
+	AGENCY_NAME ("Agency Name") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getBureauName(); }
+	},
+	TITLE ("Title") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getTitle(); }
+	},
+	DESCRIPTION ("Description") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getDescription(); }
+	},
+	MEDIA_TYPE ("MediaType") {
+		String value(Dataset ds, StringBuilder builder)
+		{
+			final List<Distribution> distributionList = ds.getDistributionList();
+			for (int i = 0; i < distributionList.size(); i++)
+			{
+				builder.append(i > 0 ? ", " : "").append(distributionList.get(i).getMediaType());
+			}
+			return distributionList.isEmpty() ? null : builder.toString();
+		}
+	},
+	DOWNLOAD_URL ("Download URL") {
+		String value(Dataset ds, StringBuilder builder)
+		{
+			final List<Distribution> distributionList = ds.getDistributionList();
+			for (int i = 0; i < distributionList.size(); i++)
+			{
+				builder.append(i > 0 ? ", " : "").append(distributionList.get(i).getDownloadURL());
+			}
+			return distributionList.isEmpty() ? null : builder.toString();
+		}
+	},
+	FREQUENCY ("Frequency") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getAccrualPeriodicity(); }
+	},
+	BUREAU_CODE ("Bureau Code") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getBureauCodeList().isEmpty() ? null : ds.getBureauCodeList().get(0); }
+	},
+	CONTACT_EMAIL ("Contact Email") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getContactPoint() == null ? null : ds.getContactPoint().getEmailAddress(); }
+	},
+	CONTACT_NAME ("Contact Name") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getContactPoint() == null ? null : ds.getContactPoint().getFullName(); }
+	},
+	LANDING_PAGE ("Landing Page") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getLandingPage() == null ? null : ds.getLandingPage().toString(); }
+	},
+	PROGRAM_CODE ("Program Code") {
+		String value(Dataset ds, StringBuilder builder) { return terminated(ds.getProgramCodeList(), builder); }
+	},
+	PUBLISHER ("Publisher") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getPublisher() == null ? null : ds.getPublisher().getName(); }
+	},
+	PUBLIC_ACCESS_LEVEL ("Public Access Level") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getAccessLevel(); }
+	},
+	ACCESS_LEVEL_COMMENT ("Access Level Comment") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getRights(); }
+	},
+	TAGS ("Tags") {
+		String value(Dataset ds, StringBuilder builder) { return terminated(ds.getKeywordList(), builder); }
+	},
+	LAST_UPDATE ("Last Update") {
+		String value(Dataset ds, StringBuilder builder) { return date(ds.getModified()); }
+	},
+	RELEASE_DATE ("Release Date") {
+		String value(Dataset ds, StringBuilder builder) { return date(ds.getIssued()); }
+	},
+	UNIQUE_IDENTIFIER ("Unique Identifier") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getUniqueIdentifier(); }
+	},
+	DATA_DICTIONARY ("Data Dictionary") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getDescribedBy(); }
+	},
+	LICENSE ("License") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getLicense(); }
+	},
+	SPATIAL ("Spatial") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getSpatial(); }
+	},
+	TEMPORAL ("Temporal") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getTemporal(); }
+	},
+	SYSTEM_OF_RECORDS ("System of Records") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getSystemOfRecords(); }
+	},
+	DATA_QUALITY ("Data Quality") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getDataQuality() == null ? null : ds.getDataQuality().toString(); }
+	},
+	LANGUAGE ("Language") {
+		String value(Dataset ds, StringBuilder builder) { return terminated(ds.getLanguageList(), builder); }
+	},
+	THEME ("Theme") {
+		String value(Dataset ds, StringBuilder builder) { return terminated(ds.getThemeList(), builder); }
+	},
+	REFERENCE ("Reference") {
+		String value(Dataset ds, StringBuilder builder) { return terminated(ds.getReferenceList(), builder); }
+	},
+	CKAN_CREATE_DATE ("CKAN Create Date") {
+		String value(Dataset ds, StringBuilder builder) { return date(ds.getMetadataCreatedDate()); }
+	},
+	CKAN_MODIFIED_DATE ("CKAN Modified Date") {
+		String value(Dataset ds, StringBuilder builder) { return date(ds.getMetadataModifiedDate()); }
+	},
+	CKAN_REVISION_TIMESTAMP ("CKAN Revision Timestamp") {
+		String value(Dataset ds, StringBuilder builder) { return date(ds.getRevisionTimeStamp()); }
+	},
+	IS_PART_OF ("Is Part Of") {
+		String value(Dataset ds, StringBuilder builder) { return ds.getIsPartOf() == null || ds.getIsPartOf().equals("false") ? null : ds.getIsPartOf(); }
+	};
+
+	private final String header;
+
+	private DatasetCSVColumn(String header)
+	{
+		this.header = header;
+	}
+
+	/**
+	 * @param ds Dataset
+	 * @param builder StringBuilder empty, for joining list values, left dirty
+	 * @return String the value of this column for the dataset, null when there is none
+	 */
+	abstract String value(Dataset ds, StringBuilder builder);
+
+	public String getHeader()
+	{
+		return header;
+	}
+
+	/**
+	 * @return List<String> every column header, in order
+	 */
+	public static List<String> headerList()
+	{
+		final List<String> headerList = new ArrayList<String>();
+		for (DatasetCSVColumn column: values())
+		{
+			headerList.add(column.header);
+		}
+		return headerList;
+	}
+
+	/**
+	 * Joins a list with every element followed by a semicolon.
+	 * @return String empty for an empty list
+	 */
+	private static String terminated(List<String> list, StringBuilder builder)
+	{
+		for (String element: list)
+		{
+			builder.append(element).append(';');
+		}
+		return builder.toString();
+	}
+
+	private static String date(Date date)
+	{
+		return date == null ? null : Utils.convertDateToISOString(date);
+	}
+}
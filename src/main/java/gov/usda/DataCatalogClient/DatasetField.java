@@ -0,0 +1,213 @@
+package gov.usda.DataCatalogClient;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The fields of a Dataset that can be read and written one at a time, named after their
+ * Project Open Data JSON field where there is one.  The unique identifier is not a field here
+ * because it is the key datasets are matched on.
+ * <p>
+ * Used by merging (@see DatasetMergePolicy) to copy the winning value of each field.
+ */
+@SuppressWarnings("unchecked")
+public enum DatasetField
+{
+	TITLE (Dataset.PROJECT_OPEN_DATA_DATASET_TITLE) {
+		Object get(Dataset ds) { return ds.getTitle(); }
+		void set(Dataset ds, Object value) { ds.setTitle((String) value); }
+	},
+	DESCRIPTION (Dataset.PROJECT_OPEN_DATA_DATASET_DESCRIPTION) {
+		Object get(Dataset ds) { return ds.getDescription(); }
+		void set(Dataset ds, Object value) { ds.setDescription((String) value); }
+	},
+	KEYWORD (Dataset.PROJECT_OPEN_DATA_DATASET_KEYWORD) {
+		Object get(Dataset ds) { return ds.getKeywordList(); }
+		void set(Dataset ds, Object value) { ds.setKeywordList(copy(value)); }
+	},
+	MODIFIED (Dataset.PROJECT_OPEN_DATA_DATASET_MODIFIED) {
+		Object get(Dataset ds) { return ds.getModified(); }
+		void set(Dataset ds, Object value) { ds.setModified((Date) value); }
+	},
+	PUBLISHER ("publisher") {
+		Object get(Dataset ds) { return ds.getPublisher(); }
+		void set(Dataset ds, Object value) { ds.setPublisher((Publisher) value); }
+	},
+	CONTACT_POINT ("contactPoint") {
+		Object get(Dataset ds) { return ds.getContactPoint(); }
+		void set(Dataset ds, Object value) { ds.setContactPoint((Contact) value); }
+	},
+	ACCESS_LEVEL (Dataset.PROJECT_OPEN_DATA_DATASET_ACCESS_LEVEL) {
+		Object get(Dataset ds) { return ds.getAccessLevel(); }
+		void set(Dataset ds, Object value) { ds.setAccessLevel((String) value); }
+	},
+	BUREAU_CODE (Dataset.PROJECT_OPEN_DATA_DATASET_BUREAU_CODE) {
+		Object get(Dataset ds) { return ds.getBureauCodeList(); }
+		void set(Dataset ds, Object value) { ds.setBureauCodeList(copy(value)); }
+	},
+	PROGRAM_CODE (Dataset.PROJECT_OPEN_DATA_DATASET_PROGRAM_CODE) {
+		Object get(Dataset ds) { return ds.getProgramCodeList(); }
+		void set(Dataset ds, Object value) { ds.setProgramCodeList(copy(value)); }
+	},
+	LICENSE (Dataset.PROJECT_OPEN_DATA_DATASET_LICENSE) {
+		Object get(Dataset ds) { return ds.getLicense(); }
+		void set(Dataset ds, Object value) { ds.setLicense((String) value); }
+	},
+	RIGHTS (Dataset.PROJECT_OPEN_DATA_DATASET_RIGHTS) {
+		Object get(Dataset ds) { return ds.getRights(); }
+		void set(Dataset ds, Object value) { ds.setRights((String) value); }
+	},
+	SPATIAL (Dataset.PROJECT_OPEN_DATA_DATASET_SPATIAL) {
+		Object get(Dataset ds) { return ds.getSpatial(); }
+		void set(Dataset ds, Object value) { ds.setSpatial((String) value); }
+	},
+	TEMPORAL (Dataset.PROJECT_OPEN_DATA_DATASET_TEMPORAL) {
+		Object get(Dataset ds) { return ds.getTemporal(); }
+		void set(Dataset ds, Object value) { ds.setTemporal((String) value); }
+	},
+	DISTRIBUTION ("distribution") {
+		Object get(Dataset ds) { return ds.getDistributionList(); }
+		void set(Dataset ds, Object value) { ds.setDistributionList(value == null ? new ArrayList<Distribution>() : new ArrayList<Distribution>((List<Distribution>) value)); }
+	},
+	ACCRUAL_PERIODICITY (Dataset.PROJECT_OPEN_DATA_DATASET_ACCRUAL_PERIODICITY) {
+		Object get(Dataset ds) { return ds.getAccrualPeriodicity(); }
+		void set(Dataset ds, Object value) { ds.setAccrualPeriodicity((String) value); }
+	},
+	CONFORMS_TO (Dataset.PROJECT_OPEN_DATA_DATASET_CONFORMS_TO) {
+		Object get(Dataset ds) { return ds.getConformsTo(); }
+		void set(Dataset ds, Object value) { ds.setConformsTo((String) value); }
+	},
+	DESCRIBED_BY (Dataset.PROJECT_OPEN_DATA_DATASET_DESCRIBED_BY) {
+		Object get(Dataset ds) { return ds.getDescribedBy(); }
+		void set(Dataset ds, Object value) { ds.setDescribedBy((String) value); }
+	},
+	DESCRIBED_BY_TYPE (Dataset.PROJECT_OPEN_DATA_DATASET_DESCRIBED_BY_TYPE) {
+		Object get(Dataset ds) { return ds.getDescribedByType(); }
+		void set(Dataset ds, Object value) { ds.setDescribedByType((String) value); }
+	},
+	IS_PART_OF (Dataset.PROJECT_OPEN_DATA_DATASET_IS_PART_OF) {
+		Object get(Dataset ds) { return ds.getIsPartOf(); }
+		void set(Dataset ds, Object value) { ds.setIsPartOf((String) value); }
+	},
+	ISSUED (Dataset.PROJECT_OPEN_DATA_DATASET_ISSUED) {
+		Object get(Dataset ds) { return ds.getIssued(); }
+		void set(Dataset ds, Object value) { ds.setIssued((Date) value); }
+	},
+	LANGUAGE (Dataset.PROJECT_OPEN_DATA_DATASET_LANGUAGE) {
+		Object get(Dataset ds) { return ds.getLanguageList(); }
+		void set(Dataset ds, Object value) { ds.setLanguageList(copy(value)); }
+	},
+	LANDING_PAGE (Dataset.PROJECT_OPEN_DATA_DATASET_LANDING_PAGE) {
+		Object get(Dataset ds) { return ds.getLandingPage(); }
+		void set(Dataset ds, Object value) { ds.setLandingPage((URL) value); }
+	},
+	PRIMARY_IT_INVESTMENT_UII (Dataset.PROJECT_OPEN_DATA_DATASET_PRIMARY_IT_INVESTMENT_UII) {
+		Object get(Dataset ds) { return ds.getPrimaryITInvestmentUII(); }
+		void set(Dataset ds, Object value) { ds.setPrimaryITInvestmentUII((String) value); }
+	},
+	REFERENCES (Dataset.PROJECT_OPEN_DATA_DATASET_REFERENCES) {
+		Object get(Dataset ds) { return ds.getReferenceList(); }
+		void set(Dataset ds, Object value) { ds.setReferenceList(copy(value)); }
+	},
+	SYSTEM_OF_RECORDS (Dataset.PROJECT_OPEN_DATA_DATASET_SYSTEM_OF_RECORDS) {
+		Object get(Dataset ds) { return ds.getSystemOfRecords(); }
+		void set(Dataset ds, Object value) { ds.setSystemOfRecords((String) value); }
+	},
+	THEME (Dataset.PROJECT_OPEN_DATA_DATASET_THEME) {
+		Object get(Dataset ds) { return ds.getThemeList(); }
+		void set(Dataset ds, Object value) { ds.setThemeList(copy(value)); }
+	},
+	DATA_QUALITY (Dataset.PROJECT_OPEN_DATA_DATASET_DATA_QUALITY) {
+		Object get(Dataset ds) { return ds.getDataQuality(); }
+		void set(Dataset ds, Object value) { ds.setDataQuality((Boolean) value); }
+	},
+	COMMENTS ("comments") {
+		Object get(Dataset ds) { return ds.getComments(); }
+		void set(Dataset ds, Object value) { ds.setComments((String) value); }
+	},
+	BUREAU_NAME ("bureauName") {
+		Object get(Dataset ds) { return ds.getBureauName(); }
+		void set(Dataset ds, Object value) { ds.setBureauName((String) value); }
+	},
+	BUREAU_ABBREVIATION ("bureauAbbreviation") {
+		Object get(Dataset ds) { return ds.getBureauAbbreviation(); }
+		void set(Dataset ds, Object value) { ds.setBureauAbbreviation((String) value); }
+	},
+	OWNER_ORGANIZATION ("ownerOrganization") {
+		Object get(Dataset ds) { return ds.getOwnerOrganization(); }
+		void set(Dataset ds, Object value) { ds.setOwnerOrganization((String) value); }
+	},
+	METADATA_CREATED (Dataset.CKAN_DATASET_METADATA_CREATED) {
+		Object get(Dataset ds) { return ds.getMetadataCreatedDate(); }
+		void set(Dataset ds, Object value) { ds.setMetadataCreatedDate((Date) value); }
+	},
+	METADATA_MODIFIED (Dataset.CKAN_DATASET_METADATA_MODIFIED) {
+		Object get(Dataset ds) { return ds.getMetadataModifiedDate(); }
+		void set(Dataset ds, Object value) { ds.setMetadataModifiedDate((Date) value); }
+	},
+	REVISION_TIMESTAMP (Dataset.CKAN_DATASET_REVISION_TIMESTAMP) {
+		Object get(Dataset ds) { return ds.getRevisionTimeStamp(); }
+		void set(Dataset ds, Object value) { ds.setRevisionTimeStamp((Date) value); }
+	};
+
+	private final String fieldName;
+
+	private DatasetField(String fieldName)
+	{
+		this.fieldName = fieldName;
+	}
+
+	/**
+	 * Returns the value of this field, lists are returned as the dataset holds them.
+	 */
+	abstract Object get(Dataset ds);
+
+	/**
+	 * Sets the value of this field, lists are copied so two datasets never share one.  Setters that
+	 * ignore null, like setLicense, leave the old value in place.
+	 */
+	abstract void set(Dataset ds, Object value);
+
+	/**
+	 * Returns true if both datasets hold the same value for this field.  Compares by content
+	 * fingerprint rather than equals so URLs are not resolved.
+	 */
+	public boolean sameValue(Dataset ds, Dataset other)
+	{
+		return DatasetFingerprint.ofValue(get(ds)) == DatasetFingerprint.ofValue(get(other));
+	}
+
+	/**
+	 * Returns true if the dataset has no value for this field: null, an empty string or an empty list.
+	 */
+	public boolean isEmpty(Dataset ds)
+	{
+		final Object value = get(ds);
+		if (value == null)
+		{
+			return true;
+		}
+		if (value instanceof String)
+		{
+			return ((String) value).trim().isEmpty();
+		}
+		if (value instanceof List)
+		{
+			return ((List<?>) value).isEmpty();
+		}
+		return false;
+	}
+
+	@Override
+	public String toString()
+	{
+		return fieldName;
+	}
+
+	private static ArrayList<String> copy(Object value)
+	{
+		return value == null ? new ArrayList<String>() : new ArrayList<String>((List<String>) value);
+	}
+}
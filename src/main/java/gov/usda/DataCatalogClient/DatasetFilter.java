@@ -0,0 +1,208 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides whether a dataset is loaded into a catalog at all (@see Catalog.loadCatalogFromCKAN(JSONObject, DatasetFilter, DatasetProjection)).
+ * <p>
+ * A filter is asked about each dataset as it comes out of the parser, before a Dataset is built or
+ * validated, so datasets that are filtered out cost almost nothing.  Filters read the raw JSON through
+ * RawDataset and work the same on CKAN packages and Project Open Data datasets.  Filters are immutable
+ * and can be shared between loads.
+ * <p>
+ * Example, public Forest Service datasets changed this year:
+ * DatasetFilter.modifiedAfter("2017-01-01").and(DatasetFilter.bureauCode("005:96")).and(DatasetFilter.accessLevel("public"))
+ */
+public abstract class DatasetFilter {
+
+	/**
+	 * @param rawDataset RawDataset a dataset as parsed
+	 * @return boolean true to load the dataset
+	 */
+	public abstract boolean accept(RawDataset rawDataset);
+
+	/**
+	 * Combines this filter with another, a dataset must pass both.  This filter is asked first.
+	 * @param other DatasetFilter
+	 * @return DatasetFilter
+	 */
+	public DatasetFilter and(DatasetFilter other)
+	{
+		return all(this, other);
+	}
+
+	/**
+	 * @return DatasetFilter that loads every dataset
+	 */
+	public static DatasetFilter acceptAll()
+	{
+		return ACCEPT_ALL;
+	}
+
+	private static final DatasetFilter ACCEPT_ALL = new DatasetFilter() {
+		@Override
+		public boolean accept(RawDataset rawDataset)
+		{
+			return true;
+		}
+	};
+
+	/**
+	 * Datasets that pass every filter.  Filters are asked in order and stop at the first that rejects,
+	 * so the cheapest or most selective filter should go first.
+	 * @param filters DatasetFilter...
+	 * @return DatasetFilter
+	 */
+	public static DatasetFilter all(DatasetFilter... filters)
+	{
+		if (filters == null)
+		{
+			throw new NullPointerException("filters cannot be null");
+		}
+		final DatasetFilter[] filterArray = filters.clone();
+		for (DatasetFilter filter: filterArray)
+		{
+			if (filter == null)
+			{
+				throw new NullPointerException("filters cannot contain null");
+			}
+		}
+		return new DatasetFilter() {
+			@Override
+			public boolean accept(RawDataset rawDataset)
+			{
+				for (DatasetFilter filter: filterArray)
+				{
+					if (!filter.accept(rawDataset))
+					{
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Datasets modified after a date, CKAN packages by metadata_modified and Project Open Data
+	 * datasets by modified.  Datasets without a valid date are rejected.
+	 * @param cutoff Date
+	 * @return DatasetFilter
+	 */
+	public static DatasetFilter modifiedAfter(Date cutoff)
+	{
+		if (cutoff == null)
+		{
+			throw new NullPointerException("cutoff cannot be null");
+		}
+		final long cutoffTime = cutoff.getTime();
+		return new DatasetFilter() {
+			@Override
+			public boolean accept(RawDataset rawDataset)
+			{
+				final Date modified = rawDataset.getModified();
+				return modified != null && modified.getTime() > cutoffTime;
+			}
+		};
+	}
+
+	/**
+	 * @param isoCutoff String ISO 8601 date, parsed once here
+	 * @return DatasetFilter @see modifiedAfter(Date)
+	 * @throws java.text.ParseException
+	 */
+	public static DatasetFilter modifiedAfter(String isoCutoff) throws java.text.ParseException
+	{
+		if (isoCutoff == null)
+		{
+			throw new NullPointerException("isoCutoff cannot be null");
+		}
+		return modifiedAfter(Utils.convertISOStringToDate(isoCutoff));
+	}
+
+	/**
+	 * Datasets with at least one of the bureau codes.
+	 * @param bureauCodes String... for example "005:96"
+	 * @return DatasetFilter
+	 */
+	public static DatasetFilter bureauCode(String... bureauCodes)
+	{
+		final Set<String> bureauCodeSet = toSet(bureauCodes, "bureauCodes");
+		return new DatasetFilter() {
+			@Override
+			public boolean accept(RawDataset rawDataset)
+			{
+				for (String bureauCode: rawDataset.getBureauCodeList())
+				{
+					if (bureauCodeSet.contains(bureauCode))
+					{
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Datasets with one of the access levels, compared ignoring case.
+	 * @param accessLevels String... for example Dataset.AccessLevel.PUBLIC.toString()
+	 * @return DatasetFilter
+	 */
+	public static DatasetFilter accessLevel(String... accessLevels)
+	{
+		final Set<String> accessLevelSet = new HashSet<String>();
+		for (String accessLevel: toSet(accessLevels, "accessLevels"))
+		{
+			accessLevelSet.add(accessLevel.toLowerCase());
+		}
+		return new DatasetFilter() {
+			@Override
+			public boolean accept(RawDataset rawDataset)
+			{
+				final String accessLevel = rawDataset.getAccessLevel();
+				return accessLevel != null && accessLevelSet.contains(accessLevel.trim().toLowerCase());
+			}
+		};
+	}
+
+	/**
+	 * Datasets whose unique identifier is in a set, for example to reload a few known datasets.
+	 * @param identifiers Collection<String> copied, later changes to it are not seen
+	 * @return DatasetFilter
+	 */
+	public static DatasetFilter identifiers(Collection<String> identifiers)
+	{
+		if (identifiers == null)
+		{
+			throw new NullPointerException("identifiers cannot be null");
+		}
+		final Set<String> identifierSet = new HashSet<String>(identifiers);
+		return new DatasetFilter() {
+			@Override
+			public boolean accept(RawDataset rawDataset)
+			{
+				return identifierSet.contains(rawDataset.getIdentifier());
+			}
+		};
+	}
+
+	private static Set<String> toSet(String[] values, String name)
+	{
+		if (values == null)
+		{
+			throw new NullPointerException(name + " cannot be null");
+		}
+		final List<String> valueList = Arrays.asList(values);
+		if (valueList.contains(null))
+		{
+			throw new NullPointerException(name + " cannot contain null");
+		}
+		return new HashSet<String>(valueList);
+	}
+}
@@ -0,0 +1,282 @@
+package gov.usda.DataCatalogClient;
+
+import java.net.URL;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Computes a 64 bit content fingerprint of a Dataset.  Two datasets with the same fingerprint
+ * produce the same output in every export format, so the fingerprint can be used to tell whether a
+ * dataset changed between two catalogs or two runs.
+ * <p>
+ * The hash is FNV-1a over every field in a fixed order, including distributions, publisher,
+ * contact point and the bureau and CKAN fields that only show up in CSV.  Dataset.hashCode() is
+ * not used for this because it is not stable between runs (URL.hashCode() resolves the host).
+ */
+public class DatasetFingerprint {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	//marks null apart from the empty string
+	private static final char NULL_MARKER = '\uffff';
+	private static final char FIELD_SEPARATOR = '\ufffe';
+
+	private long hash;
+
+	private DatasetFingerprint()
+	{
+		hash = FNV_OFFSET_BASIS;
+	}
+
+	/**
+	 * Returns the content fingerprint of a dataset.
+	 * @param ds Dataset
+	 * @return long fingerprint
+	 */
+	public static long of(Dataset ds)
+	{
+		if (ds == null)
+		{
+			throw new NullPointerException("Dataset ds cannot be null");
+		}
+		final DatasetFingerprint fingerprint = new DatasetFingerprint();
+		fingerprint.addDataset(ds);
+		return fingerprint.hash;
+	}
+
+	/**
+	 * Returns a fingerprint of a whole catalog.  It depends on the order of the datasets as well as their
+	 * content, so anything that stores positions in the catalog can use it to detect a stale copy.
+	 * @param catalog Catalog
+	 * @return long fingerprint
+	 */
+	public static long of(Catalog catalog)
+	{
+		if (catalog == null)
+		{
+			throw new NullPointerException("Catalog catalog cannot be null");
+		}
+		final DatasetFingerprint fingerprint = new DatasetFingerprint();
+		fingerprint.add(catalog.size());
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			fingerprint.add(of(ds));
+		}
+		return fingerprint.hash;
+	}
+
+	/**
+	 * Hashes a string the same way a dataset field is hashed.  Used for keys of raw JSON that
+	 * never becomes a Dataset.
+	 * @param value String may be null
+	 * @return long fingerprint
+	 */
+	public static long of(String value)
+	{
+		final DatasetFingerprint fingerprint = new DatasetFingerprint();
+		fingerprint.add(value);
+		return fingerprint.hash;
+	}
+
+	/**
+	 * Hashes a single field value: String, Date, URL, Boolean, Publisher, Contact, Distribution or a
+	 * List of those.  Used to compare one field of two datasets without equals, which resolves URLs.
+	 * @param value Object may be null
+	 * @return long fingerprint
+	 */
+	static long ofValue(Object value)
+	{
+		final DatasetFingerprint fingerprint = new DatasetFingerprint();
+		fingerprint.addValue(value);
+		return fingerprint.hash;
+	}
+
+	private void addDataset(Dataset ds)
+	{
+		add(ds.getTitle());
+		add(ds.getDescription());
+		add(ds.getAccessLevel());
+		add(ds.getAccrualPeriodicity());
+		addList(ds.getBureauCodeList());
+		add(ds.getConformsTo());
+		add(ds.getDataQuality() == null ? null : ds.getDataQuality().toString());
+		add(ds.getDescribedBy());
+		add(ds.getDescribedByType());
+		add(ds.getIsPartOf());
+		add(ds.getIssued());
+		addList(ds.getKeywordList());
+		add(ds.getLandingPage());
+		addList(ds.getLanguageList());
+		add(ds.getLicense());
+		add(ds.getModified());
+		add(ds.getPrimaryITInvestmentUII());
+		addList(ds.getProgramCodeList());
+		addList(ds.getReferenceList());
+		add(ds.getRights());
+		add(ds.getSpatial());
+		add(ds.getSystemOfRecords());
+		add(ds.getTemporal());
+		addList(ds.getThemeList());
+		add(ds.getUniqueIdentifier());
+		add(ds.getComments());
+		add(ds.getBureauName());
+		add(ds.getBureauAbbreviation());
+		add(ds.getMetadataCreatedDate());
+		add(ds.getMetadataModifiedDate());
+		add(ds.getRevisionTimeStamp());
+		add(ds.getOwnerOrganization());
+		addPublisher(ds.getPublisher());
+		addContact(ds.getContactPoint());
+		final List<Distribution> distributionList = ds.getDistributionList();
+		add(distributionList == null ? -1 : distributionList.size());
+		if (distributionList != null)
+		{
+			for (Distribution distribution: distributionList)
+			{
+				addDistribution(distribution);
+			}
+		}
+	}
+
+	private void addPublisher(Publisher publisher)
+	{
+		if (publisher == null)
+		{
+			add((String) null);
+			return;
+		}
+		add(publisher.getName());
+		add(publisher.getType());
+		addPublisher(publisher.getSubOrganization());
+	}
+
+	private void addContact(Contact contact)
+	{
+		if (contact == null)
+		{
+			add((String) null);
+			return;
+		}
+		add(contact.getFullName());
+		add(contact.getEmailAddress());
+		add(contact.getType());
+	}
+
+	private void addDistribution(Distribution distribution)
+	{
+		add(distribution.getTitle());
+		add(distribution.getDescription());
+		add(distribution.getAccessURL());
+		add(distribution.getDownloadURL());
+		add(distribution.getMediaType());
+		add(distribution.getFormat());
+		add(distribution.getConformsTo());
+		add(distribution.getDescribedBy());
+		add(distribution.getDescribedByType());
+		add(distribution.getType());
+		add(distribution.getByteSize() == null ? -1 : distribution.getByteSize().longValue());
+		add(distribution.getIssued());
+		add(distribution.getModified());
+		add(distribution.getLicense());
+		add(distribution.getRights());
+	}
+
+	private void addValue(Object value)
+	{
+		if (value == null || value instanceof String)
+		{
+			add((String) value);
+		}
+		else if (value instanceof Date)
+		{
+			add((Date) value);
+		}
+		else if (value instanceof URL)
+		{
+			add((URL) value);
+		}
+		else if (value instanceof Publisher)
+		{
+			addPublisher((Publisher) value);
+		}
+		else if (value instanceof Contact)
+		{
+			addContact((Contact) value);
+		}
+		else if (value instanceof Distribution)
+		{
+			addDistribution((Distribution) value);
+		}
+		else if (value instanceof List)
+		{
+			final List<?> valueList = (List<?>) value;
+			add(valueList.size());
+			for (Object element: valueList)
+			{
+				addValue(element);
+			}
+		}
+		else
+		{
+			add(value.toString());
+		}
+	}
+
+	private void addList(List<String> valueList)
+	{
+		if (valueList == null)
+		{
+			add((String) null);
+			return;
+		}
+		add(valueList.size());
+		for (String value: valueList)
+		{
+			add(value);
+		}
+	}
+
+	private void add(URL url)
+	{
+		add(url == null ? null : url.toString());
+	}
+
+	private void add(Date date)
+	{
+		add(date == null ? Long.MIN_VALUE : date.getTime());
+	}
+
+	private void add(String value)
+	{
+		if (value == null)
+		{
+			addChar(NULL_MARKER);
+		}
+		else
+		{
+			for (int i = 0; i < value.length(); i++)
+			{
+				addChar(value.charAt(i));
+			}
+		}
+		addChar(FIELD_SEPARATOR);
+	}
+
+	private void add(long value)
+	{
+		for (int i = 0; i < 8; i++)
+		{
+			hash ^= (value >>> (i * 8)) & 0xff;
+			hash *= FNV_PRIME;
+		}
+	}
+
+	private void addChar(char c)
+	{
+		hash ^= c & 0xff;
+		hash *= FNV_PRIME;
+		hash ^= c >>> 8;
+		hash *= FNV_PRIME;
+	}
+}
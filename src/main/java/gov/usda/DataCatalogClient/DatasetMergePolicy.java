@@ -0,0 +1,122 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decides which copy of a dataset wins when two catalogs hold a dataset with the same unique
+ * identifier (@see Catalog.addFromOtherCatalog(Catalog, DatasetMergePolicy)).
+ * <p>
+ * A policy is asked once for every field where the two copies differ, so it can pick a whole
+ * dataset or merge field by field.  Three policies are provided:
+ * <ul>
+ * <li>newestModified: the copy with the later modified date wins every field.</li>
+ * <li>sourcePriority: the copy from the higher priority source wins every field.</li>
+ * <li>fieldLevel: a value beats an empty field, otherwise the newer copy wins.</li>
+ * </ul>
+ * Ties always keep the dataset that is already in the catalog.
+ */
+public abstract class DatasetMergePolicy {
+
+	/**
+	 * Decides one field where the existing and incoming copies differ.
+	 * @param field DatasetField the field being merged
+	 * @param existing Dataset the copy already in the catalog
+	 * @param existingSource String where the existing copy came from, may be null
+	 * @param incoming Dataset the copy being added
+	 * @param incomingSource String where the incoming copy came from, may be null
+	 * @return boolean true to take the incoming value
+	 */
+	public abstract boolean takeIncoming(DatasetField field, Dataset existing, String existingSource, Dataset incoming, String incomingSource);
+
+	/**
+	 * The copy with the later modified date wins.  Datasets without a modified date fall back
+	 * to the CKAN metadata_modified date.
+	 * @return DatasetMergePolicy
+	 */
+	public static DatasetMergePolicy newestModified()
+	{
+		return new DatasetMergePolicy() {
+			@Override
+			public boolean takeIncoming(DatasetField field, Dataset existing, String existingSource, Dataset incoming, String incomingSource)
+			{
+				return isNewer(incoming, existing);
+			}
+		};
+	}
+
+	/**
+	 * The copy from the source listed first wins.  Sources that are not listed rank below every
+	 * listed source.
+	 * @param sourceNames String... source names, highest priority first
+	 * @return DatasetMergePolicy
+	 */
+	public static DatasetMergePolicy sourcePriority(String... sourceNames)
+	{
+		if (sourceNames == null)
+		{
+			throw new NullPointerException("sourceNames cannot be null");
+		}
+		final List<String> priorityList = Arrays.asList(sourceNames.clone());
+		return new DatasetMergePolicy() {
+			@Override
+			public boolean takeIncoming(DatasetField field, Dataset existing, String existingSource, Dataset incoming, String incomingSource)
+			{
+				return rank(incomingSource) < rank(existingSource);
+			}
+
+			private int rank(String source)
+			{
+				final int index = priorityList.indexOf(source);
+				return index == -1 ? Integer.MAX_VALUE : index;
+			}
+		};
+	}
+
+	/**
+	 * Merges field by field.  A field that is empty in one copy takes the value of the other copy,
+	 * a field with a value in both takes the value of the newer copy.
+	 * @return DatasetMergePolicy
+	 */
+	public static DatasetMergePolicy fieldLevel()
+	{
+		return new DatasetMergePolicy() {
+			@Override
+			public boolean takeIncoming(DatasetField field, Dataset existing, String existingSource, Dataset incoming, String incomingSource)
+			{
+				if (field.isEmpty(incoming))
+				{
+					return false;
+				}
+				if (field.isEmpty(existing))
+				{
+					return true;
+				}
+				return isNewer(incoming, existing);
+			}
+		};
+	}
+
+	/**
+	 * Returns true if ds was modified after other.  A missing date is older than any date.
+	 */
+	static boolean isNewer(Dataset ds, Dataset other)
+	{
+		final int compare = compareDates(ds.getModified(), other.getModified());
+		if (compare != 0)
+		{
+			return compare > 0;
+		}
+		return compareDates(ds.getMetadataModifiedDate(), other.getMetadataModifiedDate()) > 0;
+	}
+
+	private static int compareDates(Date date, Date other)
+	{
+		if (date == null)
+		{
+			return other == null ? 0 : -1;
+		}
+		return other == null ? 1 : date.compareTo(other);
+	}
+}
@@ -0,0 +1,166 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * The fields to load for each dataset that passes a DatasetFilter.
+ * <p>
+ * Fields left out of a projection are removed from the raw JSON before the Dataset is built, so their
+ * values are never converted or validated and the Dataset holds nothing for them.  Dropping distributions
+ * and keywords from a large CKAN harvest saves most of the work of loading it.  The fields a Dataset cannot
+ * be valid without (title, description, modified, publisher, contact point, access level and the unique
+ * identifier) are always loaded.
+ */
+public final class DatasetProjection {
+
+	private static final Set<DatasetField> REQUIRED_FIELDS = Collections.unmodifiableSet(EnumSet.of(DatasetField.TITLE,
+			DatasetField.DESCRIPTION, DatasetField.MODIFIED, DatasetField.PUBLISHER, DatasetField.CONTACT_POINT, DatasetField.ACCESS_LEVEL));
+
+	private static final DatasetProjection ALL = new DatasetProjection(EnumSet.allOf(DatasetField.class));
+
+	//Project Open Data keys of every field
+	private static final Map<String, DatasetField> POD_FIELD_MAP = new HashMap<String, DatasetField>();
+	//CKAN extra keys of the optional fields, keys not listed here are always kept
+	private static final Map<String, DatasetField> CKAN_EXTRA_FIELD_MAP = new HashMap<String, DatasetField>();
+	static
+	{
+		for (DatasetField field: DatasetField.values())
+		{
+			POD_FIELD_MAP.put(field.toString(), field);
+		}
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_ACCRUAL_PERIODICITY, DatasetField.ACCRUAL_PERIODICITY);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_BUREAU_CODE_LIST, DatasetField.BUREAU_CODE);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_CONFORMS_TO, DatasetField.CONFORMS_TO);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_DATA_QUALITY, DatasetField.DATA_QUALITY);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_DATA_QUALITY_LEGACY, DatasetField.DATA_QUALITY);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_DESCRIBED_BY, DatasetField.DESCRIBED_BY);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_DESCRIBED_BY_LEGACY, DatasetField.DESCRIBED_BY);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_DESCRIBED_BY_TYPE, DatasetField.DESCRIBED_BY_TYPE);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_IS_PART_OF, DatasetField.IS_PART_OF);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_ISSUED, DatasetField.ISSUED);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_RELEASE_DATE, DatasetField.ISSUED);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_LANDING_PAGE, DatasetField.LANDING_PAGE);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_LANGUAGE, DatasetField.LANGUAGE);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_LICENSE, DatasetField.LICENSE);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_PRIMARY_IT_INVESTMENT_UII, DatasetField.PRIMARY_IT_INVESTMENT_UII);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_PROGRAM_CODE, DatasetField.PROGRAM_CODE);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_PROGRAM_CODE_LEGACY, DatasetField.PROGRAM_CODE);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_REFERENCES, DatasetField.REFERENCES);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_RIGHTS, DatasetField.RIGHTS);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_SPATIAL, DatasetField.SPATIAL);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_SPATIAL_TEXT, DatasetField.SPATIAL);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_SYSTEM_OF_RECORDS, DatasetField.SYSTEM_OF_RECORDS);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_TEMPORAL, DatasetField.TEMPORAL);
+		CKAN_EXTRA_FIELD_MAP.put(Dataset.CKAN_DATASET_THEME, DatasetField.THEME);
+	}
+
+	private final Set<DatasetField> fieldSet;
+
+	private DatasetProjection(Set<DatasetField> fieldSet)
+	{
+		fieldSet.addAll(REQUIRED_FIELDS);
+		this.fieldSet = Collections.unmodifiableSet(fieldSet);
+	}
+
+	/**
+	 * @return DatasetProjection that loads every field
+	 */
+	public static DatasetProjection all()
+	{
+		return ALL;
+	}
+
+	/**
+	 * @param fields DatasetField... the optional fields to load, the required fields are always added
+	 * @return DatasetProjection
+	 */
+	public static DatasetProjection of(DatasetField... fields)
+	{
+		if (fields == null)
+		{
+			throw new NullPointerException("fields cannot be null");
+		}
+		final Set<DatasetField> fieldSet = EnumSet.noneOf(DatasetField.class);
+		fieldSet.addAll(Arrays.asList(fields));
+		return new DatasetProjection(fieldSet);
+	}
+
+	/**
+	 * @return Set<DatasetField> every field that is loaded, including the required ones
+	 */
+	public Set<DatasetField> getFieldSet()
+	{
+		return fieldSet;
+	}
+
+	public boolean isLoaded(DatasetField field)
+	{
+		return fieldSet.contains(field);
+	}
+
+	/**
+	 * Returns the dataset JSON with the fields outside this projection removed.  The raw object is
+	 * not changed; when every field is loaded it is returned as it is.
+	 * @param rawDataset RawDataset
+	 * @return JSONObject to load the Dataset from
+	 */
+	@SuppressWarnings("unchecked")
+	JSONObject project(RawDataset rawDataset)
+	{
+		final JSONObject datasetObject = rawDataset.getObject();
+		if (fieldSet.size() == DatasetField.values().length)
+		{
+			return datasetObject;
+		}
+		final JSONObject projectedObject = new JSONObject();
+		if (rawDataset.getFormat() == RawDataset.Format.PROJECT_OPEN_DATA)
+		{
+			for (Object key: datasetObject.keySet())
+			{
+				if (!isDropped(POD_FIELD_MAP.get(key)))
+				{
+					projectedObject.put(key, datasetObject.get(key));
+				}
+			}
+			return projectedObject;
+		}
+
+		projectedObject.putAll(datasetObject);
+		//the CKAN loader expects both arrays to be present
+		if (!isLoaded(DatasetField.DISTRIBUTION))
+		{
+			projectedObject.put(Dataset.CKAN_DATASET_DISTRIBUTION, new JSONArray());
+		}
+		if (!isLoaded(DatasetField.KEYWORD))
+		{
+			projectedObject.put("tags", new JSONArray());
+		}
+		final Object extraObject = datasetObject.get(Dataset.CKAN_DATASET_EXTRAS);
+		if (extraObject instanceof JSONArray)
+		{
+			final JSONArray projectedExtraList = new JSONArray();
+			for (Object extra: (JSONArray) extraObject)
+			{
+				if (!isDropped(CKAN_EXTRA_FIELD_MAP.get(((JSONObject) extra).get("key"))))
+				{
+					projectedExtraList.add(extra);
+				}
+			}
+			projectedObject.put(Dataset.CKAN_DATASET_EXTRAS, projectedExtraList);
+		}
+		return projectedObject;
+	}
+
+	private boolean isDropped(DatasetField field)
+	{
+		return field != null && !fieldSet.contains(field);
+	}
+}
@@ -0,0 +1,112 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * A DatasetQuery is a list of field = value criteria that are combined with AND when run
+ * against a CatalogIndex.  The set methods replace the value of their field, the add methods add
+ * one more value a dataset has to match.  For example, all public datasets of the Forest Service:
+ * <p>
+ * <code>
+ * DatasetQuery query = new DatasetQuery();
+ * query.setBureauCode("005:96");
+ * query.setAccessLevel(Dataset.AccessLevel.PUBLIC.toString());
+ * List&lt;Dataset&gt; datasetList = catalog.findDatasets(query);
+ * </code>
+ */
+public class DatasetQuery {
+
+	private final List<Entry<CatalogIndex.Field, String>> criteriaList;
+
+	public DatasetQuery()
+	{
+		criteriaList = new ArrayList<Entry<CatalogIndex.Field, String>>();
+	}
+
+	/**
+	 * Adds a criterion to this query.  The same field can be added more than once, a dataset then has
+	 * to match every value, for example two keywords.
+	 * @param field CatalogIndex.Field the indexed field
+	 * @param value String the value the field must contain
+	 */
+	public void addCriterion(CatalogIndex.Field field, String value)
+	{
+		if (field == null || value == null)
+		{
+			throw new NullPointerException("field or value cannot be null");
+		}
+		criteriaList.add(new SimpleImmutableEntry<CatalogIndex.Field, String>(field, value));
+	}
+
+	/**
+	 * Replaces every criterion on a field with one value.
+	 * @param field CatalogIndex.Field the indexed field
+	 * @param value String the value the field must contain
+	 */
+	public void setCriterion(CatalogIndex.Field field, String value)
+	{
+		if (field == null || value == null)
+		{
+			throw new NullPointerException("field or value cannot be null");
+		}
+		final Iterator<Entry<CatalogIndex.Field, String>> iterator = criteriaList.iterator();
+		while (iterator.hasNext())
+		{
+			if (iterator.next().getKey() == field)
+			{
+				iterator.remove();
+			}
+		}
+		criteriaList.add(new SimpleImmutableEntry<CatalogIndex.Field, String>(field, value));
+	}
+
+	public void setIdentifier(String identifier)
+	{
+		setCriterion(CatalogIndex.Field.IDENTIFIER, identifier);
+	}
+
+	public void setBureauCode(String bureauCode)
+	{
+		setCriterion(CatalogIndex.Field.BUREAU_CODE, bureauCode);
+	}
+
+	public void setProgramCode(String programCode)
+	{
+		setCriterion(CatalogIndex.Field.PROGRAM_CODE, programCode);
+	}
+
+	public void setAccessLevel(String accessLevel)
+	{
+		setCriterion(CatalogIndex.Field.ACCESS_LEVEL, accessLevel);
+	}
+
+	public void setPublisher(String publisherName)
+	{
+		setCriterion(CatalogIndex.Field.PUBLISHER, publisherName);
+	}
+
+	public void addTheme(String theme)
+	{
+		addCriterion(CatalogIndex.Field.THEME, theme);
+	}
+
+	public void addKeyword(String keyword)
+	{
+		addCriterion(CatalogIndex.Field.KEYWORD, keyword);
+	}
+
+	public List<Entry<CatalogIndex.Field, String>> getCriteria()
+	{
+		return Collections.unmodifiableList(criteriaList);
+	}
+
+	@Override
+	public String toString() {
+		return "DatasetQuery [criteriaList=" + criteriaList + "]";
+	}
+}
@@ -0,0 +1,162 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Precomputed sort key for the catalog order of a dataset, bureau then title (@see Dataset.compareTo).
+ * <p>
+ * The bureau becomes an int rank among the distinct bureaus being sorted and the first four
+ * characters of the title are packed into a long, so most comparisons are two primitive compares
+ * and the full title is only compared when the prefixes are equal.  Keys give exactly the order
+ * of Dataset.compareTo and sorting is stable.
+ */
+final class DatasetSortKey implements Comparable<DatasetSortKey> {
+
+	//below this size a parallel sort costs more than it saves
+	static final int PARALLEL_SORT_THRESHOLD = 1 << 13;
+
+	private final Dataset dataset;
+	private final int bureauRank;
+	private final long titlePrefix;
+	private final String title;
+
+	private DatasetSortKey(Dataset dataset, int bureauRank)
+	{
+		this.dataset = dataset;
+		this.bureauRank = bureauRank;
+		title = dataset.getTitle() == null ? "" : dataset.getTitle();
+		long prefix = 0;
+		for (int i = 0; i < 4; i++)
+		{
+			prefix = (prefix << 16) | (i < title.length() ? title.charAt(i) : 0);
+		}
+		titlePrefix = prefix;
+	}
+
+	@Override
+	public int compareTo(DatasetSortKey other)
+	{
+		if (bureauRank != other.bureauRank)
+		{
+			return bureauRank < other.bureauRank ? -1 : 1;
+		}
+		final int prefixCompare = Long.compareUnsigned(titlePrefix, other.titlePrefix);
+		return prefixCompare != 0 ? prefixCompare : title.compareTo(other.title);
+	}
+
+	/**
+	 * Sorts datasets into catalog order, in parallel for large lists.
+	 * @param datasetList List<Dataset> sorted in place
+	 */
+	static void sort(List<Dataset> datasetList)
+	{
+		final DatasetSortKey[] keys = keys(datasetList);
+		if (keys.length >= PARALLEL_SORT_THRESHOLD)
+		{
+			Arrays.parallelSort(keys);
+		}
+		else
+		{
+			Arrays.sort(keys);
+		}
+		copyBack(keys, datasetList);
+	}
+
+	/**
+	 * Merges sorted runs of a list into catalog order.  A run is a stretch of the list that is already
+	 * sorted, for example the datasets of one bureau catalog.  Ties keep the dataset from the earlier run,
+	 * so the result is the same as a stable sort of the whole list.
+	 * @param datasetList List<Dataset> sorted in place
+	 * @param runStartList List<Integer> start index of each run in ascending order, the first is 0
+	 */
+	static void mergeRuns(List<Dataset> datasetList, List<Integer> runStartList)
+	{
+		final DatasetSortKey[] keys = keys(datasetList);
+		final int runCount = runStartList.size();
+		final int[] cursor = new int[runCount];
+		final int[] end = new int[runCount];
+		for (int r = 0; r < runCount; r++)
+		{
+			cursor[r] = runStartList.get(r);
+			end[r] = r + 1 < runCount ? runStartList.get(r + 1) : keys.length;
+		}
+		final PriorityQueue<Integer> heap = new PriorityQueue<Integer>(Math.max(1, runCount), new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				final int compare = keys[cursor[a]].compareTo(keys[cursor[b]]);
+				return compare != 0 ? compare : a.compareTo(b);
+			}
+		});
+		for (int r = 0; r < runCount; r++)
+		{
+			if (cursor[r] < end[r])
+			{
+				heap.add(r);
+			}
+		}
+		final DatasetSortKey[] merged = new DatasetSortKey[keys.length];
+		int m = 0;
+		while (!heap.isEmpty())
+		{
+			final int r = heap.poll();
+			merged[m++] = keys[cursor[r]++];
+			if (cursor[r] < end[r])
+			{
+				heap.add(r);
+			}
+		}
+		copyBack(merged, datasetList);
+	}
+
+	private static DatasetSortKey[] keys(List<Dataset> datasetList)
+	{
+		//rank the distinct bureaus, there are only a few dozen of them
+		final Map<String, Integer> bureauRankMap = new HashMap<String, Integer>();
+		for (Dataset ds: datasetList)
+		{
+			bureauRankMap.put(ds.getBureauSortKey(), 0);
+		}
+		final String[] bureaus = bureauRankMap.keySet().toArray(new String[bureauRankMap.size()]);
+		Arrays.sort(bureaus);
+		for (int i = 0; i < bureaus.length; i++)
+		{
+			bureauRankMap.put(bureaus[i], i);
+		}
+		final DatasetSortKey[] keys = new DatasetSortKey[datasetList.size()];
+		for (int i = 0; i < keys.length; i++)
+		{
+			final Dataset ds = datasetList.get(i);
+			keys[i] = new DatasetSortKey(ds, bureauRankMap.get(ds.getBureauSortKey()));
+		}
+		return keys;
+	}
+
+	private static void copyBack(DatasetSortKey[] keys, List<Dataset> datasetList)
+	{
+		for (int i = 0; i < keys.length; i++)
+		{
+			datasetList.set(i, keys[i].dataset);
+		}
+	}
+
+	/**
+	 * Returns true if the list is in catalog order.
+	 */
+	static boolean isSorted(List<Dataset> datasetList)
+	{
+		for (int i = 1; i < datasetList.size(); i++)
+		{
+			if (datasetList.get(i - 1).compareTo(datasetList.get(i)) > 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,198 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Parses a catalog file one dataset at a time.
+ * <p>
+ * The document is built into JSONObjects as usual except for the dataset array, for example
+ * result/packages in a CKAN search result or dataset in a data.json file.  Each element of that
+ * array is handed to the callback as soon as it is complete and is not kept, so the whole file
+ * is never in memory at once.  The rest of the document, with the dataset array left empty, is
+ * returned at the end for the catalog level fields.
+ */
+class DatasetStreamParser implements ContentHandler {
+
+	/**
+	 * Receives each dataset of the array as it is parsed.
+	 */
+	interface DatasetCallback
+	{
+		void dataset(JSONObject datasetObject);
+	}
+
+	private final List<String> datasetArrayPath;
+	private final DatasetCallback callback;
+
+	//containers being built, innermost last, and the key each one is stored under
+	private final List<Object> containerStack = new ArrayList<Object>();
+	private final List<String> keyStack = new ArrayList<String>();
+	private String currentKey;
+	private Object root;
+
+	/**
+	 * @param callback DatasetCallback
+	 * @param datasetArrayPath String... object keys leading from the root to the dataset array
+	 */
+	DatasetStreamParser(DatasetCallback callback, String... datasetArrayPath)
+	{
+		if (callback == null || datasetArrayPath == null)
+		{
+			throw new NullPointerException("callback and datasetArrayPath cannot be null");
+		}
+		this.callback = callback;
+		this.datasetArrayPath = Arrays.asList(datasetArrayPath.clone());
+	}
+
+	/**
+	 * Parses the reader to the end.
+	 * @param reader Reader
+	 * @return JSONObject the document without the datasets
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	JSONObject parse(Reader reader) throws IOException, ParseException
+	{
+		new JSONParser().parse(reader, this);
+		if (!(root instanceof JSONObject))
+		{
+			throw new ParseException(ParseException.ERROR_UNEXPECTED_TOKEN, root);
+		}
+		return (JSONObject) root;
+	}
+
+	@Override
+	public void startJSON()
+	{
+		containerStack.clear();
+		keyStack.clear();
+		currentKey = null;
+		root = null;
+	}
+
+	@Override
+	public void endJSON()
+	{
+	}
+
+	@Override
+	public boolean startObject()
+	{
+		push(new JSONObject());
+		return true;
+	}
+
+	@Override
+	public boolean endObject()
+	{
+		final Object object = pop();
+		if (isDatasetArray())
+		{
+			callback.dataset((JSONObject) object);
+		}
+		else
+		{
+			addValue(object);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean startObjectEntry(String key)
+	{
+		currentKey = key;
+		return true;
+	}
+
+	@Override
+	public boolean endObjectEntry()
+	{
+		currentKey = null;
+		return true;
+	}
+
+	@Override
+	public boolean startArray()
+	{
+		push(new JSONArray());
+		return true;
+	}
+
+	@Override
+	public boolean endArray()
+	{
+		addValue(pop());
+		return true;
+	}
+
+	@Override
+	public boolean primitive(Object value)
+	{
+		addValue(value);
+		return true;
+	}
+
+	private void push(Object container)
+	{
+		containerStack.add(container);
+		keyStack.add(currentKey);
+		currentKey = null;
+	}
+
+	private Object pop()
+	{
+		final Object container = containerStack.remove(containerStack.size() - 1);
+		currentKey = keyStack.remove(keyStack.size() - 1);
+		return container;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addValue(Object value)
+	{
+		if (containerStack.isEmpty())
+		{
+			root = value;
+			return;
+		}
+		final Object parent = containerStack.get(containerStack.size() - 1);
+		if (parent instanceof JSONObject)
+		{
+			((JSONObject) parent).put(currentKey, value);
+		}
+		else
+		{
+			((JSONArray) parent).add(value);
+		}
+	}
+
+	/**
+	 * True when the innermost open container is the dataset array, that is an array reached from
+	 * the root through exactly the keys of datasetArrayPath.
+	 */
+	private boolean isDatasetArray()
+	{
+		if (containerStack.size() != datasetArrayPath.size() + 1 || !(containerStack.get(containerStack.size() - 1) instanceof JSONArray))
+		{
+			return false;
+		}
+		//keyStack.get(0) is the key of the root, which has none
+		for (int i = 0; i < datasetArrayPath.size(); i++)
+		{
+			if (!datasetArrayPath.get(i).equals(keyStack.get(i + 1)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+}
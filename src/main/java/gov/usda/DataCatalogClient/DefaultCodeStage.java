@@ -0,0 +1,167 @@
+package gov.usda.DataCatalogClient;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills in bureau code, program code, publisher and a keyword for sources whose metadata leaves
+ * them out, keyed by the source of the dataset (@see Catalog.setSource).
+ * <p>
+ * These were hard coded for the Forest Service ArcGIS catalog and for Ag Data Commons (DKAN)
+ * until those sources can publish the fields themselves.
+ */
+public class DefaultCodeStage extends EnrichmentStage<DefaultCodeStage.SourceDefaults> {
+
+	//Forest Service data.json from ArcGIS Online has no bureau or program codes
+	public final static SourceDefaults FOREST_SERVICE = new SourceDefaults("005:96", "005:059", null, "Forest Service");
+	//Ag Data Commons (DKAN) does not send bureau, program or publisher
+	public final static SourceDefaults AG_DATA_COMMONS = new SourceDefaults("005:18", "005:040", "Agricultural Research Service, Department of Agriculture", null);
+
+	//key of defaults that apply to every dataset whatever its source
+	private final static String ALL_SOURCES = "*";
+
+	private final Map<String, SourceDefaults> defaultsMap;
+
+	/**
+	 * Creates a stage with no defaults, add them per source with addSource.
+	 */
+	public DefaultCodeStage()
+	{
+		defaultsMap = new HashMap<String, SourceDefaults>();
+	}
+
+	/**
+	 * Creates a stage that applies the defaults to every dataset.
+	 * @param defaults SourceDefaults
+	 */
+	public DefaultCodeStage(SourceDefaults defaults)
+	{
+		this();
+		addSource(null, defaults);
+	}
+
+	/**
+	 * @param source String the source name, null for every dataset
+	 * @param defaults SourceDefaults
+	 * @return DefaultCodeStage this stage
+	 */
+	public DefaultCodeStage addSource(String source, SourceDefaults defaults)
+	{
+		if (defaults == null)
+		{
+			throw new NullPointerException("defaults cannot be null");
+		}
+		defaultsMap.put(source == null ? ALL_SOURCES : source, defaults);
+		return this;
+	}
+
+	@Override
+	protected List<String> lookupKeys(Dataset ds, String source)
+	{
+		final List<String> keyList = new ArrayList<String>(2);
+		keyList.add(ALL_SOURCES);
+		if (source != null)
+		{
+			keyList.add(source);
+		}
+		return keyList;
+	}
+
+	@Override
+	protected Map<String, SourceDefaults> buildIndex()
+	{
+		return Collections.unmodifiableMap(new HashMap<String, SourceDefaults>(defaultsMap));
+	}
+
+	@Override
+	protected void apply(Dataset ds, String source, SourceDefaults defaults)
+	{
+		defaults.apply(ds);
+	}
+
+	/**
+	 * The values one source is missing.  Codes are added to the dataset's lists when not already
+	 * there, the keyword is only used when the dataset has no keywords.
+	 */
+	public static class SourceDefaults
+	{
+		private final String bureauCode;
+		private final String programCode;
+		private final String publisherName;
+		private final String keyword;
+
+		/**
+		 * @param bureauCode String NNN:NN or null
+		 * @param programCode String NNN:NNN or null
+		 * @param publisherName String or null
+		 * @param keyword String used when a dataset has no keyword, or null
+		 */
+		public SourceDefaults(String bureauCode, String programCode, String publisherName, String keyword)
+		{
+			this.bureauCode = bureauCode;
+			this.programCode = programCode;
+			this.publisherName = publisherName;
+			this.keyword = keyword;
+			//fail here rather than on every dataset
+			apply(new Dataset());
+		}
+
+		/**
+		 * Applies the defaults to one dataset.
+		 * @param ds Dataset
+		 */
+		public void apply(Dataset ds)
+		{
+			try
+			{
+				if (bureauCode != null)
+				{
+					ds.setBureauCodeList(bureauCode);
+				}
+				if (programCode != null)
+				{
+					ds.setProgramCodeList(programCode);
+				}
+			}
+			catch (ParseException e)
+			{
+				throw new IllegalArgumentException(e.getMessage());
+			}
+			if (publisherName != null)
+			{
+				if (ds.getPublisher() == null)
+				{
+					ds.setPublisher(new Publisher());
+				}
+				ds.getPublisher().setName(publisherName);
+			}
+			/* Several datasets including U.S. Boundary don't have keyword */
+			if (keyword != null && (ds.getKeywordList() == null || ds.getKeywordList().isEmpty()))
+			{
+				final List<String> keywordList = new ArrayList<String>();
+				keywordList.add(keyword);
+				ds.setKeywordList(keywordList);
+			}
+		}
+
+		public String getBureauCode() {
+			return bureauCode;
+		}
+
+		public String getProgramCode() {
+			return programCode;
+		}
+
+		public String getPublisherName() {
+			return publisherName;
+		}
+
+		public String getKeyword() {
+			return keyword;
+		}
+	}
+}
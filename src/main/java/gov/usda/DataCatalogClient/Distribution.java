@@ -1,11 +1,15 @@
 package gov.usda.DataCatalogClient;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Date;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.json.simple.JSONObject;
@@ -407,6 +411,52 @@ public class Distribution {
 	}
 	//TODO: cosolidate all this null && isEmpty checking
 	
+	/**
+	 * Writes every field of this distribution to a catalog snapshot @see CatalogSnapshot
+	 */
+	void writeSnapshot(CatalogSnapshot.Output out)
+	{
+		out.writeURL(accessURL);
+		out.writeString(description);
+		out.writeURL(downloadURL);
+		out.writeString(format);
+		out.writeString(mediaType);
+		out.writeString(title);
+		out.writeInteger(byteSize);
+		out.writeDate(issued);
+		out.writeDate(modified);
+		out.writeString(license);
+		out.writeString(rights);
+		out.writeString(conformsTo);
+		out.writeString(describedBy);
+		out.writeString(describedByType);
+		out.writeString(type);
+		out.writeString(resourceType);
+	}
+
+	/**
+	 * Reads the fields written by writeSnapshot, as saved and without validation.
+	 */
+	void readSnapshot(CatalogSnapshot.Input in) throws IOException
+	{
+		accessURL = in.readURL();
+		description = in.readString();
+		downloadURL = in.readURL();
+		format = in.readString();
+		mediaType = in.readString();
+		title = in.readString();
+		byteSize = in.readInteger();
+		issued = in.readDate();
+		modified = in.readDate();
+		license = in.readString();
+		rights = in.readString();
+		conformsTo = in.readString();
+		describedBy = in.readString();
+		describedByType = in.readString();
+		type = in.readString();
+		resourceType = in.readString();
+	}
+	
 	public String getTitle() {
 		return title;
 	}
@@ -586,6 +636,29 @@ public class Distribution {
 		return distributionElement;
 	}
 	
+	/**
+	 * Writes this distribution as a legacy XML distribution element, the same element
+	 * toLegacyXML(Document) builds, straight to a stream.
+	 * @param writer XMLStreamWriter
+	 * @throws XMLStreamException
+	 */
+	public void toLegacyXML(XMLStreamWriter writer) throws XMLStreamException
+	{
+		writer.writeStartElement("distribution");
+		Utils.writeLegacyXMLField(writer, "accessURL", accessURL == null ? null : accessURL.toString());
+		Utils.writeLegacyXMLField(writer, "byteSize", byteSize == null ? null : byteSize.toString());
+		Utils.writeLegacyXMLField(writer, "conformsTo", conformsTo);
+		Utils.writeLegacyXMLField(writer, "describedBy", describedBy);
+		Utils.writeLegacyXMLField(writer, "describedByType", describedByType);
+		Utils.writeLegacyXMLField(writer, "description", description);
+		Utils.writeLegacyXMLField(writer, "downloadURL", downloadURL == null ? null : downloadURL.toString());
+		Utils.writeLegacyXMLField(writer, "format", format);
+		Utils.writeLegacyXMLField(writer, "mediaType", mediaType);
+		Utils.writeLegacyXMLField(writer, "title", title);
+		Utils.writeLegacyXMLField(writer, "type", type);
+		writer.writeEndElement();
+	}
+	
 	//TODO: Consolidate this method with dataset level
 	private Element fieldToLegacyXML(String elementName, String elementValue, Document doc)
 	{
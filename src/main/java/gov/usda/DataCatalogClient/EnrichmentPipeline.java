@@ -0,0 +1,181 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * The EnrichmentPipeline class runs a list of EnrichmentStage over a catalog.
+ * <p>
+ * Each stage builds its lookup index once per run, then every dataset goes through all stages in
+ * the order they were added.  Large catalogs are split into chunks that run in parallel; stages only
+ * change the dataset they are given, so chunks do not interfere.  Adding an agency specific fixup is a
+ * new stage, not another loop over the catalog.
+ * <p>
+ * Example, the Forest Service fixups:
+ * EnrichmentPipeline pipeline = new EnrichmentPipeline();
+ * pipeline.addStage(new DefaultCodeStage(DefaultCodeStage.FOREST_SERVICE));
+ * pipeline.addStage(NgdaThemeStage.fromJSONFile(NgdaThemeStage.FOREST_SERVICE_NGDA_FILE));
+ * pipeline.run(catalog);
+ */
+public class EnrichmentPipeline {
+
+	//below this many datasets the stages run on the calling thread
+	private final static int PARALLEL_THRESHOLD = 1024;
+
+	private final List<EnrichmentStage<?>> stageList;
+
+	public EnrichmentPipeline()
+	{
+		stageList = new ArrayList<EnrichmentStage<?>>();
+	}
+
+	/**
+	 * Adds a stage, stages run in the order they are added.
+	 * @param stage EnrichmentStage
+	 * @return EnrichmentPipeline this pipeline
+	 */
+	public EnrichmentPipeline addStage(EnrichmentStage<?> stage)
+	{
+		if (stage == null)
+		{
+			throw new NullPointerException("stage cannot be null");
+		}
+		stageList.add(stage);
+		return this;
+	}
+
+	/**
+	 * Enriches every dataset of a catalog and re-indexes the datasets that changed.
+	 * @param catalog Catalog
+	 * @return int number of datasets changed
+	 * @throws IOException if a stage cannot read its reference data
+	 * @throws ParseException if a stage's reference data is not valid JSON
+	 */
+	public int run(Catalog catalog) throws IOException, ParseException
+	{
+		if (catalog == null)
+		{
+			throw new NullPointerException("catalog cannot be null");
+		}
+		final List<Dataset> datasetList = catalog.getDatasetList();
+		final List<String> sourceList = new ArrayList<String>(datasetList.size());
+		for (Dataset ds: datasetList)
+		{
+			sourceList.add(catalog.getSource(ds));
+		}
+		final boolean[] changed = enrich(datasetList, sourceList);
+		int changedCount = 0;
+		for (int i = 0; i < changed.length; i++)
+		{
+			if (changed[i])
+			{
+				//the catalog indexes are not thread safe, so they are updated here after the parallel part
+				catalog.reindexDataset(datasetList.get(i));
+				changedCount++;
+			}
+		}
+		return changedCount;
+	}
+
+	/**
+	 * Enriches datasets that are not in a catalog yet, for example while a catalog is loading.
+	 * @param datasetList List<Dataset>
+	 * @param source String where the datasets came from, may be null
+	 * @return int number of datasets changed
+	 * @throws IOException if a stage cannot read its reference data
+	 * @throws ParseException if a stage's reference data is not valid JSON
+	 */
+	public int enrich(List<Dataset> datasetList, String source) throws IOException, ParseException
+	{
+		if (datasetList == null)
+		{
+			throw new NullPointerException("datasetList cannot be null");
+		}
+		final List<String> sourceList = new ArrayList<String>(datasetList.size());
+		for (int i = 0; i < datasetList.size(); i++)
+		{
+			sourceList.add(source);
+		}
+		int changedCount = 0;
+		for (boolean datasetChanged: enrich(datasetList, sourceList))
+		{
+			changedCount += datasetChanged ? 1 : 0;
+		}
+		return changedCount;
+	}
+
+	private boolean[] enrich(final List<Dataset> datasetList, final List<String> sourceList) throws IOException, ParseException
+	{
+		final List<Map<String, ?>> indexList = new ArrayList<Map<String, ?>>(stageList.size());
+		for (EnrichmentStage<?> stage: stageList)
+		{
+			indexList.add(stage.buildIndex());
+		}
+		final boolean[] changed = new boolean[datasetList.size()];
+		if (datasetList.size() < PARALLEL_THRESHOLD)
+		{
+			enrichRange(datasetList, sourceList, indexList, changed, 0, datasetList.size());
+			return changed;
+		}
+
+		final ForkJoinPool pool = ForkJoinPool.commonPool();
+		final int chunkSize = Math.max(PARALLEL_THRESHOLD / 4, datasetList.size() / (pool.getParallelism() * 4) + 1);
+		final List<Callable<Void>> taskList = new ArrayList<Callable<Void>>();
+		for (int start = 0; start < datasetList.size(); start += chunkSize)
+		{
+			final int from = start;
+			final int to = Math.min(start + chunkSize, datasetList.size());
+			taskList.add(new Callable<Void>() {
+				@Override
+				public Void call()
+				{
+					enrichRange(datasetList, sourceList, indexList, changed, from, to);
+					return null;
+				}
+			});
+		}
+		try
+		{
+			for (Future<Void> future: pool.invokeAll(taskList))
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Enrichment interrupted", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+		return changed;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void enrichRange(List<Dataset> datasetList, List<String> sourceList, List<Map<String, ?>> indexList, boolean[] changed, int from, int to)
+	{
+		for (int i = from; i < to; i++)
+		{
+			final Dataset ds = datasetList.get(i);
+			for (int s = 0; s < stageList.size(); s++)
+			{
+				final EnrichmentStage stage = stageList.get(s);
+				changed[i] |= stage.enrich(ds, sourceList.get(i), (Map) indexList.get(s));
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.json.simple.parser.ParseException;
+
+/**
+ * One step of an EnrichmentPipeline, for example naming bureaus or adding NGDA themes.
+ * <p>
+ * A stage declares how to look a dataset up (lookupKeys) and builds a hash index of its
+ * reference data (buildIndex).  The pipeline builds the index once per run, then calls apply
+ * for every key of every dataset that is in the index, so a stage costs one hash lookup per key
+ * no matter how large the reference data is.
+ * <p>
+ * apply is called from several threads at once for different datasets.  It may only change the
+ * dataset it is given and must treat the index as read only.
+ * @param <T> the reference data the index holds for each key
+ */
+public abstract class EnrichmentStage<T> {
+
+	/**
+	 * Returns the keys to look the dataset up by, in the order they should be applied.
+	 * @param ds Dataset
+	 * @param source String where the dataset came from (@see Catalog.setSource), may be null
+	 * @return List<String> keys, empty if the stage does not apply to the dataset
+	 */
+	protected abstract List<String> lookupKeys(Dataset ds, String source);
+
+	/**
+	 * Loads the reference data into a map from lookup key to entry.
+	 * @return Map<String, T>
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	protected abstract Map<String, T> buildIndex() throws IOException, ParseException;
+
+	/**
+	 * Enriches a dataset with the entry found for one of its keys.
+	 * @param ds Dataset
+	 * @param key String the lookup key that matched
+	 * @param entry T the reference data for the key
+	 */
+	protected abstract void apply(Dataset ds, String key, T entry);
+
+	/**
+	 * Called for a key that is not in the index.  Does nothing unless a stage overrides it.
+	 * @param ds Dataset
+	 * @param key String
+	 * @return boolean true if the dataset was changed
+	 */
+	protected boolean applyMissing(Dataset ds, String key)
+	{
+		return false;
+	}
+
+	/**
+	 * Runs this stage on one dataset.
+	 * @return boolean true if the dataset was changed
+	 */
+	boolean enrich(Dataset ds, String source, Map<String, T> index)
+	{
+		boolean changed = false;
+		for (String key: lookupKeys(ds, source))
+		{
+			final T entry = key == null ? null : index.get(key);
+			if (entry != null)
+			{
+				apply(ds, key, entry);
+				changed = true;
+			}
+			else
+			{
+				changed |= applyMissing(ds, key);
+			}
+		}
+		return changed;
+	}
+}
@@ -0,0 +1,293 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An export file and its compressed copies, written in one pass.  Every byte written goes to the
+ * plain file and through a compressor to each compressed file, and each file is counted and digested
+ * as it is written, so the manifest entries cost no second read.
+ * <p>
+ * Files are written to temporary files in the target directory that finish renames into place, the
+ * compressed files before the plain one, so a server never sees a plain file newer than its
+ * compressed copies.  Closing without finish discards the output.  The copies are compressed at the
+ * best level, once, for every request that is served them.
+ */
+final class ExportFile extends OutputStream {
+
+	private final static int BUFFER_SIZE = 64 * 1024;
+
+	private final List<Artifact> artifactList;
+	private final Artifact plain;
+	private final List<DeflaterOutputStream> compressorList;
+	private final String contentType;
+	private List<ExportManifest.Entry> entryList;
+
+	/**
+	 * One file being written: counted and digested, then buffered to its temporary file.
+	 */
+	private static final class Artifact extends FilterOutputStream
+	{
+		private final Path targetFile;
+		private final Path tempFile;
+		private final ExportSink.Compression compression;
+		private final MessageDigest digest;
+		private long size;
+
+		private Artifact(Path targetFile, Path tempFile, ExportSink.Compression compression) throws IOException
+		{
+			super(new BufferedOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE));
+			this.targetFile = targetFile;
+			this.tempFile = tempFile;
+			this.compression = compression;
+			try
+			{
+				this.digest = MessageDigest.getInstance("SHA-256");
+			}
+			catch (NoSuchAlgorithmException e)
+			{
+				//every Java platform has SHA-256
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			out.write(b);
+			digest.update((byte) b);
+			size++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			out.write(b, off, len);
+			digest.update(b, off, len);
+			size += len;
+		}
+	}
+
+	private ExportFile(List<Artifact> artifactList, List<DeflaterOutputStream> compressorList, String contentType)
+	{
+		this.artifactList = artifactList;
+		this.plain = artifactList.get(0);
+		this.compressorList = compressorList;
+		this.contentType = contentType;
+	}
+
+	/**
+	 * Opens a file with no compressed copies.
+	 */
+	static ExportFile open(String filePath, String contentType) throws IOException
+	{
+		return open(filePath, contentType, EnumSet.noneOf(ExportSink.Compression.class));
+	}
+
+	/**
+	 * Opens a file and a compressed copy of it for each compression, named with the compression's
+	 * file extension added.
+	 * @param filePath String
+	 * @param contentType String the media type recorded in the manifest
+	 * @param compressionSet Set<ExportSink.Compression>
+	 * @return ExportFile
+	 * @throws IOException
+	 */
+	static ExportFile open(String filePath, String contentType, Set<ExportSink.Compression> compressionSet) throws IOException
+	{
+		if (filePath == null || contentType == null || compressionSet == null)
+		{
+			throw (new NullPointerException("filePath, contentType and compressionSet cannot be null"));
+		}
+		final Path targetFile = Paths.get(filePath).toAbsolutePath();
+		final List<Artifact> artifactList = new ArrayList<Artifact>();
+		final List<DeflaterOutputStream> compressorList = new ArrayList<DeflaterOutputStream>();
+		try
+		{
+			artifactList.add(openArtifact(targetFile, null));
+			for (ExportSink.Compression compression: compressionSet)
+			{
+				final Path compressedFile = targetFile.resolveSibling(targetFile.getFileName() + compression.getFileExtension());
+				final Artifact artifact = openArtifact(compressedFile, compression);
+				artifactList.add(artifact);
+				compressorList.add(compression.newCompressor(artifact));
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			discard(artifactList, compressorList);
+			throw (e);
+		}
+		return new ExportFile(artifactList, compressorList, contentType);
+	}
+
+	private static Artifact openArtifact(Path targetFile, ExportSink.Compression compression) throws IOException
+	{
+		final Path tempFile = Files.createTempFile(targetFile.getParent(), targetFile.getFileName().toString(), ".tmp");
+		try
+		{
+			return new Artifact(targetFile, tempFile, compression);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			Files.deleteIfExists(tempFile);
+			throw (e);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		plain.write(b);
+		for (DeflaterOutputStream compressor: compressorList)
+		{
+			compressor.write(b);
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		plain.write(b, off, len);
+		for (DeflaterOutputStream compressor: compressorList)
+		{
+			compressor.write(b, off, len);
+		}
+	}
+
+	/**
+	 * Ends the compressed streams and moves every file into place.
+	 * @return List<ExportManifest.Entry> the plain file, then its compressed copies
+	 * @throws IOException
+	 */
+	List<ExportManifest.Entry> finish() throws IOException
+	{
+		if (entryList != null)
+		{
+			return entryList;
+		}
+		for (DeflaterOutputStream compressor: compressorList)
+		{
+			compressor.finish();
+			compressor.close();
+		}
+		plain.close();
+		final List<ExportManifest.Entry> finishedList = new ArrayList<ExportManifest.Entry>();
+		for (int i = artifactList.size() - 1; i >= 0; i--)
+		{
+			final Artifact artifact = artifactList.get(i);
+			Files.move(artifact.tempFile, artifact.targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			finishedList.add(0, new ExportManifest.Entry(artifact.targetFile.toString(), plain.targetFile.toString(), contentType,
+					artifact.compression == null ? ExportManifest.IDENTITY_ENCODING : artifact.compression.getContentEncoding(),
+					artifact.size, hex(artifact.digest.digest())));
+		}
+		entryList = Collections.unmodifiableList(finishedList);
+		return entryList;
+	}
+
+	/**
+	 * Closes the files, discarding them if finish was not called.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (entryList == null)
+		{
+			discard(artifactList, compressorList);
+		}
+	}
+
+	private static void discard(List<Artifact> artifactList, List<DeflaterOutputStream> compressorList) throws IOException
+	{
+		IOException closeException = null;
+		for (DeflaterOutputStream compressor: compressorList)
+		{
+			//release the native memory of the compressor, the output is thrown away
+			try
+			{
+				compressor.close();
+			}
+			catch (IOException e)
+			{
+				closeException = e;
+			}
+		}
+		for (Artifact artifact: artifactList)
+		{
+			try
+			{
+				artifact.close();
+			}
+			catch (IOException e)
+			{
+				closeException = e;
+			}
+			Files.deleteIfExists(artifact.tempFile);
+		}
+		if (closeException != null)
+		{
+			throw (closeException);
+		}
+	}
+
+	private static String hex(byte[] bytes)
+	{
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b: bytes)
+		{
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
+	/**
+	 * @return DeflaterOutputStream gzip at the best compression level
+	 */
+	static DeflaterOutputStream newGzipCompressor(OutputStream out) throws IOException
+	{
+		return new GZIPOutputStream(out, BUFFER_SIZE) {
+			{
+				def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		};
+	}
+
+	/**
+	 * @return DeflaterOutputStream zlib, HTTP's deflate encoding, at the best compression level
+	 */
+	static DeflaterOutputStream newDeflateCompressor(OutputStream out)
+	{
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException
+			{
+				try
+				{
+					super.close();
+				}
+				finally
+				{
+					//a Deflater passed in is not ended by close
+					deflater.end();
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,186 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.joda.time.DateTimeZone;
+
+/**
+ * Keeps the rendered export output of datasets between exports, keyed by the content fingerprint of
+ * the dataset (@see DatasetFingerprint).  Datasets with the same fingerprint export the same in every
+ * format, so an export with a cache only renders the datasets that changed since an earlier export and
+ * copies the rest from the cache.
+ * <p>
+ * Dates are rendered in the default time zone, so each dataset's output also records the zone it was
+ * rendered in and is only used while that zone is still the default.  Changing the default zone does
+ * not need a clear, the datasets are rendered again and replace the old output.
+ * <p>
+ * The cache holds at most maxBytes of rendered output, evicting the least recently used datasets
+ * first.  It is safe to share between threads and between catalogs.
+ */
+public final class ExportFragmentCache {
+
+	//map entry, key and the arrays of a cached dataset, roughly
+	private final static int ENTRY_OVERHEAD = 128;
+
+	private final long maxBytes;
+	private final LinkedHashMap<Long, Fragments> fragmentMap;
+	private long bytes;
+	private long hitCount;
+	private long missCount;
+
+	/**
+	 * The rendered output of one dataset, null for a format not rendered yet.  Never changed once
+	 * cached, more formats are cached by replacing it.
+	 */
+	static final class Fragments
+	{
+		private final DateTimeZone zone;
+		private final byte[] prettyJSON;
+		private final byte[] compactJSON;
+		private final String csvRow;
+		private final String xmlElement;
+
+		/**
+		 * @param zone DateTimeZone the default zone when rendering started
+		 */
+		Fragments(DateTimeZone zone, byte[] prettyJSON, byte[] compactJSON, String csvRow, String xmlElement)
+		{
+			this.zone = zone;
+			this.prettyJSON = prettyJSON;
+			this.compactJSON = compactJSON;
+			this.csvRow = csvRow;
+			this.xmlElement = xmlElement;
+		}
+
+		byte[] getPrettyJSON()
+		{
+			return prettyJSON;
+		}
+
+		byte[] getCompactJSON()
+		{
+			return compactJSON;
+		}
+
+		String getCSVRow()
+		{
+			return csvRow;
+		}
+
+		String getXMLElement()
+		{
+			return xmlElement;
+		}
+
+		private long size()
+		{
+			return ENTRY_OVERHEAD + (prettyJSON == null ? 0 : prettyJSON.length) + (compactJSON == null ? 0 : compactJSON.length)
+					+ 2L * ((csvRow == null ? 0 : csvRow.length()) + (xmlElement == null ? 0 : xmlElement.length()));
+		}
+	}
+
+	/**
+	 * @param maxBytes long the most rendered output to keep
+	 */
+	public ExportFragmentCache(long maxBytes)
+	{
+		if (maxBytes < 0)
+		{
+			throw (new IllegalArgumentException("maxBytes cannot be negative"));
+		}
+		this.maxBytes = maxBytes;
+		//access order, so the eldest entry is the least recently used
+		fragmentMap = new LinkedHashMap<Long, Fragments>(1024, 0.75f, true);
+	}
+
+	/**
+	 * @param fingerprint long the content fingerprint of a dataset
+	 * @param zone DateTimeZone the default zone the output is for
+	 * @return Fragments the cached output of the dataset, null when there is none for the zone
+	 */
+	synchronized Fragments get(long fingerprint, DateTimeZone zone)
+	{
+		Fragments fragments = fragmentMap.get(fingerprint);
+		if (fragments != null && !fragments.zone.equals(zone))
+		{
+			fragments = null;
+		}
+		if (fragments == null)
+		{
+			missCount++;
+		}
+		else
+		{
+			hitCount++;
+		}
+		return fragments;
+	}
+
+	/**
+	 * Caches the output of a dataset, replacing what was cached for it, then evicts the least recently
+	 * used datasets until the cache is within its size.
+	 */
+	synchronized void put(long fingerprint, Fragments fragments)
+	{
+		final Fragments replaced = fragmentMap.put(fingerprint, fragments);
+		if (replaced != null)
+		{
+			bytes -= replaced.size();
+		}
+		bytes += fragments.size();
+		final Iterator<Map.Entry<Long, Fragments>> iterator = fragmentMap.entrySet().iterator();
+		while (bytes > maxBytes && iterator.hasNext())
+		{
+			bytes -= iterator.next().getValue().size();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Empties the cache.  The hit and miss counts are kept.
+	 */
+	public synchronized void clear()
+	{
+		fragmentMap.clear();
+		bytes = 0;
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * @return long rendered output held, roughly, in bytes
+	 */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * @return int datasets cached
+	 */
+	public synchronized int size()
+	{
+		return fragmentMap.size();
+	}
+
+	/**
+	 * @return long datasets found in the cache
+	 */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * @return long datasets not found in the cache, and so rendered
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+}
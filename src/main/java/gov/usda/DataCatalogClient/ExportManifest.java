@@ -0,0 +1,225 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The files written by an export: for every file and every compressed copy of it, its media type,
+ * content encoding, size in bytes and SHA-256 checksum.  A web server reading the manifest can send a
+ * pre-compressed copy with its length and a strong ETag without reading or compressing anything.
+ * <p>
+ * In the manifest file, paths are relative to the directory of the manifest.
+ */
+public final class ExportManifest {
+
+	/**
+	 * The content encoding of a file that is not compressed.
+	 */
+	public final static String IDENTITY_ENCODING = "identity";
+
+	/**
+	 * One file of an export.
+	 */
+	public static final class Entry
+	{
+		private final String filePath;
+		private final String sourceFilePath;
+		private final String contentType;
+		private final String contentEncoding;
+		private final long size;
+		private final String sha256;
+
+		Entry(String filePath, String sourceFilePath, String contentType, String contentEncoding, long size, String sha256)
+		{
+			this.filePath = filePath;
+			this.sourceFilePath = sourceFilePath;
+			this.contentType = contentType;
+			this.contentEncoding = contentEncoding;
+			this.size = size;
+			this.sha256 = sha256;
+		}
+
+		public String getFilePath()
+		{
+			return filePath;
+		}
+
+		/**
+		 * @return String the plain file this file is a copy of, its own path when it is not compressed
+		 */
+		public String getSourceFilePath()
+		{
+			return sourceFilePath;
+		}
+
+		public String getContentType()
+		{
+			return contentType;
+		}
+
+		/**
+		 * @return String the HTTP content encoding, IDENTITY_ENCODING when not compressed
+		 */
+		public String getContentEncoding()
+		{
+			return contentEncoding;
+		}
+
+		/**
+		 * @return long bytes in the file
+		 */
+		public long getSize()
+		{
+			return size;
+		}
+
+		/**
+		 * @return String the SHA-256 of the file in lower case hex
+		 */
+		public String getSha256()
+		{
+			return sha256;
+		}
+
+		@Override
+		public String toString()
+		{
+			return filePath + " " + contentEncoding + " " + size + " " + sha256;
+		}
+	}
+
+	private final List<Entry> entryList;
+
+	ExportManifest(List<Entry> entryList)
+	{
+		this.entryList = Collections.unmodifiableList(new ArrayList<Entry>(entryList));
+	}
+
+	/**
+	 * @return List<Entry> every file of the export, each plain file followed by its compressed copies
+	 */
+	public List<Entry> getEntryList()
+	{
+		return entryList;
+	}
+
+	/**
+	 * @param sourceFilePath String a plain file of the export
+	 * @param contentEncoding String IDENTITY_ENCODING for the file itself or a compression's content encoding
+	 * @return Entry the file, null when the export has no such file
+	 */
+	public Entry getEntry(String sourceFilePath, String contentEncoding)
+	{
+		if (sourceFilePath == null || contentEncoding == null)
+		{
+			throw (new NullPointerException("sourceFilePath and contentEncoding cannot be null"));
+		}
+		final Path sourceFile = Paths.get(sourceFilePath).toAbsolutePath();
+		for (Entry entry: entryList)
+		{
+			if (entry.contentEncoding.equals(contentEncoding) && Paths.get(entry.sourceFilePath).equals(sourceFile))
+			{
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param directory Path the directory paths are written relative to
+	 * @return JSONObject every file of the export
+	 */
+	@SuppressWarnings("unchecked")
+	JSONObject toJSON(Path directory)
+	{
+		final JSONArray fileArray = new JSONArray();
+		for (Entry entry: entryList)
+		{
+			final JSONObject fileObject = new JSONObject();
+			fileObject.put("path", relativePath(directory, entry.filePath));
+			fileObject.put("source", relativePath(directory, entry.sourceFilePath));
+			fileObject.put("contentType", entry.contentType);
+			fileObject.put("contentEncoding", entry.contentEncoding);
+			fileObject.put("size", entry.size);
+			fileObject.put("sha256", entry.sha256);
+			fileArray.add(fileObject);
+		}
+		final JSONObject manifestObject = new JSONObject();
+		manifestObject.put("files", fileArray);
+		return manifestObject;
+	}
+
+	/**
+	 * Writes the manifest to a file, replacing any earlier manifest in one rename.
+	 * @param manifestFilePath String
+	 * @throws IOException
+	 */
+	public void toJSON(String manifestFilePath) throws IOException
+	{
+		if (manifestFilePath == null)
+		{
+			throw (new NullPointerException("manifestFilePath cannot be null"));
+		}
+		try (ExportFile out = ExportFile.open(manifestFilePath, ExportSink.Format.PROJECT_OPEN_DATA_JSON.getContentType()))
+		{
+			final Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			toJSON(Paths.get(manifestFilePath).toAbsolutePath().getParent()).writeJSONString(writer);
+			writer.flush();
+			out.finish();
+		}
+	}
+
+	/**
+	 * Reads a manifest written by toJSON.
+	 * @param manifestFilePath String
+	 * @return ExportManifest with the paths resolved against the directory of the manifest
+	 * @throws IOException when the file cannot be read or is not a manifest
+	 */
+	public static ExportManifest load(String manifestFilePath) throws IOException
+	{
+		if (manifestFilePath == null)
+		{
+			throw (new NullPointerException("manifestFilePath cannot be null"));
+		}
+		final Path directory = Paths.get(manifestFilePath).toAbsolutePath().getParent();
+		final List<Entry> entryList = new ArrayList<Entry>();
+		try (Reader reader = Files.newBufferedReader(Paths.get(manifestFilePath), StandardCharsets.UTF_8))
+		{
+			final JSONObject manifestObject = (JSONObject) new JSONParser().parse(reader);
+			for (Object file: (JSONArray) manifestObject.get("files"))
+			{
+				final JSONObject fileObject = (JSONObject) file;
+				entryList.add(new Entry(directory.resolve((String) fileObject.get("path")).toString(),
+						directory.resolve((String) fileObject.get("source")).toString(),
+						(String) fileObject.get("contentType"),
+						(String) fileObject.get("contentEncoding"),
+						((Number) fileObject.get("size")).longValue(),
+						(String) fileObject.get("sha256")));
+			}
+		}
+		catch (ParseException | ClassCastException | NullPointerException e)
+		{
+			throw new IOException(manifestFilePath + " is not an export manifest", e);
+		}
+		return new ExportManifest(entryList);
+	}
+
+	private static String relativePath(Path directory, String filePath)
+	{
+		return directory.relativize(Paths.get(filePath)).toString();
+	}
+}
@@ -0,0 +1,186 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * One file of a catalog export: its format, the data listing it holds and where it is written.
+ * Catalog.export writes any number of sinks in a single pass over the catalog, so the nightly public
+ * and enterprise files in every format cost one sort and one traversal.
+ * <p>
+ * A sink writes exactly what the matching single-format method writes: toProjectOpenDataJSON,
+ * toCSV or toLegacyXML.  It can also write compressed copies of the file in the same pass, for
+ * example data.json.gz, which a web server can send as they are instead of compressing the file for
+ * every request.  The export manifest records the size and checksum of every file.
+ */
+public final class ExportSink {
+
+	/**
+	 * The formats a catalog can be exported to.
+	 */
+	public enum Format
+	{
+		PROJECT_OPEN_DATA_JSON ("application/json"),
+		CSV ("text/csv"),
+		LEGACY_XML ("application/xml");
+
+		private final String contentType;
+
+		private Format(String contentType)
+		{
+			this.contentType = contentType;
+		}
+
+		/**
+		 * @return String the media type of the format
+		 */
+		public String getContentType()
+		{
+			return contentType;
+		}
+	};
+
+	/**
+	 * The compressed copies a sink can write, each named with its file extension added to the file
+	 * name and served with its HTTP content encoding.
+	 */
+	public enum Compression
+	{
+		GZIP (".gz", "gzip") {
+			DeflaterOutputStream newCompressor(OutputStream out) throws IOException { return ExportFile.newGzipCompressor(out); }
+		},
+		DEFLATE (".zz", "deflate") {
+			DeflaterOutputStream newCompressor(OutputStream out) { return ExportFile.newDeflateCompressor(out); }
+		};
+
+		private final String fileExtension;
+		private final String contentEncoding;
+
+		private Compression(String fileExtension, String contentEncoding)
+		{
+			this.fileExtension = fileExtension;
+			this.contentEncoding = contentEncoding;
+		}
+
+		abstract DeflaterOutputStream newCompressor(OutputStream out) throws IOException;
+
+		public String getFileExtension()
+		{
+			return fileExtension;
+		}
+
+		public String getContentEncoding()
+		{
+			return contentEncoding;
+		}
+	};
+
+	private final Format format;
+	private final Catalog.DataListingCode dataListingType;
+	private final String filePath;
+	private final boolean compact;
+	private final Set<Compression> compressionSet;
+
+	private ExportSink(Format format, Catalog.DataListingCode dataListingType, String filePath, boolean compact, Compression... compressions)
+	{
+		if (format == null || dataListingType == null || filePath == null || compressions == null)
+		{
+			throw (new NullPointerException("format, dataListingType, filePath and compressions cannot be null"));
+		}
+		this.format = format;
+		this.dataListingType = dataListingType;
+		this.filePath = filePath;
+		this.compact = compact;
+		final Set<Compression> compressionSet = EnumSet.noneOf(Compression.class);
+		compressionSet.addAll(Arrays.asList(compressions));
+		this.compressionSet = Collections.unmodifiableSet(compressionSet);
+	}
+
+	/**
+	 * @param compressions Compression... compressed copies to write beside the file
+	 * @return ExportSink a pretty printed Project Open Data catalog file, like toProjectOpenDataJSON
+	 */
+	public static ExportSink projectOpenDataJSON(String podFilePath, Catalog.DataListingCode dataListingType, Compression... compressions)
+	{
+		return new ExportSink(Format.PROJECT_OPEN_DATA_JSON, dataListingType, podFilePath, false, compressions);
+	}
+
+	/**
+	 * @param compact boolean true to leave out line breaks and indenting
+	 * @param compressions Compression... compressed copies to write beside the file
+	 * @return ExportSink a Project Open Data catalog file
+	 */
+	public static ExportSink projectOpenDataJSON(String podFilePath, Catalog.DataListingCode dataListingType, boolean compact, Compression... compressions)
+	{
+		return new ExportSink(Format.PROJECT_OPEN_DATA_JSON, dataListingType, podFilePath, compact, compressions);
+	}
+
+	/**
+	 * @param compressions Compression... compressed copies to write beside the file
+	 * @return ExportSink a CSV file, like toCSV
+	 */
+	public static ExportSink csv(String filePath, Catalog.DataListingCode dataListingType, Compression... compressions)
+	{
+		return new ExportSink(Format.CSV, dataListingType, filePath, false, compressions);
+	}
+
+	/**
+	 * @param compressions Compression... compressed copies to write beside the file
+	 * @return ExportSink a legacy XML file, like toLegacyXML
+	 */
+	public static ExportSink legacyXML(String xmlFileName, Catalog.DataListingCode dataListingType, Compression... compressions)
+	{
+		return new ExportSink(Format.LEGACY_XML, dataListingType, xmlFileName, false, compressions);
+	}
+
+	public Format getFormat()
+	{
+		return format;
+	}
+
+	public Catalog.DataListingCode getDataListingType()
+	{
+		return dataListingType;
+	}
+
+	public String getFilePath()
+	{
+		return filePath;
+	}
+
+	/**
+	 * @return boolean true when Project Open Data output leaves out line breaks and indenting
+	 */
+	public boolean isCompact()
+	{
+		return compact;
+	}
+
+	/**
+	 * @return Set<Compression> the compressed copies written beside the file, empty for none
+	 */
+	public Set<Compression> getCompressionSet()
+	{
+		return compressionSet;
+	}
+
+	/**
+	 * @param isPublic boolean whether the dataset is public or restricted public
+	 * @return boolean true when the dataset belongs in this sink's listing
+	 */
+	boolean accepts(boolean isPublic)
+	{
+		return isPublic || dataListingType == Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY;
+	}
+
+	@Override
+	public String toString()
+	{
+		return format + " " + dataListingType + " " + filePath;
+	}
+}
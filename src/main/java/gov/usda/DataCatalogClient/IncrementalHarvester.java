@@ -0,0 +1,412 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The IncrementalHarvester class keeps a CKAN organization file on disk up to date by asking CKAN only
+ * for what changed.
+ * <p>
+ * For every organization it stores a high-water mark, the latest metadata_modified it has seen, in
+ * harvest_state.json next to the organization files.  A harvest asks package_search for the packages
+ * modified at or after the mark (deleted ones included), replaces or removes them in the organization
+ * file by package id and moves the mark forward.  An hourly refresh of an organization that did not
+ * change downloads only the packages sitting at the mark, and leaves the organization file alone.
+ * <p>
+ * The organization file has the same layout as a CKAN organization_show response, so it loads with
+ * Catalog.loadCatalogFromCKAN(String) like a full download.  A file from an earlier full download
+ * is picked up as it is and its newest package becomes the first mark.
+ * <p>
+ * An organization can also be harvested into a CatalogStore, which writes only the changed packages
+ * instead of the whole file.
+ */
+public class IncrementalHarvester {
+
+	public final static String HARVEST_STATE_FILE = "harvest_state.json";
+	public final static String CKAN_PACKAGE_ID = "id";
+	public final static String CKAN_PACKAGE_NAME = "name";
+	public final static String CKAN_PACKAGE_STATE = "state";
+	public final static String CKAN_PACKAGE_STATE_DELETED = "deleted";
+	public final static String CKAN_SEARCH_RESULTS = "results";
+	public final static String CKAN_SEARCH_COUNT = "count";
+	public final static String CKAN_SUCCESS = "success";
+	public final static String CKAN_ERROR = "error";
+
+	private final static int PAGE_SIZE = 1000;
+
+	private static final Logger log = Logger.getLogger(IncrementalHarvester.class.getName());
+
+	private final NetworkRequest networkRequest;
+	private final Path stateFile;
+	private final JSONObject highWaterMarkObject;
+
+	/**
+	 * @param networkRequest NetworkRequest the CKAN server to harvest from
+	 * @param harvestDirectory String directory of the organization files and the harvest state
+	 * @throws IOException
+	 * @throws ParseException if the harvest state file is not valid JSON
+	 */
+	public IncrementalHarvester(NetworkRequest networkRequest, String harvestDirectory) throws IOException, ParseException
+	{
+		if (networkRequest == null || harvestDirectory == null)
+		{
+			throw new NullPointerException("networkRequest and harvestDirectory cannot be null");
+		}
+		this.networkRequest = networkRequest;
+		Files.createDirectories(Paths.get(harvestDirectory));
+		stateFile = Paths.get(harvestDirectory, HARVEST_STATE_FILE);
+		highWaterMarkObject = Files.exists(stateFile) ? loadJson(stateFile) : new JSONObject();
+	}
+
+	/**
+	 * @param organization String CKAN organization name
+	 * @return String the latest metadata_modified harvested, null before the first harvest
+	 */
+	public String getHighWaterMark(String organization)
+	{
+		return (String) highWaterMarkObject.get(organization);
+	}
+
+	/**
+	 * Brings an organization file up to date with CKAN and saves the new high-water mark.
+	 * @param organization String CKAN organization name
+	 * @param organizationFileName String the organization file, created if it does not exist
+	 * @return HarvestResult what changed
+	 * @throws IOException
+	 * @throws ParseException if CKAN or the organization file return invalid JSON
+	 */
+	@SuppressWarnings("unchecked")
+	public HarvestResult harvest(String organization, String organizationFileName) throws IOException, ParseException
+	{
+		if (organization == null || organizationFileName == null)
+		{
+			throw new NullPointerException("organization and organizationFileName cannot be null");
+		}
+		final Path organizationFile = Paths.get(organizationFileName);
+		final JSONObject organizationObject;
+		if (Files.exists(organizationFile))
+		{
+			organizationObject = loadJson(organizationFile);
+		}
+		else
+		{
+			final JSONObject resultObject = new JSONObject();
+			resultObject.put(CKAN_PACKAGE_NAME, organization);
+			organizationObject = new JSONObject();
+			organizationObject.put(CKAN_SUCCESS, Boolean.TRUE);
+			organizationObject.put(Catalog.CKAN_CATALOG, resultObject);
+		}
+		final JSONObject resultObject = (JSONObject) organizationObject.get(Catalog.CKAN_CATALOG);
+		final JSONArray packageArray = resultObject.get(Dataset.CKAN_DATASET) == null ? new JSONArray() : (JSONArray) resultObject.get(Dataset.CKAN_DATASET);
+
+		//packages by id in file order, an update keeps the package's place
+		final Map<String, JSONObject> packageMap = new LinkedHashMap<String, JSONObject>(packageArray.size() * 2);
+		final String previousMark = getHighWaterMark(organization);
+		final HarvestResult harvestResult = new HarvestResult(organization, previousMark);
+		for (Object packageObject: packageArray)
+		{
+			packageMap.put(packageKey((JSONObject) packageObject), (JSONObject) packageObject);
+			if (previousMark == null)
+			{
+				//a file from a full download, start from its newest package
+				harvestResult.moveMark((JSONObject) packageObject);
+			}
+		}
+
+		searchChanges(organization, harvestResult, new PackageTarget() {
+			@Override
+			public JSONObject get(String key)
+			{
+				return packageMap.get(key);
+			}
+
+			@Override
+			public void put(String key, JSONObject packageObject)
+			{
+				packageMap.put(key, packageObject);
+			}
+
+			@Override
+			public boolean delete(String key)
+			{
+				return packageMap.remove(key) != null;
+			}
+		});
+
+		if (harvestResult.isChanged() || !Files.exists(organizationFile))
+		{
+			final JSONArray newPackageArray = new JSONArray();
+			newPackageArray.addAll(packageMap.values());
+			resultObject.put(Dataset.CKAN_DATASET, newPackageArray);
+			writeJson(organizationFile, organizationObject);
+		}
+		saveMark(harvestResult, previousMark);
+		return harvestResult;
+	}
+
+	/**
+	 * Brings a catalog store up to date with CKAN and saves the new high-water mark.  Packages are
+	 * stored as CKAN records keyed by package id, so only the changed packages are written and nothing
+	 * is rewritten when nothing changed.
+	 * @param organization String CKAN organization name
+	 * @param store CatalogStore the organization's store
+	 * @return HarvestResult what changed
+	 * @throws IOException
+	 * @throws ParseException if CKAN returns invalid JSON
+	 */
+	public HarvestResult harvest(String organization, final CatalogStore store) throws IOException, ParseException
+	{
+		if (organization == null || store == null)
+		{
+			throw new NullPointerException("organization and store cannot be null");
+		}
+		final String previousMark = getHighWaterMark(organization);
+		final HarvestResult harvestResult = new HarvestResult(organization, previousMark);
+		if (previousMark == null && store.size() > 0)
+		{
+			//a store filled from a full download, start from its newest package
+			store.scan(new CatalogStore.StoreVisitor() {
+				@Override
+				public void visit(String key, RawDataset rawDataset)
+				{
+					harvestResult.moveMark(rawDataset.getObject());
+				}
+			});
+		}
+		searchChanges(organization, harvestResult, new PackageTarget() {
+			@Override
+			public JSONObject get(String key) throws IOException
+			{
+				final RawDataset rawDataset = store.get(key);
+				return rawDataset == null ? null : rawDataset.getObject();
+			}
+
+			@Override
+			public void put(String key, JSONObject packageObject) throws IOException
+			{
+				store.put(key, RawDataset.fromCKAN(packageObject));
+			}
+
+			@Override
+			public boolean delete(String key) throws IOException
+			{
+				return store.delete(key);
+			}
+		});
+		store.sync();
+		saveMark(harvestResult, previousMark);
+		return harvestResult;
+	}
+
+	/**
+	 * Pages through package_search from the mark, applying every package returned to the target.
+	 * @throws IOException if CKAN answers a page with an error, the mark is then left where it was
+	 */
+	private void searchChanges(String organization, HarvestResult harvestResult, PackageTarget target) throws IOException, ParseException
+	{
+		final String since = harvestResult.highWaterMark;
+		int start = 0;
+		long count;
+		do
+		{
+			final JSONObject searchObject = Utils.loadJsonObjectFromString(networkRequest.searchPackages(organization, since, start, PAGE_SIZE));
+			final JSONObject searchResult = searchResult(organization, start, searchObject);
+			final JSONArray resultArray = (JSONArray) searchResult.get(CKAN_SEARCH_RESULTS);
+			count = ((Number) searchResult.get(CKAN_SEARCH_COUNT)).longValue();
+			for (Object resultPackage: resultArray)
+			{
+				harvestResult.applyChange(target, (JSONObject) resultPackage);
+			}
+			start += resultArray.size();
+			if (resultArray.isEmpty())
+			{
+				break;
+			}
+		}
+		while (start < count);
+	}
+
+	/**
+	 * Returns the result of a package_search response.
+	 * @throws IOException with the CKAN error when the search failed or the result is incomplete
+	 */
+	private static JSONObject searchResult(String organization, int start, JSONObject searchObject) throws IOException
+	{
+		final Object error = searchObject.get(CKAN_ERROR);
+		if (Boolean.FALSE.equals(searchObject.get(CKAN_SUCCESS)))
+		{
+			throw new IOException("package_search for " + organization + " from " + start + " failed: "
+					+ (error == null ? "no error given" : error.toString()));
+		}
+		if (!(searchObject.get(Catalog.CKAN_CATALOG) instanceof JSONObject))
+		{
+			throw new IOException("package_search for " + organization + " from " + start + " returned no result"
+					+ (error == null ? "" : ": " + error.toString()));
+		}
+		final JSONObject searchResult = (JSONObject) searchObject.get(Catalog.CKAN_CATALOG);
+		if (!(searchResult.get(CKAN_SEARCH_RESULTS) instanceof JSONArray) || !(searchResult.get(CKAN_SEARCH_COUNT) instanceof Number))
+		{
+			throw new IOException("package_search for " + organization + " from " + start + " returned a result without "
+					+ CKAN_SEARCH_RESULTS + " and " + CKAN_SEARCH_COUNT);
+		}
+		return searchResult;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void saveMark(HarvestResult harvestResult, String previousMark) throws IOException
+	{
+		if (harvestResult.highWaterMark != null && !harvestResult.highWaterMark.equals(previousMark))
+		{
+			highWaterMarkObject.put(harvestResult.organization, harvestResult.highWaterMark);
+			writeJson(stateFile, highWaterMarkObject);
+		}
+		log.log(Level.FINE, harvestResult.toString());
+	}
+
+	/**
+	 * Where harvested packages go, by package id.
+	 */
+	private interface PackageTarget
+	{
+		JSONObject get(String key) throws IOException;
+
+		void put(String key, JSONObject packageObject) throws IOException;
+
+		boolean delete(String key) throws IOException;
+	}
+
+	private static String packageKey(JSONObject packageObject)
+	{
+		final Object id = packageObject.get(CKAN_PACKAGE_ID);
+		return id != null ? (String) id : (String) packageObject.get(CKAN_PACKAGE_NAME);
+	}
+
+	private static JSONObject loadJson(Path file) throws IOException, ParseException
+	{
+		return Utils.loadJsonObjectFromString(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes to a temporary file and renames it over the old one, a crash leaves the old file whole.
+	 */
+	private static void writeJson(Path file, JSONObject object) throws IOException
+	{
+		final Path parent = file.toAbsolutePath().getParent();
+		final File tempFile = File.createTempFile(file.getFileName().toString(), ".tmp", parent.toFile());
+		try
+		{
+			try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8))
+			{
+				object.writeJSONString(writer);
+			}
+			Files.move(tempFile.toPath(), file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	/**
+	 * What one harvest of an organization changed.
+	 */
+	public static class HarvestResult
+	{
+		private final String organization;
+		private int updatedCount;
+		private int deletedCount;
+		private String highWaterMark;
+
+		private HarvestResult(String organization, String highWaterMark)
+		{
+			this.organization = organization;
+			this.highWaterMark = highWaterMark;
+		}
+
+		private void applyChange(PackageTarget target, JSONObject resultPackage) throws IOException
+		{
+			moveMark(resultPackage);
+			final String key = packageKey(resultPackage);
+			if (CKAN_PACKAGE_STATE_DELETED.equals(resultPackage.get(CKAN_PACKAGE_STATE)))
+			{
+				if (target.delete(key))
+				{
+					deletedCount++;
+				}
+				return;
+			}
+			final JSONObject existingPackage = target.get(key);
+			//the search range includes the mark, so the newest packages come back unchanged
+			if (existingPackage == null || !sameModified(existingPackage, resultPackage))
+			{
+				target.put(key, resultPackage);
+				updatedCount++;
+			}
+		}
+
+		/**
+		 * CKAN writes metadata_modified in one fixed UTC format, so the later time is the larger string.
+		 */
+		private void moveMark(JSONObject packageObject)
+		{
+			final String modified = (String) packageObject.get(Dataset.CKAN_DATASET_METADATA_MODIFIED);
+			if (modified != null && (highWaterMark == null || modified.compareTo(highWaterMark) > 0))
+			{
+				highWaterMark = modified;
+			}
+		}
+
+		private static boolean sameModified(JSONObject existingPackage, JSONObject resultPackage)
+		{
+			final Object modified = resultPackage.get(Dataset.CKAN_DATASET_METADATA_MODIFIED);
+			return modified != null && modified.equals(existingPackage.get(Dataset.CKAN_DATASET_METADATA_MODIFIED));
+		}
+
+		public String getOrganization() {
+			return organization;
+		}
+
+		/**
+		 * @return int packages added or replaced
+		 */
+		public int getUpdatedCount() {
+			return updatedCount;
+		}
+
+		public int getDeletedCount() {
+			return deletedCount;
+		}
+
+		/**
+		 * @return String the mark after this harvest
+		 */
+		public String getHighWaterMark() {
+			return highWaterMark;
+		}
+
+		public boolean isChanged()
+		{
+			return updatedCount > 0 || deletedCount > 0;
+		}
+
+		@Override
+		public String toString() {
+			return "HarvestResult [organization=" + organization + ", updated=" + updatedCount + ", deleted="
+					+ deletedCount + ", highWaterMark=" + highWaterMark + "]";
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Writes a legacy XML catalog file one dataset element at a time through StAX.  Datasets are either
+ * written directly or rendered once with render and written to any number of files.  XML errors are
+ * reported as IOException.
+ */
+final class LegacyXMLWriter implements Closeable {
+
+	private final static XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	private final ExportFile file;
+	private final Writer out;
+	private final XMLStreamWriter xmlWriter;
+	private List<ExportManifest.Entry> entryList;
+
+	private LegacyXMLWriter(ExportFile file, Writer out, XMLStreamWriter xmlWriter)
+	{
+		this.file = file;
+		this.out = out;
+		this.xmlWriter = xmlWriter;
+	}
+
+	/**
+	 * Opens an XML file and starts the catalog element.
+	 * @param xmlFileName String
+	 * @return LegacyXMLWriter
+	 * @throws IOException
+	 */
+	static LegacyXMLWriter open(String xmlFileName) throws IOException
+	{
+		return open(xmlFileName, EnumSet.noneOf(ExportSink.Compression.class));
+	}
+
+	/**
+	 * Opens an XML file that is replaced when finish is called, with a compressed copy beside it for
+	 * each compression (@see ExportFile).
+	 */
+	static LegacyXMLWriter open(String xmlFileName, Set<ExportSink.Compression> compressionSet) throws IOException
+	{
+		final ExportFile file = ExportFile.open(xmlFileName, ExportSink.Format.LEGACY_XML.getContentType(), compressionSet);
+		try
+		{
+			final Writer out = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), 64 * 1024);
+			final XMLStreamWriter xmlWriter = outputFactory.createXMLStreamWriter(out);
+			xmlWriter.writeStartDocument("UTF-8", "1.0");
+			xmlWriter.writeStartElement("catalog");
+			return new LegacyXMLWriter(file, out, xmlWriter);
+		}
+		catch (XMLStreamException e)
+		{
+			file.close();
+			throw new IOException(e);
+		}
+		catch (RuntimeException e)
+		{
+			file.close();
+			throw (e);
+		}
+	}
+
+	/**
+	 * Writes one dataset element.
+	 */
+	void writeDataset(Dataset ds) throws IOException
+	{
+		try
+		{
+			ds.toLegacyXML(xmlWriter);
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * @return String the dataset element of a dataset, as writeDataset writes it
+	 */
+	static String render(Dataset ds) throws IOException
+	{
+		final StringWriter rendered = new StringWriter();
+		try
+		{
+			final XMLStreamWriter fragmentWriter = outputFactory.createXMLStreamWriter(rendered);
+			ds.toLegacyXML(fragmentWriter);
+			fragmentWriter.flush();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e);
+		}
+		return rendered.toString();
+	}
+
+	/**
+	 * Writes a dataset element rendered by render.
+	 */
+	void writeRendered(String rendered) throws IOException
+	{
+		try
+		{
+			//close a pending start tag, then pass the rendered element through unchanged
+			xmlWriter.writeCharacters("");
+			xmlWriter.flush();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e);
+		}
+		out.write(rendered);
+	}
+
+	/**
+	 * Ends the catalog element and moves the finished file and its compressed copies into place.
+	 */
+	void finish() throws IOException
+	{
+		if (entryList != null)
+		{
+			return;
+		}
+		try
+		{
+			xmlWriter.writeEndElement();
+			xmlWriter.writeEndDocument();
+			xmlWriter.close();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e);
+		}
+		out.flush();
+		entryList = file.finish();
+	}
+
+	/**
+	 * @return List<ExportManifest.Entry> the file and its compressed copies, null until finish
+	 */
+	List<ExportManifest.Entry> getEntryList()
+	{
+		return entryList;
+	}
+
+	/**
+	 * Closes the file, discarding it if finish was not called.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+}
@@ -0,0 +1,130 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The result of merging one catalog into another (@see Catalog.addFromOtherCatalog(Catalog, DatasetMergePolicy)).
+ * <p>
+ * Lists every dataset that was already in the catalog and, for each field where the two copies
+ * differed, the source whose value was kept.
+ */
+public class MergeReport {
+
+	private int addedCount;
+	private final List<MergedDataset> mergedDatasetList;
+
+	public MergeReport()
+	{
+		mergedDatasetList = new ArrayList<MergedDataset>();
+	}
+
+	void addAdded()
+	{
+		addedCount++;
+	}
+
+	void addMerged(MergedDataset mergedDataset)
+	{
+		mergedDatasetList.add(mergedDataset);
+	}
+
+	/**
+	 * @return int datasets whose identifier was new to the catalog
+	 */
+	public int getAddedCount() {
+		return addedCount;
+	}
+
+	/**
+	 * @return int datasets whose identifier was already in the catalog
+	 */
+	public int getMergedCount() {
+		return mergedDatasetList.size();
+	}
+
+	public List<MergedDataset> getMergedDatasetList() {
+		return Collections.unmodifiableList(mergedDatasetList);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder report = new StringBuilder();
+		report.append("MergeReport [added=").append(addedCount).append(", merged=").append(mergedDatasetList.size()).append("]\n");
+		for (MergedDataset mergedDataset: mergedDatasetList)
+		{
+			if (mergedDataset.isConflict())
+			{
+				report.append(mergedDataset).append("\n");
+			}
+		}
+		return report.toString();
+	}
+
+	/**
+	 * One dataset found in both catalogs.
+	 */
+	public static class MergedDataset
+	{
+		private final String uniqueIdentifier;
+		private final String existingSource;
+		private final String incomingSource;
+		private final Map<DatasetField, String> fieldSourceMap;
+
+		MergedDataset(String uniqueIdentifier, String existingSource, String incomingSource)
+		{
+			this.uniqueIdentifier = uniqueIdentifier;
+			this.existingSource = existingSource;
+			this.incomingSource = incomingSource;
+			fieldSourceMap = new EnumMap<DatasetField, String>(DatasetField.class);
+		}
+
+		void putFieldSource(DatasetField field, String source)
+		{
+			fieldSourceMap.put(field, source);
+		}
+
+		public String getUniqueIdentifier() {
+			return uniqueIdentifier;
+		}
+
+		public String getExistingSource() {
+			return existingSource;
+		}
+
+		public String getIncomingSource() {
+			return incomingSource;
+		}
+
+		/**
+		 * Returns the source that won each field where the two copies differed.  Fields that were
+		 * the same in both copies are not listed.
+		 * @return Map<DatasetField, String>
+		 */
+		public Map<DatasetField, String> getFieldSourceMap() {
+			return Collections.unmodifiableMap(fieldSourceMap);
+		}
+
+		/**
+		 * @return boolean true if the two copies differed in any field
+		 */
+		public boolean isConflict() {
+			return !fieldSourceMap.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder merged = new StringBuilder();
+			merged.append(uniqueIdentifier).append(" (").append(existingSource).append(", ").append(incomingSource).append("):");
+			for (Entry<DatasetField, String> entry: fieldSourceMap.entrySet())
+			{
+				merged.append(" ").append(entry.getKey()).append("=").append(entry.getValue());
+			}
+			return merged.toString();
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -116,6 +117,54 @@ public class NetworkRequest
 		return getHttpResponse();
 	}
 	
+	/**
+	 * Returns one page of an organization's packages from CKAN package_search, oldest change first.
+	 * <p>
+	 * With modifiedSince only packages whose metadata_modified is at or after that time are returned,
+	 * deleted packages included (with state "deleted") so a harvest can remove them.
+	 * @param organization String CKAN organization name
+	 * @param modifiedSince String CKAN metadata_modified time, for example 2017-02-06T15:04:05.123456, or null for every package
+	 * @param start int index of the first package
+	 * @param rows int page size
+	 * @return String CKAN package_search response, the packages are in result/results
+	 * @throws IOException
+	 */
+	public String searchPackages(String organization, String modifiedSince, int start, int rows) throws IOException
+	{
+		if (organization == null)
+		{
+			throw new NullPointerException("organization cannot be null when searching packages");
+		}
+		String filterQuery = "organization:" + organization;
+		if (modifiedSince != null)
+		{
+			filterQuery = filterQuery + " AND metadata_modified:[" + toSolrDate(modifiedSince) + " TO *]";
+		}
+		final URL dataAPIURL = new URL(server + "/api/3/action/package_search?fq=" + URLEncoder.encode(filterQuery, "UTF-8")
+				+ "&sort=" + URLEncoder.encode("metadata_modified asc", "UTF-8") + "&start=" + start + "&rows=" + rows
+				+ (modifiedSince != null ? "&include_deleted=true" : ""));
+		log.log(Level.FINE, dataAPIURL.toString());
+		setupConnection(dataAPIURL);
+		connection.setRequestProperty("Content-Type", "application/json");
+		return getHttpResponse();
+	}
+	
+	/**
+	 * CKAN stores metadata_modified in UTC with microseconds and no zone, Solr wants milliseconds and a Z.
+	 * @param ckanDate String
+	 * @return String
+	 */
+	static String toSolrDate(String ckanDate)
+	{
+		String solrDate = ckanDate.endsWith("Z") ? ckanDate.substring(0, ckanDate.length() - 1) : ckanDate;
+		final int fractionIndex = solrDate.indexOf('.');
+		if (fractionIndex != -1 && solrDate.length() > fractionIndex + 4)
+		{
+			solrDate = solrDate.substring(0, fractionIndex + 4);
+		}
+		return solrDate + "Z";
+	}
+	
 	/**
 	 * Returns a project open data string from public URL
 	 * @param url to data.json file
@@ -0,0 +1,125 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Sets the themes of National Geospatial Data Asset (NGDA) datasets, matched by exact title.
+ * <p>
+ * The NGDA list can be the JSON file of title and theme array (forest_service_ngda.json) or the
+ * CSV export of the NGDA asset list with columns "Name" and "Theme (Category)" where the themes
+ * are comma separated (NGDA_Assets_USFS.csv).
+ */
+public class NgdaThemeStage extends EnrichmentStage<List<String>> {
+
+	public final static String FOREST_SERVICE_NGDA_FILE = "sample_data/forest_service_ngda.json";
+	public final static String FOREST_SERVICE_NGDA_ASSETS_FILE = "sample_data/NGDA_Assets_USFS.csv";
+
+	public final static String NGDA_TITLE = "title";
+	public final static String NGDA_THEME = "theme";
+	public final static String NGDA_ASSETS_NAME = "Name";
+	public final static String NGDA_ASSETS_THEME = "Theme (Category)";
+
+	private final String ngdaFileName;
+	private final boolean csv;
+
+	private NgdaThemeStage(String ngdaFileName, boolean csv)
+	{
+		if (ngdaFileName == null)
+		{
+			throw new NullPointerException("ngdaFileName cannot be null");
+		}
+		this.ngdaFileName = ngdaFileName;
+		this.csv = csv;
+	}
+
+	/**
+	 * @param ngdaFileName String JSON array of objects with "title" and "theme"
+	 * @return NgdaThemeStage
+	 */
+	public static NgdaThemeStage fromJSONFile(String ngdaFileName)
+	{
+		return new NgdaThemeStage(ngdaFileName, false);
+	}
+
+	/**
+	 * @param ngdaAssetsFileName String CSV with header columns "Name" and "Theme (Category)"
+	 * @return NgdaThemeStage
+	 */
+	public static NgdaThemeStage fromCSVFile(String ngdaAssetsFileName)
+	{
+		return new NgdaThemeStage(ngdaAssetsFileName, true);
+	}
+
+	@Override
+	protected List<String> lookupKeys(Dataset ds, String source)
+	{
+		return Collections.singletonList(ds.getTitle());
+	}
+
+	@Override
+	protected Map<String, List<String>> buildIndex() throws IOException, ParseException
+	{
+		return csv ? loadCSV() : loadJSON();
+	}
+
+	@Override
+	protected void apply(Dataset ds, String title, List<String> themeList)
+	{
+		ds.setThemeList(new ArrayList<String>(themeList));
+	}
+
+	private Map<String, List<String>> loadJSON() throws IOException, ParseException
+	{
+		final Map<String, List<String>> themeMap = new HashMap<String, List<String>>();
+		final JSONArray ngdaArray = Utils.loadJsonArrayFile(ngdaFileName);
+		for (Object ngda: ngdaArray)
+		{
+			final JSONObject ngdaJSON = (JSONObject) ngda;
+			final JSONArray themes = (JSONArray) ngdaJSON.get(NGDA_THEME);
+			final List<String> themeList = new ArrayList<String>();
+			//Type Safety -> Strings
+			for (int i = 0; i < themes.size(); i++)
+			{
+				themeList.add((String) themes.get(i));
+			}
+			themeMap.put((String) ngdaJSON.get(NGDA_TITLE), themeList);
+		}
+		return themeMap;
+	}
+
+	private Map<String, List<String>> loadCSV() throws IOException
+	{
+		final Map<String, List<String>> themeMap = new HashMap<String, List<String>>();
+		try (Reader in = Files.newBufferedReader(Paths.get(ngdaFileName), StandardCharsets.UTF_8))
+		{
+			for (CSVRecord record: CSVFormat.DEFAULT.withHeader().parse(in))
+			{
+				final List<String> themeList = new ArrayList<String>();
+				for (String theme: record.get(NGDA_ASSETS_THEME).split(","))
+				{
+					if (!theme.trim().isEmpty())
+					{
+						themeList.add(theme.trim());
+					}
+				}
+				themeMap.put(record.get(NGDA_ASSETS_NAME).trim(), themeList);
+			}
+		}
+		return themeMap;
+	}
+}
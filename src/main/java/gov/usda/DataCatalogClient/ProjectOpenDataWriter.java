@@ -0,0 +1,390 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The ProjectOpenDataWriter class writes a Project Open Data catalog file, for example data.json, one
+ * dataset at a time.  Only the datasets being written are held in memory as JSON, so exporting a
+ * catalog of any size takes the same memory.
+ * <p>
+ * The catalog header is written when the writer is opened, then writeDataset for each dataset, then
+ * finish.  Output goes to a temporary file in the same directory that finish renames over the target,
+ * so a failed export leaves any earlier file in place.  Closing without finish discards the output.
+ * Compressed copies can be written beside the file in the same pass (@see ExportFile).
+ * <p>
+ * Output is pretty printed like Utils.printJSON unless compact, and as there null fields are left out.
+ * <p>
+ * writeDatasets serializes a long list on a worker pool: each worker renders a chunk of datasets into
+ * its own reusable buffer, and the chunks are written in list order.  Every dataset is rendered the
+ * same way whichever thread renders it, at the nesting it has in the file, so the output is the same
+ * byte for byte however many threads there are.  Workers stay at most a few chunks per thread ahead
+ * of the file, which keeps memory bounded.
+ */
+public class ProjectOpenDataWriter implements Closeable {
+
+	public final static String CONFORMS_TO = "https://project-open-data.cio.gov/v1.1/schema";
+	public final static String DESCRIBED_BY = "https://project-open-data.cio.gov/v1.1/schema/catalog.json";
+	public final static String CONTEXT = "https://project-open-data.cio.gov/v1.1/schema/data.jsonld";
+	public final static String TYPE = "dcat:Catalog";
+
+	private final static int PARALLEL_THRESHOLD = 512;
+	private final static int CHUNK_SIZE = 64;
+
+	//one render buffer per thread, reused for every chunk that thread renders
+	private final static ThreadLocal<RenderBuffer> renderBuffer = new ThreadLocal<RenderBuffer>() {
+		@Override
+		protected RenderBuffer initialValue()
+		{
+			return new RenderBuffer();
+		}
+	};
+
+	private final ExportFile file;
+	private final OutputStream out;
+	private final boolean compact;
+	private final ForkJoinPool pool;
+	private int datasetCount;
+	private List<ExportManifest.Entry> entryList;
+
+	private ProjectOpenDataWriter(ExportFile file, OutputStream out, boolean compact, ForkJoinPool pool)
+	{
+		this.file = file;
+		this.out = out;
+		this.compact = compact;
+		this.pool = pool;
+	}
+
+	private static final class RenderBuffer
+	{
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+		private final Writer writer = new OutputStreamWriter(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Opens a catalog file and writes the catalog header.
+	 * @param podFilePath String the file to write, replaced by finish
+	 * @param compact boolean true to leave out line breaks and indenting
+	 * @return ProjectOpenDataWriter
+	 * @throws IOException
+	 */
+	public static ProjectOpenDataWriter open(String podFilePath, boolean compact) throws IOException
+	{
+		return open(podFilePath, compact, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Opens a catalog file whose writeDatasets runs on the given pool.
+	 */
+	static ProjectOpenDataWriter open(String podFilePath, boolean compact, ForkJoinPool pool) throws IOException
+	{
+		return open(podFilePath, compact, pool, EnumSet.noneOf(ExportSink.Compression.class));
+	}
+
+	/**
+	 * Opens a catalog file that is written with compressed copies beside it (@see ExportFile).
+	 */
+	static ProjectOpenDataWriter open(String podFilePath, boolean compact, ForkJoinPool pool, Set<ExportSink.Compression> compressionSet) throws IOException
+	{
+		if (podFilePath == null || pool == null)
+		{
+			throw (new NullPointerException("podFilePath and pool cannot be null"));
+		}
+		final ExportFile file = ExportFile.open(podFilePath, ExportSink.Format.PROJECT_OPEN_DATA_JSON.getContentType(), compressionSet);
+		try
+		{
+			//the compressors get large writes, never the single commas between datasets
+			final OutputStream out = new BufferedOutputStream(file, 64 * 1024);
+			final StringWriter header = new StringWriter();
+			final JsonWriter jsonWriter = newJsonWriter(header, compact);
+			jsonWriter.beginObject();
+			jsonWriter.name(Catalog.PROJECT_OPEN_DATA_CATALOG_CONFORMS_TO).value(CONFORMS_TO);
+			jsonWriter.name(Catalog.PROJECT_OPEN_DATA_CATALOG_DESCRIBED_BY).value(DESCRIBED_BY);
+			jsonWriter.name(Catalog.PROJECT_OPEN_DATA_CATALOG_CONTEXT).value(CONTEXT);
+			jsonWriter.name(Catalog.PROJECT_OPEN_DATA_CATALOG_TYPE).value(TYPE);
+			jsonWriter.name(Dataset.PROJECT_OPEN_DATA_DATASET);
+			jsonWriter.beginArray();
+			jsonWriter.flush();
+			out.write(header.toString().getBytes(StandardCharsets.UTF_8));
+			return new ProjectOpenDataWriter(file, out, compact, pool);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			file.close();
+			throw (e);
+		}
+	}
+
+	/**
+	 * A JsonWriter that writes like Utils.printJSON: no HTML escaping, null fields left out and,
+	 * unless compact, two space indenting.
+	 */
+	static JsonWriter newJsonWriter(Writer out, boolean compact)
+	{
+		final JsonWriter jsonWriter = new JsonWriter(out);
+		jsonWriter.setHtmlSafe(false);
+		jsonWriter.setSerializeNulls(false);
+		if (!compact)
+		{
+			jsonWriter.setIndent("  ");
+		}
+		return jsonWriter;
+	}
+
+	/**
+	 * Writes one dataset to the dataset array.
+	 * @param ds Dataset
+	 * @throws IOException
+	 */
+	public void writeDataset(Dataset ds) throws IOException
+	{
+		if (ds == null)
+		{
+			throw (new NullPointerException("ds cannot be null"));
+		}
+		checkNotFinished();
+		writeRendered(render(compact, ds), 1);
+	}
+
+	/**
+	 * Writes datasets to the dataset array in list order.  Long lists are serialized in parallel,
+	 * the file is the same as writing them one by one with writeDataset.
+	 * @param datasetList List<Dataset>
+	 * @throws IOException
+	 */
+	public void writeDatasets(final List<Dataset> datasetList) throws IOException
+	{
+		if (datasetList == null)
+		{
+			throw (new NullPointerException("datasetList cannot be null"));
+		}
+		checkNotFinished();
+		if (datasetList.size() < PARALLEL_THRESHOLD || pool.getParallelism() < 2)
+		{
+			for (Dataset ds: datasetList)
+			{
+				writeDataset(ds);
+			}
+			return;
+		}
+
+		final int windowSize = CHUNK_SIZE * pool.getParallelism() * 4;
+		for (int windowStart = 0; windowStart < datasetList.size(); windowStart += windowSize)
+		{
+			final List<Callable<byte[]>> taskList = new ArrayList<Callable<byte[]>>();
+			final int windowEnd = Math.min(windowStart + windowSize, datasetList.size());
+			for (int start = windowStart; start < windowEnd; start += CHUNK_SIZE)
+			{
+				final List<Dataset> chunkList = datasetList.subList(start, Math.min(start + CHUNK_SIZE, windowEnd));
+				taskList.add(new Callable<byte[]>() {
+					@Override
+					public byte[] call() throws IOException
+					{
+						return render(compact, chunkList.toArray(new Dataset[chunkList.size()]));
+					}
+				});
+			}
+			try
+			{
+				final List<Future<byte[]>> futureList = pool.invokeAll(taskList);
+				for (int i = 0; i < futureList.size(); i++)
+				{
+					writeRendered(futureList.get(i).get(), Math.min(CHUNK_SIZE, windowEnd - windowStart - i * CHUNK_SIZE));
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Serialization interrupted", e);
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof IOException)
+				{
+					throw (IOException) e.getCause();
+				}
+				if (e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	private void checkNotFinished()
+	{
+		if (entryList != null)
+		{
+			throw (new IllegalStateException("the catalog file is already finished"));
+		}
+	}
+
+	/**
+	 * Writes datasets rendered by render, adding the comma that separates them from the datasets
+	 * already written.
+	 * @param rendered byte[]
+	 * @param renderedDatasetCount int datasets in rendered
+	 */
+	void writeRendered(byte[] rendered, int renderedDatasetCount) throws IOException
+	{
+		checkNotFinished();
+		if (datasetCount > 0)
+		{
+			out.write(',');
+		}
+		out.write(rendered);
+		datasetCount += renderedDatasetCount;
+	}
+
+	/**
+	 * Renders datasets as they appear in the dataset array of the file: indented two levels, separated
+	 * by commas, the first as if it were the first of the file.  The same rendering can be written
+	 * to any number of files.
+	 */
+	static byte[] render(boolean compact, Dataset... datasets) throws IOException
+	{
+		final RenderBuffer buffer = renderBuffer.get();
+		final JsonWriter jsonWriter = startRender(buffer, compact);
+		for (Dataset ds: datasets)
+		{
+			writeValue(jsonWriter, ds.toProjectOpenDataJSON());
+		}
+		return endRender(buffer, jsonWriter);
+	}
+
+	/**
+	 * Renders one dataset from its Project Open Data JSON, as render does, so JSON built once can be
+	 * rendered both pretty printed and compact.
+	 */
+	static byte[] render(boolean compact, Map<?, ?> datasetJSON) throws IOException
+	{
+		final RenderBuffer buffer = renderBuffer.get();
+		final JsonWriter jsonWriter = startRender(buffer, compact);
+		writeValue(jsonWriter, datasetJSON);
+		return endRender(buffer, jsonWriter);
+	}
+
+	private static JsonWriter startRender(RenderBuffer buffer, boolean compact) throws IOException
+	{
+		final JsonWriter jsonWriter = newJsonWriter(buffer.writer, compact);
+		//open the catalog object and dataset array so the datasets are rendered at their depth
+		jsonWriter.beginObject();
+		jsonWriter.name(Dataset.PROJECT_OPEN_DATA_DATASET);
+		jsonWriter.beginArray();
+		jsonWriter.flush();
+		buffer.bytes.reset();
+		return jsonWriter;
+	}
+
+	private static byte[] endRender(RenderBuffer buffer, JsonWriter jsonWriter) throws IOException
+	{
+		jsonWriter.flush();
+		final byte[] rendered = buffer.bytes.toByteArray();
+		buffer.bytes.reset();
+		return rendered;
+	}
+
+	/**
+	 * @return int datasets written so far
+	 */
+	public int getDatasetCount()
+	{
+		return datasetCount;
+	}
+
+	/**
+	 * Ends the catalog and moves the finished file over the target.
+	 * @throws IOException
+	 */
+	public void finish() throws IOException
+	{
+		if (entryList != null)
+		{
+			return;
+		}
+		//what JsonWriter writes to close the dataset array and the catalog
+		final String end = compact ? "]}" : datasetCount == 0 ? "]\n}" : "\n  ]\n}";
+		out.write(end.getBytes(StandardCharsets.UTF_8));
+		out.flush();
+		entryList = file.finish();
+	}
+
+	/**
+	 * @return List<ExportManifest.Entry> the file and its compressed copies, null until finish
+	 */
+	List<ExportManifest.Entry> getEntryList()
+	{
+		return entryList;
+	}
+
+	/**
+	 * Closes the writer, discarding the output if finish was not called.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		file.close();
+	}
+
+	/**
+	 * Writes a json-simple value: maps as objects, lists as arrays, and strings, numbers, booleans and
+	 * null as themselves.  Anything else is written as its toString.
+	 */
+	static void writeValue(JsonWriter jsonWriter, Object value) throws IOException
+	{
+		if (value == null)
+		{
+			jsonWriter.nullValue();
+		}
+		else if (value instanceof Map)
+		{
+			jsonWriter.beginObject();
+			for (Map.Entry<?, ?> entry: ((Map<?, ?>) value).entrySet())
+			{
+				jsonWriter.name(String.valueOf(entry.getKey()));
+				writeValue(jsonWriter, entry.getValue());
+			}
+			jsonWriter.endObject();
+		}
+		else if (value instanceof List)
+		{
+			jsonWriter.beginArray();
+			for (Object element: (List<?>) value)
+			{
+				writeValue(jsonWriter, element);
+			}
+			jsonWriter.endArray();
+		}
+		else if (value instanceof Number)
+		{
+			jsonWriter.value((Number) value);
+		}
+		else if (value instanceof Boolean)
+		{
+			jsonWriter.value(((Boolean) value).booleanValue());
+		}
+		else
+		{
+			jsonWriter.value(value.toString());
+		}
+	}
+}
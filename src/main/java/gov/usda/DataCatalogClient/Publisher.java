@@ -7,6 +7,8 @@ import java.util.logging.Logger;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -77,6 +79,27 @@ public class Publisher {
 		return publisherMap;
 	}
 
+	/**
+	 * Writes this publisher and its sub organizations to a catalog snapshot @see CatalogSnapshot
+	 */
+	void writeSnapshot(CatalogSnapshot.Output out) {
+		out.writeString(name);
+		out.writeString(type);
+		out.writeByte(subOrganization == null ? 0 : 1);
+		if (subOrganization != null) {
+			subOrganization.writeSnapshot(out);
+		}
+	}
+
+	void readSnapshot(CatalogSnapshot.Input in) {
+		name = in.readString();
+		type = in.readString();
+		if (in.readByte() != 0) {
+			subOrganization = new Publisher();
+			subOrganization.readSnapshot(in);
+		}
+	}
+
 	public void loadDatasetFromPOD_JSON(JSONObject publisherProjectOpenDataJSON)
 			throws PublisherException {
 		if (publisherProjectOpenDataJSON == null) {
@@ -113,10 +136,33 @@ public class Publisher {
 		}
 		publisherElement.appendChild(nameElement);
 		publisherElement.appendChild(typeElement);
-		doc.appendChild(publisherElement);
 			
 		return publisherElement;
 	}
+	
+	/**
+	 * Writes this publisher as a legacy XML publisher element, the same element
+	 * toLegacyXML(Document) builds, straight to a stream.
+	 * @param writer XMLStreamWriter
+	 * @throws XMLStreamException
+	 */
+	public void toLegacyXML(XMLStreamWriter writer) throws XMLStreamException
+	{
+		writer.writeStartElement("publisher");
+		if (subOrganization != null)
+		{
+			writer.writeStartElement("subOrganization");
+			subOrganization.toLegacyXML(writer);
+			writer.writeEndElement();
+		}
+		writer.writeStartElement("name");
+		Utils.writeLegacyXMLText(writer, name == null ? "" : name);
+		writer.writeEndElement();
+		writer.writeStartElement("type");
+		Utils.writeLegacyXMLText(writer, type == null ? "" : type);
+		writer.writeEndElement();
+		writer.writeEndElement();
+	}
 
 	public Boolean validatePublisher() throws PublisherException {
 		Boolean validIndicator = true;
@@ -0,0 +1,309 @@
+package gov.usda.DataCatalogClient;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * The QuarterlyReport class reports, per bureau, how the catalog changed over a quarter: the datasets
+ * added, updated and retired, and the share of datasets with every required Project Open Data field
+ * at each load.  It works only from the CatalogStatistics saved at each load, the catalog itself is
+ * not needed.
+ * <p>
+ * The statistics taken last before the quarter are the baseline.  Changes are summed over each pair of
+ * consecutive statistics, so a dataset updated on two loads counts twice and one added and retired
+ * within the quarter counts once each way.  Quarters are calendar quarters in UTC.
+ */
+public class QuarterlyReport {
+
+	private final Date quarterStart;
+	private final Date quarterEnd;
+	//baseline first, when there is one
+	private final List<CatalogStatistics> historyList;
+	private final Map<String, int[]> changeCountMap;
+	private final List<String> bureauCodeList;
+
+	private QuarterlyReport(Date quarterStart, Date quarterEnd, List<CatalogStatistics> historyList, Map<String, int[]> changeCountMap)
+	{
+		this.quarterStart = quarterStart;
+		this.quarterEnd = quarterEnd;
+		this.historyList = historyList;
+		this.changeCountMap = changeCountMap;
+		final TreeSet<String> bureauCodeSet = new TreeSet<String>(changeCountMap.keySet());
+		for (CatalogStatistics statistics: historyList)
+		{
+			bureauCodeSet.addAll(statistics.getBureauCodeList());
+		}
+		bureauCodeList = Collections.unmodifiableList(new ArrayList<String>(bureauCodeSet));
+	}
+
+	/**
+	 * Builds the report of the quarter containing a date from a statistics directory.  Only the
+	 * statistics of the quarter and the baseline are read.
+	 * @param statisticsDirectory String
+	 * @param dayInQuarter Date
+	 * @return QuarterlyReport
+	 * @throws IOException
+	 */
+	public static QuarterlyReport of(String statisticsDirectory, Date dayInQuarter) throws IOException
+	{
+		if (statisticsDirectory == null || dayInQuarter == null)
+		{
+			throw new NullPointerException("statisticsDirectory and dayInQuarter cannot be null");
+		}
+		final Date start = quarterStart(dayInQuarter);
+		final Date end = quarterEnd(dayInQuarter);
+		final CatalogStatistics baseline = CatalogStatistics.loadLatest(statisticsDirectory, start);
+		final List<CatalogStatistics> reportList = new ArrayList<CatalogStatistics>();
+		if (baseline != null)
+		{
+			reportList.add(baseline);
+		}
+		reportList.addAll(CatalogStatistics.loadHistory(statisticsDirectory, start, end));
+		return of(reportList, start, end);
+	}
+
+	/**
+	 * Builds the report of a quarter from statistics sorted oldest first.  Statistics after the
+	 * quarter are ignored, as are all before it except the last.
+	 * @param historyList List<CatalogStatistics>
+	 * @param quarterStart Date first time in the quarter
+	 * @param quarterEnd Date first time after the quarter
+	 * @return QuarterlyReport
+	 */
+	public static QuarterlyReport of(List<CatalogStatistics> historyList, Date quarterStart, Date quarterEnd)
+	{
+		if (historyList == null || quarterStart == null || quarterEnd == null)
+		{
+			throw new NullPointerException("historyList, quarterStart and quarterEnd cannot be null");
+		}
+		final List<CatalogStatistics> reportList = new ArrayList<CatalogStatistics>();
+		CatalogStatistics baseline = null;
+		for (CatalogStatistics statistics: historyList)
+		{
+			if (statistics.getTakenAt().before(quarterStart))
+			{
+				baseline = statistics;
+			}
+			else if (statistics.getTakenAt().before(quarterEnd))
+			{
+				reportList.add(statistics);
+			}
+		}
+		if (baseline != null)
+		{
+			reportList.add(0, baseline);
+		}
+		final Map<String, int[]> changeCountMap = new HashMap<String, int[]>();
+		for (int i = 1; i < reportList.size(); i++)
+		{
+			reportList.get(i).countChangesSince(reportList.get(i - 1), changeCountMap);
+		}
+		return new QuarterlyReport(new Date(quarterStart.getTime()), new Date(quarterEnd.getTime()),
+				Collections.unmodifiableList(reportList), changeCountMap);
+	}
+
+	/**
+	 * @return Date midnight UTC on the first day of the quarter containing a date
+	 */
+	public static Date quarterStart(Date day)
+	{
+		final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.setTime(day);
+		final int year = calendar.get(Calendar.YEAR);
+		final int firstMonth = calendar.get(Calendar.MONTH) / 3 * 3;
+		calendar.clear();
+		calendar.set(year, firstMonth, 1);
+		return calendar.getTime();
+	}
+
+	/**
+	 * @return Date midnight UTC on the first day of the next quarter
+	 */
+	public static Date quarterEnd(Date day)
+	{
+		final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.setTime(quarterStart(day));
+		calendar.add(Calendar.MONTH, 3);
+		return calendar.getTime();
+	}
+
+	public Date getQuarterStart()
+	{
+		return new Date(quarterStart.getTime());
+	}
+
+	public Date getQuarterEnd()
+	{
+		return new Date(quarterEnd.getTime());
+	}
+
+	/**
+	 * @return List<CatalogStatistics> the baseline, if any, then the statistics taken in the quarter
+	 */
+	public List<CatalogStatistics> getHistoryList()
+	{
+		return historyList;
+	}
+
+	/**
+	 * @return List<String> sorted codes of every bureau seen in the quarter or the baseline
+	 */
+	public List<String> getBureauCodeList()
+	{
+		return bureauCodeList;
+	}
+
+	public int getAddedCount(String bureauCode)
+	{
+		final int[] changeCounts = changeCountMap.get(bureauCode);
+		return changeCounts == null ? 0 : changeCounts[0];
+	}
+
+	public int getUpdatedCount(String bureauCode)
+	{
+		final int[] changeCounts = changeCountMap.get(bureauCode);
+		return changeCounts == null ? 0 : changeCounts[1];
+	}
+
+	public int getRetiredCount(String bureauCode)
+	{
+		final int[] changeCounts = changeCountMap.get(bureauCode);
+		return changeCounts == null ? 0 : changeCounts[2];
+	}
+
+	/**
+	 * @return double the bureau's share of compliant datasets at the start of the quarter, or at the
+	 * first load in it when there is no baseline
+	 */
+	public double getStartComplianceRate(String bureauCode)
+	{
+		return historyList.isEmpty() ? 0 : complianceRate(historyList.get(0), bureauCode);
+	}
+
+	/**
+	 * @return double the bureau's share of compliant datasets at the last load in the quarter
+	 */
+	public double getEndComplianceRate(String bureauCode)
+	{
+		return historyList.isEmpty() ? 0 : complianceRate(historyList.get(historyList.size() - 1), bureauCode);
+	}
+
+	private static double complianceRate(CatalogStatistics statistics, String bureauCode)
+	{
+		final int datasetCount = statistics.getDatasetCount(bureauCode);
+		return datasetCount == 0 ? 0 : (double) statistics.getCompliantCount(bureauCode) / datasetCount;
+	}
+
+	private String bureauName(String bureauCode)
+	{
+		for (int i = historyList.size() - 1; i >= 0; i--)
+		{
+			final String name = historyList.get(i).getBureauName(bureauCode);
+			if (name != null && !name.isEmpty())
+			{
+				return name;
+			}
+		}
+		return "";
+	}
+
+	/**
+	 * Writes one row per bureau: datasets at the start and end of the quarter, datasets added, updated
+	 * and retired, and the compliance rate at the start and end.
+	 * @param filePath String
+	 * @throws IOException
+	 */
+	public void toCSV(String filePath) throws IOException
+	{
+		if (filePath == null)
+		{
+			throw (new NullPointerException("filePath cannot be null"));
+		}
+		final CSVFormat csvFormat = CSVFormat.DEFAULT.withRecordSeparator("\n");
+		final CatalogStatistics first = historyList.isEmpty() ? null : historyList.get(0);
+		final CatalogStatistics last = historyList.isEmpty() ? null : historyList.get(historyList.size() - 1);
+		try (Writer out = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8);
+				CSVPrinter csvPrinter = new CSVPrinter(out, csvFormat))
+		{
+			csvPrinter.printRecord("Bureau Code", "Bureau Name", "Start Datasets", "End Datasets", "Added", "Updated",
+					"Retired", "Start Compliance Rate", "End Compliance Rate");
+			for (String bureauCode: bureauCodeList)
+			{
+				csvPrinter.printRecord(bureauCode, bureauName(bureauCode),
+						first == null ? 0 : first.getDatasetCount(bureauCode), last == null ? 0 : last.getDatasetCount(bureauCode),
+						getAddedCount(bureauCode), getUpdatedCount(bureauCode), getRetiredCount(bureauCode),
+						getStartComplianceRate(bureauCode), getEndComplianceRate(bureauCode));
+			}
+		}
+	}
+
+	/**
+	 * @return JSONObject the quarter, and per bureau the changes and the compliance at every load
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONObject toJSON()
+	{
+		final JSONArray bureauArray = new JSONArray();
+		for (String bureauCode: bureauCodeList)
+		{
+			final JSONObject bureauObject = new JSONObject();
+			bureauObject.put("bureauCode", bureauCode);
+			bureauObject.put("bureauName", bureauName(bureauCode));
+			bureauObject.put("added", getAddedCount(bureauCode));
+			bureauObject.put("updated", getUpdatedCount(bureauCode));
+			bureauObject.put("retired", getRetiredCount(bureauCode));
+			final JSONArray trendArray = new JSONArray();
+			for (CatalogStatistics statistics: historyList)
+			{
+				final JSONObject pointObject = new JSONObject();
+				pointObject.put("takenAt", Utils.convertDateToISOString(statistics.getTakenAt()));
+				pointObject.put("datasets", statistics.getDatasetCount(bureauCode));
+				pointObject.put("compliant", statistics.getCompliantCount(bureauCode));
+				pointObject.put("rate", complianceRate(statistics, bureauCode));
+				trendArray.add(pointObject);
+			}
+			bureauObject.put("compliance", trendArray);
+			bureauArray.add(bureauObject);
+		}
+		final JSONObject reportObject = new JSONObject();
+		reportObject.put("quarterStart", Utils.convertDateToISOString(quarterStart));
+		reportObject.put("quarterEnd", Utils.convertDateToISOString(quarterEnd));
+		reportObject.put("loads", historyList.size());
+		reportObject.put("bureaus", bureauArray);
+		return reportObject;
+	}
+
+	/**
+	 * Writes toJSON() to a file.
+	 * @param filePath String
+	 * @throws IOException
+	 */
+	public void toJSON(String filePath) throws IOException
+	{
+		if (filePath == null)
+		{
+			throw (new NullPointerException("filePath cannot be null"));
+		}
+		try (Writer out = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8))
+		{
+			toJSON().writeJSONString(out);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package gov.usda.DataCatalogClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * The RawDataset class is a read only view of one dataset as it was parsed, before a Dataset is built.
+ * <p>
+ * Loaders wrap each CKAN package or Project Open Data dataset in a RawDataset so a DatasetFilter can
+ * read the few fields it needs straight from the JSON.  Nothing is validated or converted until it is
+ * asked for, so a dataset that is filtered out costs a couple of map lookups.
+ */
+public final class RawDataset {
+
+	/**
+	 * The JSON layouts a dataset can arrive in.
+	 */
+	public enum Format
+	{
+		CKAN,
+		PROJECT_OPEN_DATA;
+	}
+
+	private final Format format;
+	private final JSONObject datasetObject;
+	//CKAN extras by key, built the first time an extra is read
+	private Map<String, String> extraMap;
+	private Date modified;
+	private boolean modifiedParsed;
+
+	private RawDataset(Format format, JSONObject datasetObject)
+	{
+		if (datasetObject == null)
+		{
+			throw new NullPointerException("datasetObject cannot be null");
+		}
+		this.format = format;
+		this.datasetObject = datasetObject;
+	}
+
+	/**
+	 * @param packageObject JSONObject one CKAN (or DKAN) package
+	 * @return RawDataset
+	 */
+	public static RawDataset fromCKAN(JSONObject packageObject)
+	{
+		return new RawDataset(Format.CKAN, packageObject);
+	}
+
+	/**
+	 * @param datasetObject JSONObject one entry of the Project Open Data dataset array
+	 * @return RawDataset
+	 */
+	public static RawDataset fromProjectOpenData(JSONObject datasetObject)
+	{
+		return new RawDataset(Format.PROJECT_OPEN_DATA, datasetObject);
+	}
+
+	public Format getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return JSONObject the dataset as parsed
+	 */
+	public JSONObject getObject() {
+		return datasetObject;
+	}
+
+	/**
+	 * @return String unique identifier or null
+	 */
+	public String getIdentifier()
+	{
+		if (format == Format.CKAN)
+		{
+			return getExtra(Dataset.CKAN_DATASET_UNIQUE_IDENTIFIER);
+		}
+		return getString(Dataset.PROJECT_OPEN_DATA_DATASET_UNIQUE_IDENTIFIER);
+	}
+
+	/**
+	 * @return String access level, for example "public", or null
+	 */
+	public String getAccessLevel()
+	{
+		if (format == Format.CKAN)
+		{
+			final String accessLevel = getExtra(Dataset.CKAN_DATASET_ACCESS_LEVEL);
+			return accessLevel != null ? accessLevel : getExtra("field_public_access_level");
+		}
+		return getString(Dataset.PROJECT_OPEN_DATA_DATASET_ACCESS_LEVEL);
+	}
+
+	/**
+	 * @return List<String> bureau codes, empty if there are none
+	 */
+	public List<String> getBureauCodeList()
+	{
+		final List<String> bureauCodeList = new ArrayList<String>();
+		if (format == Format.CKAN)
+		{
+			final String bureauCode = getExtra(Dataset.CKAN_DATASET_BUREAU_CODE_LIST);
+			if (bureauCode != null)
+			{
+				for (String code: bureauCode.split(","))
+				{
+					bureauCodeList.add(code.trim());
+				}
+			}
+			return bureauCodeList;
+		}
+		final Object bureauObject = datasetObject.get(Dataset.PROJECT_OPEN_DATA_DATASET_BUREAU_CODE);
+		if (bureauObject instanceof List)
+		{
+			for (Object code: (List<?>) bureauObject)
+			{
+				bureauCodeList.add(String.valueOf(code));
+			}
+		}
+		else if (bureauObject instanceof String)
+		{
+			bureauCodeList.add((String) bureauObject);
+		}
+		return bureauCodeList;
+	}
+
+	/**
+	 * Returns the date the catalog last changed the dataset.  For CKAN this is the package
+	 * metadata_modified, for Project Open Data the modified field.
+	 * @return Date or null if the field is missing or not an ISO date
+	 */
+	public Date getModified()
+	{
+		if (!modifiedParsed)
+		{
+			final String modifiedString = format == Format.CKAN ? getString(Dataset.CKAN_DATASET_METADATA_MODIFIED)
+					: getString(Dataset.PROJECT_OPEN_DATA_DATASET_MODIFIED);
+			try
+			{
+				modified = modifiedString == null ? null : Utils.convertISOStringToDate(modifiedString);
+			}
+			catch (java.text.ParseException | IllegalArgumentException e)
+			{
+				modified = null;
+			}
+			modifiedParsed = true;
+		}
+		return modified;
+	}
+
+	/**
+	 * @param key String top level JSON key
+	 * @return String the value or null when it is missing or not a string
+	 */
+	public String getString(String key)
+	{
+		final Object value = datasetObject.get(key);
+		return value instanceof String ? (String) value : null;
+	}
+
+	/**
+	 * Reads a CKAN extra, or a DKAN additional field for Ag Data Commons packages.
+	 * @param key String
+	 * @return String the value or null, always null for Project Open Data
+	 */
+	@SuppressWarnings("unchecked")
+	public String getExtra(String key)
+	{
+		if (format != Format.CKAN)
+		{
+			return null;
+		}
+		if (extraMap == null)
+		{
+			final Object extraObject = datasetObject.get(Dataset.CKAN_DATASET_EXTRAS);
+			if (extraObject instanceof JSONArray)
+			{
+				final JSONArray extraList = (JSONArray) extraObject;
+				extraMap = new HashMap<String, String>(extraList.size() * 2);
+				for (Object extra: extraList)
+				{
+					final JSONObject extraEntry = (JSONObject) extra;
+					final Object value = extraEntry.get("value");
+					if (value instanceof String)
+					{
+						extraMap.put((String) extraEntry.get("key"), (String) value);
+					}
+				}
+			}
+			else if (datasetObject.get("dkan_additional_fields") instanceof JSONObject)
+			{
+				extraMap = new HashMap<String, String>();
+				final JSONObject dkanObject = (JSONObject) datasetObject.get("dkan_additional_fields");
+				for (Map.Entry<Object, Object> entry: (Set<Map.Entry<Object, Object>>) dkanObject.entrySet())
+				{
+					if (entry.getValue() instanceof String)
+					{
+						extraMap.put((String) entry.getKey(), (String) entry.getValue());
+					}
+				}
+			}
+			else
+			{
+				extraMap = Collections.emptyMap();
+			}
+		}
+		return extraMap.get(key);
+	}
+}
@@ -0,0 +1,467 @@
+package gov.usda.DataCatalogClient;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+
+/**
+ * The SearchIndex class is an in-memory inverted index over dataset title, description, keyword
+ * and theme.  Results are ranked with Okapi BM25.
+ * <p>
+ * Text is tokenized on anything that is not a letter or digit, lower cased and accent folded,
+ * so "Réseau" matches "reseau".  Fields are weighted: a term in the title counts more than a term
+ * in the description.  The weights are applied to term frequency and document length, which
+ * is the usual BM25F simplification.
+ * <p>
+ * Datasets can be added, removed and updated one at a time.  A removed dataset is only marked dead
+ * and its postings are dropped in bulk once enough of the index is dead, so updates stay cheap.
+ * The purge also renumbers the live documents, so an index that only ever sees updates stays
+ * the size of its live datasets.
+ */
+public class SearchIndex {
+
+	//BM25 parameters, these are the common defaults
+	static final float K1 = 1.2f;
+	static final float B = 0.75f;
+
+	private static final float TITLE_WEIGHT = 3.0f;
+	private static final float KEYWORD_WEIGHT = 2.0f;
+	private static final float THEME_WEIGHT = 2.0f;
+	private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+	private static final String[] NO_TERMS = new String[0];
+
+	//one scoring buffer per thread, grown to the largest index searched and cleared after each query
+	private static final ThreadLocal<ScoreBuffer> scoreBuffer = new ThreadLocal<ScoreBuffer>() {
+		@Override
+		protected ScoreBuffer initialValue()
+		{
+			return new ScoreBuffer();
+		}
+	};
+
+	private final Map<String, PostingList> postingMap;
+	private final IdentityHashMap<Dataset, Integer> documentIdMap;
+	//document id -> dataset, null once removed
+	private List<Dataset> documentList;
+	//document id -> distinct terms, used to keep document frequency current on remove
+	private List<String[]> documentTermList;
+	private float[] documentLength;
+	private double totalLength;
+	private int liveCount;
+	private int deadCount;
+
+	public SearchIndex()
+	{
+		postingMap = new HashMap<String, PostingList>();
+		documentIdMap = new IdentityHashMap<Dataset, Integer>();
+		documentList = new ArrayList<Dataset>();
+		documentTermList = new ArrayList<String[]>();
+		documentLength = new float[64];
+	}
+
+	/**
+	 * Adds a dataset to the index, a dataset that is already indexed is updated.
+	 * @param ds Dataset
+	 */
+	public void add(Dataset ds)
+	{
+		if (ds == null)
+		{
+			throw new NullPointerException("Dataset ds cannot be null");
+		}
+		if (documentIdMap.containsKey(ds))
+		{
+			update(ds);
+			return;
+		}
+		final Map<String, Float> termFrequencyMap = new LinkedHashMap<String, Float>();
+		final float length = termFrequencies(ds, termFrequencyMap);
+
+		final int documentId = documentList.size();
+		documentList.add(ds);
+		documentIdMap.put(ds, documentId);
+		if (documentId >= documentLength.length)
+		{
+			documentLength = Arrays.copyOf(documentLength, documentLength.length * 2);
+		}
+		documentLength[documentId] = length;
+		totalLength += length;
+		liveCount++;
+
+		final String[] terms = termFrequencyMap.isEmpty() ? NO_TERMS : new String[termFrequencyMap.size()];
+		int t = 0;
+		for (Entry<String, Float> entry: termFrequencyMap.entrySet())
+		{
+			PostingList postingList = postingMap.get(entry.getKey());
+			if (postingList == null)
+			{
+				postingList = new PostingList();
+				postingMap.put(entry.getKey(), postingList);
+			}
+			postingList.add(documentId, entry.getValue());
+			//keep the map's key so the per document term array does not hold a second copy
+			terms[t++] = entry.getKey();
+		}
+		documentTermList.add(terms);
+	}
+
+	/**
+	 * Removes a dataset from the index.
+	 * @param ds Dataset
+	 * @return boolean true if the dataset was indexed
+	 */
+	public boolean remove(Dataset ds)
+	{
+		final Integer documentId = documentIdMap.remove(ds);
+		if (documentId == null)
+		{
+			return false;
+		}
+		for (String term: documentTermList.get(documentId))
+		{
+			postingMap.get(term).documentFrequency--;
+		}
+		documentList.set(documentId, null);
+		documentTermList.set(documentId, null);
+		totalLength -= documentLength[documentId];
+		liveCount--;
+		deadCount++;
+		if (deadCount > 1024 && deadCount > liveCount)
+		{
+			purgeDeadDocuments();
+		}
+		return true;
+	}
+
+	/**
+	 * Re-tokenizes a dataset after its text fields changed.
+	 * @param ds Dataset
+	 */
+	public void update(Dataset ds)
+	{
+		remove(ds);
+		add(ds);
+	}
+
+	public int size()
+	{
+		return liveCount;
+	}
+
+	/**
+	 * Returns the number of document ids in use, live or dead.
+	 */
+	int getDocumentIdCount()
+	{
+		return documentList.size();
+	}
+
+	/**
+	 * Returns the k best matching datasets for a free text query, best match first.  A dataset
+	 * matches if it contains any of the query terms.
+	 * @param queryText String free text
+	 * @param k int maximum number of results
+	 * @return List<SearchResult> ranked results
+	 */
+	public List<SearchResult> search(String queryText, int k)
+	{
+		if (queryText == null)
+		{
+			throw new NullPointerException("queryText cannot be null");
+		}
+		if (k <= 0 || liveCount == 0)
+		{
+			return Collections.emptyList();
+		}
+		final List<String> queryTerms = new ArrayList<String>();
+		for (String term: tokenize(queryText))
+		{
+			if (!queryTerms.contains(term))
+			{
+				queryTerms.add(term);
+			}
+		}
+
+		final float averageLength = (float) (totalLength / liveCount);
+		//scores are accumulated by document id, touched keeps the ids so the heap does not scan every document
+		//and so only the touched scores need clearing afterwards
+		final ScoreBuffer buffer = scoreBuffer.get();
+		buffer.ensureCapacity(documentList.size());
+		final float[] scores = buffer.scores;
+		final int[] touched = buffer.touched;
+		int touchedCount = 0;
+		for (String term: queryTerms)
+		{
+			final PostingList postingList = postingMap.get(term);
+			if (postingList == null || postingList.documentFrequency <= 0)
+			{
+				continue;
+			}
+			final float idf = idf(liveCount, postingList.documentFrequency);
+			for (int i = 0; i < postingList.size; i++)
+			{
+				final int documentId = postingList.documentIds[i];
+				if (documentList.get(documentId) == null)
+				{
+					continue;
+				}
+				final float tf = postingList.termFrequencies[i];
+				final float norm = K1 * (1 - B + B * documentLength[documentId] / averageLength);
+				if (scores[documentId] == 0)
+				{
+					touched[touchedCount++] = documentId;
+				}
+				scores[documentId] += idf * tf * (K1 + 1) / (tf + norm);
+			}
+		}
+
+		final PriorityQueue<SearchResult> heap = new PriorityQueue<SearchResult>(Math.min(k, Math.max(touchedCount, 1)));
+		for (int i = 0; i < touchedCount; i++)
+		{
+			final int documentId = touched[i];
+			if (heap.size() < k)
+			{
+				heap.add(new SearchResult(documentList.get(documentId), scores[documentId]));
+			}
+			else if (scores[documentId] > heap.peek().getScore())
+			{
+				heap.poll();
+				heap.add(new SearchResult(documentList.get(documentId), scores[documentId]));
+			}
+		}
+		for (int i = 0; i < touchedCount; i++)
+		{
+			scores[touched[i]] = 0;
+		}
+		final List<SearchResult> resultList = new ArrayList<SearchResult>(heap);
+		Collections.sort(resultList, Collections.reverseOrder());
+		return resultList;
+	}
+
+	/**
+	 * Splits text into lower case, accent folded terms.  Anything that is not a letter or digit
+	 * separates terms.
+	 * @param text String
+	 * @return List<String> terms in the order they appear
+	 */
+	public static List<String> tokenize(String text)
+	{
+		final List<String> termList = new ArrayList<String>();
+		if (text == null || text.isEmpty())
+		{
+			return termList;
+		}
+		final String folded = foldAccents(text);
+		final StringBuilder term = new StringBuilder();
+		for (int i = 0; i < folded.length(); i++)
+		{
+			final char c = folded.charAt(i);
+			if (Character.isLetterOrDigit(c))
+			{
+				term.append(Character.toLowerCase(c));
+			}
+			else if (term.length() > 0)
+			{
+				termList.add(term.toString());
+				term.setLength(0);
+			}
+		}
+		if (term.length() > 0)
+		{
+			termList.add(term.toString());
+		}
+		return termList;
+	}
+
+	/**
+	 * Removes diacritical marks.  Text that is plain ASCII, which is most of a federal catalog, is returned
+	 * without running the normalizer.
+	 */
+	private static String foldAccents(String text)
+	{
+		boolean ascii = true;
+		for (int i = 0; i < text.length() && ascii; i++)
+		{
+			ascii = text.charAt(i) < 128;
+		}
+		if (ascii)
+		{
+			return text;
+		}
+		final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+		final StringBuilder folded = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++)
+		{
+			final char c = decomposed.charAt(i);
+			if (Character.getType(c) != Character.NON_SPACING_MARK)
+			{
+				folded.append(c);
+			}
+		}
+		return folded.toString();
+	}
+
+	/**
+	 * Puts the weighted term frequencies of a dataset in termFrequencyMap.
+	 * @return float weighted document length
+	 */
+	static float termFrequencies(Dataset ds, Map<String, Float> termFrequencyMap)
+	{
+		float length = 0;
+		length += addTerms(termFrequencyMap, ds.getTitle(), TITLE_WEIGHT);
+		length += addTerms(termFrequencyMap, ds.getDescription(), DESCRIPTION_WEIGHT);
+		length += addTerms(termFrequencyMap, ds.getKeywordList(), KEYWORD_WEIGHT);
+		length += addTerms(termFrequencyMap, ds.getThemeList(), THEME_WEIGHT);
+		return length;
+	}
+
+	/**
+	 * BM25 inverse document frequency.
+	 */
+	static float idf(int documentCount, int documentFrequency)
+	{
+		return (float) Math.log(1.0 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+	}
+
+	private static float addTerms(Map<String, Float> termFrequencyMap, String text, float weight)
+	{
+		final List<String> termList = tokenize(text);
+		for (String term: termList)
+		{
+			final Float frequency = termFrequencyMap.get(term);
+			termFrequencyMap.put(term, frequency == null ? weight : frequency + weight);
+		}
+		return termList.size() * weight;
+	}
+
+	private static float addTerms(Map<String, Float> termFrequencyMap, List<String> textList, float weight)
+	{
+		float length = 0;
+		if (textList != null)
+		{
+			for (String text: textList)
+			{
+				length += addTerms(termFrequencyMap, text, weight);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Drops postings of removed datasets and terms that no longer occur, and renumbers the live
+	 * documents from zero.  Renumbering keeps the relative order so posting lists stay sorted.
+	 */
+	private void purgeDeadDocuments()
+	{
+		final int[] newIds = new int[documentList.size()];
+		final List<Dataset> liveDocumentList = new ArrayList<Dataset>(liveCount);
+		final List<String[]> liveTermList = new ArrayList<String[]>(liveCount);
+		final float[] liveLength = new float[Math.max(64, liveCount)];
+		for (int documentId = 0; documentId < documentList.size(); documentId++)
+		{
+			final Dataset ds = documentList.get(documentId);
+			if (ds == null)
+			{
+				newIds[documentId] = -1;
+				continue;
+			}
+			final int newId = liveDocumentList.size();
+			newIds[documentId] = newId;
+			liveLength[newId] = documentLength[documentId];
+			documentIdMap.put(ds, newId);
+			liveDocumentList.add(ds);
+			liveTermList.add(documentTermList.get(documentId));
+		}
+
+		final List<String> emptyTermList = new ArrayList<String>();
+		for (Entry<String, PostingList> entry: postingMap.entrySet())
+		{
+			final PostingList postingList = entry.getValue();
+			int live = 0;
+			for (int i = 0; i < postingList.size; i++)
+			{
+				final int newId = newIds[postingList.documentIds[i]];
+				if (newId >= 0)
+				{
+					postingList.documentIds[live] = newId;
+					postingList.termFrequencies[live] = postingList.termFrequencies[i];
+					live++;
+				}
+			}
+			postingList.size = live;
+			if (live == 0)
+			{
+				emptyTermList.add(entry.getKey());
+			}
+			else if (live * 4 < postingList.documentIds.length && postingList.documentIds.length > 4)
+			{
+				postingList.trim();
+			}
+		}
+		for (String term: emptyTermList)
+		{
+			postingMap.remove(term);
+		}
+		documentList = liveDocumentList;
+		documentTermList = liveTermList;
+		documentLength = liveLength;
+		deadCount = 0;
+	}
+
+	/**
+	 * Document ids and weighted term frequencies for one term.  Document ids are only ever appended
+	 * so the list stays sorted.
+	 */
+	private static class PostingList
+	{
+		private int[] documentIds = new int[4];
+		private float[] termFrequencies = new float[4];
+		private int size;
+		private int documentFrequency;
+
+		private void add(int documentId, float termFrequency)
+		{
+			if (size == documentIds.length)
+			{
+				documentIds = Arrays.copyOf(documentIds, size * 2);
+				termFrequencies = Arrays.copyOf(termFrequencies, size * 2);
+			}
+			documentIds[size] = documentId;
+			termFrequencies[size] = termFrequency;
+			size++;
+			documentFrequency++;
+		}
+
+		private void trim()
+		{
+			final int capacity = Math.max(4, size);
+			documentIds = Arrays.copyOf(documentIds, capacity);
+			termFrequencies = Arrays.copyOf(termFrequencies, capacity);
+		}
+	}
+
+	private static class ScoreBuffer
+	{
+		private float[] scores = new float[0];
+		private int[] touched = new int[0];
+
+		private void ensureCapacity(int documentCount)
+		{
+			if (scores.length < documentCount)
+			{
+				final int capacity = Math.max(documentCount, scores.length * 2);
+				scores = new float[capacity];
+				touched = new int[capacity];
+			}
+		}
+	}
+}
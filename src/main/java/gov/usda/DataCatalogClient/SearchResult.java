@@ -0,0 +1,35 @@
+package gov.usda.DataCatalogClient;
+
+/**
+ * A dataset returned from a full text search with its BM25 score.  Results compare by score.
+ */
+public class SearchResult implements Comparable<SearchResult> {
+
+	private final Dataset dataset;
+	private final float score;
+
+	public SearchResult(Dataset dataset, float score)
+	{
+		this.dataset = dataset;
+		this.score = score;
+	}
+
+	public Dataset getDataset() {
+		return dataset;
+	}
+
+	public float getScore() {
+		return score;
+	}
+
+	@Override
+	public int compareTo(SearchResult other)
+	{
+		return Float.compare(score, other.score);
+	}
+
+	@Override
+	public String toString() {
+		return "SearchResult [title=" + (dataset == null ? null : dataset.getTitle()) + ", score=" + score + "]";
+	}
+}
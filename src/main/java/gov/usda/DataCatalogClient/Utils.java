@@ -1,16 +1,21 @@
 package gov.usda.DataCatalogClient;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.json.simple.JSONArray;
@@ -18,11 +23,31 @@ import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
 public class Utils {
 
+	//formatters are immutable and thread safe, one is enough for every export
+	private static final DateTimeFormatter ISO_DATE_FORMATTER = DateTimeFormat.forPattern("yyyy-MM-dd");
+
+	//the same issued and modified dates are formatted by every export format, so each thread keeps
+	//the last dates it formatted
+	private static final int DATE_CACHE_SIZE = 64;
+	private static final ThreadLocal<DateCache> dateCache = new ThreadLocal<DateCache>() {
+		@Override
+		protected DateCache initialValue()
+		{
+			return new DateCache();
+		}
+	};
+
+	private static final class DateCache
+	{
+		private final long[] millis = new long[DATE_CACHE_SIZE];
+		private final String[] text = new String[DATE_CACHE_SIZE];
+		private DateTimeZone zone;
+	}
+
 	//Could probably combine loadJSONObject and loadJSONArray
 	//It would put more work on the clients.
 	static public JSONObject loadJsonObjectFile(String fileName) throws ParseException, IOException
@@ -100,26 +125,46 @@ public class Utils {
 		return jsonObject;
 	}
 	
-	static public void printJSON(String fileName, JSONObject jsonMap) throws IOException
+	/**
+	 * Writes one legacy XML field element, nothing when the value is null.
+	 */
+	static void writeLegacyXMLField(XMLStreamWriter writer, String elementName, String elementValue) throws XMLStreamException
 	{
-		if (fileName == null || jsonMap == null)
+		if (elementValue == null)
 		{
-			throw new NullPointerException("fileName or jsonMap cannot be null");
+			return;
 		}
-		Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
-		PrintWriter out = null;
-		try
+		writer.writeStartElement(elementName);
+		writeLegacyXMLText(writer, elementValue);
+		writer.writeEndElement();
+	}
+	
+	/**
+	 * Writes element text.  Carriage returns are written as character references, as the DOM
+	 * Transformer did, otherwise XML parsers would read them back as line feeds.
+	 */
+	static void writeLegacyXMLText(XMLStreamWriter writer, String text) throws XMLStreamException
+	{
+		int start = 0;
+		for (int cr = text.indexOf('\r'); cr >= 0; cr = text.indexOf('\r', start))
 		{
-			out = new PrintWriter(fileName);
-			out.print( gson.toJson(jsonMap) );
-			out.close();
+			writer.writeCharacters(text.substring(start, cr));
+			writer.writeEntityRef("#13");
+			start = cr + 1;
 		}
-		catch (IOException e)	
+		writer.writeCharacters(start == 0 ? text : text.substring(start));
+	}
+	
+	static public void printJSON(String fileName, JSONObject jsonMap) throws IOException
+	{
+		if (fileName == null || jsonMap == null)
 		{
-			throw (e);
+			throw new NullPointerException("fileName or jsonMap cannot be null");
 		}
-		finally{
-			out.close();
+		//written straight to the file, the JSON is never rendered into one String
+		try (JsonWriter out = ProjectOpenDataWriter.newJsonWriter(Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8), false))
+		{
+			ProjectOpenDataWriter.writeValue(out, jsonMap);
 		}
 	}
 	
@@ -129,10 +174,25 @@ public class Utils {
 		{
 			throw new NullPointerException("date cannot be null");
 		}
+		final DateCache cache = dateCache.get();
+		final DateTimeZone zone = DateTimeZone.getDefault();
+		if (!zone.equals(cache.zone))
+		{
+			Arrays.fill(cache.text, null);
+			cache.zone = zone;
+		}
+		final long millis = date.getTime();
+		final int slot = (Long.hashCode(millis) * 0x9E3779B9) >>> 26;
+		if (cache.text[slot] != null && cache.millis[slot] == millis)
+		{
+			return cache.text[slot];
+		}
 		//only want date for output.
-		DateTime dateTime = new DateTime(date).hourOfDay().roundFloorCopy();
-		DateTimeFormatter formatter =  DateTimeFormat.forPattern("yyyy-MM-dd");
-		return formatter.print(dateTime);
+		DateTime dateTime = new DateTime(millis, zone).hourOfDay().roundFloorCopy();
+		final String text = ISO_DATE_FORMATTER.print(dateTime);
+		cache.millis[slot] = millis;
+		cache.text[slot] = text;
+		return text;
 	}
 	
 	
@@ -158,24 +218,25 @@ public class Utils {
 		{
 			return null;
 		}
-		String csvString = "";
+		final StringBuilder csvString = new StringBuilder();
 		for (String s: list)
 		{
-			if (csvString.equals(""))
+			if (csvString.length() > 0)
 			{
-				csvString = s;
-			}
-			else
-			{
-				csvString = csvString + ", " + s;
+				csvString.append(", ");
 			}
+			csvString.append(s);
 		}
-		return csvString;
+		return csvString.toString();
 	}
 	
+	/**
+	 * Returns the bureau reference data from the shared registry, the file is only parsed once.
+	 * @return JSONArray a copy of the bureau list
+	 */
 	static public JSONArray getBureauList() throws ParseException, IOException
 	{
-		return Utils.loadJsonArrayFile("sample_data/bureau_reference_data.json");
+		return BureauRegistry.getInstance().getBureauArray();
 	}
 	
 	/**
@@ -0,0 +1,157 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BureauMetricsTest {
+
+	private static final Logger log = Logger.getLogger(BureauMetricsTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+	private Date asOf;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		asOf = Utils.convertISOStringToDate("2017-01-01");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * The counts match a loop over the datasets.
+	 */
+	@Test
+	public void testCounts() throws Exception {
+		BureauMetrics metrics = BureauMetrics.of(catalog, asOf);
+		String bureauCode = catalog.getDatasetList().get(0).getBureauCodeList().get(0);
+		int datasetCount = 0;
+		int publicCount = 0;
+		int noLicenseCount = 0;
+		int mediaTypeCount = 0;
+		String mediaType = null;
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			if (!ds.getBureauCodeList().contains(bureauCode))
+			{
+				continue;
+			}
+			datasetCount++;
+			publicCount += Dataset.AccessLevel.PUBLIC.toString().equals(ds.getAccessLevel()) ? 1 : 0;
+			noLicenseCount += ds.getLicense() == null || ds.getLicense().trim().isEmpty() ? 1 : 0;
+			for (Distribution distribution: ds.getDistributionList())
+			{
+				if (mediaType == null)
+				{
+					mediaType = distribution.getMediaType();
+				}
+				if (mediaType != null && mediaType.equals(distribution.getMediaType()))
+				{
+					mediaTypeCount++;
+				}
+			}
+		}
+		assertEquals(datasetCount, metrics.getDatasetCount(bureauCode));
+		Integer metricsPublic = metrics.getAccessLevelCounts(bureauCode).get(Dataset.AccessLevel.PUBLIC.toString());
+		assertEquals(publicCount, metricsPublic == null ? 0 : metricsPublic.intValue());
+		assertEquals(noLicenseCount, metrics.getMissingCount(bureauCode, DatasetField.LICENSE));
+		if (mediaType != null)
+		{
+			assertEquals(mediaTypeCount, metrics.getMediaTypeCounts(bureauCode).get(mediaType).intValue());
+		}
+		int ageTotal = 0;
+		for (int count: metrics.getModifiedAgeCounts(bureauCode).values())
+		{
+			ageTotal += count;
+		}
+		assertEquals(datasetCount, ageTotal);
+	}
+
+	/**
+	 * Counting in parallel chunks gives the same result as counting on one thread.
+	 */
+	@Test
+	public void testParallelMatchesSequential() throws Exception {
+		File snapshotFile = Files.createTempFile("catalog", ".snapshot").toFile();
+		try
+		{
+			catalog.toSnapshot(snapshotFile.getPath());
+			Catalog largeCatalog = new Catalog();
+			for (int i = 0; i < 10; i++)
+			{
+				largeCatalog.loadFromSnapshot(snapshotFile.getPath());
+			}
+			assertTrue(largeCatalog.size() > 4096);
+			BureauMetrics metrics = BureauMetrics.of(catalog, asOf);
+			BureauMetrics largeMetrics = BureauMetrics.of(largeCatalog, asOf);
+			assertEquals(metrics.getBureauCodeList(), largeMetrics.getBureauCodeList());
+			for (String bureauCode: metrics.getBureauCodeList())
+			{
+				assertEquals(metrics.getDatasetCount(bureauCode) * 10, largeMetrics.getDatasetCount(bureauCode));
+				assertEquals(metrics.getMissingCount(bureauCode, DatasetField.KEYWORD) * 10, largeMetrics.getMissingCount(bureauCode, DatasetField.KEYWORD));
+				for (String mediaType: metrics.getMediaTypeCounts(bureauCode).keySet())
+				{
+					assertEquals(metrics.getMediaTypeCounts(bureauCode).get(mediaType) * 10, largeMetrics.getMediaTypeCounts(bureauCode).get(mediaType).intValue());
+				}
+			}
+		}
+		finally
+		{
+			snapshotFile.delete();
+		}
+	}
+
+	/**
+	 * produceBureauMetrics writes the CSV and the JSON next to it.
+	 */
+	@Test
+	public void testProduceBureauMetrics() throws Exception {
+		File directory = Files.createTempDirectory("metrics").toFile();
+		File csvFile = new File(directory, "bureau_metrics.csv");
+		File jsonFile = new File(directory, "bureau_metrics.json");
+		try
+		{
+			BureauMetrics metrics = catalog.produceBureauMetrics(csvFile.getPath());
+			List<String> lineList = Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8);
+			assertEquals("Bureau Code,Bureau Name,Metric,Value,Count,Rate", lineList.get(0));
+			assertTrue(lineList.size() > metrics.getBureauCodeList().size() * (2 + BureauMetrics.REPORTED_FIELDS.size()));
+
+			JSONObject metricsObject = Utils.loadJsonObjectFromString(new String(Files.readAllBytes(jsonFile.toPath()), StandardCharsets.UTF_8));
+			JSONArray bureauArray = (JSONArray) metricsObject.get("bureaus");
+			assertEquals(metrics.getBureauCodeList().size(), bureauArray.size());
+			JSONObject firstBureau = (JSONObject) bureauArray.get(0);
+			assertEquals(metrics.getBureauCodeList().get(0), firstBureau.get("bureauCode"));
+			assertEquals((long) metrics.getDatasetCount(metrics.getBureauCodeList().get(0)), firstBureau.get("datasets"));
+		}
+		finally
+		{
+			csvFile.delete();
+			jsonFile.delete();
+			directory.delete();
+		}
+	}
+}
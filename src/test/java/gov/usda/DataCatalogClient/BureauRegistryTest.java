@@ -0,0 +1,89 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.json.simple.parser.ParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BureauRegistryTest {
+
+	private File bureauDirectory;
+	private File bureauFile;
+
+	@Before
+	public void setUp() throws Exception {
+		bureauDirectory = Files.createTempDirectory("bureau").toFile();
+		bureauFile = new File(bureauDirectory, "bureau_reference_data.json");
+		writeBureau(bureauFile, "Forest Service");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file: bureauDirectory.listFiles())
+		{
+			file.delete();
+		}
+		bureauDirectory.delete();
+	}
+
+	@Test
+	public void testLookups() throws Exception {
+		BureauRegistry bureauRegistry = BureauRegistry.getInstance();
+		BureauRegistry.Bureau bureau = bureauRegistry.getBureauByCode("005:18");
+		assertEquals("ARS", bureau.getAbbreviation());
+		assertSame(bureau, bureauRegistry.getBureauByCkanIdentifier("ars-usda-gov"));
+		assertNull(bureauRegistry.getBureauByCode("999:99"));
+		assertEquals(bureauRegistry.getBureauList().size(), Utils.getBureauList().size());
+	}
+
+	/**
+	 * Replacing the file is picked up by the watch, a broken file keeps the previous data.
+	 */
+	@Test
+	public void testReloadOnChange() throws Exception {
+		try (BureauRegistry bureauRegistry = new BureauRegistry(bureauFile.getPath()))
+		{
+			assertEquals("Forest Service", bureauRegistry.getBureauByCode("005:96").getName());
+			bureauRegistry.watch();
+
+			File newFile = new File(bureauDirectory, "new.json");
+			writeBureau(newFile, "USDA Forest Service");
+			Files.move(newFile.toPath(), bureauFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			waitForName(bureauRegistry, "USDA Forest Service");
+
+			Files.write(bureauFile.toPath(), "[{\"bureau_code\":".getBytes(StandardCharsets.UTF_8));
+			try
+			{
+				bureauRegistry.reload();
+				fail("broken file loaded");
+			}
+			catch (ParseException e)
+			{
+				assertEquals("USDA Forest Service", bureauRegistry.getBureauByCode("005:96").getName());
+			}
+		}
+	}
+
+	private void waitForName(BureauRegistry bureauRegistry, String name) throws InterruptedException
+	{
+		//the watch thread reloads in the background, allow it some time
+		for (int i = 0; i < 200 && !name.equals(bureauRegistry.getBureauByCode("005:96").getName()); i++)
+		{
+			Thread.sleep(50);
+		}
+		assertEquals(name, bureauRegistry.getBureauByCode("005:96").getName());
+	}
+
+	private void writeBureau(File file, String name) throws Exception
+	{
+		String json = "[{\"bureau_code\":\"005:96\",\"bureau_name\":\"" + name + "\",\"bureau_abbreviation\":\"FS\",\"bureau_ckan_identifier\":\"fs-fed-us\"}]";
+		Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,113 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogCSVWriterTest {
+
+	private static final Logger log = Logger.getLogger(CatalogCSVWriterTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * Every row has a value for every header, the values of datasetToListString.
+	 */
+	@Test
+	public void testRowsMatchHeader() throws Exception {
+		File csvFile = Files.createTempFile("catalog", ".csv").toFile();
+		try
+		{
+			catalog.toCSV(csvFile.getPath(), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY);
+			String csvString = new String(Files.readAllBytes(csvFile.toPath()), StandardCharsets.UTF_8);
+			List<CSVRecord> recordList = CSVParser.parse(csvString, CatalogCSVWriter.CSV_FORMAT).getRecords();
+			assertEquals(catalog.size() + 1, recordList.size());
+			List<String> headerList = DatasetCSVColumn.headerList();
+			assertEquals(headerList.size(), recordList.get(0).size());
+			for (int i = 0; i < headerList.size(); i++)
+			{
+				assertEquals(headerList.get(i), recordList.get(0).get(i));
+			}
+			for (int row = 0; row < catalog.size(); row++)
+			{
+				List<String> valueList = catalog.getDatasetList().get(row).datasetToListString();
+				CSVRecord record = recordList.get(row + 1);
+				assertEquals(headerList.size(), record.size());
+				for (int i = 0; i < valueList.size(); i++)
+				{
+					assertEquals(valueList.get(i) == null ? "" : valueList.get(i), record.get(i));
+				}
+			}
+		}
+		finally
+		{
+			csvFile.delete();
+		}
+	}
+
+	/**
+	 * Rows rendered in parallel batches are written in order, the file is the same for any number of threads.
+	 */
+	@Test
+	public void testParallelMatchesSequential() throws Exception {
+		List<Dataset> datasetList = new ArrayList<Dataset>();
+		for (int i = 0; i < 10; i++)
+		{
+			datasetList.addAll(catalog.getDatasetList());
+		}
+		assertTrue(datasetList.size() > 1024);
+		String sequential = null;
+		for (int threads: new int[] {1, 3, 8})
+		{
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			File csvFile = Files.createTempFile("catalog", ".csv").toFile();
+			try
+			{
+				CatalogCSVWriter.write(csvFile.getPath(), datasetList, pool);
+				String csvString = new String(Files.readAllBytes(csvFile.toPath()), StandardCharsets.UTF_8);
+				if (sequential == null)
+				{
+					sequential = csvString;
+					assertEquals(datasetList.size() + 1, CSVParser.parse(csvString, CatalogCSVWriter.CSV_FORMAT).getRecords().size());
+				}
+				assertEquals(threads + " threads", sequential, csvString);
+			}
+			finally
+			{
+				pool.shutdown();
+				csvFile.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogDiffTest {
+
+	private static final Logger log = Logger.getLogger(CatalogDiffTest.class.getName());
+	private static final String OLD_FILE = "sample_data/data-2017-02-06.json";
+	private static final String NEW_FILE = "sample_data/data-2017-02-17.json";
+
+	@Before
+	public void setUp() throws Exception {
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * A dataset added, one removed and one retitled are reported with the changed field only.
+	 */
+	@Test
+	public void testCompareCatalogs() {
+		Catalog oldCatalog = new Catalog();
+		Catalog newCatalog = new Catalog();
+		oldCatalog.addDataset(newDataset("a", "Alpha"));
+		oldCatalog.addDataset(newDataset("b", "Beta"));
+		oldCatalog.addDataset(newDataset("c", "Gamma"));
+		newCatalog.addDataset(newDataset("a", "Alpha"));
+		newCatalog.addDataset(newDataset("c", "Gamma 2"));
+		newCatalog.addDataset(newDataset("d", "Delta"));
+
+		CatalogDiff diff = CatalogDiff.compare(oldCatalog, newCatalog);
+		assertEquals(1, diff.getUnchangedCount());
+		assertEquals("d", diff.getAddedList().get(0).getUniqueIdentifier());
+		assertEquals("b", diff.getRemovedList().get(0).getUniqueIdentifier());
+		assertEquals("Beta", diff.getRemovedList().get(0).getTitle());
+		assertEquals(1, diff.getChangedList().size());
+		CatalogDiff.DatasetChange change = diff.getChangedList().get(0);
+		assertEquals(1, change.getFieldChangeList().size());
+		CatalogDiff.FieldChange fieldChange = change.getFieldChangeList().get(0);
+		assertEquals(DatasetField.TITLE, fieldChange.getField());
+		assertEquals("Gamma", fieldChange.getOldValue());
+		assertEquals("Gamma 2", fieldChange.getNewValue());
+
+		assertTrue(CatalogDiff.compare(newCatalog, newCatalog).isEmpty());
+	}
+
+	/**
+	 * Streaming two snapshots gives the same result as comparing the loaded catalogs.
+	 */
+	@Test
+	public void testCompareFiles() throws Exception {
+		CatalogDiff fileDiff = CatalogDiff.compareFiles(OLD_FILE, NEW_FILE);
+		assertEquals(1, fileDiff.getRemovedList().size());
+		assertTrue(fileDiff.getAddedList().isEmpty());
+
+		CatalogDiff catalogDiff = CatalogDiff.compare(load(OLD_FILE), load(NEW_FILE));
+		assertEquals(catalogDiff.getRemovedList().size(), fileDiff.getRemovedList().size());
+		assertEquals(catalogDiff.getChangedList().size(), fileDiff.getChangedList().size());
+		assertEquals(catalogDiff.getUnchangedCount(), fileDiff.getUnchangedCount());
+
+		File csvFile = File.createTempFile("diff", ".csv");
+		try
+		{
+			fileDiff.toCSV(csvFile.getPath());
+			List<String> lineList = Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8);
+			assertTrue(lineList.get(0).startsWith("Change,Unique Identifier"));
+			assertTrue(lineList.get(1).startsWith("REMOVED,"));
+		}
+		finally
+		{
+			csvFile.delete();
+		}
+	}
+
+	private Catalog load(String fileName)
+	{
+		Catalog catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(fileName);
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		return catalog;
+	}
+
+	private Dataset newDataset(String identifier, String title)
+	{
+		Dataset ds = new Dataset();
+		ds.setUniqueIdentifier(identifier);
+		ds.setTitle(title);
+		ds.setKeywordList(new ArrayList<String>(Arrays.asList("test")));
+		return ds;
+	}
+}
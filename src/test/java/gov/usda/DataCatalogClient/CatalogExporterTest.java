@@ -0,0 +1,202 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogExporterTest {
+
+	private static final Logger log = Logger.getLogger(CatalogExporterTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+	private Path directory;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		directory = Files.createTempDirectory("export");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file: directory.toFile().listFiles())
+		{
+			file.delete();
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * Every file of a multi-sink export is the file the single-format method writes.
+	 */
+	@Test
+	public void testExportMatchesSingleFormat() throws Exception {
+		//the sample catalog is all public, make some of it private so the listings differ
+		for (int i = 0; i < catalog.size(); i += 3)
+		{
+			catalog.getDatasetList().get(i).setAccessLevel(Dataset.AccessLevel.PRIVATE.toString());
+		}
+		final List<ExportSink> sinkList = new ArrayList<ExportSink>();
+		for (Catalog.DataListingCode listing: Catalog.DataListingCode.values())
+		{
+			sinkList.add(ExportSink.projectOpenDataJSON(path("export-" + listing + ".json"), listing));
+			sinkList.add(ExportSink.projectOpenDataJSON(path("export-compact-" + listing + ".json"), listing, true));
+			sinkList.add(ExportSink.csv(path("export-" + listing + ".csv"), listing));
+			sinkList.add(ExportSink.legacyXML(path("export-" + listing + ".xml"), listing));
+		}
+		catalog.export(sinkList);
+
+		for (Catalog.DataListingCode listing: Catalog.DataListingCode.values())
+		{
+			catalog.toProjectOpenDataJSON(path("single-" + listing + ".json"), listing);
+			catalog.toProjectOpenDataJSON(path("single-compact-" + listing + ".json"), listing, true);
+			catalog.toCSV(path("single-" + listing + ".csv"), listing);
+			catalog.toLegacyXML(path("single-" + listing + ".xml"), listing);
+		}
+		for (ExportSink sink: sinkList)
+		{
+			final String singlePath = sink.getFilePath().replace("export-", "single-");
+			assertTrue(sink.toString(), Arrays.equals(Files.readAllBytes(directory.resolve(singlePath)), Files.readAllBytes(directory.resolve(sink.getFilePath()))));
+		}
+		assertTrue(Files.size(directory.resolve(path("export-" + Catalog.DataListingCode.PUBLIC_DATA_LISTING + ".csv")))
+				< Files.size(directory.resolve(path("export-" + Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY + ".csv"))));
+	}
+
+	/**
+	 * Chunks rendered in parallel are written in order, every file is the same for any number of threads.
+	 */
+	@Test
+	public void testParallelMatchesSequential() throws Exception {
+		final List<Dataset> datasetList = new ArrayList<Dataset>();
+		for (int i = 0; i < 10; i++)
+		{
+			datasetList.addAll(catalog.getDatasetList());
+		}
+		assertTrue(datasetList.size() > 512);
+		List<byte[]> sequentialList = null;
+		for (int threads: new int[] {1, 4})
+		{
+			final List<ExportSink> sinkList = Arrays.asList(
+					ExportSink.projectOpenDataJSON(path(threads + ".json"), Catalog.DataListingCode.PUBLIC_DATA_LISTING),
+					ExportSink.csv(path(threads + ".csv"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY),
+					ExportSink.legacyXML(path(threads + ".xml"), Catalog.DataListingCode.PUBLIC_DATA_LISTING));
+			final ForkJoinPool pool = new ForkJoinPool(threads);
+			try
+			{
+				CatalogExporter.export(datasetList, sinkList, pool, null);
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+			final List<byte[]> fileList = new ArrayList<byte[]>();
+			for (ExportSink sink: sinkList)
+			{
+				fileList.add(Files.readAllBytes(directory.resolve(sink.getFilePath())));
+			}
+			if (sequentialList == null)
+			{
+				sequentialList = fileList;
+			}
+			for (int i = 0; i < fileList.size(); i++)
+			{
+				assertTrue(threads + " threads " + sinkList.get(i), Arrays.equals(sequentialList.get(i), fileList.get(i)));
+			}
+		}
+	}
+
+	/**
+	 * Compressed copies hold the plain file's bytes, and the manifest records the size and checksum of
+	 * every file, relative to its own directory.
+	 */
+	@Test
+	public void testCompressedCopiesAndManifest() throws Exception {
+		final List<ExportSink> sinkList = Arrays.asList(
+				ExportSink.projectOpenDataJSON(path("data.json"), Catalog.DataListingCode.PUBLIC_DATA_LISTING,
+						ExportSink.Compression.GZIP, ExportSink.Compression.DEFLATE),
+				ExportSink.csv(path("data.csv"), Catalog.DataListingCode.PUBLIC_DATA_LISTING, ExportSink.Compression.GZIP),
+				ExportSink.legacyXML(path("data.xml"), Catalog.DataListingCode.PUBLIC_DATA_LISTING));
+		final ExportManifest manifest = catalog.export(sinkList);
+		assertEquals(6, manifest.getEntryList().size());
+
+		final byte[] plain = Files.readAllBytes(directory.resolve("data.json"));
+		final ExportManifest.Entry gzipEntry = manifest.getEntry(path("data.json"), "gzip");
+		assertTrue(Arrays.equals(plain, inflate(new GZIPInputStream(Files.newInputStream(Paths.get(gzipEntry.getFilePath()))))));
+		final ExportManifest.Entry deflateEntry = manifest.getEntry(path("data.json"), "deflate");
+		assertTrue(Arrays.equals(plain, inflate(new InflaterInputStream(Files.newInputStream(Paths.get(deflateEntry.getFilePath()))))));
+		assertTrue(gzipEntry.getSize() < plain.length / 4);
+		assertNull(manifest.getEntry(path("data.xml"), "gzip"));
+
+		for (ExportManifest.Entry entry: manifest.getEntryList())
+		{
+			final byte[] file = Files.readAllBytes(Paths.get(entry.getFilePath()));
+			assertEquals(entry.toString(), file.length, entry.getSize());
+			assertEquals(entry.toString(), sha256(file), entry.getSha256());
+		}
+		assertEquals("application/json", manifest.getEntry(path("data.json"), ExportManifest.IDENTITY_ENCODING).getContentType());
+		assertEquals(0, directory.toFile().list(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name)
+			{
+				return name.endsWith(".tmp");
+			}
+		}).length);
+
+		manifest.toJSON(path("manifest.json"));
+		assertTrue(new String(Files.readAllBytes(directory.resolve("manifest.json")), StandardCharsets.UTF_8).contains("\"data.json.gz\""));
+		final ExportManifest loaded = ExportManifest.load(path("manifest.json"));
+		assertEquals(manifest.getEntryList().toString(), loaded.getEntryList().toString());
+	}
+
+	private static byte[] inflate(InputStream in) throws Exception {
+		try (InputStream compressed = in)
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			for (int n = compressed.read(buffer); n > 0; n = compressed.read(buffer))
+			{
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private static String sha256(byte[] bytes) throws Exception {
+		return String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(bytes)));
+	}
+
+	private String path(String fileName)
+	{
+		return directory.resolve(fileName).toString();
+	}
+}
@@ -0,0 +1,187 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogGeneratorTest {
+
+	private static final Logger log = Logger.getLogger(CatalogGeneratorTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+	private static final String POD_AG_DATA_COMMONS_FILE = "sample_data/data-ag-data-commons.json";
+
+	private Catalog sampleCatalog;
+	private CatalogProfile profile;
+	private Path directory;
+
+	@Before
+	public void setUp() throws Exception {
+		sampleCatalog = new Catalog();
+		try
+		{
+			sampleCatalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		profile = CatalogProfile.of(sampleCatalog.getDatasetList());
+		directory = Files.createTempDirectory("generator");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file: directory.toFile().listFiles())
+		{
+			file.delete();
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * The same seed writes the same file, another seed another file, and a dataset does not depend on
+	 * the datasets made before it.
+	 */
+	@Test
+	public void testSeeded() throws Exception {
+		CatalogGenerator.of(profile, 42).writeProjectOpenDataJSON(path("first.json"), 300);
+		CatalogGenerator.of(profile, 42).writeProjectOpenDataJSON(path("second.json"), 300);
+		CatalogGenerator.of(profile, 43).writeProjectOpenDataJSON(path("other.json"), 300);
+		assertTrue(Arrays.equals(Files.readAllBytes(directory.resolve("first.json")), Files.readAllBytes(directory.resolve("second.json"))));
+		assertFalse(Arrays.equals(Files.readAllBytes(directory.resolve("first.json")), Files.readAllBytes(directory.resolve("other.json"))));
+
+		final CatalogGenerator generator = CatalogGenerator.of(profile, 42);
+		final Object alone = generator.toProjectOpenDataJSON(250);
+		for (int i = 0; i < 250; i++)
+		{
+			generator.toProjectOpenDataJSON(i);
+		}
+		assertEquals(alone, generator.toProjectOpenDataJSON(250));
+		assertFalse(generator.toProjectOpenDataJSON(1).equals(generator.toProjectOpenDataJSON(2)));
+	}
+
+	/**
+	 * A generated Project Open Data catalog loads without errors, with unique identifiers and the
+	 * bureaus, dates and counts of the sample it was learned from.
+	 */
+	@Test
+	public void testProjectOpenDataLoads() throws Exception {
+		final int datasetCount = 3000;
+		CatalogGenerator.of(profile, 7).writeProjectOpenDataJSON(path("synthetic.json"), datasetCount);
+		final Catalog catalog = new Catalog();
+		catalog.loadFromProjectOpenDataJSON(path("synthetic.json"), DatasetFilter.acceptAll(), DatasetProjection.all());
+		assertEquals(datasetCount, catalog.size());
+		assertTrue(catalog.validateUniqueIdentifiers());
+
+		final Set<List<String>> sampleBureauSet = new HashSet<List<String>>();
+		final Set<String> samplePublisherSet = new HashSet<String>();
+		long sampleMin = Long.MAX_VALUE;
+		long sampleMax = Long.MIN_VALUE;
+		long sampleDistributions = 0;
+		for (Dataset ds: sampleCatalog.getDatasetList())
+		{
+			sampleBureauSet.add(ds.getBureauCodeList());
+			samplePublisherSet.add(ds.getPublisher().getName());
+			sampleMin = Math.min(sampleMin, ds.getModified().getTime());
+			sampleMax = Math.max(sampleMax, ds.getModified().getTime());
+			sampleDistributions += ds.getDistributionList().size();
+		}
+		long distributions = 0;
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			assertTrue(sampleBureauSet.contains(ds.getBureauCodeList()));
+			assertTrue(samplePublisherSet.contains(ds.getPublisher().getName()));
+			//written as a UTC day, read back at midnight of the local zone
+			assertTrue(ds.getModified().getTime() >= sampleMin - 24L * 60 * 60 * 1000);
+			assertTrue(ds.getModified().getTime() <= sampleMax + 24L * 60 * 60 * 1000);
+			distributions += ds.getDistributionList().size();
+		}
+		final double sampleMean = (double) sampleDistributions / sampleCatalog.size();
+		final double mean = (double) distributions / catalog.size();
+		assertTrue(mean > sampleMean * 0.8 && mean < sampleMean * 1.2);
+
+		//and goes through the exporters like any catalog
+		final ExportManifest manifest = catalog.export(Arrays.asList(
+				ExportSink.csv(path("synthetic.csv"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY),
+				ExportSink.legacyXML(path("synthetic.xml"), Catalog.DataListingCode.PUBLIC_DATA_LISTING)));
+		assertEquals(2, manifest.getEntryList().size());
+	}
+
+	/**
+	 * The CKAN file of a seed loads as the same datasets as its Project Open Data file.
+	 */
+	@Test
+	public void testCKANLoads() throws Exception {
+		assertCKANLoads(CatalogGenerator.of(CatalogProfile.fromProjectOpenData(POD_FILE, POD_AG_DATA_COMMONS_FILE), 11), 500);
+	}
+
+	/**
+	 * Every bureau and program code of a bureau with several is in the CKAN file.
+	 */
+	@Test
+	public void testCKANLoadsEveryCode() throws Exception {
+		final Dataset multiCode = sampleCatalog.getDatasetList().get(0);
+		multiCode.setBureauCodeList(multiCode.getBureauCodeList().contains("005:96") ? "005:97" : "005:96");
+		multiCode.setProgramCodeList(multiCode.getProgramCodeList().contains("005:998") ? "005:999" : "005:998");
+		final List<Dataset> datasetList = new ArrayList<Dataset>(sampleCatalog.getDatasetList());
+		//weigh the bureau so the generator picks it often
+		datasetList.addAll(Collections.nCopies(datasetList.size(), multiCode));
+
+		final Catalog ckanCatalog = assertCKANLoads(CatalogGenerator.of(CatalogProfile.of(datasetList), 11), 200);
+		int multiCodeCount = 0;
+		for (Dataset ds: ckanCatalog.getDatasetList())
+		{
+			multiCodeCount += ds.getBureauCodeList().size() > 1 && ds.getProgramCodeList().size() > 1 ? 1 : 0;
+		}
+		assertTrue(multiCodeCount > 0);
+	}
+
+	/**
+	 * Writes the CKAN and Project Open Data files of a generator and checks they load as the same datasets.
+	 * @return Catalog loaded from the CKAN file
+	 */
+	private Catalog assertCKANLoads(CatalogGenerator generator, int datasetCount) throws Exception
+	{
+		generator.writeCKAN_JSON(path("ckan.json"), datasetCount);
+		generator.writeProjectOpenDataJSON(path("pod.json"), datasetCount);
+
+		final Catalog ckanCatalog = new Catalog();
+		ckanCatalog.loadCatalogFromCKAN(path("ckan.json"), DatasetFilter.acceptAll(), DatasetProjection.all());
+		final Catalog podCatalog = new Catalog();
+		podCatalog.loadFromProjectOpenDataJSON(path("pod.json"), DatasetFilter.acceptAll(), DatasetProjection.all());
+		assertEquals(datasetCount, ckanCatalog.size());
+		assertEquals(datasetCount, podCatalog.size());
+		for (Dataset podDataset: podCatalog.getDatasetList())
+		{
+			final Dataset ckanDataset = ckanCatalog.getDatasetByIdentifier(podDataset.getUniqueIdentifier());
+			assertNotNull(ckanDataset);
+			assertEquals(podDataset.getTitle(), ckanDataset.getTitle());
+			assertEquals(podDataset.getDescription(), ckanDataset.getDescription());
+			assertEquals(podDataset.getModified(), ckanDataset.getModified());
+			assertEquals(podDataset.getKeywordList(), ckanDataset.getKeywordList());
+			assertEquals(podDataset.getBureauCodeList(), ckanDataset.getBureauCodeList());
+			assertEquals(podDataset.getProgramCodeList(), ckanDataset.getProgramCodeList());
+			assertEquals(podDataset.getDistributionList().size(), ckanDataset.getDistributionList().size());
+		}
+		return ckanCatalog;
+	}
+
+	private String path(String fileName)
+	{
+		return directory.resolve(fileName).toString();
+	}
+}
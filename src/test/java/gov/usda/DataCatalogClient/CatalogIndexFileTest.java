@@ -0,0 +1,138 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogIndexFileTest {
+
+	private static final Logger log = Logger.getLogger(CatalogIndexFileTest.class.getName());
+	private static final String SOURCE_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+	private File indexFile;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(SOURCE_FILE);
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		indexFile = File.createTempFile("catalog", ".idx");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		indexFile.delete();
+	}
+
+	/**
+	 * Lookups and search from the mapped file agree with the in-memory indexes.
+	 */
+	@Test
+	public void testMatchesInMemoryIndex() throws IOException {
+		CatalogIndexFile.write(catalog, indexFile.getPath(), SOURCE_FILE);
+		try (CatalogIndexFile index = CatalogIndexFile.open(indexFile.getPath()))
+		{
+			assertEquals(catalog.size(), index.size());
+			assertTrue(index.isCurrentFor(catalog));
+			assertTrue(index.isCurrentFor(SOURCE_FILE));
+
+			final Dataset first = catalog.getDatasetList().get(0);
+			assertEquals(first.getUniqueIdentifier(), index.getIdentifier(0));
+			assertEquals(first.getTitle(), index.getTitle(0));
+
+			final DatasetQuery query = new DatasetQuery();
+			query.setBureauCode(first.getBureauCodeList().get(0));
+			query.setAccessLevel(first.getAccessLevel());
+			final List<Dataset> expected = catalog.findDatasets(query);
+			final int[] documentNumbers = index.query(query);
+			assertEquals(expected.size(), documentNumbers.length);
+			for (int documentNumber: documentNumbers)
+			{
+				assertTrue(expected.contains(catalog.getDatasetList().get(documentNumber)));
+			}
+
+			final DatasetQuery identifierQuery = new DatasetQuery();
+			identifierQuery.setIdentifier(first.getUniqueIdentifier());
+			assertArrayEquals(new int[] {0}, index.query(identifierQuery));
+			identifierQuery.setIdentifier("no such identifier");
+			assertEquals(0, index.query(identifierQuery).length);
+
+			final List<SearchResult> searchResultList = catalog.search(first.getTitle(), 5);
+			final List<CatalogIndexFile.Match> matchList = index.search(first.getTitle(), 5);
+			assertEquals(searchResultList.size(), matchList.size());
+			for (int i = 0; i < matchList.size(); i++)
+			{
+				assertEquals(searchResultList.get(i).getScore(), matchList.get(i).getScore(), 0.001f);
+			}
+			assertEquals(0, matchList.get(0).getDocumentNumber());
+		}
+	}
+
+	/**
+	 * A changed catalog is reported as stale, a damaged header does not open and a damaged
+	 * section fails verify.
+	 */
+	@Test
+	public void testStaleAndCorrupt() throws IOException {
+		CatalogIndexFile.write(catalog, indexFile.getPath());
+		try (CatalogIndexFile index = CatalogIndexFile.open(indexFile.getPath()))
+		{
+			assertFalse(index.isCurrentFor(SOURCE_FILE));
+			catalog.getDatasetList().get(0).setTitle("Changed title");
+			assertFalse(index.isCurrentFor(catalog));
+		}
+
+		try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw"))
+		{
+			file.seek(file.length() - 1);
+			final int last = file.read();
+			file.seek(file.length() - 1);
+			file.write(last ^ 0xff);
+		}
+		try (CatalogIndexFile index = CatalogIndexFile.open(indexFile.getPath()))
+		{
+			index.verify();
+			fail("corrupt index file verified");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage().contains("checksum"));
+		}
+
+		CatalogIndexFile.write(catalog, indexFile.getPath());
+		try (CatalogIndexFile index = CatalogIndexFile.open(indexFile.getPath()))
+		{
+			index.verify();
+		}
+		try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw"))
+		{
+			file.seek(8);
+			file.writeInt(Integer.MAX_VALUE);
+		}
+		try
+		{
+			CatalogIndexFile.open(indexFile.getPath()).close();
+			fail("index file with a corrupt header opened");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage().contains("checksum"));
+		}
+	}
+}
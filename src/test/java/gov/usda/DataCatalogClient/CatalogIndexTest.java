@@ -0,0 +1,152 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogIndexTest {
+
+	private static final Logger log = Logger.getLogger(CatalogIndexTest.class.getName());
+
+	private Catalog catalog;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON("sample_data/data.json");
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * Index lookups must return the same datasets as a scan of the catalog.
+	 */
+	@Test
+	public void testFindMatchesScan() {
+		assertTrue(catalog.size() > 0);
+
+		final Dataset first = catalog.getDatasetList().get(0);
+		final String bureauCode = first.getBureauCodeList().get(0);
+		final String accessLevel = first.getAccessLevel();
+
+		List<Dataset> scanList = new ArrayList<Dataset>();
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			if (ds.getBureauCodeList().contains(bureauCode) && accessLevel.equals(ds.getAccessLevel()))
+			{
+				scanList.add(ds);
+			}
+		}
+
+		DatasetQuery query = new DatasetQuery();
+		query.setBureauCode(bureauCode);
+		query.setAccessLevel(accessLevel);
+		assertEquals(scanList, catalog.findDatasets(query));
+		assertSame(first, catalog.getDatasetByIdentifier(first.getUniqueIdentifier()));
+	}
+
+	/**
+	 * Keyword lookups ignore case and missing keys return an empty list.
+	 */
+	@Test
+	public void testKeywordCaseAndMissingKey() {
+		Dataset withKeyword = null;
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			if (ds.getKeywordList().size() > 0)
+			{
+				withKeyword = ds;
+				break;
+			}
+		}
+		assertNotNull(withKeyword);
+		final String keyword = withKeyword.getKeywordList().get(0).toUpperCase();
+		assertTrue(catalog.findDatasets(CatalogIndex.Field.KEYWORD, keyword).contains(withKeyword));
+		assertTrue(catalog.findDatasets(CatalogIndex.Field.BUREAU_CODE, "999:99").isEmpty());
+	}
+
+	/**
+	 * Removing and changing a dataset keeps the indexes current.
+	 */
+	@Test
+	public void testRemoveAndReindex() throws Exception {
+		final Dataset ds = catalog.getDatasetList().get(0);
+		final int size = catalog.size();
+
+		ds.setBureauCodeList("999:99");
+		catalog.reindexDataset(ds);
+		assertEquals(1, catalog.findDatasets(CatalogIndex.Field.BUREAU_CODE, "999:99").size());
+
+		assertTrue(catalog.removeDataset(ds));
+		assertFalse(catalog.removeDataset(ds));
+		assertEquals(size - 1, catalog.size());
+		assertTrue(catalog.findDatasets(CatalogIndex.Field.BUREAU_CODE, "999:99").isEmpty());
+		assertNull(catalog.getDatasetByIdentifier(ds.getUniqueIdentifier()));
+	}
+
+	/**
+	 * Removing and adding datasets over and over does not grow the index, and lookups stay in the
+	 * order datasets were added.
+	 */
+	@Test
+	public void testChurnCompacts() {
+		final CatalogIndex index = new CatalogIndex();
+		final List<Dataset> datasetList = catalog.getDatasetList();
+		for (Dataset ds: datasetList)
+		{
+			index.add(ds);
+		}
+		for (int round = 0; round < 20; round++)
+		{
+			for (Dataset ds: datasetList)
+			{
+				index.remove(ds);
+				index.add(ds);
+			}
+		}
+		assertEquals(datasetList.size(), index.size());
+		assertTrue(index.getDocumentIdCount() <= 2 * datasetList.size() + 64);
+		final String accessLevel = datasetList.get(0).getAccessLevel();
+		final List<Dataset> scanList = new ArrayList<Dataset>();
+		for (Dataset ds: datasetList)
+		{
+			if (accessLevel.equals(ds.getAccessLevel()))
+			{
+				scanList.add(ds);
+			}
+		}
+		final DatasetQuery query = new DatasetQuery();
+		query.setAccessLevel(accessLevel);
+		assertEquals(scanList, index.find(query));
+	}
+
+	/**
+	 * Set methods replace the value of their field, add methods add another value to match.
+	 */
+	@Test
+	public void testQuerySetReplaces() {
+		final DatasetQuery query = new DatasetQuery();
+		query.setBureauCode("999:99");
+		query.setBureauCode("005:96");
+		query.addKeyword("a");
+		query.addKeyword("b");
+		assertEquals(3, query.getCriteria().size());
+		assertEquals("005:96", query.getCriteria().get(0).getValue());
+	}
+}
@@ -0,0 +1,230 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogServerTest {
+
+	private static final Logger log = Logger.getLogger(CatalogServerTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+	private Path directory;
+	private CatalogServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		directory = Files.createTempDirectory("server");
+		server = CatalogServer.start(catalog, new InetSocketAddress("127.0.0.1", 0), directory.resolve("snapshots").toString());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		deleteAll(directory.toFile());
+	}
+
+	/**
+	 * data.json is sent gzipped to clients that accept it, plain to those that do not, and 304 for a
+	 * current ETag.
+	 */
+	@Test
+	public void testDataJSON() throws Exception {
+		catalog.toProjectOpenDataJSON(directory.resolve("expected.json").toString(), Catalog.DataListingCode.PUBLIC_DATA_LISTING);
+		final byte[] expected = Files.readAllBytes(directory.resolve("expected.json"));
+
+		HttpURLConnection connection = open(CatalogServer.DATA_JSON_PATH);
+		assertEquals(200, connection.getResponseCode());
+		assertNull(connection.getHeaderField("Content-Encoding"));
+		assertTrue(Arrays.equals(expected, read(connection.getInputStream())));
+		final String plainETag = connection.getHeaderField("ETag");
+		final String lastModified = connection.getHeaderField("Last-Modified");
+
+		connection = open(CatalogServer.DATA_JSON_PATH);
+		connection.setRequestProperty("Accept-Encoding", "deflate;q=0, gzip");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+		assertEquals("Accept-Encoding", connection.getHeaderField("Vary"));
+		assertTrue(connection.getContentLength() < expected.length / 4);
+		assertTrue(Arrays.equals(expected, read(new GZIPInputStream(connection.getInputStream()))));
+		final String gzipETag = connection.getHeaderField("ETag");
+		assertFalse(plainETag.equals(gzipETag));
+
+		connection = open(CatalogServer.DATA_JSON_PATH);
+		connection.setRequestProperty("Accept-Encoding", "gzip");
+		connection.setRequestProperty("If-None-Match", gzipETag);
+		assertEquals(304, connection.getResponseCode());
+
+		connection = open(CatalogServer.DATA_JSON_PATH);
+		connection.setRequestProperty("If-Modified-Since", lastModified);
+		assertEquals(304, connection.getResponseCode());
+
+		connection = open(CatalogServer.DATA_JSON_PATH);
+		connection.setRequestMethod("HEAD");
+		assertEquals(200, connection.getResponseCode());
+		assertEquals(expected.length, connection.getContentLengthLong());
+	}
+
+	/**
+	 * Each public dataset is served on its own, with its fingerprint as ETag.
+	 */
+	@Test
+	public void testDataset() throws Exception {
+		final Dataset ds = catalog.getDatasetList().get(3);
+		final String path = CatalogServer.DATASET_PATH + URLEncoder.encode(ds.getUniqueIdentifier(), "UTF-8").replace("+", "%20");
+		HttpURLConnection connection = open(path);
+		assertEquals(200, connection.getResponseCode());
+		final JSONObject served = (JSONObject) new JSONParser().parse(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+		assertEquals(ds.getTitle(), served.get(Dataset.PROJECT_OPEN_DATA_DATASET_TITLE));
+		assertEquals(ds.getUniqueIdentifier(), served.get(Dataset.PROJECT_OPEN_DATA_DATASET_UNIQUE_IDENTIFIER));
+		assertEquals("\"" + Long.toHexString(DatasetFingerprint.of(ds)) + "\"", connection.getHeaderField("ETag"));
+
+		connection = open(path);
+		connection.setRequestProperty("If-None-Match", "\"0\", W/\"" + Long.toHexString(DatasetFingerprint.of(ds)) + "\"");
+		assertEquals(304, connection.getResponseCode());
+
+		assertEquals(404, open(CatalogServer.DATASET_PATH + "no-such-dataset").getResponseCode());
+		assertEquals(404, open("/index.html").getResponseCode());
+		connection = open(CatalogServer.CSV_PATH);
+		connection.setRequestMethod("POST");
+		assertEquals(405, connection.getResponseCode());
+	}
+
+	/**
+	 * A dataset changed in the catalog is served as the snapshot has it, like data.json, until the
+	 * catalog is reloaded.
+	 */
+	@Test
+	public void testDatasetChangedAfterReload() throws Exception {
+		final Dataset ds = catalog.getDatasetList().get(3);
+		final String title = ds.getTitle();
+		final String path = CatalogServer.DATASET_PATH + URLEncoder.encode(ds.getUniqueIdentifier(), "UTF-8").replace("+", "%20");
+		HttpURLConnection connection = open(path);
+		assertEquals(200, connection.getResponseCode());
+		final String eTag = connection.getHeaderField("ETag");
+		read(connection.getInputStream());
+
+		ds.setTitle("A title changed after the reload");
+		connection = open(path);
+		assertEquals(200, connection.getResponseCode());
+		assertEquals(eTag, connection.getHeaderField("ETag"));
+		JSONObject served = (JSONObject) new JSONParser().parse(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+		assertEquals(title, served.get(Dataset.PROJECT_OPEN_DATA_DATASET_TITLE));
+
+		server.reload(catalog);
+		connection = open(path);
+		assertEquals(200, connection.getResponseCode());
+		assertFalse(eTag.equals(connection.getHeaderField("ETag")));
+		served = (JSONObject) new JSONParser().parse(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+		assertEquals("A title changed after the reload", served.get(Dataset.PROJECT_OPEN_DATA_DATASET_TITLE));
+	}
+
+	/**
+	 * A request under way when the catalog is reloaded gets the whole old file, later requests the new
+	 * one, and the old snapshot is deleted.
+	 */
+	@Test
+	public void testReloadKeepsRequestsUnderWay() throws Exception {
+		final HttpURLConnection before = open(CatalogServer.DATA_JSON_PATH);
+		assertEquals(200, before.getResponseCode());
+		final String beforeETag = before.getHeaderField("ETag");
+		final InputStream beforeBody = before.getInputStream();
+		final int first = beforeBody.read();
+
+		catalog.getDatasetList().get(0).setTitle("A title changed before the reload");
+		server.reload(catalog);
+
+		final ByteArrayOutputStream beforeBytes = new ByteArrayOutputStream();
+		beforeBytes.write(first);
+		beforeBytes.write(read(beforeBody));
+		assertEquals(before.getContentLengthLong(), beforeBytes.size());
+		assertFalse(new String(beforeBytes.toByteArray(), StandardCharsets.UTF_8).contains("A title changed before the reload"));
+
+		final HttpURLConnection after = open(CatalogServer.DATA_JSON_PATH);
+		assertEquals(200, after.getResponseCode());
+		assertFalse(beforeETag.equals(after.getHeaderField("ETag")));
+		assertTrue(new String(read(after.getInputStream()), StandardCharsets.UTF_8).contains("A title changed before the reload"));
+		//the old snapshot goes when the request that had it releases it, just after its last byte
+		for (int wait = 0; wait < 50 && directory.resolve("snapshots").toFile().list().length > 1; wait++)
+		{
+			Thread.sleep(100);
+		}
+		assertEquals(1, directory.resolve("snapshots").toFile().list().length);
+	}
+
+	/**
+	 * Accept-Encoding names win over "*", and q=0 refuses an encoding.
+	 */
+	@Test
+	public void testAccepts() {
+		assertTrue(CatalogServer.accepts("gzip, deflate", "gzip"));
+		assertTrue(CatalogServer.accepts("*", "deflate"));
+		assertFalse(CatalogServer.accepts("*, gzip;q=0", "gzip"));
+		assertFalse(CatalogServer.accepts("br", "gzip"));
+		assertFalse(CatalogServer.accepts(null, "gzip"));
+	}
+
+	private HttpURLConnection open(String path) throws Exception
+	{
+		final HttpURLConnection connection = (HttpURLConnection) new URL("http", "127.0.0.1", server.getAddress().getPort(), path).openConnection();
+		connection.setUseCaches(false);
+		return connection;
+	}
+
+	private static byte[] read(InputStream in) throws Exception
+	{
+		try (InputStream body = in)
+		{
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			for (int n = body.read(buffer); n > 0; n = body.read(buffer))
+			{
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private static void deleteAll(File file)
+	{
+		final File[] fileList = file.listFiles();
+		if (fileList != null)
+		{
+			for (File child: fileList)
+			{
+				deleteAll(child);
+			}
+		}
+		file.delete();
+	}
+}
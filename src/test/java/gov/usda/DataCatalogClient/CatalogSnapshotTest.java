@@ -0,0 +1,144 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogSnapshotTest {
+
+	private static final Logger log = Logger.getLogger(CatalogSnapshotTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private File snapshotFile;
+	private Catalog catalog;
+
+	@Before
+	public void setUp() throws Exception {
+		snapshotFile = Files.createTempFile("catalog", ".snapshot").toFile();
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		catalog.setSource("data.json");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		snapshotFile.delete();
+	}
+
+	/**
+	 * A catalog saved and loaded again has the same fields and datasets, and saving does not
+	 * reorder the catalog.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		assertTrue(catalog.size() > 0);
+		List<Dataset> orderList = new ArrayList<Dataset>(catalog.getDatasetList());
+		long start = System.nanoTime();
+		catalog.toSnapshot(snapshotFile.getPath());
+		long written = System.nanoTime();
+		for (int i = 0; i < orderList.size(); i++)
+		{
+			assertSame(orderList.get(i), catalog.getDatasetList().get(i));
+		}
+		Catalog loadedCatalog = new Catalog();
+		loadedCatalog.loadFromSnapshot(snapshotFile.getPath());
+		log.fine("Snapshot of " + catalog.size() + " datasets, " + snapshotFile.length() + " bytes, written in "
+				+ (written - start) / 1000000 + "ms, read in " + (System.nanoTime() - written) / 1000000 + "ms");
+
+		//the snapshot is written in catalog order
+		catalog.sort();
+		assertEquals(catalog.size(), loadedCatalog.size());
+		assertEquals(catalog.getConformsTo(), loadedCatalog.getConformsTo());
+		assertEquals("data.json", loadedCatalog.getSource());
+		assertEquals(DatasetFingerprint.of(catalog), DatasetFingerprint.of(loadedCatalog));
+		for (int i = 0; i < catalog.size(); i++)
+		{
+			Dataset ds = catalog.getDatasetList().get(i);
+			Dataset loaded = loadedCatalog.getDatasetList().get(i);
+			assertEquals(ds, loaded);
+			assertEquals(ds.toProjectOpenDataJSON(), loaded.toProjectOpenDataJSON());
+			assertEquals(ds.getMetadataModifiedDate(), loaded.getMetadataModifiedDate());
+		}
+		assertTrue(snapshotFile.length() < new File(POD_FILE).length());
+	}
+
+	/**
+	 * A partial read loads exactly the datasets of the bureaus asked for.
+	 */
+	@Test
+	public void testReadByBureau() throws Exception {
+		catalog.toSnapshot(snapshotFile.getPath());
+		catalog.sort();
+		String bureauCode = catalog.getDatasetList().get(0).getBureauCodeList().get(0);
+		List<String> expectedList = new ArrayList<String>();
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			if (ds.getBureauCodeList().contains(bureauCode))
+			{
+				expectedList.add(ds.getUniqueIdentifier());
+			}
+		}
+		Catalog bureauCatalog = new Catalog();
+		bureauCatalog.loadFromSnapshot(snapshotFile.getPath(), bureauCode, "no-such-bureau");
+		List<String> loadedList = new ArrayList<String>();
+		for (Dataset ds: bureauCatalog.getDatasetList())
+		{
+			loadedList.add(ds.getUniqueIdentifier());
+		}
+		assertEquals(expectedList, loadedList);
+		assertTrue(bureauCatalog.isSorted());
+	}
+
+	/**
+	 * Files of another version or cut short are refused.
+	 */
+	@Test
+	public void testDamagedFile() throws Exception {
+		catalog.toSnapshot(snapshotFile.getPath());
+		try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw"))
+		{
+			file.setLength(file.length() - 1);
+		}
+		try
+		{
+			new Catalog().loadFromSnapshot(snapshotFile.getPath());
+			fail("truncated snapshot loaded");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage().contains("truncated"));
+		}
+		try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw"))
+		{
+			file.seek(4);
+			file.writeInt(CatalogSnapshot.VERSION + 1);
+		}
+		try
+		{
+			new Catalog().loadFromSnapshot(snapshotFile.getPath());
+			fail("snapshot of another version loaded");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage().contains("version"));
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CatalogStoreTest {
+
+	private static final Logger log = Logger.getLogger(CatalogStoreTest.class.getName());
+	private static final String CKAN_FILE = "sample_data/sample_ckan_catalog_result.json";
+
+	private File storeDirectory;
+	private String storeFileName;
+
+	@Before
+	public void setUp() throws Exception {
+		storeDirectory = Files.createTempDirectory("store").toFile();
+		storeFileName = new File(storeDirectory, "USDA-data.store").getPath();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file: storeDirectory.listFiles())
+		{
+			file.delete();
+		}
+		storeDirectory.delete();
+	}
+
+	/**
+	 * Puts, replacements and deletes survive a reopen, with and without the hint file.
+	 */
+	@Test
+	public void testPutGetDelete() throws Exception {
+		CatalogStore store = CatalogStore.open(storeFileName);
+		store.put("a", dataset("a", "First"));
+		store.put("b", dataset("b", "Second"));
+		store.put("a", dataset("a", "First again"));
+		assertTrue(store.delete("b"));
+		assertFalse(store.delete("b"));
+		assertEquals("First again", store.get("a").getString("title"));
+		assertNull(store.get("b"));
+		store.put("c", dataset("c", "Third"));
+		store.close();
+
+		store = CatalogStore.open(storeFileName);
+		assertEquals(2, store.size());
+		assertEquals("First again", store.get("a").getString("title"));
+		//appended after the hint was written, found by scanning the tail
+		store.put("d", dataset("d", "Fourth"));
+		store.sync();
+		store = reopenWithoutClose(store);
+		assertEquals(3, store.size());
+		assertEquals("Fourth", store.get("d").getString("title"));
+		store.close();
+
+		new File(storeFileName + CatalogStore.HINT_SUFFIX).delete();
+		store = CatalogStore.open(storeFileName);
+		assertEquals(3, store.size());
+		assertTrue(store.contains("c"));
+		final List<String> keyList = new ArrayList<String>();
+		store.scan(new CatalogStore.StoreVisitor() {
+			@Override
+			public void visit(String key, RawDataset rawDataset)
+			{
+				keyList.add(key);
+			}
+		});
+		assertEquals(3, keyList.size());
+		assertTrue(keyList.containsAll(store.keySet()));
+		store.close();
+	}
+
+	/**
+	 * A record cut short by a crash is dropped, the records before it are kept.
+	 */
+	@Test
+	public void testTornTail() throws Exception {
+		CatalogStore store = CatalogStore.open(storeFileName);
+		store.put("a", dataset("a", "First"));
+		store.put("b", dataset("b", "Second"));
+		store.sync();
+		store.abandon();
+		long length = new File(storeFileName).length();
+		try (RandomAccessFile file = new RandomAccessFile(storeFileName, "rw"))
+		{
+			file.setLength(length - 5);
+		}
+		store = CatalogStore.open(storeFileName);
+		assertEquals(1, store.size());
+		assertNotNull(store.get("a"));
+		store.put("c", dataset("c", "Third"));
+		store.close();
+		store = CatalogStore.open(storeFileName);
+		assertEquals(2, store.size());
+		assertEquals("Third", store.get("c").getString("title"));
+		store.close();
+	}
+
+	/**
+	 * Compaction keeps only the live records and they still load.
+	 */
+	@Test
+	public void testCompact() throws Exception {
+		CatalogStore store = CatalogStore.open(storeFileName);
+		for (int i = 0; i < 50; i++)
+		{
+			store.put("id-" + (i % 10), dataset("id-" + (i % 10), "Version " + i));
+		}
+		long before = new File(storeFileName).length();
+		assertTrue(store.getGarbageBytes() > 0);
+		store.compact();
+		assertEquals(0, store.getGarbageBytes());
+		assertTrue(new File(storeFileName).length() < before);
+		assertEquals(10, store.size());
+		assertEquals("Version 43", store.get("id-3").getString("title"));
+		store.close();
+		store = CatalogStore.open(storeFileName);
+		assertEquals("Version 49", store.get("id-9").getString("title"));
+		store.close();
+	}
+
+	/**
+	 * A CKAN file imported into a store loads the same catalog as the file.
+	 */
+	@Test
+	public void testImportAndLoad() throws Exception {
+		CatalogStore store = CatalogStore.open(storeFileName);
+		assertEquals(4, store.importCKANFile(CKAN_FILE));
+		Catalog storeCatalog = new Catalog();
+		storeCatalog.loadFromStore(store, DatasetFilter.acceptAll(), DatasetProjection.all());
+		store.close();
+
+		Catalog fileCatalog = new Catalog();
+		fileCatalog.loadCatalogFromCKAN(CKAN_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		assertEquals(fileCatalog.size(), storeCatalog.size());
+		assertEquals(DatasetFingerprint.of(fileCatalog), DatasetFingerprint.of(storeCatalog));
+		log.fine("Loaded " + storeCatalog.size() + " datasets from the store");
+	}
+
+	/**
+	 * Drops the store without the hint close() would write, as a crash would.
+	 */
+	private CatalogStore reopenWithoutClose(CatalogStore store) throws Exception
+	{
+		store.abandon();
+		return CatalogStore.open(storeFileName);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static RawDataset dataset(String identifier, String title)
+	{
+		JSONObject datasetObject = new JSONObject();
+		datasetObject.put("identifier", identifier);
+		datasetObject.put("title", title);
+		datasetObject.put("keyword", new JSONArray());
+		return RawDataset.fromProjectOpenData(datasetObject);
+	}
+}
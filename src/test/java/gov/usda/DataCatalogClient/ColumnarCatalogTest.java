@@ -0,0 +1,133 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnarCatalogTest {
+
+	private static final Logger log = Logger.getLogger(ColumnarCatalogTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * Counts and filters over the columns give the same answers as loops over the datasets, and
+	 * building the columns does not reorder the catalog.
+	 */
+	@Test
+	public void testMatchesDatasets() throws Exception {
+		List<Dataset> orderList = new ArrayList<Dataset>(catalog.getDatasetList());
+		ColumnarCatalog columns = ColumnarCatalog.of(catalog);
+		assertEquals(catalog.size(), columns.size());
+		assertEquals(orderList, catalog.getDatasetList());
+		//rows are in export order
+		List<Dataset> rowList = catalog.getSortedDatasetList();
+
+		Map<String, Integer> bureauCountMap = new TreeMap<String, Integer>();
+		Map<String, Integer> accessCountMap = new TreeMap<String, Integer>();
+		Date cutoff = catalog.getDatasetList().get(0).getModified();
+		int modifiedSinceCount = 0;
+		long distributionCount = 0;
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			for (String bureauCode: ds.getBureauCodeList())
+			{
+				increment(bureauCountMap, bureauCode);
+			}
+			increment(accessCountMap, ds.getAccessLevel());
+			if (ds.getModified() != null && ColumnarCatalog.toDay(ds.getModified()) >= ColumnarCatalog.toDay(cutoff))
+			{
+				modifiedSinceCount++;
+			}
+			distributionCount += ds.getDistributionList().size();
+		}
+		BitSet all = columns.all();
+		assertEquals(bureauCountMap, columns.countBy(ColumnarCatalog.CodeField.BUREAU_CODE, all));
+		assertEquals(accessCountMap, columns.countBy(ColumnarCatalog.CodeField.ACCESS_LEVEL, all));
+		assertEquals(modifiedSinceCount, columns.whereDateBetween(ColumnarCatalog.DateField.MODIFIED, cutoff, null).cardinality());
+		assertEquals(distributionCount, columns.sumDistributions(all));
+
+		String bureauCode = bureauCountMap.keySet().iterator().next();
+		BitSet bureauRows = columns.whereEquals(ColumnarCatalog.CodeField.BUREAU_CODE, bureauCode);
+		assertEquals(bureauCountMap.get(bureauCode).intValue(), bureauRows.cardinality());
+		for (int row = bureauRows.nextSetBit(0); row >= 0; row = bureauRows.nextSetBit(row + 1))
+		{
+			Dataset ds = rowList.get(row);
+			assertTrue(ds.getBureauCodeList().contains(bureauCode));
+			assertEquals(ds.getUniqueIdentifier(), columns.getText(ColumnarCatalog.TextField.IDENTIFIER, row));
+			assertEquals(ds.getTitle(), columns.getText(ColumnarCatalog.TextField.TITLE, row));
+			assertEquals(ds.getBureauCodeList(), columns.getValues(ColumnarCatalog.CodeField.BUREAU_CODE, row));
+		}
+		assertEquals(0, columns.whereEquals(ColumnarCatalog.CodeField.ACCESS_LEVEL, "no-such-level").cardinality());
+
+		String title = rowList.get(3).getTitle();
+		assertTrue(columns.whereContains(ColumnarCatalog.TextField.TITLE, title.toUpperCase()).get(3));
+	}
+
+	/**
+	 * Columns built from a snapshot match columns built from the catalog.
+	 */
+	@Test
+	public void testFromSnapshot() throws Exception {
+		File snapshotFile = Files.createTempFile("catalog", ".snapshot").toFile();
+		try
+		{
+			catalog.toSnapshot(snapshotFile.getPath());
+			ColumnarCatalog columns = ColumnarCatalog.of(catalog);
+			ColumnarCatalog snapshotColumns = ColumnarCatalog.fromSnapshot(snapshotFile.getPath());
+			assertEquals(columns.size(), snapshotColumns.size());
+			for (ColumnarCatalog.CodeField field: ColumnarCatalog.CodeField.values())
+			{
+				assertEquals(columns.countBy(field, columns.all()), snapshotColumns.countBy(field, snapshotColumns.all()));
+			}
+			assertEquals(columns.countByMonth(ColumnarCatalog.DateField.MODIFIED, columns.all()),
+					snapshotColumns.countByMonth(ColumnarCatalog.DateField.MODIFIED, snapshotColumns.all()));
+			assertEquals(columns.maxDate(ColumnarCatalog.DateField.MODIFIED, columns.all()),
+					snapshotColumns.maxDate(ColumnarCatalog.DateField.MODIFIED, snapshotColumns.all()));
+		}
+		finally
+		{
+			snapshotFile.delete();
+		}
+	}
+
+	private static void increment(Map<String, Integer> countMap, String key)
+	{
+		if (key != null)
+		{
+			Integer count = countMap.get(key);
+			countMap.put(key, count == null ? 1 : count + 1);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatasetFilterTest {
+
+	private static final Logger log = Logger.getLogger(DatasetFilterTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+	private static final String CKAN_FILE = "sample_data/sample_ckan_catalog_result.json";
+
+	@Before
+	public void setUp() throws Exception {
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * Filtering while loading gives the same datasets as loading everything and filtering after.
+	 */
+	@Test
+	public void testFilterMatchesScan() throws Exception {
+		Catalog fullCatalog = loadPOD(DatasetFilter.acceptAll(), DatasetProjection.all());
+		assertTrue(fullCatalog.size() > 0);
+		Dataset first = fullCatalog.getDatasetList().get(0);
+		String bureauCode = first.getBureauCodeList().get(0);
+
+		List<String> scanList = new ArrayList<String>();
+		for (Dataset ds: fullCatalog.getDatasetList())
+		{
+			if (ds.getBureauCodeList().contains(bureauCode) && "public".equals(ds.getAccessLevel()))
+			{
+				scanList.add(ds.getUniqueIdentifier());
+			}
+		}
+		Catalog filteredCatalog = loadPOD(DatasetFilter.bureauCode(bureauCode).and(DatasetFilter.accessLevel("PUBLIC")), DatasetProjection.all());
+		List<String> filteredList = new ArrayList<String>();
+		for (Dataset ds: filteredCatalog.getDatasetList())
+		{
+			filteredList.add(ds.getUniqueIdentifier());
+		}
+		assertFalse(scanList.isEmpty());
+		assertEquals(scanList, filteredList);
+
+		Catalog identifierCatalog = loadPOD(DatasetFilter.identifiers(Arrays.asList(first.getUniqueIdentifier(), "no-such-id")), DatasetProjection.all());
+		assertEquals(1, identifierCatalog.size());
+		assertEquals(first.getUniqueIdentifier(), identifierCatalog.getDatasetList().get(0).getUniqueIdentifier());
+	}
+
+	/**
+	 * The streaming file loader and the JSONObject loader load the same catalog.
+	 */
+	@Test
+	public void testStreamMatchesObject() throws Exception {
+		Catalog objectCatalog = new Catalog();
+		try
+		{
+			//data.json is UTF-8 whatever the platform encoding is, the same as the streaming loader reads it
+			String podString = new String(Files.readAllBytes(Paths.get(POD_FILE)), StandardCharsets.UTF_8);
+			objectCatalog.loadFromProjectOpenDataJSON(Utils.loadJsonObjectFromString(podString));
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		Catalog streamCatalog = loadPOD(DatasetFilter.acceptAll(), DatasetProjection.all());
+		assertEquals(objectCatalog.size(), streamCatalog.size());
+		assertEquals(objectCatalog.getConformsTo(), streamCatalog.getConformsTo());
+		assertEquals(DatasetFingerprint.of(objectCatalog), DatasetFingerprint.of(streamCatalog));
+	}
+
+	/**
+	 * The CKAN default keeps the 2015 cutoff, a filter given by the caller replaces it.
+	 */
+	@Test
+	public void testCKANModifiedAfter() throws Exception {
+		Catalog defaultCatalog = new Catalog();
+		defaultCatalog.loadCatalogFromCKAN(CKAN_FILE);
+		assertEquals(0, defaultCatalog.size());
+
+		Catalog catalog = new Catalog();
+		catalog.loadCatalogFromCKAN(CKAN_FILE, DatasetFilter.modifiedAfter("2014-11-01"), DatasetProjection.all());
+		assertEquals(3, catalog.size());
+
+		Catalog bureauCatalog = new Catalog();
+		JSONObject ckanObject = Utils.loadJsonObjectFile(CKAN_FILE);
+		bureauCatalog.loadCatalogFromCKAN(ckanObject, DatasetFilter.bureauCode("005:04"), DatasetProjection.all());
+		for (Dataset ds: bureauCatalog.getDatasetList())
+		{
+			assertEquals(Arrays.asList("005:04"), ds.getBureauCodeList());
+		}
+		assertTrue(bureauCatalog.size() > 0);
+	}
+
+	/**
+	 * Fields left out of the projection are not loaded, required fields always are.
+	 */
+	@Test
+	public void testProjection() throws Exception {
+		Catalog catalog = new Catalog();
+		catalog.loadCatalogFromCKAN(CKAN_FILE, DatasetFilter.acceptAll(), DatasetProjection.of(DatasetField.BUREAU_CODE));
+		assertEquals(4, catalog.size());
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			assertTrue(ds.getDistributionList().isEmpty());
+			assertTrue(ds.getKeywordList().isEmpty());
+			assertTrue(ds.getProgramCodeList().isEmpty());
+			assertFalse(ds.getBureauCodeList().isEmpty());
+			assertNotNull(ds.getUniqueIdentifier());
+			assertNotNull(ds.getTitle());
+		}
+
+		Catalog podCatalog = loadPOD(DatasetFilter.acceptAll(), DatasetProjection.of());
+		assertTrue(podCatalog.size() > 0);
+		for (Dataset ds: podCatalog.getDatasetList())
+		{
+			assertTrue(ds.getDistributionList().isEmpty());
+			assertTrue(ds.getBureauCodeList().isEmpty());
+			assertNotNull(ds.getAccessLevel());
+		}
+	}
+
+	private Catalog loadPOD(DatasetFilter filter, DatasetProjection projection)
+	{
+		Catalog catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, filter, projection);
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		return catalog;
+	}
+}
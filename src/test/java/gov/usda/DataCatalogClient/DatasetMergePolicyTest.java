@@ -0,0 +1,106 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatasetMergePolicyTest {
+
+	private Catalog agencyCatalog;
+	private Catalog ckanCatalog;
+	private Dataset agencyCopy;
+	private Dataset ckanCopy;
+
+	@Before
+	public void setUp() throws Exception {
+		agencyCopy = newDataset("abc-123", "Soil Survey", new Date(1000000L));
+		agencyCopy.setKeywordList(Arrays.asList("soil"));
+		ckanCopy = newDataset("abc-123", "Soil Survey 2015", new Date(2000000L));
+		ckanCopy.setDescription("Updated description");
+
+		agencyCatalog = new Catalog();
+		agencyCatalog.setSource("agency");
+		agencyCatalog.addDataset(agencyCopy);
+		agencyCatalog.addDataset(newDataset("def-456", "Forest Inventory", new Date(1000000L)));
+
+		ckanCatalog = new Catalog();
+		ckanCatalog.setSource("ckan");
+		ckanCatalog.addDataset(ckanCopy);
+		ckanCatalog.addDataset(newDataset("ghi-789", "Crop Report", new Date(1000000L)));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testNewestModified() {
+		MergeReport mergeReport = agencyCatalog.addFromOtherCatalog(ckanCatalog, DatasetMergePolicy.newestModified());
+		assertEquals(3, agencyCatalog.size());
+		assertEquals(1, mergeReport.getAddedCount());
+		assertEquals(1, mergeReport.getMergedCount());
+
+		Dataset merged = agencyCatalog.getDatasetByIdentifier("abc-123");
+		assertSame(agencyCopy, merged);
+		assertEquals("Soil Survey 2015", merged.getTitle());
+		assertEquals("Updated description", merged.getDescription());
+		//the newer copy has no keywords, so they are dropped too
+		assertTrue(merged.getKeywordList().isEmpty());
+		assertEquals("ckan", mergeReport.getMergedDatasetList().get(0).getFieldSourceMap().get(DatasetField.TITLE));
+
+		//the index follows the merged values
+		assertSame(merged, agencyCatalog.findDatasets(CatalogIndex.Field.IDENTIFIER, "abc-123").get(0));
+		assertEquals(1, agencyCatalog.search("2015", 5).size());
+	}
+
+	@Test
+	public void testSourcePriority() {
+		MergeReport mergeReport = agencyCatalog.addFromOtherCatalog(ckanCatalog, DatasetMergePolicy.sourcePriority("agency", "ckan"));
+		Dataset merged = agencyCatalog.getDatasetByIdentifier("abc-123");
+		assertEquals("Soil Survey", merged.getTitle());
+		assertEquals(new Date(1000000L), merged.getModified());
+		MergeReport.MergedDataset mergedDataset = mergeReport.getMergedDatasetList().get(0);
+		assertEquals("agency", mergedDataset.getFieldSourceMap().get(DatasetField.TITLE));
+		assertEquals("agency", mergedDataset.getFieldSourceMap().get(DatasetField.MODIFIED));
+		assertFalse(mergedDataset.getFieldSourceMap().containsKey(DatasetField.ACCESS_LEVEL));
+	}
+
+	@Test
+	public void testFieldLevel() {
+		MergeReport mergeReport = agencyCatalog.addFromOtherCatalog(ckanCatalog, DatasetMergePolicy.fieldLevel());
+		Dataset merged = agencyCatalog.getDatasetByIdentifier("abc-123");
+		assertEquals("Soil Survey 2015", merged.getTitle());
+		assertEquals("Updated description", merged.getDescription());
+		assertEquals(Arrays.asList("soil"), merged.getKeywordList());
+		MergeReport.MergedDataset mergedDataset = mergeReport.getMergedDatasetList().get(0);
+		assertEquals("agency", mergedDataset.getFieldSourceMap().get(DatasetField.KEYWORD));
+		assertEquals("ckan", mergedDataset.getFieldSourceMap().get(DatasetField.DESCRIPTION));
+	}
+
+	@Test
+	public void testMergeTwiceAddsNothing() {
+		agencyCatalog.addFromOtherCatalog(ckanCatalog);
+		MergeReport mergeReport = agencyCatalog.addFromOtherCatalog(ckanCatalog, DatasetMergePolicy.newestModified());
+		assertEquals(3, agencyCatalog.size());
+		assertEquals(0, mergeReport.getAddedCount());
+		for (MergeReport.MergedDataset mergedDataset: mergeReport.getMergedDatasetList())
+		{
+			assertFalse(mergedDataset.isConflict());
+		}
+	}
+
+	private Dataset newDataset(String identifier, String title, Date modified)
+	{
+		Dataset ds = new Dataset();
+		ds.setUniqueIdentifier(identifier);
+		ds.setTitle(title);
+		ds.setModified(modified);
+		ds.setAccessLevel(Dataset.AccessLevel.PUBLIC.toString());
+		return ds;
+	}
+}
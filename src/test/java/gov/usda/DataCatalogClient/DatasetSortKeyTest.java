@@ -0,0 +1,115 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DatasetSortKeyTest {
+
+	private final String[] bureauNames = {"Forest Service", "Agricultural Research Service", "Rural Development", null};
+	private Random random;
+
+	@Before
+	public void setUp() throws Exception {
+		random = new Random(42);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testCompareToNullSafe() {
+		Dataset named = newDataset("Forest Service", "Trees");
+		Dataset unnamed = new Dataset();
+		assertTrue(unnamed.compareTo(named) < 0);
+		assertTrue(named.compareTo(unnamed) > 0);
+		assertEquals(0, unnamed.compareTo(new Dataset()));
+	}
+
+	/**
+	 * Sort keys give the same order as Dataset.compareTo, for both the sequential and the parallel sort.
+	 */
+	@Test
+	public void testSortMatchesCompareTo() {
+		for (int size: new int[] {100, DatasetSortKey.PARALLEL_SORT_THRESHOLD * 2})
+		{
+			List<Dataset> datasetList = randomDatasets(size);
+			List<Dataset> expected = new ArrayList<Dataset>(datasetList);
+			Collections.sort(expected);
+			DatasetSortKey.sort(datasetList);
+			assertEquals(expected.size(), datasetList.size());
+			for (int i = 0; i < expected.size(); i++)
+			{
+				assertSame(expected.get(i), datasetList.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Sorted bureau catalogs added one after another are merged, and a sorted catalog is not sorted again.
+	 */
+	@Test
+	public void testSortedRunsAreMerged() {
+		Catalog catalog = new Catalog();
+		List<Dataset> allList = new ArrayList<Dataset>();
+		for (int c = 0; c < 5; c++)
+		{
+			List<Dataset> bureauList = randomDatasets(200);
+			DatasetSortKey.sort(bureauList);
+			for (Dataset ds: bureauList)
+			{
+				catalog.addDataset(ds);
+			}
+			allList.addAll(bureauList);
+		}
+		assertFalse(catalog.isSorted());
+		catalog.removeDataset(allList.get(200));
+		allList.remove(200);
+
+		catalog.sort();
+		assertTrue(catalog.isSorted());
+		Collections.sort(allList);
+		assertEquals(allList, catalog.getDatasetList());
+
+		Dataset last = newDataset(null, "\uffff");
+		last.setBureauName("\uffff");
+		catalog.addDataset(last);
+		assertTrue(catalog.isSorted());
+		catalog.reindexDataset(last);
+		assertFalse(catalog.isSorted());
+	}
+
+	private List<Dataset> randomDatasets(int size)
+	{
+		List<Dataset> datasetList = new ArrayList<Dataset>();
+		for (int i = 0; i < size; i++)
+		{
+			//short titles from a small alphabet so prefixes and whole titles often tie
+			StringBuilder title = new StringBuilder();
+			for (int c = random.nextInt(7); c >= 0; c--)
+			{
+				title.append((char) ('a' + random.nextInt(3)));
+			}
+			Dataset ds = newDataset(bureauNames[random.nextInt(bureauNames.length)], random.nextInt(20) == 0 ? null : title.toString());
+			ds.setUniqueIdentifier("id-" + i);
+			datasetList.add(ds);
+		}
+		return datasetList;
+	}
+
+	private Dataset newDataset(String bureauName, String title)
+	{
+		Dataset ds = new Dataset();
+		ds.setBureauName(bureauName);
+		ds.setTitle(title);
+		return ds;
+	}
+}
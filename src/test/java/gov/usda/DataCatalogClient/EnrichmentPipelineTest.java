@@ -0,0 +1,164 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EnrichmentPipelineTest {
+
+	private static final Logger log = Logger.getLogger(EnrichmentPipelineTest.class.getName());
+	private static final String NGDA_TITLE = "FS National Forest Dataset (US Forest Service Proclaimed Forests)";
+
+	@Before
+	public void setUp() throws Exception {
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * The Forest Service fixups set codes on every dataset, a keyword where there is none and themes
+	 * on NGDA titles only.
+	 */
+	@Test
+	public void testForestServiceFixups() {
+		Catalog catalog = new Catalog();
+		Dataset ngda = newDataset(NGDA_TITLE);
+		Dataset other = newDataset("Trails");
+		other.setKeywordList(new ArrayList<String>(Arrays.asList("hiking")));
+		catalog.addDataset(ngda);
+		catalog.addDataset(other);
+
+		catalog.hardcodeBureauCodeProgramCode();
+		assertEquals(Arrays.asList("005:96"), ngda.getBureauCodeList());
+		assertEquals(Arrays.asList("005:059"), other.getProgramCodeList());
+		assertEquals(Arrays.asList("Forest Service"), ngda.getKeywordList());
+		assertEquals(Arrays.asList("hiking"), other.getKeywordList());
+		assertTrue(ngda.getThemeList().contains("Cadastre Theme"));
+		assertTrue(other.getThemeList().isEmpty());
+		//the catalog indexes follow the changes
+		assertEquals(2, catalog.findDatasets(CatalogIndex.Field.BUREAU_CODE, "005:96").size());
+	}
+
+	/**
+	 * The NGDA asset CSV and the NGDA JSON list give the same themes.
+	 */
+	@Test
+	public void testNgdaCSVMatchesJSON() throws Exception {
+		Map<String, List<String>> jsonMap = NgdaThemeStage.fromJSONFile(NgdaThemeStage.FOREST_SERVICE_NGDA_FILE).buildIndex();
+		Map<String, List<String>> csvMap = NgdaThemeStage.fromCSVFile(NgdaThemeStage.FOREST_SERVICE_NGDA_ASSETS_FILE).buildIndex();
+		assertEquals(jsonMap.get(NGDA_TITLE), csvMap.get(NGDA_TITLE));
+		assertEquals(jsonMap.keySet(), csvMap.keySet());
+	}
+
+	/**
+	 * Large lists run in parallel chunks with the same result as one at a time.
+	 */
+	@Test
+	public void testParallelBureauNames() throws Exception {
+		List<Dataset> datasetList = new ArrayList<Dataset>();
+		for (int i = 0; i < 5000; i++)
+		{
+			Dataset ds = newDataset("Dataset " + i);
+			ds.setBureauCodeList(i % 2 == 0 ? "005:18" : "005:99");
+			datasetList.add(ds);
+		}
+		EnrichmentPipeline pipeline = new EnrichmentPipeline().addStage(new BureauNameStage())
+				.addStage(new DefaultCodeStage().addSource("ars", DefaultCodeStage.AG_DATA_COMMONS));
+		assertEquals(5000, pipeline.enrich(datasetList, "ars"));
+		for (int i = 0; i < datasetList.size(); i++)
+		{
+			Dataset ds = datasetList.get(i);
+			if (i % 2 == 0)
+			{
+				assertEquals("ARS", ds.getBureauAbbreviation());
+			}
+			else
+			{
+				assertTrue(ds.getBureauName().startsWith("Name not found"));
+			}
+			assertTrue(ds.getProgramCodeList().contains("005:040"));
+		}
+	}
+
+	/**
+	 * DKAN datasets get the Ag Data Commons defaults once while loading.
+	 */
+	@Test
+	public void testDKANDefaults() {
+		Catalog catalog = new Catalog();
+		try
+		{
+			JSONObject dkanObject = Utils.loadJsonObjectFile("sample_data/dkan.json");
+			catalog.loadCatalogFromCKAN(dkanObject);
+		}
+		catch (CatalogException | ParseException | java.io.IOException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		assertTrue(catalog.size() > 0);
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			assertTrue(ds.getBureauCodeList().contains("005:18"));
+			assertTrue(ds.getProgramCodeList().contains("005:040"));
+		}
+	}
+
+	/**
+	 * A DKAN package's own publisher, bureau and program extras do not replace the Ag Data Commons
+	 * values.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testDKANDefaultsWinOverExtras() {
+		JSONObject extraObject = new JSONObject();
+		extraObject.put(Publisher.CKAN_PUBLISHER_NAME, "Agricultural Research Service");
+		extraObject.put(Dataset.CKAN_DATASET_BUREAU_CODE_LIST, "005:18");
+		extraObject.put(Dataset.CKAN_DATASET_PROGRAM_CODE, "005:040");
+		extraObject.put("field_osti_id", "ars-1");
+		extraObject.put("field_public_access_level", "public");
+		JSONObject packageObject = new JSONObject();
+		packageObject.put("title", "Soil Survey");
+		packageObject.put(Dataset.CKAN_DATASET_DESCRIPTION_NOTES, "Soil samples");
+		packageObject.put(Dataset.CKAN_DATASET_METADATA_MODIFIED, "2015-06-01T00:00:00");
+		packageObject.put(Dataset.CKAN_DATASET_DISTRIBUTION, new JSONArray());
+		packageObject.put("tags", new JSONArray());
+		packageObject.put("dkan_additional_fields", extraObject);
+
+		Dataset ds = new Dataset();
+		try
+		{
+			ds.loadDatasetFromCKAN_JSON(packageObject);
+		}
+		catch (DatasetException e)
+		{
+			//the package leaves out fields validation requires, the loaded fields are still set
+			log.log(Level.FINE, e.toString());
+		}
+		assertEquals(Arrays.asList("005:18"), ds.getBureauCodeList());
+		assertEquals(Arrays.asList("005:040"), ds.getProgramCodeList());
+		assertEquals(DefaultCodeStage.AG_DATA_COMMONS.getPublisherName(), ds.getPublisher().getName());
+		assertEquals("ars-1", ds.getUniqueIdentifier());
+	}
+
+	private Dataset newDataset(String title)
+	{
+		Dataset ds = new Dataset();
+		ds.setTitle(title);
+		ds.setUniqueIdentifier(title);
+		return ds;
+	}
+}
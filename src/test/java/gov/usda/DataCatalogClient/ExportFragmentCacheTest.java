@@ -0,0 +1,152 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExportFragmentCacheTest {
+
+	private static final Logger log = Logger.getLogger(ExportFragmentCacheTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+	private Path directory;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		directory = Files.createTempDirectory("cache");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file: directory.toFile().listFiles())
+		{
+			file.delete();
+		}
+		Files.delete(directory);
+	}
+
+	/**
+	 * A re-export renders only the changed dataset and writes the same files as an export without a cache.
+	 */
+	@Test
+	public void testReexportRendersOnlyChanged() throws Exception {
+		final ExportFragmentCache cache = new ExportFragmentCache(64L * 1024 * 1024);
+		catalog.setExportCache(cache);
+		catalog.export(sinkList("first"));
+		assertEquals(0, cache.getHitCount());
+		assertEquals(catalog.size(), cache.getMissCount());
+		assertEquals(catalog.size(), cache.size());
+
+		catalog.getDatasetList().get(7).setDescription("A description changed between two exports.");
+		catalog.export(sinkList("cached"));
+		assertEquals(catalog.size() - 1, cache.getHitCount());
+		assertEquals(catalog.size() + 1, cache.getMissCount());
+
+		catalog.setExportCache(null);
+		catalog.export(sinkList("fresh"));
+		for (String file: new String[] {".json", "-compact.json", ".csv", ".xml"})
+		{
+			assertTrue(file, Arrays.equals(Files.readAllBytes(directory.resolve("fresh" + file)), Files.readAllBytes(directory.resolve("cached" + file))));
+		}
+		assertFalse(Arrays.equals(Files.readAllBytes(directory.resolve("first.json")), Files.readAllBytes(directory.resolve("fresh.json"))));
+	}
+
+	/**
+	 * toProjectOpenDataJSON with a cache writes the same file as without one.
+	 */
+	@Test
+	public void testProjectOpenDataJSONWithCache() throws Exception {
+		catalog.toProjectOpenDataJSON(path("plain.json"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY);
+		catalog.setExportCache(new ExportFragmentCache(64L * 1024 * 1024));
+		catalog.toProjectOpenDataJSON(path("cached.json"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY);
+		catalog.toProjectOpenDataJSON(path("cached.json"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY);
+		assertEquals(catalog.size(), catalog.getExportCache().getHitCount());
+		assertTrue(Arrays.equals(Files.readAllBytes(directory.resolve("plain.json")), Files.readAllBytes(directory.resolve("cached.json"))));
+	}
+
+	/**
+	 * Output cached in one default time zone is rendered again after the default zone changes.
+	 */
+	@Test
+	public void testZoneChangeRendersAgain() throws Exception {
+		final DateTimeZone defaultZone = DateTimeZone.getDefault();
+		final ExportFragmentCache cache = new ExportFragmentCache(64L * 1024 * 1024);
+		catalog.setExportCache(cache);
+		try
+		{
+			DateTimeZone.setDefault(DateTimeZone.forID("Pacific/Kiritimati"));
+			catalog.export(sinkList("east"));
+			DateTimeZone.setDefault(DateTimeZone.forID("Pacific/Pago_Pago"));
+			catalog.export(sinkList("cached"));
+			assertEquals(0, cache.getHitCount());
+			assertEquals(2L * catalog.size(), cache.getMissCount());
+
+			catalog.setExportCache(null);
+			catalog.export(sinkList("fresh"));
+			for (String file: new String[] {".json", "-compact.json", ".csv", ".xml"})
+			{
+				assertTrue(file, Arrays.equals(Files.readAllBytes(directory.resolve("fresh" + file)), Files.readAllBytes(directory.resolve("cached" + file))));
+			}
+		}
+		finally
+		{
+			DateTimeZone.setDefault(defaultZone);
+		}
+	}
+
+	/**
+	 * The cache stays within its size, keeping the datasets used last.
+	 */
+	@Test
+	public void testEvictsBySize() throws Exception {
+		final ExportFragmentCache cache = new ExportFragmentCache(100 * 1024);
+		catalog.setExportCache(cache);
+		catalog.export(sinkList("small"));
+		assertTrue(cache.getBytes() <= cache.getMaxBytes());
+		assertTrue(cache.size() > 0);
+		assertTrue(cache.size() < catalog.size());
+
+		final Dataset last = catalog.getDatasetList().get(catalog.size() - 1);
+		assertNotNull(cache.get(DatasetFingerprint.of(last), DateTimeZone.getDefault()));
+		assertNull(cache.get(DatasetFingerprint.of(catalog.getDatasetList().get(0)), DateTimeZone.getDefault()));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+	}
+
+	private List<ExportSink> sinkList(String name)
+	{
+		return Arrays.asList(
+				ExportSink.projectOpenDataJSON(path(name + ".json"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY),
+				ExportSink.projectOpenDataJSON(path(name + "-compact.json"), Catalog.DataListingCode.PUBLIC_DATA_LISTING, true),
+				ExportSink.csv(path(name + ".csv"), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY),
+				ExportSink.legacyXML(path(name + ".xml"), Catalog.DataListingCode.PUBLIC_DATA_LISTING));
+	}
+
+	private String path(String fileName)
+	{
+		return directory.resolve(fileName).toString();
+	}
+}
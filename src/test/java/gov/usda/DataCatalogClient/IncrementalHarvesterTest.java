@@ -0,0 +1,208 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ParseException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncrementalHarvesterTest {
+
+	private static final String ORGANIZATION = "usda-gov";
+	private static final String NEWEST_MODIFIED = "2014-11-23T20:54:10.573784";
+
+	private File harvestDirectory;
+	private String organizationFileName;
+	private JSONArray samplePackageArray;
+
+	@Before
+	public void setUp() throws Exception {
+		harvestDirectory = Files.createTempDirectory("harvest").toFile();
+		organizationFileName = new File(harvestDirectory, "USDA-data.json").getPath();
+		JSONObject sampleObject = Utils.loadJsonObjectFile("sample_data/sample_ckan_catalog_result.json");
+		samplePackageArray = (JSONArray) ((JSONObject) sampleObject.get(Catalog.CKAN_CATALOG)).get(Dataset.CKAN_DATASET);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (File file: harvestDirectory.listFiles())
+		{
+			file.delete();
+		}
+		harvestDirectory.delete();
+	}
+
+	/**
+	 * The first harvest downloads everything, later harvests ask from the high-water mark and apply
+	 * updates and deletions.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testHarvest() throws Exception {
+		SearchStub searchStub = new SearchStub();
+		searchStub.resultList.addAll(samplePackageArray);
+		IncrementalHarvester harvester = new IncrementalHarvester(searchStub, harvestDirectory.getPath());
+		IncrementalHarvester.HarvestResult result = harvester.harvest(ORGANIZATION, organizationFileName);
+		assertNull(searchStub.sinceList.get(0));
+		assertEquals(4, result.getUpdatedCount());
+		assertEquals(NEWEST_MODIFIED, harvester.getHighWaterMark(ORGANIZATION));
+		assertEquals(4, load().size());
+
+		//CKAN returns the package at the mark again, one update and one deletion
+		JSONObject updatedPackage = new JSONObject((JSONObject) samplePackageArray.get(1));
+		updatedPackage.put(Dataset.CKAN_DATASET_METADATA_MODIFIED, "2015-06-01T10:00:00.000001");
+		JSONObject deletedPackage = new JSONObject((JSONObject) samplePackageArray.get(3));
+		deletedPackage.put(IncrementalHarvester.CKAN_PACKAGE_STATE, IncrementalHarvester.CKAN_PACKAGE_STATE_DELETED);
+		deletedPackage.put(Dataset.CKAN_DATASET_METADATA_MODIFIED, "2015-06-01T11:00:00.000000");
+		searchStub.resultList.clear();
+		searchStub.resultList.add(samplePackageArray.get(0));
+		searchStub.resultList.add(updatedPackage);
+		searchStub.resultList.add(deletedPackage);
+
+		//a new harvester reads the mark back from disk
+		harvester = new IncrementalHarvester(searchStub, harvestDirectory.getPath());
+		result = harvester.harvest(ORGANIZATION, organizationFileName);
+		assertEquals(NEWEST_MODIFIED, searchStub.sinceList.get(1));
+		assertEquals(1, result.getUpdatedCount());
+		assertEquals(1, result.getDeletedCount());
+		assertEquals("2015-06-01T11:00:00.000000", harvester.getHighWaterMark(ORGANIZATION));
+		Catalog catalog = new Catalog();
+		catalog.loadCatalogFromCKAN(organizationFileName, DatasetFilter.acceptAll(), DatasetProjection.all());
+		assertEquals(3, catalog.size());
+		List<Date> modifiedList = new ArrayList<Date>();
+		for (Dataset ds: catalog.getDatasetList())
+		{
+			modifiedList.add(ds.getMetadataModifiedDate());
+		}
+		assertTrue(modifiedList.contains(Utils.convertISOStringToDate("2015-06-01T10:00:00.000001")));
+
+		//nothing new, the file is not rewritten
+		searchStub.resultList.clear();
+		searchStub.resultList.add(deletedPackage);
+		long fileModified = new File(organizationFileName).lastModified();
+		result = harvester.harvest(ORGANIZATION, organizationFileName);
+		assertFalse(result.isChanged());
+		assertEquals(fileModified, new File(organizationFileName).lastModified());
+	}
+
+	/**
+	 * Paging follows the count CKAN reports.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testPaging() throws Exception {
+		SearchStub searchStub = new SearchStub();
+		for (int i = 0; i < 2500; i++)
+		{
+			JSONObject packageObject = new JSONObject();
+			packageObject.put(IncrementalHarvester.CKAN_PACKAGE_ID, "id-" + i);
+			packageObject.put(Dataset.CKAN_DATASET_METADATA_MODIFIED, String.format("2016-01-01T00:00:%02d.000000", i % 60));
+			searchStub.resultList.add(packageObject);
+		}
+		IncrementalHarvester harvester = new IncrementalHarvester(searchStub, harvestDirectory.getPath());
+		assertEquals(2500, harvester.harvest(ORGANIZATION, organizationFileName).getUpdatedCount());
+		assertEquals(3, searchStub.sinceList.size());
+		assertEquals("2016-01-01T00:00:59.000000", harvester.getHighWaterMark(ORGANIZATION));
+	}
+
+	/**
+	 * A page CKAN answers with an error fails the harvest and leaves the mark and the files alone.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testFailedSearch() throws Exception {
+		SearchStub searchStub = new SearchStub();
+		searchStub.resultList.addAll(samplePackageArray);
+		IncrementalHarvester harvester = new IncrementalHarvester(searchStub, harvestDirectory.getPath());
+		harvester.harvest(ORGANIZATION, organizationFileName);
+		assertEquals(NEWEST_MODIFIED, harvester.getHighWaterMark(ORGANIZATION));
+		long fileModified = new File(organizationFileName).lastModified();
+
+		JSONObject updatedPackage = new JSONObject((JSONObject) samplePackageArray.get(1));
+		updatedPackage.put(Dataset.CKAN_DATASET_METADATA_MODIFIED, "2015-06-01T10:00:00.000001");
+		searchStub.resultList.clear();
+		searchStub.resultList.add(updatedPackage);
+		searchStub.failAt = 0;
+		try
+		{
+			harvester.harvest(ORGANIZATION, organizationFileName);
+			fail("failed search harvested");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage().contains("Search Error"));
+		}
+		assertEquals(NEWEST_MODIFIED, harvester.getHighWaterMark(ORGANIZATION));
+		assertEquals(NEWEST_MODIFIED, new IncrementalHarvester(searchStub, harvestDirectory.getPath()).getHighWaterMark(ORGANIZATION));
+		assertEquals(fileModified, new File(organizationFileName).lastModified());
+
+		//the next harvest asks from the same mark and gets the update
+		searchStub.failAt = -1;
+		assertEquals(1, harvester.harvest(ORGANIZATION, organizationFileName).getUpdatedCount());
+		assertEquals(NEWEST_MODIFIED, searchStub.sinceList.get(searchStub.sinceList.size() - 1));
+	}
+
+	@Test
+	public void testSolrDate() {
+		assertEquals("2014-11-23T20:54:10.573Z", NetworkRequest.toSolrDate(NEWEST_MODIFIED));
+		assertEquals("2014-11-23T20:54:10Z", NetworkRequest.toSolrDate("2014-11-23T20:54:10"));
+	}
+
+	private Catalog load() throws CatalogException
+	{
+		Catalog catalog = new Catalog();
+		catalog.loadCatalogFromCKAN(organizationFileName, DatasetFilter.acceptAll(), DatasetProjection.all());
+		return catalog;
+	}
+
+	/**
+	 * Answers package_search from a list instead of a CKAN server.
+	 */
+	private static class SearchStub extends NetworkRequest
+	{
+		private final List<Object> resultList = new ArrayList<Object>();
+		private final List<String> sinceList = new ArrayList<String>();
+		//the start of the first page answered with an error, -1 for none
+		private int failAt = -1;
+
+		private SearchStub() throws IOException, ParseException
+		{
+			super();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public String searchPackages(String organization, String modifiedSince, int start, int rows)
+		{
+			sinceList.add(modifiedSince);
+			if (failAt >= 0 && start >= failAt)
+			{
+				JSONObject errorObject = new JSONObject();
+				errorObject.put("__type", "Search Error");
+				errorObject.put("message", "Solr returned an error");
+				JSONObject failedObject = new JSONObject();
+				failedObject.put(IncrementalHarvester.CKAN_SUCCESS, Boolean.FALSE);
+				failedObject.put(IncrementalHarvester.CKAN_ERROR, errorObject);
+				return failedObject.toJSONString();
+			}
+			JSONArray resultArray = new JSONArray();
+			resultArray.addAll(resultList.subList(Math.min(start, resultList.size()), Math.min(start + rows, resultList.size())));
+			JSONObject searchResult = new JSONObject();
+			searchResult.put(IncrementalHarvester.CKAN_SEARCH_COUNT, resultList.size());
+			searchResult.put(IncrementalHarvester.CKAN_SEARCH_RESULTS, resultArray);
+			JSONObject searchObject = new JSONObject();
+			searchObject.put(Catalog.CKAN_CATALOG, searchResult);
+			return searchObject.toJSONString();
+		}
+	}
+}
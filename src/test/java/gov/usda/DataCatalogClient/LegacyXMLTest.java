@@ -0,0 +1,85 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class LegacyXMLTest {
+
+	private static final Logger log = Logger.getLogger(LegacyXMLTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * Every streamed dataset element is the element the DOM export builds for that dataset.
+	 */
+	@Test
+	public void testStreamMatchesDOM() throws Exception {
+		File xmlFile = Files.createTempFile("catalog", ".xml").toFile();
+		try
+		{
+			catalog.toLegacyXML(xmlFile.getPath(), Catalog.DataListingCode.PUBLIC_DATA_LISTING);
+			DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			Document streamed = docBuilder.parse(xmlFile);
+			assertEquals("catalog", streamed.getDocumentElement().getTagName());
+
+			List<Dataset> publicList = new ArrayList<Dataset>();
+			for (Dataset ds: catalog.getDatasetList())
+			{
+				if (ds.getAccessLevel().equals(Dataset.AccessLevel.PUBLIC.toString()) || ds.getAccessLevel().equals(Dataset.AccessLevel.RESTRICTED.toString()))
+				{
+					publicList.add(ds);
+				}
+			}
+			NodeList datasetNodeList = streamed.getDocumentElement().getElementsByTagName("dataset");
+			assertEquals(publicList.size(), datasetNodeList.getLength());
+			assertTrue(publicList.size() > 1);
+
+			Document doc = docBuilder.newDocument();
+			for (int i = 0; i < publicList.size(); i++)
+			{
+				Element expected = publicList.get(i).toLegacyXML(doc);
+				Element actual = (Element) datasetNodeList.item(i);
+				assertEquals(1, actual.getElementsByTagName("contactPoint").getLength());
+				assertTrue(publicList.get(i).getTitle(), expected.isEqualNode(doc.importNode(actual, true)));
+			}
+		}
+		finally
+		{
+			xmlFile.delete();
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+public class ProjectOpenDataWriterTest {
+
+	private static final Logger log = Logger.getLogger(ProjectOpenDataWriterTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog catalog;
+
+	@Before
+	public void setUp() throws Exception {
+		catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	/**
+	 * The streamed file, pretty or compact, holds the same JSON as the whole catalog rendered by Gson.
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testMatchesGson() throws Exception {
+		File prettyFile = Files.createTempFile("data", ".json").toFile();
+		File compactFile = Files.createTempFile("data", ".json").toFile();
+		try
+		{
+			catalog.toProjectOpenDataJSON(prettyFile.getPath(), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY);
+			catalog.toProjectOpenDataJSON(compactFile.getPath(), Catalog.DataListingCode.ENTERPRISE_DATA_INVENTORY, true);
+
+			JSONObject catalogObject = new JSONObject();
+			catalogObject.put(Catalog.PROJECT_OPEN_DATA_CATALOG_CONFORMS_TO, ProjectOpenDataWriter.CONFORMS_TO);
+			catalogObject.put(Catalog.PROJECT_OPEN_DATA_CATALOG_DESCRIBED_BY, ProjectOpenDataWriter.DESCRIBED_BY);
+			catalogObject.put(Catalog.PROJECT_OPEN_DATA_CATALOG_CONTEXT, ProjectOpenDataWriter.CONTEXT);
+			catalogObject.put(Catalog.PROJECT_OPEN_DATA_CATALOG_TYPE, ProjectOpenDataWriter.TYPE);
+			JSONArray datasetArray = new JSONArray();
+			for (Dataset ds: catalog.getDatasetList())
+			{
+				datasetArray.add(ds.toProjectOpenDataJSON());
+			}
+			catalogObject.put(Dataset.PROJECT_OPEN_DATA_DATASET, datasetArray);
+			JSONObject expected = Utils.loadJsonObjectFromString(new GsonBuilder().disableHtmlEscaping().create().toJson(catalogObject));
+
+			String prettyString = new String(Files.readAllBytes(prettyFile.toPath()), StandardCharsets.UTF_8);
+			String compactString = new String(Files.readAllBytes(compactFile.toPath()), StandardCharsets.UTF_8);
+			assertEquals(expected, Utils.loadJsonObjectFromString(prettyString));
+			assertEquals(expected, Utils.loadJsonObjectFromString(compactString));
+			assertTrue(prettyString.contains("\n  \"dataset\""));
+			assertFalse(compactString.contains("\n"));
+			assertTrue(compactString.length() < prettyString.length());
+		}
+		finally
+		{
+			prettyFile.delete();
+			compactFile.delete();
+		}
+	}
+
+	/**
+	 * Parallel serialization writes the same bytes as one JsonWriter over the whole catalog, for any
+	 * number of threads.
+	 */
+	@Test
+	public void testParallelIsByteIdentical() throws Exception {
+		List<Dataset> datasetList = new ArrayList<Dataset>();
+		for (int i = 0; i < 10; i++)
+		{
+			datasetList.addAll(catalog.getDatasetList());
+		}
+		assertTrue(datasetList.size() > 1000);
+		for (boolean compact: Arrays.asList(false, true))
+		{
+			StringWriter expected = new StringWriter();
+			JsonWriter jsonWriter = ProjectOpenDataWriter.newJsonWriter(expected, compact);
+			jsonWriter.beginObject();
+			jsonWriter.name(Catalog.PROJECT_OPEN_DATA_CATALOG_CONFORMS_TO).value(ProjectOpenDataWriter.CONFORMS_TO);
+			jsonWriter.name(Catalog.PROJECT_OPEN_DATA_CATALOG_DESCRIBED_BY).value(ProjectOpenDataWriter.DESCRIBED_BY);
+			jsonWriter.name(Catalog.PROJECT_OPEN_DATA_CATALOG_CONTEXT).value(ProjectOpenDataWriter.CONTEXT);
+			jsonWriter.name(Catalog.PROJECT_OPEN_DATA_CATALOG_TYPE).value(ProjectOpenDataWriter.TYPE);
+			jsonWriter.name(Dataset.PROJECT_OPEN_DATA_DATASET).beginArray();
+			for (Dataset ds: datasetList)
+			{
+				ProjectOpenDataWriter.writeValue(jsonWriter, ds.toProjectOpenDataJSON());
+			}
+			jsonWriter.endArray().endObject().close();
+
+			for (int threads: new int[] {1, 2, 5})
+			{
+				ForkJoinPool pool = new ForkJoinPool(threads);
+				File podFile = Files.createTempFile("data", ".json").toFile();
+				try
+				{
+					try (ProjectOpenDataWriter writer = ProjectOpenDataWriter.open(podFile.getPath(), compact, pool))
+					{
+						writer.writeDataset(datasetList.get(0));
+						writer.writeDatasets(datasetList.subList(1, datasetList.size()));
+						writer.finish();
+					}
+					assertEquals(threads + " threads", expected.toString(), new String(Files.readAllBytes(podFile.toPath()), StandardCharsets.UTF_8));
+				}
+				finally
+				{
+					pool.shutdown();
+					podFile.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A writer closed without finish leaves the earlier file in place.
+	 */
+	@Test
+	public void testUnfinishedKeepsFile() throws Exception {
+		File podFile = Files.createTempFile("data", ".json").toFile();
+		try
+		{
+			Files.write(podFile.toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+			try (ProjectOpenDataWriter writer = ProjectOpenDataWriter.open(podFile.getPath(), false))
+			{
+				writer.writeDataset(catalog.getDatasetList().get(0));
+			}
+			assertEquals("{}", new String(Files.readAllBytes(podFile.toPath()), StandardCharsets.UTF_8));
+			for (String name: podFile.getParentFile().list())
+			{
+				assertFalse(name, name.startsWith(podFile.getName()) && name.endsWith(".tmp"));
+			}
+		}
+		finally
+		{
+			podFile.delete();
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuarterlyReportTest {
+
+	private static final Logger log = Logger.getLogger(QuarterlyReportTest.class.getName());
+	private static final String POD_FILE = "sample_data/data.json";
+
+	private Catalog baselineCatalog;
+	private Catalog currentCatalog;
+	private Dataset added;
+	private Dataset retired;
+	private Dataset updated;
+
+	@Before
+	public void setUp() throws Exception {
+		baselineCatalog = loadCatalog();
+		currentCatalog = loadCatalog();
+		added = baselineCatalog.getDatasetList().get(0);
+		retired = currentCatalog.getDatasetList().get(1);
+		updated = currentCatalog.getDatasetList().get(2);
+		baselineCatalog.removeDataset(added);
+		currentCatalog.removeDataset(retired);
+		updated.setTitle(updated.getTitle() + " revised");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	private static Catalog loadCatalog()
+	{
+		final Catalog catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		return catalog;
+	}
+
+	/**
+	 * Datasets added, updated and retired between two loads are counted for their bureaus, and
+	 * statistics outside the quarter are left out.
+	 */
+	@Test
+	public void testChanges() throws Exception {
+		Date quarterStart = Utils.convertISOStringToDate("2017-01-01");
+		Date quarterEnd = Utils.convertISOStringToDate("2017-04-01");
+		List<CatalogStatistics> historyList = Arrays.asList(
+				CatalogStatistics.of(currentCatalog, Utils.convertISOStringToDate("2016-10-01")),
+				CatalogStatistics.of(baselineCatalog, Utils.convertISOStringToDate("2016-12-15")),
+				CatalogStatistics.of(currentCatalog, Utils.convertISOStringToDate("2017-02-01")),
+				CatalogStatistics.of(baselineCatalog, Utils.convertISOStringToDate("2017-05-01")));
+		QuarterlyReport report = QuarterlyReport.of(historyList, quarterStart, quarterEnd);
+		assertEquals(2, report.getHistoryList().size());
+
+		Map<String, int[]> expectedMap = new HashMap<String, int[]>();
+		expectedCounts(expectedMap, added)[0]++;
+		expectedCounts(expectedMap, updated)[1]++;
+		expectedCounts(expectedMap, retired)[2]++;
+		for (String bureauCode: report.getBureauCodeList())
+		{
+			int[] expected = expectedMap.containsKey(bureauCode) ? expectedMap.get(bureauCode) : new int[3];
+			assertEquals(bureauCode, expected[0], report.getAddedCount(bureauCode));
+			assertEquals(bureauCode, expected[1], report.getUpdatedCount(bureauCode));
+			assertEquals(bureauCode, expected[2], report.getRetiredCount(bureauCode));
+		}
+
+		String bureauCode = bureauCode(updated);
+		int compliantCount = 0;
+		int datasetCount = 0;
+		for (Dataset ds: currentCatalog.getDatasetList())
+		{
+			if (bureauCode.equals(bureauCode(ds)))
+			{
+				datasetCount++;
+				compliantCount += CatalogStatistics.isCompliant(ds) ? 1 : 0;
+			}
+		}
+		assertEquals((double) compliantCount / datasetCount, report.getEndComplianceRate(bureauCode), 0.0001);
+	}
+
+	/**
+	 * Statistics saved on load are read back by produceQuarterlyReport, which writes the CSV and JSON
+	 * and saves statistics again only when the catalog changed.
+	 */
+	@Test
+	public void testProduceQuarterlyReport() throws Exception {
+		File directory = Files.createTempDirectory("statistics").toFile();
+		File csvFile = new File(directory, "quarterly_report.csv");
+		File jsonFile = new File(directory, "quarterly_report.json");
+		try
+		{
+			Catalog catalog = new Catalog();
+			catalog.setStatisticsDirectory(directory.getPath());
+			try
+			{
+				catalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+			}
+			catch (CatalogException e)
+			{
+				log.log(Level.SEVERE, e.toString());
+			}
+			List<CatalogStatistics> historyList = CatalogStatistics.loadHistory(directory.getPath(), null, null);
+			assertEquals(1, historyList.size());
+			assertEquals(catalog.size(), historyList.get(0).size());
+
+			QuarterlyReport report = catalog.produceQuarterlyReport(csvFile.getPath());
+			assertEquals(1, report.getHistoryList().size());
+			for (String bureauCode: report.getBureauCodeList())
+			{
+				assertEquals(0, report.getAddedCount(bureauCode) + report.getUpdatedCount(bureauCode) + report.getRetiredCount(bureauCode));
+			}
+			List<String> lineList = Files.readAllLines(csvFile.toPath(), StandardCharsets.UTF_8);
+			assertEquals(report.getBureauCodeList().size() + 1, lineList.size());
+			assertTrue(lineList.get(0).startsWith("Bureau Code,Bureau Name,Start Datasets"));
+
+			JSONObject reportObject = Utils.loadJsonObjectFromString(new String(Files.readAllBytes(jsonFile.toPath()), StandardCharsets.UTF_8));
+			assertEquals(1L, reportObject.get("loads"));
+			JSONArray bureauArray = (JSONArray) reportObject.get("bureaus");
+			assertEquals(report.getBureauCodeList().size(), bureauArray.size());
+
+			catalog.produceQuarterlyReport(csvFile.getPath());
+			assertEquals(1, CatalogStatistics.loadHistory(directory.getPath(), null, null).size());
+			Dataset ds = catalog.getDatasetList().get(0);
+			ds.setTitle(ds.getTitle() + " revised");
+			report = catalog.produceQuarterlyReport(csvFile.getPath());
+			assertEquals(2, CatalogStatistics.loadHistory(directory.getPath(), null, null).size());
+			assertEquals(1, report.getUpdatedCount(bureauCode(ds)));
+		}
+		finally
+		{
+			List<File> fileList = new ArrayList<File>(Arrays.asList(directory.listFiles()));
+			for (File file: fileList)
+			{
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * A new catalog saves statistics on every load, so two loads alone are a history to report from.
+	 */
+	@Test
+	public void testReportFromLoads() throws Exception {
+		assertEquals(Catalog.DEFAULT_STATISTICS_DIRECTORY, new Catalog().getStatisticsDirectory());
+		File directory = Files.createTempDirectory("statistics").toFile();
+		File podFile = new File(directory, "data.json");
+		try
+		{
+			Catalog firstCatalog = new Catalog();
+			firstCatalog.setStatisticsDirectory(directory.getPath());
+			try
+			{
+				firstCatalog.loadFromProjectOpenDataJSON(POD_FILE, DatasetFilter.acceptAll(), DatasetProjection.all());
+			}
+			catch (CatalogException e)
+			{
+				log.log(Level.SEVERE, e.toString());
+			}
+
+			//the second load is of the same file less one dataset
+			Dataset removed = firstCatalog.getDatasetList().get(0);
+			JSONObject catalogObject = Utils.loadJsonObjectFromString(new String(Files.readAllBytes(Paths.get(POD_FILE)), StandardCharsets.UTF_8));
+			JSONArray datasetArray = (JSONArray) catalogObject.get("dataset");
+			int datasetCount = datasetArray.size();
+			for (int i = 0; i < datasetArray.size(); i++)
+			{
+				if (removed.getUniqueIdentifier().equals(((JSONObject) datasetArray.get(i)).get("identifier")))
+				{
+					datasetArray.remove(i);
+					break;
+				}
+			}
+			assertEquals(datasetCount - 1, datasetArray.size());
+			Files.write(podFile.toPath(), catalogObject.toJSONString().getBytes(StandardCharsets.UTF_8));
+			Thread.sleep(2);
+			Catalog secondCatalog = new Catalog();
+			secondCatalog.setStatisticsDirectory(directory.getPath());
+			try
+			{
+				secondCatalog.loadFromProjectOpenDataJSON(podFile.getPath(), DatasetFilter.acceptAll(), DatasetProjection.all());
+			}
+			catch (CatalogException e)
+			{
+				log.log(Level.SEVERE, e.toString());
+			}
+			assertEquals(firstCatalog.size() - 1, secondCatalog.size());
+
+			QuarterlyReport report = QuarterlyReport.of(directory.getPath(), new Date());
+			assertEquals(2, report.getHistoryList().size());
+			for (String bureauCode: report.getBureauCodeList())
+			{
+				assertEquals(bureauCode, 0, report.getAddedCount(bureauCode));
+				assertEquals(bureauCode, 0, report.getUpdatedCount(bureauCode));
+				assertEquals(bureauCode, bureauCode.equals(bureauCode(removed)) ? 1 : 0, report.getRetiredCount(bureauCode));
+			}
+		}
+		finally
+		{
+			for (File file: directory.listFiles())
+			{
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * The baseline is the file named last before the quarter, older files are not read.
+	 */
+	@Test
+	public void testBaselineByFileName() throws Exception {
+		File directory = Files.createTempDirectory("statistics").toFile();
+		try
+		{
+			Date quarterStart = QuarterlyReport.quarterStart(new Date());
+			Date day = new Date(quarterStart.getTime() + 24L * 60 * 60 * 1000);
+			String oldFile = CatalogStatistics.of(baselineCatalog, new Date(quarterStart.getTime() - 20L * 24 * 60 * 60 * 1000)).save(directory.getPath());
+			CatalogStatistics.of(baselineCatalog, new Date(quarterStart.getTime() - 1)).save(directory.getPath());
+			CatalogStatistics.of(currentCatalog, day).save(directory.getPath());
+			//a damaged old file would fail the report if it were read
+			Files.write(Paths.get(oldFile), new byte[] {1, 2, 3});
+
+			QuarterlyReport report = QuarterlyReport.of(directory.getPath(), day);
+			assertEquals(2, report.getHistoryList().size());
+			assertEquals(quarterStart.getTime() - 1, report.getHistoryList().get(0).getTakenAt().getTime());
+			assertEquals(1, report.getAddedCount(bureauCode(added)));
+			assertEquals(quarterStart.getTime() - 1, CatalogStatistics.loadLatest(directory.getPath(), quarterStart).getTakenAt().getTime());
+			assertEquals(day, CatalogStatistics.loadLatest(directory.getPath(), null).getTakenAt());
+		}
+		finally
+		{
+			for (File file: directory.listFiles())
+			{
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	private static String bureauCode(Dataset ds)
+	{
+		return ds.getBureauCodeList().isEmpty() ? BureauMetrics.NO_BUREAU : ds.getBureauCodeList().get(0);
+	}
+
+	private static int[] expectedCounts(Map<String, int[]> expectedMap, Dataset ds)
+	{
+		int[] counts = expectedMap.get(bureauCode(ds));
+		if (counts == null)
+		{
+			counts = new int[3];
+			expectedMap.put(bureauCode(ds), counts);
+		}
+		return counts;
+	}
+}
@@ -0,0 +1,130 @@
+package gov.usda.DataCatalogClient;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SearchIndexTest {
+
+	private static final Logger log = Logger.getLogger(SearchIndexTest.class.getName());
+
+	@Before
+	public void setUp() throws Exception {
+	}
+
+	@After
+	public void tearDown() throws Exception {
+	}
+
+	@Test
+	public void testTokenize() {
+		assertEquals(Arrays.asList("reseau", "d", "eau", "2015", "naive"), SearchIndex.tokenize("Réseau d'eau: 2015 NAÏVE"));
+		assertTrue(SearchIndex.tokenize(null).isEmpty());
+	}
+
+	/**
+	 * A title match ranks above a description match and index changes show up in later searches.
+	 */
+	@Test
+	public void testRankingAndIncrementalUpdate() {
+		SearchIndex searchIndex = new SearchIndex();
+		Dataset titleMatch = newDataset("Soil Moisture Survey", "Monthly readings");
+		Dataset descriptionMatch = newDataset("Crop Report", "Includes soil samples and many other measurements of the field");
+		Dataset noMatch = newDataset("Forest Inventory", "Tree counts");
+		searchIndex.add(titleMatch);
+		searchIndex.add(descriptionMatch);
+		searchIndex.add(noMatch);
+
+		List<SearchResult> resultList = searchIndex.search("soil", 10);
+		assertEquals(2, resultList.size());
+		assertSame(titleMatch, resultList.get(0).getDataset());
+		assertSame(descriptionMatch, resultList.get(1).getDataset());
+		assertEquals(1, searchIndex.search("soil", 1).size());
+
+		noMatch.setDescription("Soil carbon under trees");
+		searchIndex.update(noMatch);
+		assertEquals(3, searchIndex.search("SOIL", 10).size());
+
+		searchIndex.remove(titleMatch);
+		resultList = searchIndex.search("soil", 10);
+		assertEquals(2, resultList.size());
+		for (SearchResult result: resultList)
+		{
+			assertNotSame(titleMatch, result.getDataset());
+		}
+	}
+
+	/**
+	 * An index that only receives updates does not grow and still ranks the updated text.
+	 */
+	@Test
+	public void testUpdateChurn() {
+		SearchIndex searchIndex = new SearchIndex();
+		List<Dataset> datasetList = new ArrayList<Dataset>();
+		for (int i = 0; i < 100; i++)
+		{
+			Dataset ds = newDataset("Survey " + i, "Readings");
+			datasetList.add(ds);
+			searchIndex.add(ds);
+		}
+		for (int round = 0; round < 50; round++)
+		{
+			for (Dataset ds: datasetList)
+			{
+				ds.setDescription("Readings round" + round);
+				searchIndex.update(ds);
+			}
+		}
+		assertEquals(100, searchIndex.size());
+		assertTrue(searchIndex.getDocumentIdCount() <= 100 + 1025);
+		assertEquals(100, searchIndex.search("round49", 200).size());
+		assertEquals(0, searchIndex.search("round48", 200).size());
+		assertSame(datasetList.get(7), searchIndex.search("survey 7", 1).get(0).getDataset());
+	}
+
+	/**
+	 * Catalog search builds the index on first use and follows later catalog changes.
+	 */
+	@Test
+	public void testCatalogSearch() {
+		Catalog catalog = new Catalog();
+		try
+		{
+			catalog.loadFromProjectOpenDataJSON("sample_data/data.json");
+		}
+		catch (CatalogException e)
+		{
+			log.log(Level.SEVERE, e.toString());
+		}
+		final Dataset first = catalog.getDatasetList().get(0);
+		List<SearchResult> resultList = catalog.search(first.getTitle(), 5);
+		assertFalse(resultList.isEmpty());
+		assertSame(first, resultList.get(0).getDataset());
+
+		catalog.removeDataset(first);
+		for (SearchResult result: catalog.search(first.getTitle(), 5))
+		{
+			assertNotSame(first, result.getDataset());
+		}
+
+		Dataset added = newDataset("Zyzzyva Habitat", "Weevil range");
+		catalog.addDataset(added);
+		assertSame(added, catalog.search("zyzzyva", 5).get(0).getDataset());
+	}
+
+	private Dataset newDataset(String title, String description)
+	{
+		Dataset ds = new Dataset();
+		ds.setTitle(title);
+		ds.setDescription(description);
+		return ds;
+	}
+}